@@ -0,0 +1,117 @@
+package ch.fhnw.dlcopy;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Access to the fixture files of the benchmarks. The fixtures are checked in
+ * below <tt>benchmark/fixtures</tt> so that the results of different releases
+ * are comparable. The directory can be changed with the system property
+ * <tt>dlcopy.benchmark.fixtures</tt>.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class BenchmarkFixtures {
+
+    private static final Path FIXTURES = Paths.get(System.getProperty(
+            "dlcopy.benchmark.fixtures", "benchmark/fixtures"));
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * returns the path of a fixture file
+     *
+     * @param name the name of the fixture, relative to the fixtures directory
+     * @return the path of the fixture file
+     */
+    public static Path get(String name) {
+        return FIXTURES.resolve(name);
+    }
+
+    /**
+     * reads all lines of a fixture file
+     *
+     * @param name the name of the fixture, relative to the fixtures directory
+     * @return all lines of the fixture file
+     * @throws IOException if reading the fixture fails
+     */
+    public static List<String> readLines(String name) throws IOException {
+        return Files.readAllLines(get(name));
+    }
+
+    /**
+     * copies a fixture directory to a new temporary directory (for benchmarks
+     * that modify their fixtures)
+     *
+     * @param name the name of the fixture directory, relative to the fixtures
+     * directory
+     * @return the temporary copy
+     * @throws IOException if copying the fixture fails
+     */
+    public static Path copyToTemporaryDirectory(String name)
+            throws IOException {
+        Path source = get(name);
+        Path destination = Files.createTempDirectory("dlcopy-benchmark-");
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir,
+                    BasicFileAttributes attributes) throws IOException {
+                Files.createDirectories(
+                        destination.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file,
+                    BasicFileAttributes attributes) throws IOException {
+                Files.copy(file, destination.resolve(source.relativize(file)));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return destination;
+    }
+
+    /**
+     * deletes a temporary directory created by
+     * {@link #copyToTemporaryDirectory(java.lang.String)}
+     *
+     * @param directory the temporary directory
+     * @throws IOException if deleting fails
+     */
+    public static void delete(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file,
+                    BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir,
+                    IOException exception) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Disables logging. Otherwise the benchmarks would mostly measure the
+     * logging of the benchmarked code.
+     */
+    public static void disableLogging() {
+        Logger.getLogger("").setLevel(Level.OFF);
+    }
+}
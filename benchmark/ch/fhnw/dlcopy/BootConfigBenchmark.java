@@ -0,0 +1,84 @@
+package ch.fhnw.dlcopy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks parsing and transforming the xmlboot config file with
+ * {@link BootConfigUtil}.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BootConfigBenchmark {
+
+    private static final DataPartitionMode[] MODES = {
+        DataPartitionMode.READ_WRITE,
+        DataPartitionMode.READ_ONLY,
+        DataPartitionMode.NOT_USED
+    };
+
+    // the transformation writes the config file, therefore we work on a copy
+    private Path imageDirectory;
+    private String imagePath;
+    private int modeIndex;
+
+    /**
+     * copies the image fixture
+     *
+     * @throws IOException if copying the fixture fails
+     */
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures.disableLogging();
+        imageDirectory = BenchmarkFixtures.copyToTemporaryDirectory("image");
+        imagePath = imageDirectory.toString();
+    }
+
+    /**
+     * removes the copy of the image fixture
+     *
+     * @throws IOException if removing the copy fails
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.delete(imageDirectory);
+    }
+
+    /**
+     * benchmarks parsing the xmlboot config
+     *
+     * @return the data partition mode
+     */
+    @Benchmark
+    public DataPartitionMode parse() {
+        return BootConfigUtil.getDataPartitionMode(imagePath);
+    }
+
+    /**
+     * benchmarks parsing, changing and writing the xmlboot config
+     */
+    @Benchmark
+    public void transform() {
+        // cycle through all modes so that every call really changes the file
+        modeIndex = (modeIndex + 1) % MODES.length;
+        BootConfigUtil.setDataPartitionModeXmlBoot(MODES[modeIndex], imagePath);
+    }
+}
@@ -0,0 +1,91 @@
+package ch.fhnw.dlcopy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link DLCopy#getMd5String(java.lang.String)}, which is used to
+ * detect the legacy GRUB files of a system source.
+ * <br>
+ * Random binary files don't compress well as checked-in fixtures, therefore
+ * the input file is generated with a fixed seed and is identical in every
+ * run.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class Md5Benchmark {
+
+    private static final long SEED = 20210206;
+
+    /**
+     * the size of the input file (in KiB)
+     */
+    @Param({"64", "1024", "16384"})
+    public int sizeKiB;
+
+    private Path file;
+
+    /**
+     * creates the input file
+     *
+     * @throws IOException if creating the input file fails
+     */
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures.disableLogging();
+        file = Files.createTempFile("dlcopy-benchmark-", ".bin");
+        Random random = new Random(SEED);
+        byte[] buffer = new byte[1024];
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            for (int i = 0; i < sizeKiB; i++) {
+                random.nextBytes(buffer);
+                outputStream.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * removes the input file
+     *
+     * @throws IOException if removing the input file fails
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    /**
+     * benchmarks calculating the MD5 sum of a file
+     *
+     * @return the MD5 sum
+     * @throws NoSuchAlgorithmException if MD5 is not available
+     * @throws IOException if reading the file fails
+     */
+    @Benchmark
+    public String getMd5String() throws NoSuchAlgorithmException, IOException {
+        return DLCopy.getMd5String(file.toString());
+    }
+}
@@ -0,0 +1,77 @@
+package ch.fhnw.dlcopy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the partition size calculation for the typical target media
+ * listed in the fixture <tt>partition_sizes.txt</tt>.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PartitionSizesBenchmark {
+
+    private static final int EXCHANGE_MB = 4096;
+
+    private long[] storageDeviceSizes;
+    private long[] systemSizes;
+
+    /**
+     * reads the sizes fixture
+     *
+     * @throws IOException if reading the fixture fails
+     */
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures.disableLogging();
+        List<long[]> sizes = new ArrayList<>();
+        for (String line
+                : BenchmarkFixtures.readLines("partition_sizes.txt")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("\\s+");
+            sizes.add(new long[]{
+                Long.parseLong(tokens[0]), Long.parseLong(tokens[1])});
+        }
+        storageDeviceSizes = new long[sizes.size()];
+        systemSizes = new long[sizes.size()];
+        for (int i = 0, size = sizes.size(); i < size; i++) {
+            storageDeviceSizes[i] = sizes.get(i)[0];
+            systemSizes[i] = sizes.get(i)[1];
+        }
+    }
+
+    /**
+     * benchmarks calculating the partition sizes of all fixture media
+     *
+     * @param blackhole consumes the partition sizes
+     */
+    @Benchmark
+    public void getPartitionSizes(Blackhole blackhole) {
+        for (int i = 0; i < storageDeviceSizes.length; i++) {
+            blackhole.consume(DLCopy.getPartitionSizes(storageDeviceSizes[i],
+                    systemSizes[i], () -> EXCHANGE_MB));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ch.fhnw.dlcopy;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks parsing of the /proc files <tt>swaps</tt>, <tt>meminfo</tt> and
+ * <tt>mounts</tt> (the files are read from the fixtures instead of /proc).
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ProcParsingBenchmark {
+
+    private String swapLine;
+    private List<String> meminfo;
+    private List<String> mounts;
+
+    /**
+     * reads the /proc fixtures
+     *
+     * @throws IOException if reading the fixtures fails
+     */
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures.disableLogging();
+        // the first line is the header
+        swapLine = BenchmarkFixtures.readLines("proc/swaps").get(1);
+        meminfo = BenchmarkFixtures.readLines("proc/meminfo");
+        mounts = BenchmarkFixtures.readLines("proc/mounts");
+    }
+
+    /**
+     * benchmarks parsing a swaps line and meminfo
+     *
+     * @return the remaining free memory
+     * @throws IOException if parsing fails
+     */
+    @Benchmark
+    public long swapInfo() throws IOException {
+        return new SwapInfo(swapLine, meminfo).getRemainingFreeMemory();
+    }
+
+    /**
+     * benchmarks the mounts scanning of
+     * {@link DLCopy#umount(java.lang.String, ch.fhnw.dlcopy.ExecutionContext)}
+     * with a mount point near the end of the mounts
+     *
+     * @return the matching mounts
+     */
+    @Benchmark
+    public List<String[]> umountScan() {
+        return DLCopy.getMounts("/media/user/persistence", mounts);
+    }
+
+    /**
+     * benchmarks the mounts scanning of a device that is mounted
+     *
+     * @return <tt>true</tt>
+     */
+    @Benchmark
+    public boolean isMounted() {
+        return DLCopy.isMounted("/dev/sdb", mounts);
+    }
+
+    /**
+     * benchmarks the mounts scanning of a device that is not mounted (the
+     * worst case, all mounts are scanned)
+     *
+     * @return <tt>false</tt>
+     */
+    @Benchmark
+    public boolean isNotMounted() {
+        return DLCopy.isMounted("/dev/sdc", mounts);
+    }
+}
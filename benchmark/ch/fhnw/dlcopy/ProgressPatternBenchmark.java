@@ -0,0 +1,76 @@
+package ch.fhnw.dlcopy;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the progress parsing of {@link IsoCreator} with recorded
+ * xorriso and mksquashfs output. Every benchmark invocation parses a complete
+ * log with the methods that
+ * {@link IsoCreator#propertyChange(java.beans.PropertyChangeEvent)} uses for
+ * every output line.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ProgressPatternBenchmark {
+
+    private String[] xorrisoLines;
+    private String[] mksquashfsLines;
+
+    /**
+     * reads the log fixtures
+     *
+     * @throws IOException if reading the fixtures fails
+     */
+    @Setup
+    public void setup() throws IOException {
+        xorrisoLines = BenchmarkFixtures.readLines(
+                "logs/xorriso.log").toArray(String[]::new);
+        mksquashfsLines = BenchmarkFixtures.readLines(
+                "logs/mksquashfs.log").toArray(String[]::new);
+    }
+
+    /**
+     * benchmarks parsing the xorriso progress
+     *
+     * @return the sum of all progress values
+     */
+    @Benchmark
+    public int xorriso() {
+        int sum = 0;
+        for (String line : xorrisoLines) {
+            sum += IsoCreator.parseXorrisoProgress(line);
+        }
+        return sum;
+    }
+
+    /**
+     * benchmarks parsing the mksquashfs progress
+     *
+     * @return the sum of all progress values
+     */
+    @Benchmark
+    public int mksquashfs() {
+        int sum = 0;
+        for (String line : mksquashfsLines) {
+            sum += IsoCreator.parseMksquashfsProgress(line);
+        }
+        return sum;
+    }
+}
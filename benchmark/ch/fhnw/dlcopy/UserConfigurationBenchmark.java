@@ -0,0 +1,51 @@
+package ch.fhnw.dlcopy;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks parsing the user configuration (passwd, shadow, group and the
+ * GDM configuration) of a system.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class UserConfigurationBenchmark {
+
+    private String rootDirectory;
+
+    /**
+     * resolves the root directory fixture
+     */
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.disableLogging();
+        rootDirectory = BenchmarkFixtures.get("root").toString();
+    }
+
+    /**
+     * benchmarks parsing the user configuration
+     *
+     * @return the parsed user configuration
+     * @throws IOException if reading the configuration files fails
+     */
+    @Benchmark
+    public UserConfiguration parse() throws IOException {
+        return new UserConfiguration(rootDirectory);
+    }
+}
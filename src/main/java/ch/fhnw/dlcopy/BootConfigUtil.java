@@ -97,7 +97,7 @@ public class BootConfigUtil {
         setDataPartitionModeGrub(destinationDataPartitionMode, imagePath);
     }
 
-    private static void setDataPartitionModeXmlBoot(
+    static void setDataPartitionModeXmlBoot(
             DataPartitionMode destinationDataPartitionMode, String imagePath) {
 
         try {
@@ -0,0 +1,248 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.util.LernstickFileTools;
+import ch.fhnw.util.ProcessExecutor;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Predicts the size and duration of compressing a directory tree into a
+ * squashfs file with a compression profile. A small sample of the tree is
+ * compressed with the profile and the result is extrapolated to the size of
+ * the whole tree.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class CompressionCalibration {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(CompressionCalibration.class.getName());
+
+    /**
+     * the default size of the sample
+     */
+    public static final long DEFAULT_SAMPLE_SIZE = 64L * DLCopy.MEGA;
+
+    private final Path tree;
+    private final SquashFSExcludes excludes;
+    private final long sampleSize;
+
+    private final List<Path> sampleFiles = new ArrayList<>();
+    private long treeSize;
+    private long sampledBytes;
+
+    /**
+     * creates a new CompressionCalibration
+     *
+     * @param tree the directory tree to compress
+     * @param excludeFile the exclude file (with wildcards) that is used for
+     * mksquashfs or <tt>null</tt>, if no files are excluded
+     * @param sampleSize the number of bytes to sample
+     * @throws IOException if reading the exclude file fails
+     */
+    public CompressionCalibration(Path tree, Path excludeFile,
+            long sampleSize) throws IOException {
+        this.tree = tree;
+        this.sampleSize = sampleSize;
+        excludes = new SquashFSExcludes(excludeFile);
+    }
+
+    /**
+     * compresses the sample with a profile
+     *
+     * @param profile the compression profile
+     * @param tmpDirectory the directory where the sample is compressed
+     * @return the estimate for the profile or <tt>null</tt>, if the tree
+     * contains no files
+     * @throws IOException if sampling or compressing fails
+     */
+    public Estimate calibrate(CompressionProfile profile, String tmpDirectory)
+            throws IOException {
+
+        sample();
+        if (sampledBytes == 0) {
+            return null;
+        }
+
+        File calibrationDirectory = LernstickFileTools.createTempDirectory(
+                new File(tmpDirectory), "Lernstick-Calibration");
+        try {
+            Path sampleDirectory = calibrationDirectory.toPath()
+                    .resolve("sample");
+            for (Path file : sampleFiles) {
+                Path target = sampleDirectory.resolve(tree.relativize(file));
+                Files.createDirectories(target.getParent());
+                Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+
+            Path squashFS = calibrationDirectory.toPath()
+                    .resolve(profile.name() + ".squashfs");
+            List<String> command = new ArrayList<>();
+            command.add("mksquashfs");
+            command.add(sampleDirectory.toString());
+            command.add(squashFS.toString());
+            command.addAll(profile.getMksquashfsOptions());
+            command.add("-no-progress");
+            long start = System.currentTimeMillis();
+            int exitValue = new ProcessExecutor().executeProcess(
+                    true, true, command.toArray(String[]::new));
+            long duration = System.currentTimeMillis() - start;
+            if (exitValue != 0) {
+                String errorMessage = "calibrating " + profile
+                        + " failed with exit value " + exitValue;
+                LOGGER.severe(errorMessage);
+                throw new IOException(errorMessage);
+            }
+            double factor = (double) treeSize / sampledBytes;
+            Estimate estimate = new Estimate(
+                    (long) (Files.size(squashFS) * factor),
+                    (long) (duration * factor));
+            LOGGER.log(Level.INFO, "{0}: {1}", new Object[]{
+                profile, estimate});
+            return estimate;
+        } finally {
+            LernstickFileTools.recursiveDelete(calibrationDirectory, true);
+        }
+    }
+
+    /**
+     * returns the size of all files in the tree that are not excluded
+     *
+     * @return the size of all files in the tree that are not excluded
+     */
+    public long getTreeSize() {
+        return treeSize;
+    }
+
+    // Selects the sample so that the sampled bytes follow the bytes seen so
+    // far. This way the sample is spread over the whole tree instead of only
+    // containing its first directories.
+    private void sample() throws IOException {
+        sampleFiles.clear();
+        treeSize = 0;
+        sampledBytes = 0;
+        List<Path> files = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        Files.walkFileTree(tree, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory,
+                    BasicFileAttributes attributes) {
+                return isExcluded(directory)
+                        ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file,
+                    BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && !isExcluded(file)) {
+                    files.add(file);
+                    sizes.add(attributes.size());
+                    treeSize += attributes.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file,
+                    IOException exception) {
+                LOGGER.log(Level.WARNING, "", exception);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        double fraction = Math.min(1, (double) sampleSize / treeSize);
+        long visitedBytes = 0;
+        for (int i = 0, size = files.size(); i < size; i++) {
+            long fileSize = sizes.get(i);
+            visitedBytes += fileSize;
+            if (sampledBytes + fileSize <= visitedBytes * fraction) {
+                sampleFiles.add(files.get(i));
+                sampledBytes += fileSize;
+            }
+        }
+        LOGGER.log(Level.INFO, "sampled {0} of {1} files ({2} of {3} byte)",
+                new Object[]{sampleFiles.size(), files.size(),
+                    sampledBytes, treeSize});
+    }
+
+    private boolean isExcluded(Path path) {
+        return excludes.isExcluded(tree.relativize(path));
+    }
+
+    /**
+     * the estimated result of compressing the tree with a profile
+     */
+    public static class Estimate {
+
+        private final long size;
+        private final long duration;
+
+        /**
+         * creates a new Estimate
+         *
+         * @param size the estimated size of the squashfs file in byte
+         * @param duration the estimated duration in milliseconds
+         */
+        public Estimate(long size, long duration) {
+            this.size = size;
+            this.duration = duration;
+        }
+
+        /**
+         * returns the estimated size of the squashfs file in byte
+         *
+         * @return the estimated size of the squashfs file in byte
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * returns the estimated duration in milliseconds
+         *
+         * @return the estimated duration in milliseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * returns the estimated size as human readable string
+         *
+         * @return the estimated size as human readable string
+         */
+        public String getSizeString() {
+            return LernstickFileTools.getDataVolumeString(size, 1);
+        }
+
+        /**
+         * returns the estimated duration as string (HH:mm:ss)
+         *
+         * @return the estimated duration as string (HH:mm:ss)
+         */
+        public String getDurationString() {
+            return LocalTime.MIDNIGHT.plus(Duration.ofMillis(duration))
+                    .format(DateTimeFormatter.ofPattern("HH:mm:ss"));
+        }
+
+        @Override
+        public String toString() {
+            return getSizeString() + " in " + getDurationString();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.util.LernstickFileTools;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The compression profiles for creating squashfs files
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public enum CompressionProfile {
+
+    /**
+     * fast compression with a moderate compression ratio, good for testing
+     * exports or when the exports are only used once, the compressors are so
+     * fast that reading and writing become the bottleneck and larger queues
+     * and caches pay off
+     */
+    FAST("zstd", 3, 256 * 1024, 0, 40),
+    /**
+     * a good compression ratio in a reasonable time (with the memory default
+     * of mksquashfs)
+     */
+    BALANCED("zstd", 15, 256 * 1024, 0, 25),
+    /**
+     * the best compression ratio but very slow (the compression settings
+     * that were used before the profiles were introduced), one processor and
+     * most of the memory are left for the desktop because this takes a long
+     * time and the compressors are the bottleneck anyway
+     */
+    MAXIMUM("zstd", 22, 128 * 1024, -1, 10);
+
+    private static final Logger LOGGER
+            = Logger.getLogger(CompressionProfile.class.getName());
+
+    /**
+     * the minimum amount of memory in MiB that mksquashfs gets
+     */
+    private static final long MIN_MEMORY_MB = 64;
+
+    private final String compressor;
+    private final int compressionLevel;
+    private final int blockSize;
+    private final int processors;
+    private final int memoryPercent;
+
+    /**
+     * creates a new CompressionProfile
+     *
+     * @param compressor the mksquashfs compressor
+     * @param compressionLevel the compression level of the compressor
+     * @param blockSize the squashfs block size in byte
+     * @param processors the number of processors mksquashfs should use,
+     * <tt>0</tt> to use all available processors or a negative number to
+     * leave that many processors unused
+     * @param memoryPercent the percentage of the physical memory mksquashfs
+     * should use
+     */
+    CompressionProfile(String compressor, int compressionLevel, int blockSize,
+            int processors, int memoryPercent) {
+        this.compressor = compressor;
+        this.compressionLevel = compressionLevel;
+        this.blockSize = blockSize;
+        this.processors = processors;
+        this.memoryPercent = memoryPercent;
+    }
+
+    /**
+     * returns the mksquashfs options of this profile
+     *
+     * @return the mksquashfs options of this profile
+     */
+    public List<String> getMksquashfsOptions() {
+        List<String> options = new ArrayList<>();
+        options.add("-comp");
+        options.add(compressor);
+        options.add("-Xcompression-level");
+        options.add(String.valueOf(compressionLevel));
+        options.add("-b");
+        options.add(String.valueOf(blockSize));
+        if (processors != 0) {
+            options.add("-processors");
+            options.add(String.valueOf(processors > 0 ? processors
+                    : Math.max(1, Runtime.getRuntime().availableProcessors()
+                            + processors)));
+        }
+        long memoryMB = getMemoryMB(getPhysicalMemoryKB());
+        if (memoryMB > 0) {
+            options.add("-mem");
+            options.add(memoryMB + "M");
+        }
+        return options;
+    }
+
+    /**
+     * returns the amount of memory mksquashfs should use with this profile
+     *
+     * @param physicalMemoryKB the size of the physical memory in KiB or
+     * <tt>0</tt>, if unknown
+     * @return the amount of memory in MiB or <tt>0</tt> for the mksquashfs
+     * default
+     */
+    long getMemoryMB(long physicalMemoryKB) {
+        if (physicalMemoryKB <= 0) {
+            return 0;
+        }
+        return Math.max(MIN_MEMORY_MB,
+                physicalMemoryKB / 1024 * memoryPercent / 100);
+    }
+
+    /**
+     * parses a compression profile from a command line argument
+     *
+     * @param name the name of the profile (case insensitive)
+     * @return the compression profile or <tt>null</tt>, if there is no
+     * profile with the given name
+     */
+    public static CompressionProfile parse(String name) {
+        for (CompressionProfile profile : values()) {
+            if (profile.name().equalsIgnoreCase(name)) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    private static long getPhysicalMemoryKB() {
+        try {
+            for (String line
+                    : LernstickFileTools.readFile(new File("/proc/meminfo"))) {
+                if (line.startsWith("MemTotal:")) {
+                    // e.g. "MemTotal:       16314896 kB"
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            LOGGER.log(Level.WARNING, "", ex);
+        }
+        LOGGER.warning("could not determine the size of the physical memory");
+        return 0;
+    }
+}
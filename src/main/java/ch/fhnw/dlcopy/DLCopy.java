@@ -4,6 +4,7 @@ import ch.fhnw.dlcopy.gui.DLCopyGUI;
 import ch.fhnw.dlcopy.gui.javafx.StorageMediaManagement;
 import ch.fhnw.dlcopy.gui.swing.DLCopySwingGUI;
 import ch.fhnw.filecopier.CopyJob;
+import ch.fhnw.filecopier.DirectoryInfo;
 import ch.fhnw.filecopier.FileCopier;
 import ch.fhnw.filecopier.Source;
 import ch.fhnw.util.DbusTools;
@@ -17,24 +18,19 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -44,6 +40,7 @@ import org.freedesktop.DBus;
 import org.freedesktop.dbus.DBusConnection;
 import org.freedesktop.dbus.UInt64;
 import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
 import org.xml.sax.SAXException;
 
 /**
@@ -109,10 +106,9 @@ public class DLCopy {
 
     private static final Logger LOGGER
             = Logger.getLogger(DLCopy.class.getName());
-    private static final ProcessExecutor PROCESS_EXECUTOR
-            = new ProcessExecutor();
     private static final long MINIMUM_PARTITION_SIZE = 200 * MEGA;
     private static final long MINIMUM_FREE_MEMORY = 300 * MEGA;
+    private static final long UMOUNT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
     private static DBusConnection dbusSystemConnection;
 
     static {
@@ -224,10 +220,12 @@ public class DLCopy {
      * @param device the device where the MBR should be installed
      * @param bootPartition the boot partition of the device, where syslinux is
      * installed
+     * @param context the context of the current operation
      * @throws IOException when an IOException occurs
      */
     public static void makeBootable(SystemSource source, String device,
-            Partition bootPartition) throws IOException {
+            Partition bootPartition, ExecutionContext context)
+            throws IOException {
 
         // install syslinux
         try {
@@ -240,8 +238,20 @@ public class DLCopy {
             throw new IOException(errorMessage);
         }
 
-        // install MBR
-        int exitValue = PROCESS_EXECUTOR.executeScript(
+        installMbr(source, device, context);
+    }
+
+    /**
+     * installs the MBR from an InstallationSource to a target device
+     *
+     * @param source the system source
+     * @param device the device where the MBR should be installed
+     * @param context the context of the current operation
+     * @throws IOException when an IOException occurs
+     */
+    public static void installMbr(SystemSource source, String device,
+            ExecutionContext context) throws IOException {
+        int exitValue = context.getProcessExecutor().executeScript(
                 "cat " + source.getMbrPath() + " > " + device + '\n'
                 + "sync");
         if (exitValue != 0) {
@@ -257,7 +267,6 @@ public class DLCopy {
      *
      * @param source the system source
      * @param fileCopier the Filecopier used for copying the system partition
-     * @param storageDevice the target storage device
      * @param exchangePartitionLabel the label of the exchange partition
      * @param installerOrUpgrader the Installer or Upgrader that is calling this
      * method
@@ -270,7 +279,8 @@ public class DLCopy {
      * @param randomFillDataPartition if the data partition should be filled
      * with random data before formatting
      * @param checkCopies if copies should be checked for errors
-     * @param dlCopyGUI the program GUI
+     * @param context the context of the current operation, including the
+     * target storage device
      * @throws InterruptedException when the installation was interrupted
      * @throws IOException when an I/O exception occurs
      * @throws DBusException when there was a problem with DBus
@@ -278,18 +288,63 @@ public class DLCopy {
      * algorithm can't be found
      */
     public static void copyToStorageDevice(SystemSource source,
-            FileCopier fileCopier, StorageDevice storageDevice,
-            String exchangePartitionLabel,
+            FileCopier fileCopier, String exchangePartitionLabel,
             InstallerOrUpgrader installerOrUpgrader,
             boolean personalDataPartitionEncryption,
             String personalEncryptionPassword,
             boolean secondaryDataPartitionEncryption,
             String secondaryEncryptionPassword, boolean randomFillDataPartition,
-            boolean checkCopies, DLCopyGUI dlCopyGUI)
+            boolean checkCopies, ExecutionContext context)
             throws InterruptedException, IOException,
             DBusException, NoSuchAlgorithmException {
 
+        PreparedStorageDevice preparedStorageDevice = prepareStorageDevice(
+                source, exchangePartitionLabel, installerOrUpgrader,
+                personalDataPartitionEncryption, personalEncryptionPassword,
+                secondaryDataPartitionEncryption, secondaryEncryptionPassword,
+                randomFillDataPartition, context);
+
+        finishStorageDevice(source, fileCopier, preparedStorageDevice,
+                installerOrUpgrader, checkCopies, context);
+    }
+
+    /**
+     * Prepares a target storage device for an installation, i.e. creates and
+     * formats all necessary partitions. This stage doesn't need the
+     * installation source files and can therefore run while another storage
+     * device is busy copying files.
+     *
+     * @param source the system source
+     * @param exchangePartitionLabel the label of the exchange partition
+     * @param installerOrUpgrader the Installer or Upgrader that is calling this
+     * method
+     * @param personalDataPartitionEncryption if the persistence partition
+     * should be encrypted with a personal password
+     * @param personalEncryptionPassword the personal encryption password
+     * @param secondaryDataPartitionEncryption if the persistence partition
+     * should be encrypted with a secondary password
+     * @param secondaryEncryptionPassword the secondary encryption password
+     * @param randomFillDataPartition if the data partition should be filled
+     * with random data before formatting
+     * @param context the context of the current operation, including the
+     * target storage device
+     * @return the prepared storage device
+     * @throws InterruptedException when the installation was interrupted
+     * @throws IOException when an I/O exception occurs
+     * @throws DBusException when there was a problem with DBus
+     */
+    public static PreparedStorageDevice prepareStorageDevice(
+            SystemSource source, String exchangePartitionLabel,
+            InstallerOrUpgrader installerOrUpgrader,
+            boolean personalDataPartitionEncryption,
+            String personalEncryptionPassword,
+            boolean secondaryDataPartitionEncryption,
+            String secondaryEncryptionPassword, boolean randomFillDataPartition,
+            ExecutionContext context)
+            throws InterruptedException, IOException, DBusException {
+
         // determine size and state
+        StorageDevice storageDevice = context.getStorageDevice();
         String device = storageDevice.getFullDevice();
         long storageDeviceSize = storageDevice.getSize();
         PartitionSizes partitionSizes
@@ -358,7 +413,7 @@ public class DLCopy {
                     secondaryDataPartitionEncryption,
                     secondaryEncryptionPassword, randomFillDataPartition,
                     destinationEfiDevice, destinationSystemDevice,
-                    installerOrUpgrader, dlCopyGUI);
+                    installerOrUpgrader, context);
         } catch (IOException iOException) {
             // On some Corsair Flash Voyager GT drives the first sfdisk try
             // failes with the following output:
@@ -411,7 +466,7 @@ public class DLCopy {
                     secondaryDataPartitionEncryption,
                     secondaryEncryptionPassword, randomFillDataPartition,
                     destinationEfiDevice, destinationSystemDevice,
-                    installerOrUpgrader, dlCopyGUI);
+                    installerOrUpgrader, context);
         }
 
         // Here have to trigger a rescan of the device partitions. Otherwise
@@ -419,16 +474,57 @@ public class DLCopy {
         // will later get exceptions similar to this one:
         // org.freedesktop.dbus.exceptions.DBusExecutionException:
         // No such interface 'org.freedesktop.UDisks2.Filesystem'
-        PROCESS_EXECUTOR.executeProcess("partprobe", device);
-        // Sigh... even after partprobe exits, we have to give udisks even more
-        // time to get its act together and finally know about the new
-        // partitions.
-        try {
-            // 5 seconds were not enough!
-            TimeUnit.SECONDS.sleep(7);
-        } catch (InterruptedException ex) {
-            LOGGER.log(Level.SEVERE, "", ex);
-        }
+        try (PhaseTimer.Measurement udevWait = context.getPhaseTimer().start(
+                Phase.UDEV_WAIT, "file systems of " + device)) {
+            context.getProcessExecutor().executeProcess("partprobe", device);
+            // Even after partprobe exits, udisks needs some more time to get
+            // its act together and finally know about the new partitions.
+            ReadinessWaiter.waitForPartitions("partitions of " + device,
+                    destinationExchangeDevice, destinationDataDevice,
+                    destinationEfiDevice, destinationSystemDevice);
+            ReadinessWaiter.waitForFileSystems("file systems of " + device,
+                    destinationExchangeDevice, destinationEfiDevice,
+                    destinationSystemDevice, personalDataPartitionEncryption
+                    ? null : destinationDataDevice);
+        }
+
+        return new PreparedStorageDevice(destinationEfiDevice,
+                destinationExchangeDevice, destinationDataDevice,
+                destinationSystemDevice);
+    }
+
+    /**
+     * Finishes the installation on a prepared storage device, i.e. copies all
+     * files and makes the storage device bootable.
+     *
+     * @param source the system source
+     * @param fileCopier the Filecopier used for copying the system partition
+     * @param preparedStorageDevice the prepared storage device
+     * @param installerOrUpgrader the Installer or Upgrader that is calling this
+     * method
+     * @param checkCopies if copies should be checked for errors
+     * @param context the context of the current operation, including the
+     * target storage device
+     * @throws InterruptedException when the installation was interrupted
+     * @throws IOException when an I/O exception occurs
+     * @throws DBusException when there was a problem with DBus
+     * @throws java.security.NoSuchAlgorithmException when the file checking
+     * algorithm can't be found
+     */
+    public static void finishStorageDevice(SystemSource source,
+            FileCopier fileCopier, PreparedStorageDevice preparedStorageDevice,
+            InstallerOrUpgrader installerOrUpgrader, boolean checkCopies,
+            ExecutionContext context) throws InterruptedException,
+            IOException, DBusException, NoSuchAlgorithmException {
+
+        StorageDevice storageDevice = context.getStorageDevice();
+        String device = storageDevice.getFullDevice();
+        String destinationEfiDevice = preparedStorageDevice.getEfiDevice();
+        String destinationExchangeDevice
+                = preparedStorageDevice.getExchangeDevice();
+        String destinationDataDevice = preparedStorageDevice.getDataDevice();
+        String destinationSystemDevice
+                = preparedStorageDevice.getSystemDevice();
 
         // the partitions now really exist
         // -> instantiate them as objects
@@ -454,28 +550,37 @@ public class DLCopy {
         copyExchangeEfiAndSystem(source, fileCopier, storageDevice,
                 destinationExchangePartition, destinationBootPartition,
                 destinationSystemPartition, installerOrUpgrader, checkCopies,
-                dlCopyGUI);
+                context);
 
         // copy persistence layer
         copyPersistence(source, installerOrUpgrader,
-                destinationDataPartition, dlCopyGUI);
+                destinationDataPartition, context);
 
 
         if (!DLCopy.ARCHITECTURE.equals("aarch64")) {
             // make storage device bootable
             installerOrUpgrader.showWritingBootSector();
-            makeBootable(source, device, destinationBootPartition);
-        }
-        
-        if (!umount(destinationBootPartition, dlCopyGUI)) {
-            String errorMessage = "could not umount destination boot partition";
-            throw new IOException(errorMessage);
+            try (PhaseTimer.Measurement bootloader = context.getPhaseTimer()
+                    .start(Phase.BOOTLOADER, destinationEfiDevice)) {
+                makeBootable(source, device, destinationBootPartition,
+                        context);
+            }
         }
 
-        if (!umount(destinationSystemPartition, dlCopyGUI)) {
-            String errorMessage
-                    = "could not umount destination system partition";
-            throw new IOException(errorMessage);
+        try (PhaseTimer.Measurement unmount = context.getPhaseTimer().start(
+                Phase.UNMOUNT, device)) {
+            if (!umount(destinationBootPartition, context.getDLCopyGUI())) {
+                String errorMessage
+                        = "could not umount destination boot partition";
+                throw new IOException(errorMessage);
+            }
+
+            if (!umount(destinationSystemPartition,
+                    context.getDLCopyGUI())) {
+                String errorMessage
+                        = "could not umount destination system partition";
+                throw new IOException(errorMessage);
+            }
         }
         source.unmountTmpPartitions();
     }
@@ -523,28 +628,68 @@ public class DLCopy {
      */
     public static void umount(String deviceOrMountpoint, DLCopyGUI dlCopyGUI)
             throws IOException {
+        umount(deviceOrMountpoint, new ExecutionContext(dlCopyGUI));
+    }
+
+    /**
+     * unmounts a device or mountpoint
+     *
+     * @param deviceOrMountpoint the device or mountpoint to unmount
+     * @param context the context of the current operation
+     * @throws IOException
+     */
+    public static void umount(String deviceOrMountpoint,
+            ExecutionContext context) throws IOException {
         // check if a swapfile is in use on this partition
         List<String> mounts = LernstickFileTools.readFile(
                 new File("/proc/mounts"));
-        for (String mount : mounts) {
-            String[] tokens = mount.split(" ");
-            String device = tokens[0];
-            String mountPoint = tokens[1];
-            if (device.equals(deviceOrMountpoint)
-                    || mountPoint.equals(deviceOrMountpoint)) {
-                List<String> swapLines = LernstickFileTools.readFile(
-                        new File("/proc/swaps"));
-                for (String swapLine : swapLines) {
-                    if (swapLine.startsWith(mountPoint)) {
-                        // deactivate swapfile
-                        swapoffFile(device, swapLine, dlCopyGUI);
-                    }
+        for (String[] mount : getMounts(deviceOrMountpoint, mounts)) {
+            String device = mount[0];
+            String mountPoint = mount[1];
+            List<String> swapLines = LernstickFileTools.readFile(
+                    new File("/proc/swaps"));
+            for (String swapLine : swapLines) {
+                if (swapLine.startsWith(mountPoint)) {
+                    // deactivate swapfile
+                    swapoffFile(device, swapLine, context);
                 }
             }
         }
 
-        int exitValue = PROCESS_EXECUTOR.executeProcess(
-                "umount", deviceOrMountpoint);
+        // When a file system was just mounted or accessed, umounting sometimes
+        // fails with error messages similar to this one:
+        // umount: /run/rw1/cow: target is busy
+        // Therefore we retry with an increasing delay until a timeout is
+        // reached.
+        // The error messages of umount are translated, so we run it with
+        // the C locale to be able to detect busy targets. We don't change the
+        // environment of the ProcessExecutor because it is shared by all
+        // processes of the context.
+        ProcessExecutor processExecutor = context.getProcessExecutor();
+        long start = System.currentTimeMillis();
+        long delay = 100;
+        int exitValue;
+        while (true) {
+            exitValue = processExecutor.executeProcess(true, true,
+                    "env", "LC_ALL=C", "umount", deviceOrMountpoint);
+            long waited = System.currentTimeMillis() - start;
+            if ((exitValue == 0)
+                    || !processExecutor.getOutput().contains("busy")
+                    || (waited > UMOUNT_TIMEOUT)) {
+                break;
+            }
+            LOGGER.log(Level.INFO, "{0} is busy, retrying in {1} ms",
+                    new Object[]{deviceOrMountpoint, delay});
+            try {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            } catch (InterruptedException ex) {
+                LOGGER.log(Level.SEVERE, "", ex);
+                break;
+            }
+            delay = Math.min(delay * 2, 2000);
+        }
+        LOGGER.log(Level.INFO, "umounting {0} took {1} ms", new Object[]{
+            deviceOrMountpoint, System.currentTimeMillis() - start});
         if (exitValue != 0) {
             String errorMessage = STRINGS.getString("Error_Umount");
             errorMessage = MessageFormat.format(
@@ -616,7 +761,10 @@ public class DLCopy {
      * @param randomFillDataPartition if the data partition should be filled
      * with random data before formatting
      * @param fileSystem the file system to use
-     * @param dlCopyGUI the program GUI to show error messages
+     * @param installerOrUpgrader the Installer or Upgrader that shows the
+     * progress of filling the data partition with random data (may be
+     * <code>null</code> if randomFillDataPartition is <code>false</code>)
+     * @param context the context of the current operation
      * @throws DBusException if a DBusException occurs
      * @throws IOException if an IOException occurs
      */
@@ -625,12 +773,14 @@ public class DLCopy {
             String personalEncryptionPassword,
             boolean secondaryDataPartitionEncryption,
             String secondaryEncryptionPassword, boolean randomFillDataPartition,
-            String fileSystem, DLCopyGUI dlCopyGUI)
-            throws DBusException, IOException {
+            String fileSystem, InstallerOrUpgrader installerOrUpgrader,
+            ExecutionContext context) throws DBusException, IOException {
+
+        ProcessExecutor processExecutor = context.getProcessExecutor();
 
         // make sure that the partition is unmounted
         if (isMounted(device)) {
-            umount(device, dlCopyGUI);
+            umount(device, context);
         }
 
         String mapperDevice = null;
@@ -640,32 +790,6 @@ public class DLCopy {
                     = Partition.getPartitionFromDeviceAndNumber(
                             device.substring(5));
 
-            if (randomFillDataPartition) {
-
-                long persistenceSize = persistencePartition.getSize();
-
-                LOGGER.info("filling data partition with random data...");
-                try (FileChannel source = FileChannel.open(
-                        Paths.get("/dev/urandom"), StandardOpenOption.READ); FileChannel destination = FileChannel.open(
-                        Paths.get(device), StandardOpenOption.WRITE)) {
-                    ByteBuffer byteBuffer = ByteBuffer.allocateDirect(MEGA);
-                    long written = 0;
-                    while (true) {
-                        byteBuffer.clear();
-                        source.read(byteBuffer);
-                        byteBuffer.flip();
-                        written += destination.write(byteBuffer);
-                        dlCopyGUI.showInstallOverwritingDataPartitionWithRandomData(
-                                written, persistenceSize);
-                    }
-                } catch (IOException e) {
-                    // this exception is thrown when the filling process is done
-                    // just ignore it...
-                    LOGGER.log(Level.INFO, "", e);
-                }
-                dlCopyGUI.showInstallCreatingFileSystems();
-            }
-
             persistencePartition.luksFormat(personalEncryptionPassword);
 
             mapperDevice
@@ -676,6 +800,22 @@ public class DLCopy {
                         personalEncryptionPassword,
                         secondaryEncryptionPassword);
             }
+
+            if (randomFillDataPartition) {
+                // Zeros written through the LUKS mapper end up as ciphertext
+                // on the partition that is indistinguishable from random data.
+                LOGGER.info("filling data partition with random data...");
+                ReadinessWaiter.waitForDeviceNodes(
+                        "mapper device " + mapperDevice, mapperDevice);
+                try (PhaseTimer.Measurement randomFill = context.getPhaseTimer()
+                        .start(Phase.RANDOM_FILL, mapperDevice)) {
+                    PartitionFiller partitionFiller = new PartitionFiller(
+                            mapperDevice, installerOrUpgrader);
+                    partitionFiller.fill();
+                    randomFill.setBytes(partitionFiller.getSize());
+                }
+                installerOrUpgrader.showCreatingFileSystems();
+            }
         }
 
         // The force flag of mkfs.btrfs is "-f" but for mkfs.ext{2..4} it is
@@ -691,41 +831,50 @@ public class DLCopy {
         // ------------
         // To make a long story short, this is the reason we have to use the
         // force flag "-F" here.
-        int exitValue = PROCESS_EXECUTOR.executeProcess("/sbin/mkfs."
-                + fileSystem, forceFlag, "-L", Partition.PERSISTENCE_LABEL,
-                personalDataPartitionEncryption ? mapperDevice : device);
+        int exitValue;
+        try (PhaseTimer.Measurement mkfs = context.getPhaseTimer().start(
+                Phase.MKFS, fileSystem + ' ' + device)) {
+            exitValue = processExecutor.executeProcess(getMkfsCommand(
+                    fileSystem, context, forceFlag, "-L",
+                    Partition.PERSISTENCE_LABEL,
+                    personalDataPartitionEncryption ? mapperDevice : device));
+        }
         if (exitValue != 0) {
-            LOGGER.severe(PROCESS_EXECUTOR.getOutput());
+            LOGGER.severe(processExecutor.getOutput());
             String errorMessage = STRINGS.getString(
                     "Error_Create_Data_Partition");
             LOGGER.severe(errorMessage);
             throw new IOException(errorMessage);
         }
 
-        // Here have to trigger a rescan of the partition table information.
-        // Otherwise udisks sometimes just doesn't know about the new partitions
-        // and we will later get exceptions similar to this one:
+        // Here have to trigger a rescan of the partition information.
+        // Otherwise udisks sometimes just doesn't know about the new file
+        // system and we will later get exceptions similar to this one:
         // org.freedesktop.dbus.exceptions.DBusExecutionException:
         // No such interface 'org.freedesktop.UDisks2.Filesystem'
-        PROCESS_EXECUTOR.executeProcess("partprobe");
-        // Sigh... even after partprobe exits, we have to give udisks even more
-        // time to get its act together and finally know about the new
-        // partitions.
-        try {
-            // 5 seconds were not enough!
-            TimeUnit.SECONDS.sleep(10);
-        } catch (InterruptedException ex) {
-            LOGGER.log(Level.SEVERE, "", ex);
+        // We only rescan this partition (a global partprobe would disturb all
+        // other devices that are processed in parallel).
+        processExecutor.executeProcess(
+                "udevadm", "trigger", "--action=change", device);
+        // Even after udevadm exits, udisks needs some more time to get its
+        // act together and finally know about the new file system.
+        ReadinessWaiter.waitFor("data partition " + device, Arrays.asList(
+                ReadinessWaiter.PARTITION_INTERFACE,
+                personalDataPartitionEncryption
+                        ? ReadinessWaiter.ENCRYPTED_INTERFACE
+                        : ReadinessWaiter.FILESYSTEM_INTERFACE), device);
+        if (personalDataPartitionEncryption) {
+            ReadinessWaiter.waitForDeviceNodes(
+                    "mapper device " + mapperDevice, mapperDevice);
         }
-        settleUdev();
 
         // ext{2..4} tuning
         if (fileSystem.startsWith("ext")) {
-            exitValue = PROCESS_EXECUTOR.executeProcess(
+            exitValue = processExecutor.executeProcess(
                     "/sbin/tune2fs", "-m", "0", "-c", "0", "-i", "0",
                     personalDataPartitionEncryption ? mapperDevice : device);
             if (exitValue != 0) {
-                LOGGER.severe(PROCESS_EXECUTOR.getOutput());
+                LOGGER.severe(processExecutor.getOutput());
                 String errorMessage = STRINGS.getString(
                         "Error_Tune_Data_Partition");
                 LOGGER.severe(errorMessage);
@@ -743,7 +892,7 @@ public class DLCopy {
 
         // create btrfs subvolumes
         if (fileSystem.equals("btrfs")) {
-            createBtrfsSubvolumes(persistencePartition);
+            createBtrfsSubvolumes(persistencePartition, context);
         }
 
         // create default persistence configuration file
@@ -810,9 +959,12 @@ public class DLCopy {
      * @param bootFilesCopyJob the CopyJob for the boot file, used to get the
      * list of files to hide
      * @param destinationExchangePath
+     * @param context the context of the current operation
      */
-    public static void hideBootFiles(
-            CopyJob bootFilesCopyJob, String destinationExchangePath) {
+    public static void hideBootFiles(CopyJob bootFilesCopyJob,
+            String destinationExchangePath, ExecutionContext context) {
+
+        ProcessExecutor processExecutor = context.getProcessExecutor();
 
         Source bootFilesSource = bootFilesCopyJob.getSources()[0];
         String[] bootFiles = bootFilesSource.getBaseDirectory().list();
@@ -825,7 +977,7 @@ public class DLCopy {
         for (String bootFile : bootFiles) {
             Path destinationPath = Paths.get(destinationExchangePath, bootFile);
             if (Files.exists(destinationPath)) {
-                PROCESS_EXECUTOR.executeProcess(
+                processExecutor.executeProcess(
                         "fatattr", "+h", destinationPath.toString());
             }
         }
@@ -846,7 +998,8 @@ public class DLCopy {
         }
 
         // use FAT attributes again to hide macOS ".hidden" file in Windows
-        PROCESS_EXECUTOR.executeProcess("fatattr", "+h", osxHiddenFilePath);
+        processExecutor.executeProcess(
+                "fatattr", "+h", osxHiddenFilePath);
     }
 
     /**
@@ -854,11 +1007,11 @@ public class DLCopy {
      * structure
      *
      * @param mountPoint the mountpoint of the isolinux directory
-     * @param dlCopyGUI the GUI to show error messages
+     * @param context the context of the current operation
      * @throws IOException
      */
     public static void isolinuxToSyslinux(String mountPoint,
-            DLCopyGUI dlCopyGUI) throws IOException {
+            ExecutionContext context) throws IOException {
 
         String isolinuxPath = mountPoint + "/isolinux";
 
@@ -882,7 +1035,7 @@ public class DLCopy {
             String bootCatFileName = syslinuxPath + "/boot.cat";
             File bootCatFile = new File(bootCatFileName);
             if (!bootCatFile.delete()) {
-                dlCopyGUI.showErrorMessage(
+                context.getDLCopyGUI().showErrorMessage(
                         "Could not delete " + bootCatFileName);
             }
 
@@ -891,16 +1044,35 @@ public class DLCopy {
             LernstickFileTools.replaceText(md5sumFileName, pattern, "syslinux");
             File md5sumFile = new File(md5sumFileName);
             if (md5sumFile.exists()) {
+                // The cfg files were modified above, therefore their
+                // checksums must be updated, not only their paths.
+                Path mountPath = Paths.get(mountPoint);
+                Map<String, String> modifiedDigests;
+                try (HashingService hashingService = new HashingService()) {
+                    modifiedDigests = hashingService.hash(mountPath,
+                            List.of("./syslinux/syslinux.cfg",
+                                    "./syslinux/exithelp.cfg",
+                                    "./syslinux/stdmenu.cfg"), "MD5");
+                } catch (NoSuchAlgorithmException ex) {
+                    LOGGER.log(Level.SEVERE, "", ex);
+                    throw new IOException(ex);
+                }
                 List<String> lines = LernstickFileTools.readFile(md5sumFile);
                 for (int i = lines.size() - 1; i >= 0; i--) {
                     String line = lines.get(i);
+                    String[] entry = HashingService.parseManifestLine(line);
                     if (line.contains("xmlboot.config")
-                            || line.contains("grub.cfg")) {
+                            || line.contains("grub.cfg")
+                            || line.contains("boot.cat")) {
                         lines.remove(i);
+                    } else if (entry != null
+                            && modifiedDigests.containsKey(entry[1])) {
+                        lines.set(i, HashingService.formatManifestLine(
+                                modifiedDigests.get(entry[1]), entry[1]));
                     }
                 }
                 LernstickFileTools.writeFile(md5sumFile, lines);
-                PROCESS_EXECUTOR.executeProcess("sync");
+                context.getProcessExecutor().executeProcess("sync");
             } else {
                 LOGGER.log(Level.WARNING,
                         "file \"{0}\" does not exist!", md5sumFileName);
@@ -917,17 +1089,24 @@ public class DLCopy {
      *
      * @param efiDevice the efi device
      * @param systemDevice the system device
+     * @param context the context of the current operation
      * @throws IOException
      */
-    public static void formatEfiAndSystemPartition(
-            String efiDevice, String systemDevice) throws IOException {
+    public static void formatEfiAndSystemPartition(String efiDevice,
+            String systemDevice, ExecutionContext context) throws IOException {
 
-        formatEfiPartition(efiDevice);
+        ProcessExecutor processExecutor = context.getProcessExecutor();
 
-        int exitValue = PROCESS_EXECUTOR.executeProcess(
-                "/sbin/mkfs.ext3", "-L", systemPartitionLabel, systemDevice);
+        formatEfiPartition(efiDevice, context);
+
+        int exitValue;
+        try (PhaseTimer.Measurement mkfs = context.getPhaseTimer().start(
+                Phase.MKFS, "ext3 " + systemDevice)) {
+            exitValue = processExecutor.executeProcess(getMkfsCommand(
+                    "ext3", context, "-L", systemPartitionLabel, systemDevice));
+        }
         if (exitValue != 0) {
-            LOGGER.severe(PROCESS_EXECUTOR.getOutput());
+            LOGGER.severe(processExecutor.getOutput());
             String errorMessage
                     = STRINGS.getString("Error_Create_System_Partition");
             LOGGER.severe(errorMessage);
@@ -939,14 +1118,22 @@ public class DLCopy {
      * formats the efi partition
      *
      * @param efiDevice the efi device
+     * @param context the context of the current operation
      * @throws IOException
      */
-    public static void formatEfiPartition(String efiDevice) throws IOException {
+    public static void formatEfiPartition(String efiDevice,
+            ExecutionContext context) throws IOException {
 
-        int exitValue = PROCESS_EXECUTOR.executeProcess(
-                "/sbin/mkfs.vfat", "-n", Partition.EFI_LABEL, efiDevice);
+        ProcessExecutor processExecutor = context.getProcessExecutor();
+
+        int exitValue;
+        try (PhaseTimer.Measurement mkfs = context.getPhaseTimer().start(
+                Phase.MKFS, "vfat " + efiDevice)) {
+            exitValue = processExecutor.executeProcess(
+                    "/sbin/mkfs.vfat", "-n", Partition.EFI_LABEL, efiDevice);
+        }
         if (exitValue != 0) {
-            LOGGER.severe(PROCESS_EXECUTOR.getOutput());
+            LOGGER.severe(processExecutor.getOutput());
             String errorMessage
                     = STRINGS.getString("Error_Create_EFI_Partition");
             LOGGER.severe(errorMessage);
@@ -974,6 +1161,15 @@ public class DLCopy {
         }
     }
 
+    /**
+     * returns the connection to the D-Bus system bus
+     *
+     * @return the connection to the D-Bus system bus
+     */
+    public static DBusConnection getDbusSystemConnection() {
+        return dbusSystemConnection;
+    }
+
     /**
      * returns a list of all storage devices in the system
      *
@@ -989,6 +1185,16 @@ public class DLCopy {
             boolean includeHardDisks, boolean includeBootDevice,
             String bootDeviceName) throws IOException, DBusException {
 
+        if (DbusTools.DBUS_VERSION != DbusTools.DbusVersion.V1) {
+            try {
+                return UDisksEnumerator.getStorageDevices(
+                        includeHardDisks, includeBootDevice, bootDeviceName);
+            } catch (DBusException | DBusExecutionException ex) {
+                LOGGER.log(Level.WARNING, "enumerating the udisks objects "
+                        + "failed, falling back to querying every device", ex);
+            }
+        }
+
         List<String> partitions = DbusTools.getPartitions();
         List<StorageDevice> storageDevices = new ArrayList<>();
 
@@ -1079,20 +1285,7 @@ public class DLCopy {
      */
     public static String getMd5String(String filePath)
             throws NoSuchAlgorithmException, IOException {
-        MessageDigest md5 = MessageDigest.getInstance("MD5");
-        try (DigestInputStream digestInputStream = new DigestInputStream(
-                Files.newInputStream(Paths.get(filePath)), md5)) {
-            byte[] byteArray = new byte[1024];
-            for (int i = digestInputStream.read(byteArray); i > 0;) {
-                i = digestInputStream.read(byteArray);
-            }
-            byte[] digest = md5.digest();
-            StringBuilder stringBuilder = new StringBuilder(32);
-            for (byte b : digest) {
-                stringBuilder.append(String.format("%02x", b));
-            }
-            return stringBuilder.toString();
-        }
+        return HashingService.hexDigest(Paths.get(filePath), "MD5");
     }
 
     /**
@@ -1178,29 +1371,31 @@ public class DLCopy {
         return persistenceBoot;
     }
 
-    private static void createBtrfsSubvolumes(Partition persistencePartition)
-            throws DBusException, IOException {
+    private static void createBtrfsSubvolumes(Partition persistencePartition,
+            ExecutionContext context) throws DBusException, IOException {
+
+        ProcessExecutor processExecutor = context.getProcessExecutor();
 
         String mountPath = persistencePartition.getMountPath();
 
         // use flat layout for better snapshot management
         // create subvolume "root" (for the file system root)
         String rootPath = Path.of(mountPath, "root").toString();
-        PROCESS_EXECUTOR.executeProcess("btrfs", "subvolume", "create",
+        processExecutor.executeProcess("btrfs", "subvolume", "create",
                 rootPath);
         // set subvolume "root" as the default subvolume when mounting the
         // file system without any special options
-        PROCESS_EXECUTOR.executeProcess("btrfs", "subvolume", "set-default",
+        processExecutor.executeProcess("btrfs", "subvolume", "set-default",
                 rootPath);
 
         // create subvolume "snapshots" for storing all file system snapshots
-        PROCESS_EXECUTOR.executeProcess("btrfs", "subvolume", "create",
+        processExecutor.executeProcess("btrfs", "subvolume", "create",
                 Path.of(mountPath, "snapshots").toString());
 
         // create dedicated subvolume "swap" for storing swap files, because
         // subvolumes can't be snapshotted if it contains any active swapfiles,
         // see here: https://btrfs.readthedocs.io/en/latest/Swapfile.html
-        PROCESS_EXECUTOR.executeProcess("btrfs", "subvolume", "create",
+        processExecutor.executeProcess("btrfs", "subvolume", "create",
                 Path.of(mountPath, "swap").toString());
 
         // remount persistencePartition with new default root partition
@@ -1214,8 +1409,47 @@ public class DLCopy {
             int upgradeResizedExchangePartitionSize,
             int installExchangePartitionSize) {
 
-        long storageDeviceSize = storageDevice.getSize();
-        long enlargedSystemSize = getEnlargedSystemSize(source.getSystemSize());
+        return getPartitionSizes(storageDevice.getSize(),
+                source.getSystemSize(), () -> {
+            int exchangeMB = 0;
+            if (upgrading) {
+                switch (upgradeRepartitionStrategy) {
+                    case KEEP:
+                        Partition exchangePartition
+                                = storageDevice.getExchangePartition();
+                        if (exchangePartition != null) {
+                            LOGGER.log(Level.INFO, "exchangePartition: {0}",
+                                    exchangePartition);
+                            exchangeMB = (int) (exchangePartition.getSize()
+                                    / MEGA);
+                        }
+                        break;
+                    case RESIZE:
+                        exchangeMB = upgradeResizedExchangePartitionSize;
+                    // stays at 0 MB in all other cases...
+                }
+            } else {
+                exchangeMB = installExchangePartitionSize;
+            }
+            return exchangeMB;
+        });
+    }
+
+    /**
+     * returns the partition sizes for a storage device
+     *
+     * @param storageDeviceSize the size of the storage device
+     * @param systemSize the size of the system
+     * @param exchangeMBSupplier supplies the size of the exchange partition
+     * (in MiB), only called if the storage device is large enough for an
+     * exchange partition
+     * @return the partition sizes or <code>null</code>, if the storage device
+     * is too small
+     */
+    static PartitionSizes getPartitionSizes(long storageDeviceSize,
+            long systemSize, IntSupplier exchangeMBSupplier) {
+
+        long enlargedSystemSize = getEnlargedSystemSize(systemSize);
         long overhead = storageDeviceSize
                 - (EFI_PARTITION_SIZE * MEGA) - enlargedSystemSize;
         int overheadMB = (int) (overhead / MEGA);
@@ -1229,26 +1463,7 @@ public class DLCopy {
                 return new PartitionSizes(0, 0);
 
             case EXCHANGE:
-                int exchangeMB = 0;
-                if (upgrading) {
-                    switch (upgradeRepartitionStrategy) {
-                        case KEEP:
-                            Partition exchangePartition
-                                    = storageDevice.getExchangePartition();
-                            if (exchangePartition != null) {
-                                LOGGER.log(Level.INFO, "exchangePartition: {0}",
-                                        exchangePartition);
-                                exchangeMB = (int) (exchangePartition.getSize()
-                                        / MEGA);
-                            }
-                            break;
-                        case RESIZE:
-                            exchangeMB = upgradeResizedExchangePartitionSize;
-                        // stays at 0 MB in all other cases...
-                    }
-                } else {
-                    exchangeMB = installExchangePartitionSize;
-                }
+                int exchangeMB = exchangeMBSupplier.getAsInt();
                 LOGGER.log(Level.INFO, "exchangeMB = {0}", exchangeMB);
                 int persistenceMB = overheadMB - exchangeMB;
                 return new PartitionSizes(exchangeMB, persistenceMB);
@@ -1272,9 +1487,11 @@ public class DLCopy {
             boolean secondaryDataPartitionEncryption,
             String secondaryEncryptionPassword, boolean randomFillDataPartition,
             String efiDevice, String systemDevice,
-            InstallerOrUpgrader installerOrUpgrader, DLCopyGUI dlCopyGUI)
+            InstallerOrUpgrader installerOrUpgrader, ExecutionContext context)
             throws InterruptedException, IOException, DBusException {
 
+        ProcessExecutor processExecutor = context.getProcessExecutor();
+
         // update GUI
         installerOrUpgrader.showCreatingFileSystems();
 
@@ -1379,204 +1596,197 @@ public class DLCopy {
                 throw new IOException(errorMessage);
         }
 
-        // safety wait in case of device scanning
-        // 5 seconds were not enough...
-        TimeUnit.SECONDS.sleep(7);
+        releaseAndWipe(device,
+                (installerOrUpgrader instanceof Installer installer)
+                && installer.isDiscard(), context);
 
-        // check if a swap partition is active on this device
-        // if so, switch it off
-        List<String> swaps
-                = LernstickFileTools.readFile(new File("/proc/swaps"));
-        for (String swapLine : swaps) {
-            if (swapLine.startsWith(device)) {
-                swapoffPartition(device, swapLine, dlCopyGUI);
-            }
-        }
-
-        // umount all mounted partitions of device
-        umountPartitions(device, dlCopyGUI);
-        // close all open LUKS devices
-        luksClosePartitions(device);
-
-        // We must wipe the whole storage device before creating the partitions,
-        // otherwise USB flash drives previously written with a dd'ed ISO
-        // will NOT work!
-        if (PROCESS_EXECUTOR.executeProcess(
-                true, true, "wipefs", "-a", device) != 0) {
-            String errorMessage = STRINGS.getString("Error_Wiping_File_System");
-            errorMessage = MessageFormat.format(errorMessage, device);
-            LOGGER.severe(errorMessage);
-            throw new IOException(errorMessage);
-        }
-
-        // "parted <device> mklabel msdos" did NOT work correctly here!
-        // (the partition table type was still unknown and booting failed)
-        int exitValue;
-        if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
-            // "--print-reply" is needed in the call to dbus-send below to make
-            // the call synchronous
-            exitValue = PROCESS_EXECUTOR.executeProcess("dbus-send",
-                    "--system", "--print-reply",
-                    "--dest=org.freedesktop.UDisks",
-                    "/org/freedesktop/UDisks/devices/" + device.substring(5),
-                    "org.freedesktop.UDisks.Device.PartitionTableCreate",
-                    "string:mbr", "array:string:");
+        String exchangePartitionID = null;
+        try (PhaseTimer.Measurement partitioning
+                = context.getPhaseTimer().start(Phase.PARTITIONING, device)) {
 
-        } else {
-            // Even more fun with udisks2! :-)
-            //
-            // Now whe have to call org.freedesktop.UDisks2.Block.Format
-            // This function has the signature 'sa{sv}'.
-            // dbus-send is unable to send messages with this signature.
-            // To quote the dbus-send manpage:
-            // ****************************
-            //  D-Bus supports more types than these, but dbus-send currently
-            //  does not. Also, dbus-send does not permit empty containers or
-            //  nested containers (e.g. arrays of variants).
-            // ****************************
-            //
-            // creating a Java interface also fails, see here:
-            // https://bugs.debian.org/cgi-bin/bugreport.cgi?bug=777241
-            //
-            // So we have to create a script that calls python.
-            // This utterly sucks but our options are limited...
-            // exitValue = processExecutor.executeScript(true, true,
-            //         "python -c 'import dbus; "
-            //         + "dbus.SystemBus().call_blocking("
-            //         + "\"org.freedesktop.UDisks2\", "
-            //         + "\"/org/freedesktop/UDisks2/block_devices/"
-            //         + device.substring(5) + "\", "
-            //         + "\"org.freedesktop.UDisks2.Block\", "
-            //         + "\"Format\", \"sa{sv}\", (\"dos\", {}))'");
-            //
-            // It gets even better. The call above very often just fails with
-            // the following error message:
-            // Traceback (most recent call last):
-            // File "<string>", line 1, in <module>
-            // File "/usr/lib/python2.7/dist-packages/dbus/connection.py", line 651, in call_blocking message, timeout)
-            // dbus.exceptions.DBusException: org.freedesktop.UDisks2.Error.Failed: Error synchronizing after initial wipe: Timed out waiting for object
-            //
-            // So, for Debian 8 we retry with good old parted and hope for the
-            // best...
-            exitValue = PROCESS_EXECUTOR.executeProcess(true, true,
-                    "parted", "-s", device, "mklabel", "msdos");
-        }
-        if (exitValue != 0) {
-            String errorMessage
-                    = STRINGS.getString("Error_Creating_Partition_Table");
-            errorMessage = MessageFormat.format(errorMessage, device);
-            LOGGER.severe(errorMessage);
-            throw new IOException(errorMessage);
-        }
-
-        // another safety wait...
-        TimeUnit.SECONDS.sleep(3);
+            // "parted <device> mklabel msdos" did NOT work correctly here!
+            // (the partition table type was still unknown and booting failed)
+            int exitValue;
+            if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
+                // "--print-reply" is needed in the call to dbus-send below to
+                // make the call synchronous
+                exitValue = processExecutor.executeProcess("dbus-send",
+                        "--system", "--print-reply",
+                        "--dest=org.freedesktop.UDisks",
+                        "/org/freedesktop/UDisks/devices/"
+                        + device.substring(5),
+                        "org.freedesktop.UDisks.Device.PartitionTableCreate",
+                        "string:mbr", "array:string:");
 
-        // repartition device
-        String[] commandArray = partedCommandList.toArray(String[]::new);
+            } else {
+                // Even more fun with udisks2! :-)
+                //
+                // Now whe have to call org.freedesktop.UDisks2.Block.Format
+                // This function has the signature 'sa{sv}'.
+                // dbus-send is unable to send messages with this signature.
+                // To quote the dbus-send manpage:
+                // ****************************
+                //  D-Bus supports more types than these, but dbus-send
+                //  currently does not. Also, dbus-send does not permit empty
+                //  containers or nested containers (e.g. arrays of variants).
+                // ****************************
+                //
+                // creating a Java interface also fails, see here:
+                // https://bugs.debian.org/cgi-bin/bugreport.cgi?bug=777241
+                //
+                // So we have to create a script that calls python.
+                // This utterly sucks but our options are limited...
+                // exitValue = processExecutor.executeScript(true, true,
+                //         "python -c 'import dbus; "
+                //         + "dbus.SystemBus().call_blocking("
+                //         + "\"org.freedesktop.UDisks2\", "
+                //         + "\"/org/freedesktop/UDisks2/block_devices/"
+                //         + device.substring(5) + "\", "
+                //         + "\"org.freedesktop.UDisks2.Block\", "
+                //         + "\"Format\", \"sa{sv}\", (\"dos\", {}))'");
+                //
+                // It gets even better. The call above very often just fails
+                // with the following error message:
+                // Traceback (most recent call last):
+                // File "<string>", line 1, in <module>
+                // File "/usr/lib/python2.7/dist-packages/dbus/connection.py", line 651, in call_blocking message, timeout)
+                // dbus.exceptions.DBusException: org.freedesktop.UDisks2.Error.Failed: Error synchronizing after initial wipe: Timed out waiting for object
+                //
+                // So, for Debian 8 we retry with good old parted and hope for
+                // the best...
+                exitValue = processExecutor.executeProcess(true, true,
+                        "parted", "-s", device, "mklabel", "msdos");
+            }
+            if (exitValue != 0) {
+                String errorMessage
+                        = STRINGS.getString("Error_Creating_Partition_Table");
+                errorMessage = MessageFormat.format(errorMessage, device);
+                LOGGER.severe(errorMessage);
+                throw new IOException(errorMessage);
+            }
 
-        exitValue = PROCESS_EXECUTOR.executeProcess(commandArray);
-        if (exitValue != 0) {
-            String errorMessage = STRINGS.getString("Error_Repartitioning");
-            errorMessage = MessageFormat.format(errorMessage, device);
-            LOGGER.severe(errorMessage);
-            throw new IOException(errorMessage);
-        }
+            // wait until the new partition table is known to the system
+            ReadinessWaiter.waitFor("partition table of " + device,
+                    Arrays.asList(ReadinessWaiter.PARTITION_TABLE_INTERFACE),
+                    device);
 
-        // safety wait so that new partitions are known to the system
-        TimeUnit.SECONDS.sleep(7);
+            // repartition device
+            String[] commandArray = partedCommandList.toArray(String[]::new);
 
-        // The partition types assigned by parted are mostly garbage.
-        // We must fix them here...
-        // The boot partition is actually formatted with FAT32, but "hidden"
-        // by using the EFI partition type.
-        switch (partitionState) {
-            case ONLY_SYSTEM:
-                // create two partitions:
-                //  1) efi (EFI)
-                //  2) system (Linux)
-                PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
-                        "--part-type", device, "1", "ef");
-                PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
-                        "--part-type", device, "2", "83");
-                break;
+            exitValue = processExecutor.executeProcess(commandArray);
+            if (exitValue != 0) {
+                String errorMessage = STRINGS.getString("Error_Repartitioning");
+                errorMessage = MessageFormat.format(errorMessage, device);
+                LOGGER.severe(errorMessage);
+                throw new IOException(errorMessage);
+            }
 
-            case PERSISTENCE:
-                // create three partitions:
-                //  1) efi (EFI)
-                //  2) persistence (Linux)
-                //  3) system (Linux)
-                PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
-                        "--part-type", device, "1", "ef");
-                PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
-                        "--part-type", device, "2", "83");
-                PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
-                        "--part-type", device, "3", "83");
-                break;
+            // wait until the new partitions are known to the system
+            ReadinessWaiter.waitForPartitions("new partitions of " + device,
+                    exchangeDevice, persistenceDevice, efiDevice, systemDevice);
+
+            // The partition types assigned by parted are mostly garbage.
+            // We must fix them here...
+            // The boot partition is actually formatted with FAT32, but "hidden"
+            // by using the EFI partition type.
+            switch (partitionState) {
+                case ONLY_SYSTEM:
+                    // create two partitions:
+                    //  1) efi (EFI)
+                    //  2) system (Linux)
+                    processExecutor.executeProcess("/sbin/sfdisk",
+                            "--part-type", device, "1", "ef");
+                    processExecutor.executeProcess("/sbin/sfdisk",
+                            "--part-type", device, "2", "83");
+                    break;
 
-            case EXCHANGE:
-                if (exchangeMB == 0) {
+                case PERSISTENCE:
                     // create three partitions:
                     //  1) efi (EFI)
                     //  2) persistence (Linux)
                     //  3) system (Linux)
-                    PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
+                    processExecutor.executeProcess("/sbin/sfdisk",
                             "--part-type", device, "1", "ef");
-                    PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
+                    processExecutor.executeProcess("/sbin/sfdisk",
                             "--part-type", device, "2", "83");
-                    PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
+                    processExecutor.executeProcess("/sbin/sfdisk",
                             "--part-type", device, "3", "83");
-                } else {
-                    // determine ID for exchange partition
-                    String exchangePartitionID;
-                    String fileSystem = installerOrUpgrader.
-                            getExchangePartitionFileSystem();
-                    if (fileSystem.equalsIgnoreCase("fat32")) {
-                        exchangePartitionID = "c";
-                    } else {
-                        // exFAT & NTFS
-                        exchangePartitionID = "7";
-                    }
-
-                    //  1) efi (EFI)
-                    //  2) exchange (exFAT, FAT32 or NTFS)
-                    PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
-                            "--part-type", device, "1", "ef");
-                    PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
-                            "--part-type", device, "2", exchangePartitionID);
+                    break;
 
-                    if (persistenceMB == 0) {
+                case EXCHANGE:
+                    if (exchangeMB == 0) {
+                        // create three partitions:
+                        //  1) efi (EFI)
+                        //  2) persistence (Linux)
                         //  3) system (Linux)
-                        PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
+                        processExecutor.executeProcess("/sbin/sfdisk",
+                                "--part-type", device, "1", "ef");
+                        processExecutor.executeProcess("/sbin/sfdisk",
+                                "--part-type", device, "2", "83");
+                        processExecutor.executeProcess("/sbin/sfdisk",
                                 "--part-type", device, "3", "83");
                     } else {
-                        //  3) persistence (Linux)
-                        //  4) system (Linux)
-                        PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
-                                "--part-type", device, "3", "83");
-                        PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk",
-                                "--part-type", device, "4", "83");
+                        // determine ID for exchange partition
+                        String fileSystem = installerOrUpgrader.
+                                getExchangePartitionFileSystem();
+                        if (fileSystem.equalsIgnoreCase("fat32")) {
+                            exchangePartitionID = "c";
+                        } else {
+                            // exFAT & NTFS
+                            exchangePartitionID = "7";
+                        }
+
+                        //  1) efi (EFI)
+                        //  2) exchange (exFAT, FAT32 or NTFS)
+                        processExecutor.executeProcess("/sbin/sfdisk",
+                                "--part-type", device, "1", "ef");
+                        processExecutor.executeProcess("/sbin/sfdisk",
+                                "--part-type", device, "2",
+                                exchangePartitionID);
+
+                        if (persistenceMB == 0) {
+                            //  3) system (Linux)
+                            processExecutor.executeProcess("/sbin/sfdisk",
+                                    "--part-type", device, "3", "83");
+                        } else {
+                            //  3) persistence (Linux)
+                            //  4) system (Linux)
+                            processExecutor.executeProcess("/sbin/sfdisk",
+                                    "--part-type", device, "3", "83");
+                            processExecutor.executeProcess("/sbin/sfdisk",
+                                    "--part-type", device, "4", "83");
+                        }
                     }
-                }
-                break;
+                    break;
+
+                default:
+                    String errorMessage = "unsupported partitionState \""
+                            + partitionState + '\"';
+                    LOGGER.log(Level.SEVERE, errorMessage);
+                    throw new IOException(errorMessage);
+            }
 
-            default:
-                String errorMessage = "unsupported partitionState \""
-                        + partitionState + '\"';
-                LOGGER.log(Level.SEVERE, errorMessage);
-                throw new IOException(errorMessage);
         }
 
         // Partition.getPartitionFromDeviceAndNumber() in
-        // formatPersistencePartition() below failed without waiting here for
-        // a little bit
-        TimeUnit.SECONDS.sleep(3);
-        settleUdev();
+        // formatPersistencePartition() below failed without waiting here until
+        // udisks knows about the changed partition types
+        try (PhaseTimer.Measurement udevWait = context.getPhaseTimer().start(
+                Phase.UDEV_WAIT, "partition types of " + device)) {
+            String reason = "partition types of " + device;
+            ReadinessWaiter.waitForPartitionType(reason, "ef", efiDevice);
+            if (exchangePartitionID != null) {
+                ReadinessWaiter.waitForPartitionType(
+                        reason, exchangePartitionID, exchangeDevice);
+            }
+            ReadinessWaiter.waitForPartitionType(
+                    reason, "83", persistenceDevice, systemDevice);
+        }
 
         // create file systems
         switch (partitionState) {
             case ONLY_SYSTEM:
-                formatEfiAndSystemPartition(efiDevice, systemDevice);
+                formatEfiAndSystemPartition(efiDevice, systemDevice, context);
                 return;
 
             case PERSISTENCE:
@@ -1586,8 +1796,8 @@ public class DLCopy {
                         secondaryDataPartitionEncryption,
                         secondaryEncryptionPassword, randomFillDataPartition,
                         installerOrUpgrader.getDataPartitionFileSystem(),
-                        dlCopyGUI);
-                formatEfiAndSystemPartition(efiDevice, systemDevice);
+                        installerOrUpgrader, context);
+                formatEfiAndSystemPartition(efiDevice, systemDevice, context);
                 return;
 
             case EXCHANGE:
@@ -1596,7 +1806,7 @@ public class DLCopy {
                     formatExchangePartition(exchangeDevice,
                             exchangePartitionLabel,
                             installerOrUpgrader.getExchangePartitionFileSystem(),
-                            dlCopyGUI);
+                            context);
                 }
                 if (persistenceDevice != null) {
                     formatPersistencePartition(persistenceDevice,
@@ -1606,9 +1816,9 @@ public class DLCopy {
                             secondaryEncryptionPassword,
                             randomFillDataPartition,
                             installerOrUpgrader.getDataPartitionFileSystem(),
-                            dlCopyGUI);
+                            installerOrUpgrader, context);
                 }
-                formatEfiAndSystemPartition(efiDevice, systemDevice);
+                formatEfiAndSystemPartition(efiDevice, systemDevice, context);
                 return;
 
             default:
@@ -1619,13 +1829,70 @@ public class DLCopy {
         }
     }
 
+    /**
+     * releases a storage device (swap, mounts and LUKS devices) and wipes it
+     * so that it can be repartitioned
+     *
+     * @param device the device to release and wipe
+     * @param discard if all blocks of the device should be discarded after
+     * wiping
+     * @param context the context of the current operation
+     * @throws IOException if releasing or wiping the device fails
+     */
+    static void releaseAndWipe(String device, boolean discard,
+            ExecutionContext context) throws IOException {
+
+        try (PhaseTimer.Measurement wipe
+                = context.getPhaseTimer().start(Phase.WIPE, device)) {
+
+            // wait in case of device scanning
+            ReadinessWaiter.waitForUdev("device scanning of " + device);
+
+            // check if a swap partition is active on this device
+            // if so, switch it off
+            List<String> swaps
+                    = LernstickFileTools.readFile(new File("/proc/swaps"));
+            for (String swapLine : swaps) {
+                if (swapLine.startsWith(device)) {
+                    swapoffPartition(device, swapLine, context);
+                }
+            }
+
+            // umount all mounted partitions of device
+            umountPartitions(device, context);
+            // close all open LUKS devices
+            luksClosePartitions(device);
+
+            // We must wipe the whole storage device before creating the
+            // partitions, otherwise USB flash drives previously written with a
+            // dd'ed ISO will NOT work!
+            if (context.getProcessExecutor().executeProcess(
+                    true, true, "wipefs", "-a", device) != 0) {
+                String errorMessage
+                        = STRINGS.getString("Error_Wiping_File_System");
+                errorMessage = MessageFormat.format(errorMessage, device);
+                LOGGER.severe(errorMessage);
+                throw new IOException(errorMessage);
+            }
+        }
+
+        // Discarding all blocks of the storage device gives flash controllers
+        // pre-erased blocks for all following writes.
+        if (discard) {
+            try (PhaseTimer.Measurement measurement
+                    = context.getPhaseTimer().start(Phase.DISCARD, device)) {
+                context.setBlocksDiscarded(Discarder.discard(device, context));
+            }
+        }
+    }
+
     private static void copyExchangeEfiAndSystem(SystemSource source,
             FileCopier fileCopier, StorageDevice storageDevice,
             Partition destinationExchangePartition,
             Partition destinationEfiPartition,
             Partition destinationSystemPartition,
             InstallerOrUpgrader installerOrUpgrader, boolean checkCopies,
-            DLCopyGUI dlCopyGUI)
+            ExecutionContext context)
             throws InterruptedException, IOException,
             DBusException, NoSuchAlgorithmException {
 
@@ -1634,8 +1901,12 @@ public class DLCopy {
         CopyJob exchangeCopyJob = null;
         if (installerOrUpgrader instanceof Installer installer) {
             if (installer.isCopyExchangePartitionSelected()) {
-                destinationExchangePath
-                        = destinationExchangePartition.mount().getMountPath();
+                try (PhaseTimer.Measurement mount = context.getPhaseTimer()
+                        .start(Phase.MOUNT, destinationExchangePartition
+                                .getFullDeviceAndNumber())) {
+                    destinationExchangePath = destinationExchangePartition
+                            .mount().getMountPath();
+                }
                 exchangeCopyJob = new CopyJob(
                         new Source[]{source.getExchangeCopySource()},
                         new String[]{destinationExchangePath});
@@ -1649,18 +1920,64 @@ public class DLCopy {
                 installerOrUpgrader.getExchangePartitionFileSystem());
 
         // copy all files
-        installerOrUpgrader.showCopyingFiles(fileCopier);
-
         CopyJob efiFilesCopyJob = copyJobsInfo.getExchangeEfiCopyJob();
-        fileCopier.copy(checkCopies, exchangeCopyJob, efiFilesCopyJob,
-                copyJobsInfo.getEfiCopyJob(), copyJobsInfo.getSystemCopyJob());
+        CopyJob[] systemCopyJobs = new CopyJob[]{efiFilesCopyJob,
+            copyJobsInfo.getEfiCopyJob(), copyJobsInfo.getSystemCopyJob()};
+        ManifestVerifier manifestVerifier = null;
+        if (checkCopies && (installerOrUpgrader instanceof Installer installer)
+                && installer.isManifestVerification()) {
+            manifestVerifier = ManifestVerifier.load(systemCopyJobs);
+        }
+        if (manifestVerifier == null) {
+            try (PhaseTimer.Measurement fileCopy = context.getPhaseTimer()
+                    .start(Phase.FILE_COPY, "system")) {
+                fileCopy.setBytes(copyFiles(fileCopier, storageDevice,
+                        installerOrUpgrader, checkCopies, exchangeCopyJob,
+                        efiFilesCopyJob, copyJobsInfo.getEfiCopyJob(),
+                        copyJobsInfo.getSystemCopyJob()));
+            }
+        } else {
+            // The system files are verified with the manifest of the source
+            // medium instead of reading the source files a second time.
+            // Files that are not listed in the manifest are compared with
+            // their source files. The exchange partition has no manifest,
+            // its files are compared, too. All files are copied at once so
+            // that the FanOutCopier needs only a single copy round.
+            try (PhaseTimer.Measurement fileCopy = context.getPhaseTimer()
+                    .start(Phase.FILE_COPY, "system")) {
+                fileCopy.setBytes(copyFiles(fileCopier, storageDevice,
+                        installerOrUpgrader, false, exchangeCopyJob,
+                        efiFilesCopyJob, copyJobsInfo.getEfiCopyJob(),
+                        copyJobsInfo.getSystemCopyJob()));
+            }
+            List<String> corruptedFiles;
+            try (PhaseTimer.Measurement verification = context.getPhaseTimer()
+                    .start(Phase.VERIFICATION, "manifest")) {
+                corruptedFiles = manifestVerifier.verify(
+                        context.getProcessExecutor(), exchangeCopyJob,
+                        efiFilesCopyJob, copyJobsInfo.getEfiCopyJob(),
+                        copyJobsInfo.getSystemCopyJob());
+            }
+            if (!corruptedFiles.isEmpty()) {
+                String errorMessage = STRINGS.getString(
+                        "Error_Manifest_Verification");
+                errorMessage = MessageFormat.format(errorMessage,
+                        storageDevice.getFullDevice(),
+                        String.join(", ", corruptedFiles));
+                LOGGER.severe(errorMessage);
+                throw new IOException(errorMessage);
+            }
+        }
 
         // update GUI
         installerOrUpgrader.showUnmounting();
 
-        source.unmountTmpPartitions();
-        if (destinationExchangePath != null) {
-            destinationExchangePartition.umount();
+        try (PhaseTimer.Measurement unmount = context.getPhaseTimer().start(
+                Phase.UNMOUNT, "temporary partitions")) {
+            source.unmountTmpPartitions();
+            if (destinationExchangePath != null) {
+                destinationExchangePartition.umount();
+            }
         }
 
         String destinationEfiPath = copyJobsInfo.getDestinationEfiPath();
@@ -1668,7 +1985,7 @@ public class DLCopy {
         // !!! don't check here for boot storage device type !!!
         // (usb flash drives with an isohybrid image also contain the
         //  isolinux directory)
-        isolinuxToSyslinux(destinationEfiPath, dlCopyGUI);
+        isolinuxToSyslinux(destinationEfiPath, context);
 
         // change data partition mode on target (if needed)
         if (installerOrUpgrader instanceof Installer installer) {
@@ -1679,9 +1996,47 @@ public class DLCopy {
         }
     }
 
+    // returns the number of copied bytes
+    private static long copyFiles(FileCopier fileCopier,
+            StorageDevice storageDevice,
+            InstallerOrUpgrader installerOrUpgrader, boolean checkCopies,
+            CopyJob... copyJobs) throws InterruptedException, IOException,
+            NoSuchAlgorithmException {
+
+        FanOutCopier fanOutCopier = null;
+        if (installerOrUpgrader instanceof Installer installer) {
+            fanOutCopier = installer.getFanOutCopier();
+        }
+        if (fanOutCopier == null) {
+            installerOrUpgrader.showCopyingFiles(fileCopier);
+            fileCopier.copy(checkCopies, copyJobs);
+            return fileCopier.getByteCount();
+        } else {
+            // read the source files only once for all storage devices that
+            // are installed in parallel
+            installerOrUpgrader.showCopyingFiles(fanOutCopier.getFileCopier());
+            if (fanOutCopier.copy(storageDevice, checkCopies, copyJobs)) {
+                // the FanOutCopier might already run the next copy round
+                long byteCount = 0;
+                for (CopyJob copyJob : copyJobs) {
+                    if (copyJob != null) {
+                        for (DirectoryInfo directoryInfo
+                                : copyJob.getDirectoryInfos()) {
+                            byteCount += directoryInfo.getByteCount();
+                        }
+                    }
+                }
+                return byteCount;
+            }
+            installerOrUpgrader.showCopyingFiles(fileCopier);
+            fileCopier.copy(checkCopies, copyJobs);
+            return fileCopier.getByteCount();
+        }
+    }
+
     private static void copyPersistence(SystemSource source,
             InstallerOrUpgrader installerOrUpgrader,
-            Partition destinationDataPartition, DLCopyGUI dlCopyGUI)
+            Partition destinationDataPartition, ExecutionContext context)
             throws IOException, InterruptedException, DBusException {
 
         // some early checks and returns...
@@ -1696,40 +2051,75 @@ public class DLCopy {
             return;
         }
 
-        // mount persistence source
-        MountInfo sourceDataMountInfo = source.getDataPartition().mount();
-        String sourceDataPath = sourceDataMountInfo.getMountPath();
-        if (sourceDataPath == null) {
-            String errorMessage = "could not mount source data partition";
-            throw new IOException(errorMessage);
-        }
+        MountInfo sourceDataMountInfo;
+        MountInfo destinationDataMountInfo;
+        try (PhaseTimer.Measurement mount = context.getPhaseTimer().start(
+                Phase.MOUNT,
+                destinationDataPartition.getFullDeviceAndNumber())) {
+            // mount persistence source
+            sourceDataMountInfo = source.getDataPartition().mount();
+            if (sourceDataMountInfo.getMountPath() == null) {
+                String errorMessage = "could not mount source data partition";
+                throw new IOException(errorMessage);
+            }
 
-        // mount persistence destination
-        MountInfo destinationDataMountInfo = destinationDataPartition.mount();
-        String destinationDataPath = destinationDataMountInfo.getMountPath();
-        if (destinationDataPath == null) {
-            String errorMessage = "could not mount destination data partition";
-            throw new IOException(errorMessage);
+            // mount persistence destination
+            destinationDataMountInfo = destinationDataPartition.mount();
+            if (destinationDataMountInfo.getMountPath() == null) {
+                String errorMessage
+                        = "could not mount destination data partition";
+                throw new IOException(errorMessage);
+            }
         }
+        String sourceDataPath = sourceDataMountInfo.getMountPath();
+        String destinationDataPath = destinationDataMountInfo.getMountPath();
 
-        // TODO: use filecopier as soon as it supports symlinks etc.
-        copyPersistenceCp(installer, sourceDataPath,
-                destinationDataPath, dlCopyGUI);
+        TreeCopier treeCopier = new TreeCopier(context.getProcessExecutor());
+        context.getDLCopyGUI().showInstallPersistencyCopy(treeCopier);
+        try (PhaseTimer.Measurement fileCopy = context.getPhaseTimer().start(
+                Phase.FILE_COPY, "data partition")) {
+            treeCopier.copyContents(
+                    Paths.get(sourceDataPath), Paths.get(destinationDataPath));
+            fileCopy.setBytes(treeCopier.getBytesDone());
+        }
 
         // remove original ssh config to make it unique for every system
         removeSshConfig(destinationDataPath);
 
         // update GUI
-        dlCopyGUI.showInstallUnmounting();
+        context.getDLCopyGUI().showInstallUnmounting();
 
         // umount both source and destination persistence partitions
         //  (only if there were not mounted before)
-        if (!sourceDataMountInfo.alreadyMounted()) {
-            source.getDataPartition().umount();
+        try (PhaseTimer.Measurement unmount = context.getPhaseTimer().start(
+                Phase.UNMOUNT,
+                destinationDataPartition.getFullDeviceAndNumber())) {
+            if (!sourceDataMountInfo.alreadyMounted()) {
+                source.getDataPartition().umount();
+            }
+            if (!destinationDataMountInfo.alreadyMounted()) {
+                destinationDataPartition.umount();
+            }
         }
-        if (!destinationDataMountInfo.alreadyMounted()) {
-            destinationDataPartition.umount();
+    }
+
+    private static String[] getMkfsCommand(String fileSystem,
+            ExecutionContext context, String... arguments) {
+        List<String> command = new ArrayList<>();
+        command.add("/sbin/mkfs." + fileSystem);
+        // mke2fs and mkfs.btrfs discard all blocks by default, which takes a
+        // long time on large flash drives and is useless when the blocks were
+        // already discarded
+        if (context.isBlocksDiscarded()) {
+            if (fileSystem.startsWith("ext")) {
+                command.add("-E");
+                command.add("nodiscard");
+            } else if (fileSystem.equals("btrfs")) {
+                command.add("-K");
+            }
         }
+        command.addAll(Arrays.asList(arguments));
+        return command.toArray(String[]::new);
     }
 
     private static void mkpart(List<String> commandList,
@@ -1754,13 +2144,15 @@ public class DLCopy {
      * @param device the given device (e.g. "/dev/sdb1")
      * @param label
      * @param fileSystem the file system to use
-     * @param dlCopyGUI the current DLCopy GUI in use
+     * @param context the context of the current operation
      * @throws IOException
      */
     public static void formatExchangePartition(String device,
-            String label, String fileSystem, DLCopyGUI dlCopyGUI)
+            String label, String fileSystem, ExecutionContext context)
             throws IOException {
 
+        ProcessExecutor processExecutor = context.getProcessExecutor();
+
         // create file system for exchange partition
         String exchangePartitionID;
         String mkfsBuilder;
@@ -1784,14 +2176,15 @@ public class DLCopy {
         // try unmounting the device before touching it
         // (just in case it is mounted)
         try {
-            umount(device, dlCopyGUI);
+            umount(device, context);
         } catch (IOException ex) {
             // ignored
         }
 
         // If there was a LUKS partition at the very same location, the LUKS
         // header would be still there without wiping.
-        PROCESS_EXECUTOR.executeProcess("/usr/sbin/wipefs", "-a", device);
+        processExecutor.executeProcess(
+                "/usr/sbin/wipefs", "-a", device);
 
         // So that we continue to reliably detect exchange partitions even after
         // reformatting them with a different file system we have to adopt the
@@ -1799,35 +2192,36 @@ public class DLCopy {
         Pattern pattern = Pattern.compile("(.*)(\\p{Digit}+)");
         Matcher matcher = pattern.matcher(device);
         if (matcher.matches()) {
-            PROCESS_EXECUTOR.executeProcess("/sbin/sfdisk", "--part-type",
-                    matcher.group(1), matcher.group(2), exchangePartitionID);
-            try {
-                TimeUnit.SECONDS.sleep(7);
-            } catch (InterruptedException ex) {
-                LOGGER.log(Level.SEVERE, "", ex);
-            }
+            processExecutor.executeProcess("/sbin/sfdisk",
+                    "--part-type", matcher.group(1), matcher.group(2),
+                    exchangePartitionID);
+            ReadinessWaiter.waitForPartitionType(
+                    "partition type of " + device, exchangePartitionID, device);
 
-            // It happened that after the timeout above, the device was
+            // It happened that after the partition type change, the device was
             // automatically mounted.
             // This made the the mkfs call below fail with the error message:
             // mkfs.vfat: /dev/sda2 contains a mounted filesystem
             // Therefore we try here *again* to unmount the device...
             try {
-                umount(device, dlCopyGUI);
+                umount(device, context);
             } catch (IOException ex) {
                 // ignored
             }
         }
 
         int exitValue;
-        if (quickSwitch == null) {
-            exitValue = PROCESS_EXECUTOR.executeProcess(
-                    "/sbin/mkfs." + mkfsBuilder, mkfsLabelSwitch,
-                    label, device);
-        } else {
-            exitValue = PROCESS_EXECUTOR.executeProcess(
-                    "/sbin/mkfs." + mkfsBuilder, quickSwitch, mkfsLabelSwitch,
-                    label, device);
+        try (PhaseTimer.Measurement mkfs = context.getPhaseTimer().start(
+                Phase.MKFS, mkfsBuilder + ' ' + device)) {
+            if (quickSwitch == null) {
+                exitValue = processExecutor.executeProcess(
+                        "/sbin/mkfs." + mkfsBuilder, mkfsLabelSwitch,
+                        label, device);
+            } else {
+                exitValue = processExecutor.executeProcess(
+                        "/sbin/mkfs." + mkfsBuilder, quickSwitch,
+                        mkfsLabelSwitch, label, device);
+            }
         }
 
         if (exitValue != 0) {
@@ -1967,48 +2361,12 @@ public class DLCopy {
      * <code>false</code> otherwise
      */
     public static boolean waitForDeviceNodes(Path... deviceNodes) {
-
-        settleUdev();
-
-        // With this version:
-        // List<Path> deviceNodeList = Arrays.asList(deviceNodes);
-        // iterator.remove() below just throws
-        // java.lang.UnsupportedOperationException: remove
-        // Therefore we have to make a copy of the deviceNodes varargs array.
-        List<Path> deviceNodeList = new ArrayList<>();
-        Collections.addAll(deviceNodeList, deviceNodes);
-
-        for (int i = 0, MAX = 30; i < MAX; i++) {
-
-            Iterator<Path> iterator = deviceNodeList.iterator();
-            while (iterator.hasNext()) {
-                Path path = iterator.next();
-                boolean reappeared = Files.exists(path);
-                LOGGER.log(Level.INFO, "{0} {1}.", new Object[]{
-                    path, reappeared ? "reappeared" : "is still missing"
-                });
-                if (reappeared) {
-                    iterator.remove();
-                }
-            }
-
-            if (deviceNodeList.isEmpty()) {
-                return true;
-            }
-
-            if (i < (MAX - 1)) {
-                try {
-                    TimeUnit.SECONDS.sleep(1);
-                } catch (InterruptedException ex) {
-                    LOGGER.log(Level.SEVERE, "", ex);
-                }
-            } else {
-                LOGGER.warning("Timeout reached, "
-                        + "no longer waiting for device nodes to reappear.");
-            }
+        String[] devices = new String[deviceNodes.length];
+        for (int i = 0; i < deviceNodes.length; i++) {
+            devices[i] = deviceNodes[i].toString();
         }
-
-        return false;
+        return ReadinessWaiter.waitForDeviceNodes(
+                "device nodes " + Arrays.toString(devices), devices);
     }
 
     /**
@@ -2041,6 +2399,7 @@ public class DLCopy {
         if (transferExchange) {
 
             ExchangeTransferrer transferrer = new ExchangeTransferrer(gui,
+                    installer.getDigestCache(),
                     sourceDevice.getExchangePartition(),
                     destinationDevice.getExchangePartition());
 
@@ -2050,7 +2409,7 @@ public class DLCopy {
         if (transferHome || transferNetwork || transferPrinter
                 || transferFirewall) {
 
-            FileTransferrer transferrer = new FileTransferrer(gui, installer,
+            FileTransferrer transferrer = new FileTransferrer(gui,
                     sourceDevice, destinationDevice.getDataPartition());
 
             transferrer.transfer(transferHome, transferNetwork,
@@ -2068,27 +2427,15 @@ public class DLCopy {
         processExecutor.executeProcess(true, true, "udevadm", "settle");
     }
 
-    private static void copyPersistenceCp(Installer installer,
-            String persistenceSourcePath, String persistenceDestinationPath,
-            DLCopyGUI dlCopyGUI)
-            throws InterruptedException, IOException {
-        // this needs to be a script because of the shell globbing
-        String copyScript = "#!/bin/bash\n"
-                + "cp -av \"" + persistenceSourcePath + "/\"* \""
-                + persistenceDestinationPath + "/\"";
-        dlCopyGUI.showInstallPersistencyCopy(
-                installer, copyScript, persistenceSourcePath);
-    }
-
-    private static void umountPartitions(String device, DLCopyGUI dlCopyGUI)
-            throws IOException {
+    static void umountPartitions(String device,
+            ExecutionContext context) throws IOException {
         LOGGER.log(Level.FINEST, "umountPartitions({0})", device);
         List<String> mounts
                 = LernstickFileTools.readFile(new File("/proc/mounts"));
         for (String mount : mounts) {
             String mountedPartition = mount.split(" ")[0];
             if (mountedPartition.startsWith(device)) {
-                umount(mountedPartition, dlCopyGUI);
+                umount(mountedPartition, context);
             }
         }
     }
@@ -2121,9 +2468,50 @@ public class DLCopy {
         }
     }
 
-    private static boolean isMounted(String device) throws IOException {
-        List<String> mounts
-                = LernstickFileTools.readFile(new File("/proc/mounts"));
+    /**
+     * returns all mounts of a device or mount point
+     *
+     * @param deviceOrMountpoint the device or mount point
+     * @param mounts the lines of /proc/mounts
+     * @return all matching mounts as pairs of device and mount point
+     */
+    static List<String[]> getMounts(String deviceOrMountpoint,
+            List<String> mounts) {
+        List<String[]> matchingMounts = new ArrayList<>();
+        for (String mount : mounts) {
+            String[] tokens = mount.split(" ");
+            String device = tokens[0];
+            String mountPoint = tokens[1];
+            if (device.equals(deviceOrMountpoint)
+                    || mountPoint.equals(deviceOrMountpoint)) {
+                matchingMounts.add(new String[]{device, mountPoint});
+            }
+        }
+        return matchingMounts;
+    }
+
+    /**
+     * checks if a device (or one of its partitions) is mounted
+     *
+     * @param device the device to check
+     * @return <code>true</code>, if the device is mounted,
+     * <code>false</code> otherwise
+     * @throws IOException if reading /proc/mounts fails
+     */
+    static boolean isMounted(String device) throws IOException {
+        return isMounted(device,
+                LernstickFileTools.readFile(new File("/proc/mounts")));
+    }
+
+    /**
+     * checks if a device (or one of its partitions) is mounted
+     *
+     * @param device the device to check
+     * @param mounts the lines of /proc/mounts
+     * @return <code>true</code>, if the device is mounted,
+     * <code>false</code> otherwise
+     */
+    static boolean isMounted(String device, List<String> mounts) {
         for (String mount : mounts) {
             String mountedPartition = mount.split(" ")[0];
             if (mountedPartition.startsWith(device)) {
@@ -2134,7 +2522,7 @@ public class DLCopy {
     }
 
     private static void swapoffFile(String device, String swapLine,
-            DLCopyGUI dlCopyGUI) throws IOException {
+            ExecutionContext context) throws IOException {
 
         SwapInfo swapInfo = new SwapInfo(swapLine);
         String swapFile = swapInfo.getFile();
@@ -2149,12 +2537,12 @@ public class DLCopy {
                     remainingFreeMem, 0);
             warningMessage = MessageFormat.format(
                     warningMessage, swapFile, device, freeMem);
-            disableSwap = dlCopyGUI.showConfirmDialog(
+            disableSwap = context.getDLCopyGUI().showConfirmDialog(
                     STRINGS.getString("Warning"), warningMessage);
         }
 
         if (disableSwap) {
-            int exitValue = PROCESS_EXECUTOR.executeProcess(
+            int exitValue = context.getProcessExecutor().executeProcess(
                     "swapoff", swapFile);
             if (exitValue != 0) {
                 String errorMessage = STRINGS.getString("Error_Swapoff_File");
@@ -2166,7 +2554,7 @@ public class DLCopy {
     }
 
     private static void swapoffPartition(String device, String swapLine,
-            DLCopyGUI dlCopyGUI) throws IOException {
+            ExecutionContext context) throws IOException {
 
         SwapInfo swapInfo = new SwapInfo(swapLine);
         String swapFile = swapInfo.getFile();
@@ -2182,12 +2570,12 @@ public class DLCopy {
                     remainingFreeMem, 0);
             warningMessage = MessageFormat.format(
                     warningMessage, swapFile, device, freeMem);
-            disableSwap = dlCopyGUI.showConfirmDialog(
+            disableSwap = context.getDLCopyGUI().showConfirmDialog(
                     STRINGS.getString("Warning"), warningMessage);
         }
 
         if (disableSwap) {
-            int exitValue = PROCESS_EXECUTOR.executeProcess(
+            int exitValue = context.getProcessExecutor().executeProcess(
                     "swapoff", swapFile);
             if (exitValue != 0) {
                 String errorMessage
@@ -2208,7 +2596,7 @@ public class DLCopy {
      * @return the StorageDevice for a given dbus path
      * @throws DBusException if a dbus exception occurs
      */
-    private static StorageDevice getStorageDevice(
+    public static StorageDevice getStorageDevice(
             String path, boolean includeHardDisks) throws DBusException {
 
         LOGGER.log(Level.FINE, """
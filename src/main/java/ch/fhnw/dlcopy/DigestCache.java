@@ -0,0 +1,687 @@
+package ch.fhnw.dlcopy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cache for file digests that speeds up repeated file copy checks. All
+ * methods are synchronized so that a single cache can be shared by several
+ * FileCopiers running in parallel. The FileCopier expects its digest cache
+ * to be a HashMap, {@link #asHashMap()} returns a view of this cache for it.
+ * <br>
+ * The cache has a byte budget. Its memory usage is estimated for every entry
+ * and the least recently used entries are evicted when the budget is
+ * exceeded. The paths are stored as a shared parent directory and a file
+ * name, so that the thousands of files in the same directory don't store
+ * the same directory path again and again.
+ * <br>
+ * The cache can be backed by an index file so that the digests of the
+ * (unchanged) source files survive a program restart. Every entry of the
+ * index file contains the size, modification time and inode of the file at
+ * the time its digest was computed. An entry is only used when the file
+ * still has the same attributes, otherwise it is dropped. New entries are
+ * appended to the index file, which is compacted when it contains too many
+ * replaced or evicted entries. The cache must be closed to release the index
+ * file.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class DigestCache implements Closeable {
+
+    /**
+     * the default location of the index file
+     */
+    public static final Path DEFAULT_INDEX_FILE = Paths.get(
+            System.getProperty("user.home"), ".cache", "dlcopy", "digests");
+
+    /**
+     * the default byte budget of a cache
+     */
+    public static final long DEFAULT_MAX_BYTES = 16L * DLCopy.MEGA;
+
+    private static final Logger LOGGER
+            = Logger.getLogger(DigestCache.class.getName());
+
+    // "DLCD" followed by the version of the index file format
+    private static final int MAGIC = 0x444c4344;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    // rough estimations of the memory used by the Java objects of an entry
+    // (map entry, key, value object and digest array) and by a String
+    private static final int ENTRY_OVERHEAD = 144;
+    private static final int STRING_OVERHEAD = 56;
+
+    // the number of obsolete index file entries we tolerate before compacting
+    // the index file (in addition to one obsolete entry per valid entry)
+    private static final int COMPACTION_SLACK = 1024;
+
+    private final long maxBytes;
+    private final Path indexFile;
+    private final LinkedHashMap<Key, Value> entries
+            = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Directory> directories = new HashMap<>();
+    private final HashMap<String, byte[]> hashMapView = new HashMapView();
+    // the digests the FileCopiers were promised by containsKey() of the view
+    private final Map<String, Pin> pins = new HashMap<>();
+    private FileChannel indexChannel;
+    // the number of entries in the index file
+    private long indexEntries;
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * creates a new DigestCache with the default byte budget that only lives
+     * in memory
+     */
+    public DigestCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * creates a new DigestCache that only lives in memory
+     *
+     * @param maxBytes the byte budget of the cache
+     */
+    public DigestCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.indexFile = null;
+    }
+
+    /**
+     * creates a new DigestCache that is backed by an index file
+     *
+     * @param indexFile the index file
+     * @param maxBytes the byte budget of the cache
+     */
+    public DigestCache(Path indexFile, long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.indexFile = indexFile;
+        try {
+            loadIndex();
+        } catch (IOException ex) {
+            // the cache still works in memory
+            LOGGER.log(Level.WARNING,
+                    "could not use digest index file " + indexFile, ex);
+            closeIndex();
+        }
+    }
+
+    /**
+     * returns a HashMap view of this cache for the FileCopier
+     * <br>
+     * The view only supports the methods used by the FileCopier
+     * (containsKey(), get() and put()) and the basic methods of this cache.
+     * Iterating over the view is not supported.
+     * <br>
+     * The FileCopier calls containsKey() before copying a file and get()
+     * after copying it. A digest that was found by containsKey() is pinned
+     * until the matching get(), so that get() still returns it even if it
+     * was evicted while the file was copied.
+     *
+     * @return a HashMap view of this cache for the FileCopier
+     */
+    public HashMap<String, byte[]> asHashMap() {
+        return hashMapView;
+    }
+
+    /**
+     * checks if the cache contains a valid digest of a file
+     * <br>
+     * The FileCopier always calls this method before get(), therefore only
+     * this method counts cache hits and misses.
+     *
+     * @param path the path of the file
+     * @return <code>true</code>, if the cache contains a valid digest of the
+     * file, <code>false</code> otherwise
+     */
+    public synchronized boolean containsKey(String path) {
+        if (lookup(path) == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        return true;
+    }
+
+    /**
+     * returns the digest of a file
+     *
+     * @param path the path of the file
+     * @return the digest of the file or <code>null</code>, if the cache
+     * contains no valid digest of the file
+     */
+    public synchronized byte[] get(String path) {
+        Value value = lookup(path);
+        return (value == null) ? null : value.digest;
+    }
+
+    /**
+     * stores the digest of a file
+     *
+     * @param path the path of the file
+     * @param digest the digest of the file
+     * @return the previous digest of the file or <code>null</code>, if there
+     * was none
+     */
+    public synchronized byte[] put(String path, byte[] digest) {
+        Value value = Value.create(path, digest, indexChannel != null);
+        if (value == null) {
+            // we couldn't check later if the file was changed
+            return remove(path);
+        }
+        Value oldValue = store(toKey(path), value);
+        appendToIndex(path, value);
+        return (oldValue == null) ? null : oldValue.digest;
+    }
+
+    /**
+     * removes the digest of a file
+     *
+     * @param path the path of the file
+     * @return the removed digest or <code>null</code>, if there was none
+     */
+    public synchronized byte[] remove(String path) {
+        Key cacheKey = findKey(path);
+        if (cacheKey == null) {
+            return null;
+        }
+        Value value = removeEntry(cacheKey);
+        return (value == null) ? null : value.digest;
+    }
+
+    /**
+     * returns the number of entries in the cache
+     *
+     * @return the number of entries in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * checks if the cache is empty
+     *
+     * @return <code>true</code>, if the cache is empty,
+     * <code>false</code> otherwise
+     */
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * removes all entries from the cache and its index file
+     */
+    public synchronized void clear() {
+        entries.clear();
+        pins.clear();
+        directories.clear();
+        usedBytes = 0;
+        if (indexChannel != null) {
+            try {
+                indexChannel.truncate(HEADER_SIZE);
+                indexEntries = 0;
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "", ex);
+                closeIndex();
+            }
+        }
+    }
+
+    /**
+     * Closes the index file. The cache can still be used afterwards but new
+     * entries only live in memory.
+     */
+    @Override
+    public synchronized void close() {
+        closeIndex();
+    }
+
+    /**
+     * returns the byte budget of the cache
+     *
+     * @return the byte budget of the cache
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * returns the estimated number of bytes currently used by the cache
+     *
+     * @return the estimated number of bytes currently used by the cache
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * returns the number of cache hits
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * returns the number of cache misses
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * returns the number of entries that were evicted because the byte budget
+     * was exceeded
+     *
+     * @return the number of entries that were evicted because the byte budget
+     * was exceeded
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * logs the usage statistics of the cache
+     */
+    public synchronized void logStatistics() {
+        LOGGER.log(Level.INFO, "digest cache: {0} entries, {1} of {2} bytes "
+                + "used, {3} hits, {4} misses, {5} evictions", new Object[]{
+                    entries.size(), usedBytes, maxBytes,
+                    hits, misses, evictions});
+    }
+
+    private Value lookup(String path) {
+        Key cacheKey = findKey(path);
+        if (cacheKey == null) {
+            return null;
+        }
+        Value value = entries.get(cacheKey);
+        if ((value != null) && !value.verified) {
+            // the entry was loaded from the index file
+            Value current = Value.create(path, value.digest, true);
+            if ((current == null) || !current.hasSameAttributes(value)) {
+                // the file was changed or the source medium was exchanged
+                LOGGER.log(Level.FINE, "dropping stale digest of {0}", path);
+                removeEntry(cacheKey);
+                return null;
+            }
+            value.verified = true;
+        }
+        return value;
+    }
+
+    private Value store(Key key, Value value) {
+        Value oldValue = entries.put(key, value);
+        if (oldValue == null) {
+            key.directory.references++;
+            usedBytes += getEntrySize(key, value);
+        } else {
+            usedBytes += value.digest.length - oldValue.digest.length;
+        }
+
+        // evict the least recently used entries
+        Iterator<Map.Entry<Key, Value>> iterator
+                = entries.entrySet().iterator();
+        while ((usedBytes > maxBytes) && (entries.size() > 1)) {
+            Map.Entry<Key, Value> eldest = iterator.next();
+            iterator.remove();
+            release(eldest.getKey(), eldest.getValue());
+            evictions++;
+        }
+        return oldValue;
+    }
+
+    private Value removeEntry(Key key) {
+        Value value = entries.remove(key);
+        if (value != null) {
+            release(key, value);
+        }
+        return value;
+    }
+
+    private void release(Key key, Value value) {
+        usedBytes -= getEntrySize(key, value);
+        Directory directory = key.directory;
+        if (--directory.references == 0) {
+            directories.remove(directory.path);
+            usedBytes -= STRING_OVERHEAD + directory.path.length();
+        }
+    }
+
+    private Key toKey(String path) {
+        int index = path.lastIndexOf('/');
+        String directoryPath = path.substring(0, index + 1);
+        Directory directory = directories.get(directoryPath);
+        if (directory == null) {
+            directory = new Directory(directoryPath);
+            directories.put(directoryPath, directory);
+            usedBytes += STRING_OVERHEAD + directoryPath.length();
+        }
+        return new Key(directory, path.substring(index + 1));
+    }
+
+    private Key findKey(String path) {
+        int index = path.lastIndexOf('/');
+        Directory directory = directories.get(path.substring(0, index + 1));
+        return (directory == null)
+                ? null : new Key(directory, path.substring(index + 1));
+    }
+
+    private static long getEntrySize(Key key, Value value) {
+        return ENTRY_OVERHEAD + STRING_OVERHEAD + key.name.length()
+                + value.digest.length;
+    }
+
+    private void loadIndex() throws IOException {
+        Files.createDirectories(indexFile.getParent());
+        indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long fileSize = indexChannel.size();
+        int records = 0;
+        long validSize = HEADER_SIZE;
+        if (fileSize >= HEADER_SIZE) {
+            MappedByteBuffer buffer = indexChannel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if ((buffer.getInt() == MAGIC) && (buffer.getInt() == VERSION)) {
+                try {
+                    while (buffer.hasRemaining()) {
+                        // later entries replace earlier entries and the
+                        // oldest entries are evicted first
+                        readEntry(buffer);
+                        records++;
+                        validSize = buffer.position();
+                    }
+                } catch (BufferUnderflowException ex) {
+                    // the last entry was not completely written
+                    LOGGER.log(Level.INFO,
+                            "ignoring incomplete entry in {0}", indexFile);
+                }
+            } else {
+                LOGGER.log(Level.INFO,
+                        "ignoring unknown digest index file {0}", indexFile);
+                clear();
+                validSize = 0;
+            }
+        }
+        // evictions while loading are no evictions of this session
+        evictions = 0;
+
+        if ((records > entries.size()) || (validSize != fileSize)) {
+            // compact index file
+            // (get rid of replaced, evicted or incomplete entries)
+            rewriteIndex();
+        } else {
+            indexChannel.position(fileSize);
+            indexEntries = records;
+        }
+        LOGGER.log(Level.INFO, "loaded {0} digests from {1}",
+                new Object[]{entries.size(), indexFile});
+    }
+
+    private void readEntry(ByteBuffer buffer) {
+        byte[] pathBytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(pathBytes);
+        long size = buffer.getLong();
+        long modificationTime = buffer.getLong();
+        long inode = buffer.getLong();
+        byte[] digest = new byte[buffer.get() & 0xFF];
+        buffer.get(digest);
+        store(toKey(new String(pathBytes, StandardCharsets.UTF_8)),
+                new Value(digest, size, modificationTime, inode, false));
+    }
+
+    private void rewriteIndex() throws IOException {
+        indexChannel.truncate(0);
+        indexChannel.position(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        write(header);
+        // from the least to the most recently used entry
+        for (Map.Entry<Key, Value> entry : entries.entrySet()) {
+            Key key = entry.getKey();
+            write(toByteBuffer(key.directory.path + key.name,
+                    entry.getValue()));
+        }
+        indexEntries = entries.size();
+    }
+
+    private void appendToIndex(String path, Value value) {
+        if (indexChannel == null) {
+            return;
+        }
+        try {
+            write(toByteBuffer(path, value));
+            indexEntries++;
+            if (indexEntries > 2L * entries.size() + COMPACTION_SLACK) {
+                // most entries of the index file were replaced or evicted
+                LOGGER.log(Level.INFO, "compacting {0}", indexFile);
+                rewriteIndex();
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "", ex);
+            closeIndex();
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            indexChannel.write(buffer);
+        }
+    }
+
+    private void closeIndex() {
+        if (indexChannel != null) {
+            try {
+                indexChannel.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "", ex);
+            }
+            indexChannel = null;
+        }
+    }
+
+    private static ByteBuffer toByteBuffer(String path, Value value) {
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(2 + pathBytes.length
+                + 3 * Long.BYTES + 1 + value.digest.length);
+        buffer.putShort((short) pathBytes.length);
+        buffer.put(pathBytes);
+        buffer.putLong(value.size);
+        buffer.putLong(value.modificationTime);
+        buffer.putLong(value.inode);
+        buffer.put((byte) value.digest.length);
+        buffer.put(value.digest);
+        buffer.flip();
+        return buffer;
+    }
+
+    // the HashMap view of this cache for the FileCopier
+    private class HashMapView extends HashMap<String, byte[]> {
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (!(key instanceof String path)) {
+                return false;
+            }
+            synchronized (DigestCache.this) {
+                if (!DigestCache.this.containsKey(path)) {
+                    return false;
+                }
+                Pin pin = pins.computeIfAbsent(path, p -> new Pin());
+                pin.digest = DigestCache.this.get(path);
+                pin.references++;
+                return true;
+            }
+        }
+
+        @Override
+        public byte[] get(Object key) {
+            if (!(key instanceof String path)) {
+                return null;
+            }
+            synchronized (DigestCache.this) {
+                Pin pin = pins.get(path);
+                if (pin == null) {
+                    return DigestCache.this.get(path);
+                }
+                if (--pin.references == 0) {
+                    pins.remove(path);
+                }
+                return pin.digest;
+            }
+        }
+
+        @Override
+        public byte[] put(String key, byte[] digest) {
+            return DigestCache.this.put(key, digest);
+        }
+
+        @Override
+        public byte[] remove(Object key) {
+            return (key instanceof String path)
+                    ? DigestCache.this.remove(path) : null;
+        }
+
+        @Override
+        public int size() {
+            return DigestCache.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return DigestCache.this.isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            DigestCache.this.clear();
+        }
+
+        @Override
+        public Set<Map.Entry<String, byte[]>> entrySet() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set<String> keySet() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<byte[]> values() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class Pin {
+
+        private byte[] digest;
+        private int references;
+    }
+
+    private static class Directory {
+
+        private final String path;
+        private int references;
+
+        Directory(String path) {
+            this.path = path;
+        }
+    }
+
+    private static class Key {
+
+        private final Directory directory;
+        private final String name;
+
+        Key(Directory directory, String name) {
+            this.directory = directory;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) object;
+            // directories are unique, comparing references is enough
+            return (directory == other.directory) && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(directory) + name.hashCode();
+        }
+    }
+
+    private static class Value {
+
+        private final byte[] digest;
+        private final long size;
+        private final long modificationTime;
+        private final long inode;
+        private boolean verified;
+
+        Value(byte[] digest, long size, long modificationTime, long inode,
+                boolean verified) {
+            this.digest = digest;
+            this.size = size;
+            this.modificationTime = modificationTime;
+            this.inode = inode;
+            this.verified = verified;
+        }
+
+        static Value create(String path, byte[] digest,
+                boolean withAttributes) {
+            if (!withAttributes) {
+                return new Value(digest, 0, 0, 0, true);
+            }
+            try {
+                Map<String, Object> attributes = Files.readAttributes(
+                        Paths.get(path), "unix:size,lastModifiedTime,ino");
+                FileTime modificationTime
+                        = (FileTime) attributes.get("lastModifiedTime");
+                return new Value(digest, (Long) attributes.get("size"),
+                        modificationTime.toMillis(),
+                        (Long) attributes.get("ino"), true);
+            } catch (IOException | UnsupportedOperationException ex) {
+                LOGGER.log(Level.FINE, "", ex);
+                return null;
+            }
+        }
+
+        boolean hasSameAttributes(Value other) {
+            return (size == other.size)
+                    && (modificationTime == other.modificationTime)
+                    && (inode == other.inode);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ch.fhnw.dlcopy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Discards (TRIMs) all blocks of a storage device or partition before it gets
+ * partitioned or formatted.
+ * <br>
+ * Flash controllers can then use pre-erased blocks for the following writes,
+ * which makes them faster and reduces wear. Discarding is only an
+ * optimization, therefore all errors are just logged.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class Discarder {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(Discarder.class.getName());
+
+    private Discarder() {
+    }
+
+    /**
+     * checks if a storage device or partition supports discarding blocks
+     *
+     * @param device the device path, e.g. /dev/sdb or /dev/nvme0n1p2
+     * @return <code>true</code>, if the device supports discarding blocks,
+     * <code>false</code> otherwise
+     */
+    public static boolean isSupported(String device) {
+        try {
+            String name = Paths.get(device).toRealPath()
+                    .getFileName().toString();
+            Path sysfsPath
+                    = Paths.get("/sys/class/block", name).toRealPath();
+            Path queuePath = sysfsPath.resolve("queue");
+            if (!Files.isDirectory(queuePath)) {
+                // partitions share the queue of their storage device
+                queuePath = sysfsPath.getParent().resolve("queue");
+            }
+            long discardMaxBytes = Long.parseLong(Files.readString(
+                    queuePath.resolve("discard_max_bytes")).trim());
+            LOGGER.log(Level.INFO, "discard_max_bytes of {0}: {1}",
+                    new Object[]{device, discardMaxBytes});
+            return discardMaxBytes > 0;
+        } catch (IOException | NumberFormatException ex) {
+            LOGGER.log(Level.WARNING, "", ex);
+            return false;
+        }
+    }
+
+    /**
+     * discards all blocks of a storage device or partition, if supported
+     *
+     * @param device the device path, e.g. /dev/sdb or /dev/nvme0n1p2
+     * @param context the context of the current operation
+     * @return <code>true</code>, if all blocks were discarded,
+     * <code>false</code> otherwise
+     */
+    public static boolean discard(String device, ExecutionContext context) {
+        if (!isSupported(device)) {
+            LOGGER.log(Level.INFO,
+                    "{0} does not support discarding blocks", device);
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        int exitValue = context.getProcessExecutor().executeProcess(
+                true, true, "blkdiscard", device);
+        if (exitValue != 0) {
+            LOGGER.log(Level.WARNING, "discarding blocks of {0} failed:\n{1}",
+                    new Object[]{device,
+                        context.getProcessExecutor().getOutput()});
+            return false;
+        }
+        LOGGER.log(Level.INFO, "discarded all blocks of {0} in {1} ms",
+                new Object[]{device, System.currentTimeMillis() - start});
+        return true;
+    }
+}
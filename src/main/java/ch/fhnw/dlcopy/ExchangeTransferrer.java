@@ -17,6 +17,7 @@ import org.freedesktop.dbus.exceptions.DBusException;
  */
 public class ExchangeTransferrer extends Transferrer {
 
+    private final DigestCache digestCache;
     private final Partition sourcePartition;
     private final Partition destinationPartition;
 
@@ -27,13 +28,16 @@ public class ExchangeTransferrer extends Transferrer {
      * Creates a new ExchangeTransferrer.
      *
      * @param gui the DLCopyGUI currently in use
+     * @param digestCache the global digest cache for speeding up repeated
+     * file checks
      * @param sourcePartition the source exchange partition
      * @param destinationPartition the destination exchange partition
      */
-    public ExchangeTransferrer(DLCopyGUI gui,
+    public ExchangeTransferrer(DLCopyGUI gui, DigestCache digestCache,
             Partition sourcePartition, Partition destinationPartition) {
 
         super(gui);
+        this.digestCache = digestCache;
         this.sourcePartition = sourcePartition;
         this.destinationPartition = destinationPartition;
     }
@@ -50,7 +54,7 @@ public class ExchangeTransferrer extends Transferrer {
     public void transfer(boolean checkCopies)
             throws IOException, DBusException, NoSuchAlgorithmException {
 
-        FileCopier fileCopier = new FileCopier();
+        FileCopier fileCopier = new FileCopier(digestCache.asHashMap());
         gui.showInstallFileCopy(fileCopier);
 
         mount();
@@ -0,0 +1,105 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.dlcopy.gui.DLCopyGUI;
+import ch.fhnw.util.ProcessExecutor;
+import ch.fhnw.util.StorageDevice;
+
+/**
+ * The context of a single operation (e.g. installing, upgrading or resetting)
+ * on a storage device. Every operation gets its own context with its own
+ * ProcessExecutor, so that operations on independent storage devices can run
+ * in parallel without sharing process output buffers or listeners.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class ExecutionContext {
+
+    private final ProcessExecutor processExecutor;
+    private final DLCopyGUI dlCopyGUI;
+    private final StorageDevice storageDevice;
+    private final PhaseTimer phaseTimer;
+    private volatile boolean blocksDiscarded;
+
+    /**
+     * creates a new ExecutionContext for an operation that is not bound to a
+     * specific storage device
+     *
+     * @param dlCopyGUI the GUI where the operation reports its progress
+     */
+    public ExecutionContext(DLCopyGUI dlCopyGUI) {
+        this(dlCopyGUI, null);
+    }
+
+    /**
+     * creates a new ExecutionContext
+     *
+     * @param dlCopyGUI the GUI where the operation reports its progress
+     * @param storageDevice the storage device of the operation
+     */
+    public ExecutionContext(DLCopyGUI dlCopyGUI, StorageDevice storageDevice) {
+        this.processExecutor = new ProcessExecutor();
+        this.dlCopyGUI = dlCopyGUI;
+        this.storageDevice = storageDevice;
+        this.phaseTimer = new PhaseTimer(dlCopyGUI, storageDevice);
+    }
+
+    /**
+     * returns the ProcessExecutor of this context
+     *
+     * @return the ProcessExecutor of this context
+     */
+    public ProcessExecutor getProcessExecutor() {
+        return processExecutor;
+    }
+
+    /**
+     * returns the GUI where the operation reports its progress
+     *
+     * @return the GUI where the operation reports its progress
+     */
+    public DLCopyGUI getDLCopyGUI() {
+        return dlCopyGUI;
+    }
+
+    /**
+     * returns the storage device of the operation or <tt>null</tt>, if the
+     * operation is not bound to a specific storage device
+     *
+     * @return the storage device of the operation or <tt>null</tt>, if the
+     * operation is not bound to a specific storage device
+     */
+    public StorageDevice getStorageDevice() {
+        return storageDevice;
+    }
+
+    /**
+     * returns the PhaseTimer of this context
+     *
+     * @return the PhaseTimer of this context
+     */
+    public PhaseTimer getPhaseTimer() {
+        return phaseTimer;
+    }
+
+    /**
+     * returns <tt>true</tt>, if the blocks of the storage device or partition
+     * that is formatted next were already discarded, <tt>false</tt> otherwise
+     *
+     * @return <tt>true</tt>, if the blocks of the storage device or partition
+     * that is formatted next were already discarded, <tt>false</tt> otherwise
+     */
+    public boolean isBlocksDiscarded() {
+        return blocksDiscarded;
+    }
+
+    /**
+     * sets if the blocks of the storage device or partition that is formatted
+     * next were already discarded (then mkfs must not discard them again)
+     *
+     * @param blocksDiscarded if the blocks of the storage device or partition
+     * that is formatted next were already discarded
+     */
+    public void setBlocksDiscarded(boolean blocksDiscarded) {
+        this.blocksDiscarded = blocksDiscarded;
+    }
+}
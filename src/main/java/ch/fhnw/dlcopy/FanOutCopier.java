@@ -0,0 +1,665 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.filecopier.CopyJob;
+import ch.fhnw.filecopier.CurrentlyProcessedFile;
+import ch.fhnw.filecopier.DirectoryInfo;
+import ch.fhnw.filecopier.FileCopier;
+import ch.fhnw.filecopier.Source;
+import ch.fhnw.util.ProcessExecutor;
+import ch.fhnw.util.StorageDevice;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Copies the same source files to several storage devices that are installed
+ * in parallel, reading every source file only once.
+ * <br>
+ * Every storage device that takes part has to be registered. A copy round
+ * starts when all registered storage devices are ready to copy or when the
+ * first storage device of the round has waited for {@link #GATHER_TIMEOUT}
+ * milliseconds. Storage devices that are still busy with earlier steps (e.g.
+ * partitioning) when the round starts take part in the next round. Copy
+ * rounds never run at the same time, the next round keeps gathering storage
+ * devices until the current round is finished.
+ * <br>
+ * Within a round the source files are read in chunks by a single thread. Every
+ * storage device has its own writer thread with a queue of up to
+ * {@link #QUEUE_CAPACITY} chunks. Therefore a storage device that stalls for a
+ * moment (USB flash drives often do) doesn't stall the other storage devices.
+ * Only a storage device that is permanently slower than the others eventually
+ * slows down the round when its queue is full. As all queues share the same
+ * chunks, the memory used by a round doesn't grow with the number of storage
+ * devices.
+ * <br>
+ * If writing to a storage device fails (e.g. because the storage device was
+ * removed), it is dropped from the round and the other storage devices just
+ * continue. Only the dropped storage devices have to copy their files
+ * separately.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class FanOutCopier {
+
+    /**
+     * the maximum time (in milliseconds) a copy round waits for registered
+     * storage devices that are not yet ready to copy
+     */
+    public static final long GATHER_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * the maximum number of chunks a storage device may lag behind the
+     * reading of the source files
+     */
+    public static final int QUEUE_CAPACITY = 16;
+
+    private static final Logger LOGGER
+            = Logger.getLogger(FanOutCopier.class.getName());
+
+    private static final int CHUNK_SIZE = 4 * DLCopy.MEGA;
+    // the same algorithm as the FileCopier, so that the digests can be shared
+    private static final String CHECK_ALGORITHM = "MD5";
+    // marks the end of a copy round in the queue of a writer
+    private static final Task END = writer -> {
+    };
+
+    private final HashMap<String, byte[]> digestCache;
+    private final long gatherTimeout;
+    private final Progress progress = new Progress();
+    private final Set<StorageDevice> registeredDevices = new HashSet<>();
+    private Round currentRound = new Round();
+    private boolean running;
+
+    /**
+     * creates a new FanOutCopier
+     *
+     * @param digestCache the cache for the digests of the source files (may
+     * be <tt>null</tt>)
+     */
+    public FanOutCopier(HashMap<String, byte[]> digestCache) {
+        this(digestCache, GATHER_TIMEOUT);
+    }
+
+    /**
+     * creates a new FanOutCopier
+     *
+     * @param digestCache the cache for the digests of the source files (may
+     * be <tt>null</tt>)
+     * @param gatherTimeout the maximum time (in milliseconds) a copy round
+     * waits for registered storage devices that are not yet ready to copy
+     */
+    public FanOutCopier(HashMap<String, byte[]> digestCache,
+            long gatherTimeout) {
+        this.digestCache = digestCache;
+        this.gatherTimeout = gatherTimeout;
+    }
+
+    /**
+     * returns a FileCopier that only reports the progress of the copy rounds
+     * (e.g. for a FileCopierPanel), it can't copy files itself
+     *
+     * @return a FileCopier that only reports the progress of the copy rounds
+     */
+    public FileCopier getFileCopier() {
+        return progress;
+    }
+
+    /**
+     * registers a storage device that will call
+     * {@link #copy(StorageDevice, boolean, CopyJob...)} later
+     *
+     * @param storageDevice the storage device to register
+     */
+    public synchronized void register(StorageDevice storageDevice) {
+        registeredDevices.add(storageDevice);
+    }
+
+    /**
+     * deregisters a storage device, e.g. because its installation failed
+     * before copying files
+     *
+     * @param storageDevice the storage device to deregister
+     */
+    public synchronized void deregister(StorageDevice storageDevice) {
+        if (registeredDevices.remove(storageDevice)) {
+            // the waiting storage devices might be complete now
+            notifyAll();
+        }
+    }
+
+    /**
+     * Copies files to a storage device together with other registered
+     * storage devices. This method blocks until the copy round of the storage
+     * device is finished.
+     *
+     * @param storageDevice the storage device
+     * @param checkCopies if the copies should be checked for errors (the
+     * copies of a round are checked if any of its storage devices asks for
+     * it)
+     * @param copyJobs the CopyJobs of the storage device
+     * @return <code>true</code>, if the files were copied,
+     * <code>false</code> if the storage device has to copy its files
+     * separately
+     * @throws InterruptedException if the current thread was interrupted
+     * while waiting for the other storage devices or while copying
+     */
+    public boolean copy(StorageDevice storageDevice, boolean checkCopies,
+            CopyJob... copyJobs) throws InterruptedException {
+
+        Round round;
+        Participant participant = new Participant(storageDevice, copyJobs);
+        synchronized (this) {
+            // unregistered storage devices would get stuck in the next round
+            registeredDevices.add(storageDevice);
+            round = currentRound;
+            if (round.participants.isEmpty()) {
+                round.deadline = System.currentTimeMillis() + gatherTimeout;
+            }
+            round.participants.add(participant);
+            round.checkCopies |= checkCopies;
+            notifyAll();
+            while (!round.finished) {
+                long remaining = round.deadline - System.currentTimeMillis();
+                if (!round.started && !running
+                        && (round.containsAll(registeredDevices)
+                        || remaining <= 0)) {
+                    // we run the copy round
+                    round.started = true;
+                    running = true;
+                    currentRound = new Round();
+                    break;
+                }
+                if (round.started || running) {
+                    // the end of a round notifies us
+                    wait();
+                } else {
+                    wait(remaining);
+                }
+            }
+            if (round.finished) {
+                return participant.success;
+            }
+        }
+
+        try {
+            run(round);
+        } finally {
+            synchronized (this) {
+                round.finished = true;
+                running = false;
+                for (Participant finished : round.participants) {
+                    registeredDevices.remove(finished.storageDevice);
+                }
+                notifyAll();
+            }
+        }
+        return participant.success;
+    }
+
+    private void run(Round round) throws InterruptedException {
+        List<Participant> participants = round.participants;
+        LOGGER.log(Level.INFO, "copying files to {0} storage devices",
+                participants.size());
+
+        // expand every distinct set of sources only once
+        progress.setState(FileCopier.State.START);
+        progress.setState(FileCopier.State.CHECKING_SOURCE);
+        Map<String, List<DirectoryInfo>> directoryInfosMap
+                = new LinkedHashMap<>();
+        for (Participant participant : participants) {
+            for (CopyJob copyJob : participant.copyJobs) {
+                if (copyJob == null) {
+                    continue;
+                }
+                Source[] sources = copyJob.getSources();
+                String key = getKey(sources);
+                directoryInfosMap.computeIfAbsent(key, k -> expand(sources));
+                participant.destinations.computeIfAbsent(
+                        key, k -> new ArrayList<>())
+                        .addAll(List.of(copyJob.getDestinations()));
+            }
+        }
+        long byteCount = 0;
+        for (List<DirectoryInfo> directoryInfos
+                : directoryInfosMap.values()) {
+            for (DirectoryInfo directoryInfo : directoryInfos) {
+                byteCount += directoryInfo.getByteCount();
+            }
+        }
+
+        List<Writer> writers = new ArrayList<>();
+        for (Participant participant : participants) {
+            writers.add(new Writer(participant));
+        }
+        progress.start(byteCount, writers);
+        ExecutorService executor
+                = Executors.newFixedThreadPool(writers.size());
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Writer writer : writers) {
+                futures.add(executor.submit(writer));
+            }
+            for (Map.Entry<String, List<DirectoryInfo>> entry
+                    : directoryInfosMap.entrySet()) {
+                String key = entry.getKey();
+                for (DirectoryInfo directoryInfo : entry.getValue()) {
+                    File baseDirectory = directoryInfo.getBaseDirectory();
+                    for (File file : directoryInfo.getFiles()) {
+                        if (file.isDirectory()) {
+                            send(writers, writer -> writer.createDirectory(
+                                    key, baseDirectory, file));
+                        } else {
+                            copyFile(writers, key, baseDirectory, file,
+                                    round.checkCopies);
+                        }
+                    }
+                }
+            }
+            send(writers, END);
+            for (int i = 0, size = writers.size(); i < size; i++) {
+                futures.get(i).get();
+                Participant participant = writers.get(i).participant;
+                if (writers.get(i).failed) {
+                    continue;
+                }
+                // the callers might need to know which files were copied
+                for (CopyJob copyJob : participant.copyJobs) {
+                    if (copyJob != null) {
+                        copyJob.setDirectoryInfos(directoryInfosMap.get(
+                                getKey(copyJob.getSources())));
+                    }
+                }
+                participant.success = true;
+            }
+        } catch (IOException | NoSuchAlgorithmException
+                | ExecutionException ex) {
+            LOGGER.log(Level.WARNING, "reading the source files failed, "
+                    + "falling back to separate copies for every storage "
+                    + "device", ex);
+        } finally {
+            // stops the writers that are still waiting for chunks
+            executor.shutdownNow();
+            progress.setState(FileCopier.State.END);
+        }
+    }
+
+    private void copyFile(List<Writer> writers, String key,
+            File baseDirectory, File file, boolean checkCopies)
+            throws IOException, NoSuchAlgorithmException,
+            InterruptedException {
+
+        progress.currentlyProcessedFile
+                = new CurrentlyProcessedFile(file.getPath());
+        byte[] cachedDigest = null;
+        MessageDigest messageDigest = null;
+        if (checkCopies) {
+            if (digestCache != null) {
+                cachedDigest = digestCache.get(file.getPath());
+            }
+            if (cachedDigest == null) {
+                messageDigest = MessageDigest.getInstance(CHECK_ALGORITHM);
+            }
+        }
+
+        send(writers, writer -> writer.open(key, baseDirectory, file));
+        try (FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.READ)) {
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                // every chunk is shared by all writers until they are done
+                ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+                while (chunk.hasRemaining() && !endOfFile) {
+                    endOfFile = channel.read(chunk) == -1;
+                }
+                chunk.flip();
+                if (!chunk.hasRemaining()) {
+                    break;
+                }
+                if (messageDigest != null) {
+                    messageDigest.update(chunk.duplicate());
+                }
+                send(writers, writer -> writer.write(chunk.duplicate()));
+            }
+        }
+
+        byte[] digest = cachedDigest;
+        if (messageDigest != null) {
+            digest = messageDigest.digest();
+            if (digestCache != null) {
+                digestCache.put(file.getPath(), digest);
+            }
+        }
+        byte[] sourceDigest = digest;
+        send(writers, writer -> writer.close(sourceDigest));
+    }
+
+    private static void send(List<Writer> writers, Task task)
+            throws InterruptedException {
+        for (Writer writer : writers) {
+            // failed writers keep taking tasks, so this can't block forever
+            writer.queue.put(task);
+        }
+    }
+
+    // expands the sources the same way the FileCopier does it
+    private static List<DirectoryInfo> expand(Source[] sources) {
+        List<DirectoryInfo> directoryInfos = new ArrayList<>();
+        for (Source source : sources) {
+            File baseDirectory = source.getBaseDirectory();
+            String basePath = baseDirectory.getPath();
+            int baseLength = basePath.endsWith(File.separator)
+                    ? basePath.length() : basePath.length() + 1;
+            DirectoryInfo directoryInfo = expand(baseLength, baseDirectory,
+                    source.getPattern(), source.isRecursive());
+            if (directoryInfo != null) {
+                directoryInfos.add(directoryInfo);
+            }
+        }
+        return directoryInfos;
+    }
+
+    private static DirectoryInfo expand(int baseLength, File directory,
+            Pattern pattern, boolean recursive) {
+        if (!directory.isDirectory() || !directory.canRead()) {
+            LOGGER.log(Level.WARNING,
+                    "can not read source directory {0}", directory);
+            return null;
+        }
+        List<File> files = new ArrayList<>();
+        long byteCount = 0;
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                String relativePath = child.getPath().substring(baseLength);
+                if (pattern.matcher(relativePath).matches()) {
+                    if (child.isDirectory()) {
+                        if (recursive) {
+                            files.add(child);
+                        }
+                    } else {
+                        files.add(child);
+                        byteCount += child.length();
+                    }
+                }
+                if (child.isDirectory() && recursive) {
+                    DirectoryInfo subDirectoryInfo = expand(
+                            baseLength, child, pattern, true);
+                    if (subDirectoryInfo != null) {
+                        files.addAll(subDirectoryInfo.getFiles());
+                        byteCount += subDirectoryInfo.getByteCount();
+                    }
+                }
+            }
+        }
+        return new DirectoryInfo(directory, files, byteCount);
+    }
+
+    private static String getKey(Source[] sources) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (Source source : sources) {
+            stringBuilder.append(source.getBaseDirectory().getPath());
+            stringBuilder.append('\0');
+            stringBuilder.append(source.getPattern().pattern());
+            stringBuilder.append('\0');
+            stringBuilder.append(source.isRecursive());
+            stringBuilder.append('\0');
+        }
+        return stringBuilder.toString();
+    }
+
+    private interface Task {
+
+        void run(Writer writer) throws IOException, NoSuchAlgorithmException;
+    }
+
+    // writes the chunks of a copy round to all destinations of a single
+    // storage device
+    private static class Writer implements Callable<Void> {
+
+        private final Participant participant;
+        private final BlockingQueue<Task> queue
+                = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        // every storage device checks its copies independently
+        private final ProcessExecutor processExecutor = new ProcessExecutor();
+        private final List<File> files = new ArrayList<>();
+        private final List<FileChannel> channels = new ArrayList<>();
+        private volatile long writtenBytes;
+        private volatile boolean failed;
+
+        Writer(Participant participant) {
+            this.participant = participant;
+        }
+
+        @Override
+        public Void call() throws InterruptedException {
+            try {
+                for (Task task = queue.take(); task != END;
+                        task = queue.take()) {
+                    if (failed) {
+                        // keep the queue empty for the reader
+                        continue;
+                    }
+                    try {
+                        task.run(this);
+                    } catch (IOException | NoSuchAlgorithmException
+                            | RuntimeException ex) {
+                        LOGGER.log(Level.WARNING, participant.storageDevice
+                                + " must copy its files separately", ex);
+                        failed = true;
+                        closeChannels();
+                    }
+                }
+            } finally {
+                closeChannels();
+            }
+            return null;
+        }
+
+        private void createDirectory(String key, File baseDirectory,
+                File directory) throws IOException {
+            for (String destination : participant.destinations.get(key)) {
+                Files.createDirectories(getDestinationFile(
+                        baseDirectory, directory, destination));
+            }
+        }
+
+        private void open(String key, File baseDirectory, File file)
+                throws IOException {
+            for (String destination : participant.destinations.get(key)) {
+                Path destinationFile = getDestinationFile(
+                        baseDirectory, file, destination);
+                Path parent = destinationFile.getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                files.add(destinationFile.toFile());
+                channels.add(FileChannel.open(destinationFile,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE));
+            }
+        }
+
+        private void write(ByteBuffer chunk) throws IOException {
+            int length = chunk.remaining();
+            for (FileChannel channel : channels) {
+                ByteBuffer buffer = chunk.duplicate();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            writtenBytes += length;
+        }
+
+        private void close(byte[] sourceDigest)
+                throws IOException, NoSuchAlgorithmException {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+            channels.clear();
+            if (sourceDigest != null) {
+                for (File file : files) {
+                    if (!MessageDigest.isEqual(sourceDigest,
+                            HashingService.digestFromDevice(file.toPath(),
+                                    CHECK_ALGORITHM, processExecutor))) {
+                        String errorMessage = file + " is corrupted";
+                        LOGGER.severe(errorMessage);
+                        throw new IOException(errorMessage);
+                    }
+                }
+            }
+            files.clear();
+        }
+
+        private void closeChannels() {
+            for (FileChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "", ex);
+                }
+            }
+            channels.clear();
+            files.clear();
+        }
+
+        // the same mapping as in the FileCopier
+        private static Path getDestinationFile(File baseDirectory,
+                File file, String destination) {
+            File destinationFile = new File(destination);
+            if (destinationFile.isDirectory()) {
+                return new File(destinationFile, file.getPath().substring(
+                        baseDirectory.getPath().length())).toPath();
+            }
+            return destinationFile.toPath();
+        }
+    }
+
+    // reports the progress of the copy rounds like a FileCopier
+    private static class Progress extends FileCopier {
+
+        private final PropertyChangeSupport propertyChangeSupport
+                = new PropertyChangeSupport(this);
+        private volatile FileCopier.State state = FileCopier.State.START;
+        private volatile long byteCount;
+        private volatile List<Writer> writers = List.of();
+        private volatile CurrentlyProcessedFile currentlyProcessedFile;
+
+        @Override
+        public void addPropertyChangeListener(String propertyName,
+                PropertyChangeListener listener) {
+            propertyChangeSupport.addPropertyChangeListener(
+                    propertyName, listener);
+        }
+
+        @Override
+        public void removePropertyChangeListener(String propertyName,
+                PropertyChangeListener listener) {
+            propertyChangeSupport.removePropertyChangeListener(
+                    propertyName, listener);
+        }
+
+        @Override
+        public long getByteCount() {
+            return byteCount;
+        }
+
+        @Override
+        public long getCopiedBytes() {
+            // the slowest storage device that is still copying
+            long copiedBytes = -1;
+            for (Writer writer : writers) {
+                if (!writer.failed && (copiedBytes == -1
+                        || writer.writtenBytes < copiedBytes)) {
+                    copiedBytes = writer.writtenBytes;
+                }
+            }
+            return Math.max(0, copiedBytes);
+        }
+
+        @Override
+        public CurrentlyProcessedFile getCurrentlyProcessedFile() {
+            return currentlyProcessedFile;
+        }
+
+        @Override
+        public void copy(boolean checkCopies, CopyJob... copyJobs) {
+            throw new UnsupportedOperationException(
+                    "the FanOutCopier copies the files");
+        }
+
+        private void start(long byteCount, List<Writer> writers) {
+            this.byteCount = byteCount;
+            this.writers = writers;
+            setState(FileCopier.State.COPYING);
+        }
+
+        private void setState(FileCopier.State newState) {
+            FileCopier.State oldState = state;
+            state = newState;
+            propertyChangeSupport.firePropertyChange(
+                    STATE_PROPERTY, oldState, newState);
+        }
+    }
+
+    private static class Participant {
+
+        private final StorageDevice storageDevice;
+        private final CopyJob[] copyJobs;
+        // maps the keys of the sources to their destinations
+        private final Map<String, List<String>> destinations
+                = new HashMap<>();
+        private volatile boolean success;
+
+        Participant(StorageDevice storageDevice, CopyJob[] copyJobs) {
+            this.storageDevice = storageDevice;
+            this.copyJobs = copyJobs;
+        }
+    }
+
+    private static class Round {
+
+        private final List<Participant> participants = new ArrayList<>();
+        private long deadline;
+        private boolean checkCopies;
+        private boolean started;
+        private boolean finished;
+
+        private boolean containsAll(Set<StorageDevice> storageDevices) {
+            for (StorageDevice storageDevice : storageDevices) {
+                if (participants.stream().noneMatch(
+                        participant -> participant.storageDevice
+                        == storageDevice)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
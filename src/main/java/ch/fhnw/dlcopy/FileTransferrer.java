@@ -8,9 +8,8 @@ import ch.fhnw.util.ProcessExecutor;
 import ch.fhnw.util.StorageDevice;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.freedesktop.dbus.exceptions.DBusException;
 
@@ -24,7 +23,6 @@ public class FileTransferrer extends Transferrer {
     private static final Logger LOGGER
             = Logger.getLogger(FileTransferrer.class.getName());
 
-    private final Installer installer;
     private final StorageDevice sourceDevice;
     private final Partition destinationPartition;
 
@@ -36,12 +34,12 @@ public class FileTransferrer extends Transferrer {
     private File overlayDir;
     private String cowPath;
     private MountInfo destinationMountInfo;
+    private TreeCopier treeCopier;
 
-    public FileTransferrer(DLCopyGUI gui, Installer installer,
+    public FileTransferrer(DLCopyGUI gui,
             StorageDevice sourceDevice, Partition destinationPartition) {
 
         super(gui);
-        this.installer = installer;
         this.sourceDevice = sourceDevice;
         this.destinationPartition = destinationPartition;
     }
@@ -52,6 +50,9 @@ public class FileTransferrer extends Transferrer {
 
         mount();
 
+        treeCopier = new TreeCopier(new ProcessExecutor());
+        gui.showInstallPersistencyCopy(treeCopier);
+
         if (transferHome) {
             transferDirectory("/home/user/");
             ProcessExecutor executor = new ProcessExecutor();
@@ -93,22 +94,15 @@ public class FileTransferrer extends Transferrer {
         destinationMountInfo = destinationPartition.mount();
     }
 
-    private void transferDirectory(String sourceDir) {
-        String destination = destinationMountInfo.getMountPath()
-                + "/rw" + sourceDir;
-        String copyScript = "#!/bin/bash\n"
-                + "mkdir -p \"" + destination + "\"\n"
-                + "cp -av \"" + cowPath + sourceDir + "\"* \""
-                + destination + "\"";
-        gui.showInstallPersistencyCopy(installer, copyScript, cowPath);
+    private void transferDirectory(String sourceDir) throws IOException {
+        treeCopier.copyContents(Paths.get(cowPath, sourceDir),
+                Paths.get(destinationMountInfo.getMountPath(), "rw", sourceDir));
     }
 
     private void unmount() throws IOException, DBusException {
-        try {
-            TimeUnit.SECONDS.sleep(5);
-        } catch (InterruptedException ex) {
-            LOGGER.log(Level.SEVERE, "", ex);
-        }
+        // let udev finish processing the events caused by the transfer
+        // (umount itself retries while the mount points are still busy)
+        ReadinessWaiter.waitForUdev("transferred files");
 
         DLCopy.umount(cowPath, gui);
 
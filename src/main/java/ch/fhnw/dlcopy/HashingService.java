@@ -0,0 +1,425 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.util.ProcessExecutor;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Computes file digests and checksum manifests (like <tt>md5sum.txt</tt>)
+ * in-process.
+ * <br>
+ * Large files are memory-mapped so that their content is hashed directly from
+ * the page cache without copying it into Java buffers. Small files are read
+ * into a reused direct buffer because mapping them costs more than reading
+ * them. The files of a directory tree are hashed in parallel on a ForkJoin
+ * pool.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class HashingService implements AutoCloseable {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(HashingService.class.getName());
+
+    // files larger than this are memory-mapped
+    private static final long MAP_THRESHOLD = 4 * DLCopy.MEGA;
+    // files are mapped in windows of this size to limit the address space
+    private static final long MAP_WINDOW = 256 * DLCopy.MEGA;
+    private static final int BUFFER_SIZE = DLCopy.MEGA;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS
+            = ThreadLocal.withInitial(
+                    () -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private final ForkJoinPool pool;
+
+    /**
+     * creates a new HashingService that uses one thread per processor
+     */
+    public HashingService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * creates a new HashingService
+     *
+     * @param parallelism the number of files that are hashed in parallel
+     */
+    public HashingService(int parallelism) {
+        pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    /**
+     * computes the digest of a file
+     *
+     * @param file the file
+     * @param algorithm the name of the digest algorithm, e.g. "MD5"
+     * @return the digest of the file
+     * @throws IOException if reading the file fails
+     * @throws NoSuchAlgorithmException if the algorithm is not available
+     */
+    public static byte[] digest(Path file, String algorithm)
+            throws IOException, NoSuchAlgorithmException {
+        MessageDigest messageDigest = MessageDigest.getInstance(algorithm);
+        try (FileChannel channel
+                = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAP_THRESHOLD) {
+                for (long position = 0; position < size;
+                        position += MAP_WINDOW) {
+                    messageDigest.update(channel.map(
+                            FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(MAP_WINDOW, size - position)));
+                }
+            } else {
+                ByteBuffer buffer = BUFFERS.get();
+                buffer.clear();
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    messageDigest.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return messageDigest.digest();
+    }
+
+    /**
+     * Computes the digest of a copied file as it is stored on its storage
+     * device. The file is flushed and dropped from the page cache first (like
+     * the FileCopier does it when checking copies), otherwise the digest
+     * would only be computed from the cached pages that were just written.
+     *
+     * @param file the copied file
+     * @param algorithm the name of the digest algorithm, e.g. "MD5"
+     * @param processExecutor the ProcessExecutor for flushing the file
+     * @return the digest of the file
+     * @throws IOException if reading the file fails
+     * @throws NoSuchAlgorithmException if the algorithm is not available
+     */
+    public static byte[] digestFromDevice(Path file, String algorithm,
+            ProcessExecutor processExecutor)
+            throws IOException, NoSuchAlgorithmException {
+        String path = file.toString();
+        processExecutor.executeProcess("sync", path);
+        int returnValue = processExecutor.executeProcess(true, true, "dd",
+                "of=" + path, "oflag=nocache", "conv=notrunc,fdatasync",
+                "count=0");
+        if (returnValue != 0) {
+            LOGGER.log(Level.WARNING,
+                    "could not drop {0} from the page cache", path);
+        }
+        return digest(file, algorithm);
+    }
+
+    /**
+     * computes the digest of a file as lowercase hex string
+     *
+     * @param file the file
+     * @param algorithm the name of the digest algorithm, e.g. "MD5"
+     * @return the digest of the file as lowercase hex string
+     * @throws IOException if reading the file fails
+     * @throws NoSuchAlgorithmException if the algorithm is not available
+     */
+    public static String hexDigest(Path file, String algorithm)
+            throws IOException, NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(digest(file, algorithm));
+    }
+
+    /**
+     * returns the relative paths of all included regular files of a
+     * directory tree (symlinks are not followed)
+     *
+     * @param root the root directory
+     * @param included selects the files by their path relative to the root
+     * directory (in manifest notation, e.g. "./live/vmlinuz")
+     * @return the sorted relative paths in manifest notation
+     * @throws IOException if walking the directory tree fails
+     */
+    public static List<String> listFiles(Path root,
+            Predicate<String> included) throws IOException {
+        try (Stream<Path> stream = Files.walk(root)) {
+            return stream
+                    .filter(path -> Files.isRegularFile(
+                    path, LinkOption.NOFOLLOW_LINKS))
+                    .map(path -> toManifestPath(root, path))
+                    .filter(included)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * hashes all regular files of a directory tree in parallel (symlinks are
+     * not followed)
+     *
+     * @param root the root directory
+     * @param algorithm the name of the digest algorithm, e.g. "MD5"
+     * @param included selects the files to hash by their path relative to
+     * the root directory (in manifest notation, e.g. "./live/vmlinuz")
+     * @return the sorted map of relative paths (in manifest notation) to
+     * their hex digests
+     * @throws IOException if reading a file fails
+     * @throws NoSuchAlgorithmException if the algorithm is not available
+     */
+    public SortedMap<String, String> hashTree(Path root, String algorithm,
+            Predicate<String> included)
+            throws IOException, NoSuchAlgorithmException {
+        return hash(root, listFiles(root, included), algorithm);
+    }
+
+    /**
+     * hashes the given files of a directory tree in parallel
+     *
+     * @param root the root directory
+     * @param paths the paths of the files relative to the root directory
+     * (in manifest notation, e.g. "./live/vmlinuz")
+     * @param algorithm the name of the digest algorithm, e.g. "MD5"
+     * @return the sorted map of relative paths to their hex digests
+     * @throws IOException if reading a file fails
+     * @throws NoSuchAlgorithmException if the algorithm is not available
+     */
+    public SortedMap<String, String> hash(Path root, Collection<String> paths,
+            String algorithm) throws IOException, NoSuchAlgorithmException {
+
+        // fail early if the algorithm is not available
+        MessageDigest.getInstance(algorithm);
+
+        long start = System.currentTimeMillis();
+        List<Future<String>> futures = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            futures.add(submit(root, path, algorithm));
+        }
+        SortedMap<String, String> digests = new TreeMap<>();
+        try {
+            int i = 0;
+            for (String path : paths) {
+                digests.put(path, await(futures.get(i++)));
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(false));
+        }
+        LOGGER.log(Level.INFO, "hashed {0} files in {1} ms",
+                new Object[]{digests.size(),
+                    System.currentTimeMillis() - start});
+        return digests;
+    }
+
+    /**
+     * writes a checksum manifest in the format of <tt>md5sum</tt>
+     * <br>
+     * The listed files don't have to be located in a common directory tree,
+     * e.g. when an ISO is assembled from several sources. Files with a known
+     * digest are not read again. All other files are
+     * hashed in parallel and every manifest line is written as soon as the
+     * digests of all preceding files are available, so that the manifest is
+     * never held in memory as a whole.
+     *
+     * @param manifest the manifest file
+     * @param header the header of the manifest or <tt>null</tt>
+     * @param files maps the paths listed in the manifest (in manifest
+     * notation, e.g. "./live/vmlinuz") to the files to hash
+     * @param algorithm the name of the digest algorithm, e.g. "MD5"
+     * @param knownDigests maps listed paths of files that are known to be
+     * unchanged to their hex digests
+     * @return the number of files that had to be hashed
+     * @throws IOException if reading a file or writing the manifest fails
+     * @throws NoSuchAlgorithmException if the algorithm is not available
+     */
+    public int writeManifest(Path manifest, String header,
+            SortedMap<String, Path> files, String algorithm,
+            Map<String, String> knownDigests)
+            throws IOException, NoSuchAlgorithmException {
+
+        // fail early if the algorithm is not available
+        MessageDigest.getInstance(algorithm);
+
+        long start = System.currentTimeMillis();
+        List<String> paths = new ArrayList<>(files.keySet());
+        List<Future<String>> futures = new ArrayList<>(paths.size());
+        int hashedFiles = 0;
+        for (String path : paths) {
+            String knownDigest = knownDigests.get(path);
+            if (knownDigest == null) {
+                Path file = files.get(path);
+                futures.add(pool.submit(() -> hexDigest(file, algorithm)));
+                hashedFiles++;
+            } else {
+                futures.add(CompletableFuture.completedFuture(knownDigest));
+            }
+        }
+        try (Writer writer = Files.newBufferedWriter(
+                manifest, StandardCharsets.UTF_8)) {
+            if (header != null) {
+                writer.write(header);
+                writer.write('\n');
+            }
+            for (int i = 0, size = paths.size(); i < size; i++) {
+                writer.write(formatManifestLine(
+                        await(futures.get(i)), paths.get(i)));
+                writer.write('\n');
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(false));
+        }
+        LOGGER.log(Level.INFO, "wrote manifest {0} with {1} files ({2} "
+                + "hashed, {3} reused) in {4} ms", new Object[]{
+                    manifest, paths.size(), hashedFiles,
+                    paths.size() - hashedFiles,
+                    System.currentTimeMillis() - start});
+        return hashedFiles;
+    }
+
+    /**
+     * writes a checksum manifest file in the format of <tt>md5sum</tt>
+     *
+     * @param manifest the manifest file
+     * @param header the header of the manifest or <tt>null</tt>
+     * @param digests the map of relative paths to hex digests
+     * @throws IOException if writing fails
+     */
+    public static void writeManifest(Path manifest, String header,
+            Map<String, String> digests) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(
+                manifest, StandardCharsets.UTF_8)) {
+            if (header != null) {
+                writer.write(header);
+                writer.write('\n');
+            }
+            writeManifest(writer, digests);
+        }
+    }
+
+    /**
+     * writes a checksum manifest in the format of <tt>md5sum</tt>
+     *
+     * @param writer the writer to use
+     * @param digests the map of relative paths to hex digests
+     * @throws IOException if writing fails
+     */
+    public static void writeManifest(Writer writer,
+            Map<String, String> digests) throws IOException {
+        for (Map.Entry<String, String> entry : digests.entrySet()) {
+            writer.write(formatManifestLine(entry.getValue(), entry.getKey()));
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * formats a manifest line in the format of <tt>md5sum</tt>
+     *
+     * @param hexDigest the hex digest of the file
+     * @param path the path of the file
+     * @return the manifest line (without line separator)
+     */
+    public static String formatManifestLine(String hexDigest, String path) {
+        if (path.indexOf('\\') == -1 && path.indexOf('\n') == -1) {
+            return hexDigest + "  " + path;
+        }
+        // md5sum marks escaped lines with a leading backslash
+        return '\\' + hexDigest + "  "
+                + path.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    /**
+     * parses a manifest line in the format of <tt>md5sum</tt>
+     *
+     * @param line the line to parse
+     * @return an array with the hex digest and the path or <tt>null</tt>, if
+     * the line is not a manifest entry (e.g. a comment)
+     */
+    public static String[] parseManifestLine(String line) {
+        boolean escaped = line.startsWith("\\");
+        if (escaped) {
+            line = line.substring(1);
+        }
+        int separator = line.indexOf(' ');
+        if (separator == -1 || line.length() < separator + 2) {
+            return null;
+        }
+        String hexDigest = line.substring(0, separator);
+        if (hexDigest.isEmpty()
+                || !hexDigest.chars().allMatch(HexFormat::isHexDigit)) {
+            return null;
+        }
+        // "  " for text mode, " *" for binary mode
+        String path = line.substring(separator + 2);
+        return new String[]{hexDigest, escaped ? unescape(path) : path};
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private Future<String> submit(Path root, String path,
+            String algorithm) {
+        return pool.submit(() -> hexDigest(root.resolve(path), algorithm));
+    }
+
+    private static String await(Future<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("hashing was interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException iOException) {
+                throw iOException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static String unescape(String path) {
+        // a single pass from left to right, otherwise an escaped backslash
+        // followed by an "n" would become a newline
+        StringBuilder stringBuilder = new StringBuilder(path.length());
+        for (int i = 0, length = path.length(); i < length; i++) {
+            char c = path.charAt(i);
+            if (c == '\\' && i + 1 < length) {
+                char next = path.charAt(i + 1);
+                if (next == 'n') {
+                    stringBuilder.append('\n');
+                    i++;
+                    continue;
+                } else if (next == '\\') {
+                    stringBuilder.append('\\');
+                    i++;
+                    continue;
+                }
+            }
+            stringBuilder.append(c);
+        }
+        return stringBuilder.toString();
+    }
+
+    private static String toManifestPath(Path root, Path path) {
+        return "./" + root.relativize(path).toString();
+    }
+}
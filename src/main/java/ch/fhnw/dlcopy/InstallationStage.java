@@ -0,0 +1,24 @@
+package ch.fhnw.dlcopy;
+
+/**
+ * the stages of an installation on a single storage device
+ */
+public enum InstallationStage {
+    /**
+     * the storage device is partitioned and formatted
+     */
+    PREPARING,
+    /**
+     * the storage device is prepared and waits until it may copy files
+     */
+    WAITING,
+    /**
+     * the files are copied to the storage device
+     */
+    COPYING,
+    /**
+     * the storage device is cloned from another, already installed storage
+     * device
+     */
+    CLONING
+}
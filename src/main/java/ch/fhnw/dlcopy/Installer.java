@@ -2,13 +2,18 @@ package ch.fhnw.dlcopy;
 
 import ch.fhnw.dlcopy.gui.DLCopyGUI;
 import ch.fhnw.filecopier.FileCopier;
-import ch.fhnw.util.ProcessExecutor;
 import ch.fhnw.util.StorageDevice;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
 import java.io.IOException;
-import java.util.HashMap;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -19,8 +24,7 @@ import org.freedesktop.dbus.exceptions.DBusException;
  *
  * @author Ronny Standtke <ronny.standtke@gmx.net>
  */
-public class Installer extends InstallerOrUpgrader
-        implements PropertyChangeListener {
+public class Installer extends InstallerOrUpgrader {
 
     private static final Logger LOGGER
             = Logger.getLogger(Installer.class.getName());
@@ -28,7 +32,8 @@ public class Installer extends InstallerOrUpgrader
     private final int exchangePartitionSize;
     private final boolean copyExchangePartition;
     private final String autoNumberPattern;
-    private int autoNumber;
+    private final int autoNumberStart;
+    private int nextAutoNumber;
     private final int autoNumberIncrement;
     private final int autoNumberMinDigits;
     private final boolean personalDataPartitionEncryption;
@@ -45,6 +50,13 @@ public class Installer extends InstallerOrUpgrader
     private final boolean transferPrinter;
     private final boolean transferFirewall;
     private final boolean checkCopies;
+    private final boolean manifestVerification;
+    private final int parallelInstallations;
+    private final boolean pipelinedInstallations;
+    private final boolean clonedInstallations;
+    private final boolean discard;
+    private volatile boolean copying;
+    private volatile FanOutCopier fanOutCopier;
 
     /**
      * creates a new Installer
@@ -79,6 +91,9 @@ public class Installer extends InstallerOrUpgrader
      * @param dataPartitionMode the mode of the data partition to set in the
      * bootloaders config
      * @param checkCopies if copies should be checked for errors
+     * @param manifestVerification if copies of the system files should be
+     * checked with the checksum manifest of the source medium instead of
+     * reading the source files again
      * @param transferDevice the device to transfer data from or null, if no
      * data should be transferred
      * @param transferExchange if the exchange partition should be transferred
@@ -86,11 +101,21 @@ public class Installer extends InstallerOrUpgrader
      * @param transferNetwork if the network settings should be transferred
      * @param transferPrinter if the printer settings should be transferred
      * @param transferFirewall if the firewall settings should be transferred
+     * @param parallelInstallations the maximum number of storage devices to
+     * install in parallel
+     * @param pipelinedInstallations if the next storage device should be
+     * prepared (partitioned and formatted) while copying files to the current
+     * storage device
+     * @param clonedInstallations if the first storage device should be
+     * installed normally and then cloned to all other storage devices
+     * @param discard if all blocks of the storage devices should be discarded
+     * before creating the partitions (only the Swing GUI supports this with its
+     * command line option "--discard")
      * @param lock the lock to aquire before executing in background
      */
     public Installer(SystemSource source, List<StorageDevice> deviceList,
             String exchangePartitionLabel, String exchangePartitionFileSystem,
-            String dataPartitionFileSystem, HashMap<String, byte[]> digestCache,
+            String dataPartitionFileSystem, DigestCache digestCache,
             DLCopyGUI dlCopyGUI, int exchangePartitionSize,
             boolean copyExchangePartition, String autoNumberPattern,
             int autoNumberStart, int autoNumberIncrement,
@@ -102,7 +127,10 @@ public class Installer extends InstallerOrUpgrader
             DataPartitionMode dataPartitionMode, StorageDevice transferDevice,
             boolean transferExchange, boolean transferHome,
             boolean transferNetwork, boolean transferPrinter,
-            boolean transferFirewall, boolean checkCopies, Lock lock) {
+            boolean transferFirewall, boolean checkCopies,
+            boolean manifestVerification, int parallelInstallations,
+            boolean pipelinedInstallations, boolean clonedInstallations,
+            boolean discard, Lock lock) {
 
         super(source, deviceList, exchangePartitionLabel,
                 exchangePartitionFileSystem, dataPartitionFileSystem,
@@ -111,7 +139,8 @@ public class Installer extends InstallerOrUpgrader
         this.exchangePartitionSize = exchangePartitionSize;
         this.copyExchangePartition = copyExchangePartition;
         this.autoNumberPattern = autoNumberPattern;
-        this.autoNumber = autoNumberStart;
+        this.autoNumberStart = autoNumberStart;
+        this.nextAutoNumber = autoNumberStart;
         this.autoNumberIncrement = autoNumberIncrement;
         this.autoNumberMinDigits = autoNumberMinDigits;
         this.personalDataPartitionEncryption = personalDataPartitionEncryption;
@@ -122,6 +151,11 @@ public class Installer extends InstallerOrUpgrader
         this.copyDataPartition = copyDataPartition;
         this.dataPartitionMode = dataPartitionMode;
         this.checkCopies = checkCopies;
+        this.manifestVerification = manifestVerification;
+        this.parallelInstallations = parallelInstallations;
+        this.pipelinedInstallations = pipelinedInstallations;
+        this.clonedInstallations = clonedInstallations;
+        this.discard = discard;
         this.transferDevice = transferDevice;
         this.transferExchange = transferExchange;
         this.transferHome = transferHome;
@@ -139,49 +173,23 @@ public class Installer extends InstallerOrUpgrader
 
             dlCopyGUI.showInstallProgress();
 
-            String currentExchangePartitionLabel = exchangePartitionLabel;
-            for (StorageDevice storageDevice : deviceList) {
+            // The exchange partition labels are determined before starting
+            // so that the auto numbering of every device stays the same, no
+            // matter in which order parallel installations start or finish.
+            List<String> exchangePartitionLabels
+                    = getExchangePartitionLabels();
 
-                // update overall progress message
-                dlCopyGUI.installingDeviceStarted(storageDevice);
-
-                // auto numbering
-                if (!autoNumberPattern.isEmpty()) {
-                    String autoNumberString = String.valueOf(autoNumber);
-                    int nrOfPrefixZeros
-                            = autoNumberMinDigits - autoNumberString.length();
-                    for (int i = 0; i < nrOfPrefixZeros; i++) {
-                        autoNumberString = "0" + autoNumberString;
-                    }
-                    currentExchangePartitionLabel
-                            = exchangePartitionLabel.replace(
-                                    autoNumberPattern, autoNumberString);
-                    autoNumber += autoNumberIncrement;
-                }
-
-                String errorMessage = null;
-                try {
-                    DLCopy.copyToStorageDevice(source, fileCopier,
-                            storageDevice, currentExchangePartitionLabel,
-                            this, personalDataPartitionEncryption,
-                            personalEncryptionPassword,
-                            secondaryDataPartitionEncryption,
-                            secondaryEncryptionPassword,
-                            randomFillDataPartition, checkCopies, dlCopyGUI);
-                } catch (InterruptedException | IOException
-                        | DBusException exception) {
-                    LOGGER.log(Level.WARNING, "", exception);
-                    errorMessage = exception.getMessage();
-                }
-
-                if (transferDevice != null) {
-                    DLCopy.transfer(transferDevice, storageDevice,
-                            transferExchange, transferHome, transferNetwork,
-                            transferPrinter, transferFirewall, checkCopies,
-                            this, dlCopyGUI);
+            if (clonedInstallations && (deviceListSize > 1)) {
+                installCloned(exchangePartitionLabels);
+            } else if ((parallelInstallations > 1) && (deviceListSize > 1)) {
+                installInParallel(exchangePartitionLabels);
+            } else if (pipelinedInstallations && (deviceListSize > 1)) {
+                installPipelined(exchangePartitionLabels);
+            } else {
+                for (int i = 0; i < deviceListSize; i++) {
+                    installStorageDevice(i, exchangePartitionLabels.get(i),
+                            fileCopier);
                 }
-
-                dlCopyGUI.installingDeviceFinished(errorMessage, autoNumber);
             }
 
             return null;
@@ -197,22 +205,28 @@ public class Installer extends InstallerOrUpgrader
             inhibit.delete();
         }
 
+        digestCache.logStatistics();
+
         dlCopyGUI.installingListFinished();
     }
 
     @Override
-    public void propertyChange(PropertyChangeEvent evt) {
-        if (ProcessExecutor.LINE.equals(evt.getPropertyName())) {
-            // store current cp progress line
-            // (will be pattern matched later when needed)
-            String line = (String) evt.getNewValue();
-            dlCopyGUI.setInstallCopyLine(line);
+    public void showCreatingFileSystems() {
+        // When pipelining, the next storage device is prepared while copying
+        // files to the current one. We don't want to hide the file copy
+        // progress in this case.
+        if (!copying) {
+            dlCopyGUI.showInstallCreatingFileSystems();
         }
     }
 
     @Override
-    public void showCreatingFileSystems() {
-        dlCopyGUI.showInstallCreatingFileSystems();
+    public void showOverwritingDataPartition(long done, long size) {
+        // see showCreatingFileSystems()
+        if (!copying) {
+            dlCopyGUI.showInstallOverwritingDataPartitionWithRandomData(
+                    done, size);
+        }
     }
 
     @Override
@@ -236,6 +250,83 @@ public class Installer extends InstallerOrUpgrader
                 source, storageDevice, exchangePartitionSize);
     }
 
+    /**
+     * returns the maximum number of storage devices that are installed in
+     * parallel
+     *
+     * @return the maximum number of storage devices that are installed in
+     * parallel
+     */
+    public int getParallelInstallations() {
+        return parallelInstallations;
+    }
+
+    /**
+     * returns the global digest cache for speeding up repeated file checks
+     *
+     * @return the global digest cache for speeding up repeated file checks
+     */
+    public DigestCache getDigestCache() {
+        return digestCache;
+    }
+
+    /**
+     * returns the FanOutCopier that copies the source files to all storage
+     * devices that are installed in parallel or <tt>null</tt>, if the storage
+     * devices are not installed in parallel
+     *
+     * @return the FanOutCopier that copies the source files to all storage
+     * devices that are installed in parallel or <tt>null</tt>, if the storage
+     * devices are not installed in parallel
+     */
+    public FanOutCopier getFanOutCopier() {
+        return fanOutCopier;
+    }
+
+    /**
+     * returns true if the next storage device is prepared while copying files
+     * to the current storage device, false otherwise
+     *
+     * @return true if the next storage device is prepared while copying files
+     * to the current storage device, false otherwise
+     */
+    public boolean isPipelinedInstallations() {
+        return pipelinedInstallations;
+    }
+
+    /**
+     * returns true if the first storage device is cloned to all other storage
+     * devices, false otherwise
+     *
+     * @return true if the first storage device is cloned to all other storage
+     * devices, false otherwise
+     */
+    public boolean isClonedInstallations() {
+        return clonedInstallations;
+    }
+
+    /**
+     * returns true if all blocks of the storage devices are discarded before
+     * creating the partitions, false otherwise
+     *
+     * @return true if all blocks of the storage devices are discarded before
+     * creating the partitions, false otherwise
+     */
+    public boolean isDiscard() {
+        return discard;
+    }
+
+    /**
+     * returns true if copies of the system files are checked with the
+     * checksum manifest of the source medium, false otherwise
+     *
+     * @return true if copies of the system files are checked with the
+     * checksum manifest of the source medium, false otherwise
+     */
+    public boolean isManifestVerification() {
+        return manifestVerification;
+    }
+
     /**
      * returns true if the user selected to copy the exchange partition, false
      * otherwise
@@ -266,4 +357,319 @@ public class Installer extends InstallerOrUpgrader
     public DataPartitionMode getDataPartitionMode() {
         return dataPartitionMode;
     }
+
+    private List<String> getExchangePartitionLabels() {
+        List<String> exchangePartitionLabels = new ArrayList<>();
+        for (int i = 0; i < deviceListSize; i++) {
+            if (autoNumberPattern.isEmpty()) {
+                exchangePartitionLabels.add(exchangePartitionLabel);
+            } else {
+                String autoNumberString = String.valueOf(
+                        autoNumberStart + i * autoNumberIncrement);
+                int nrOfPrefixZeros
+                        = autoNumberMinDigits - autoNumberString.length();
+                for (int j = 0; j < nrOfPrefixZeros; j++) {
+                    autoNumberString = "0" + autoNumberString;
+                }
+                exchangePartitionLabels.add(exchangePartitionLabel.replace(
+                        autoNumberPattern, autoNumberString));
+            }
+        }
+        return exchangePartitionLabels;
+    }
+
+    private void installInParallel(List<String> exchangePartitionLabels)
+            throws Exception {
+
+        int threads = Math.min(parallelInstallations, deviceListSize);
+        LOGGER.log(Level.INFO, "installing {0} storage devices with {1} "
+                + "parallel installations", new Object[]{
+                    deviceListSize, threads});
+
+        // the source partitions must stay mounted until all parallel
+        // installations are finished
+        source.retainTmpPartitions();
+        // all parallel installations copy the source files together
+        fanOutCopier = new FanOutCopier(digestCache.asHashMap());
+        ExecutorService executorService
+                = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < deviceListSize; i++) {
+                int index = i;
+                String label = exchangePartitionLabels.get(i);
+                StorageDevice storageDevice = deviceList.get(i);
+                if (i < threads) {
+                    // The first installations start right away and must not
+                    // begin copying without the others.
+                    fanOutCopier.register(storageDevice);
+                }
+                futures.add(executorService.submit(() -> {
+                    if (index >= threads) {
+                        // this installation had to wait for a free thread
+                        fanOutCopier.register(storageDevice);
+                    }
+                    try {
+                        // Every parallel installation needs its own
+                        // FileCopier for falling back to separate copies,
+                        // only the digest cache is shared.
+                        installStorageDevice(index, label,
+                                new FileCopier(digestCache.asHashMap()));
+                    } finally {
+                        // the installation might have failed before copying
+                        fanOutCopier.deregister(storageDevice);
+                    }
+                    return null;
+                }));
+            }
+            executorService.shutdown();
+            for (Future<Void> future : futures) {
+                waitFor(future);
+            }
+        } finally {
+            executorService.shutdownNow();
+            fanOutCopier = null;
+            source.releaseTmpPartitions();
+        }
+    }
+
+    private void installPipelined(List<String> exchangePartitionLabels)
+            throws Exception {
+
+        LOGGER.log(Level.INFO, "installing {0} storage devices pipelined",
+                deviceListSize);
+
+        // The queue connects the prepare stage (partitioning and formatting)
+        // with the copy stage. It has no capacity: the prepare stage blocks
+        // with the prepared storage device until the copy stage takes it.
+        // Therefore only one storage device is prepared in advance while
+        // copying files to the current one.
+        BlockingQueue<PreparedInstallation> preparedInstallations
+                = new SynchronousQueue<>();
+
+        // the source partitions must stay mounted until all installations are
+        // finished
+        source.retainTmpPartitions();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<Void> preparation = executorService.submit(() -> {
+                for (int i = 0; i < deviceListSize; i++) {
+                    PreparedInstallation preparedInstallation
+                            = prepareStorageDevice(
+                                    i, exchangePartitionLabels.get(i));
+                    if (preparedInstallation.errorMessage == null) {
+                        dlCopyGUI.installingDeviceStageChanged(
+                                deviceList.get(i), InstallationStage.WAITING);
+                    }
+                    preparedInstallations.put(preparedInstallation);
+                }
+                return null;
+            });
+            executorService.shutdown();
+
+            for (int i = 0; i < deviceListSize; i++) {
+                PreparedInstallation preparedInstallation = null;
+                while (preparedInstallation == null) {
+                    preparedInstallation = preparedInstallations.poll(
+                            1, TimeUnit.SECONDS);
+                    if ((preparedInstallation == null)
+                            && preparation.isDone()) {
+                        preparedInstallation = preparedInstallations.poll();
+                        if (preparedInstallation == null) {
+                            // the prepare stage ended unexpectedly
+                            waitFor(preparation);
+                            throw new IllegalStateException(
+                                    "prepare stage ended prematurely");
+                        }
+                    }
+                }
+                copying = true;
+                try {
+                    finishStorageDevice(preparedInstallation, fileCopier);
+                } finally {
+                    copying = false;
+                }
+            }
+            waitFor(preparation);
+        } finally {
+            executorService.shutdownNow();
+            source.releaseTmpPartitions();
+        }
+    }
+
+    private void installCloned(List<String> exchangePartitionLabels)
+            throws Exception {
+
+        LOGGER.log(Level.INFO, "installing {0} storage devices by cloning",
+                deviceListSize);
+
+        // install the golden storage device the normal way
+        PreparedInstallation goldenInstallation
+                = prepareStorageDevice(0, exchangePartitionLabels.get(0));
+        finishStorageDevice(goldenInstallation, fileCopier);
+
+        // Encrypted data partitions must not be cloned, otherwise all clones
+        // would share the same LUKS master key.
+        StorageDeviceCloner cloner = null;
+        if ((goldenInstallation.errorMessage == null)
+                && !personalDataPartitionEncryption) {
+            cloner = new StorageDeviceCloner(source, deviceList.get(0),
+                    goldenInstallation.preparedStorageDevice,
+                    getExchangePartitionFileSystem(),
+                    getDataPartitionFileSystem(), discard);
+        } else {
+            LOGGER.info("can't clone golden storage device, "
+                    + "falling back to normal installations");
+        }
+
+        for (int i = 1; i < deviceListSize; i++) {
+            String label = exchangePartitionLabels.get(i);
+            if ((cloner != null) && cloner.canClone(deviceList.get(i))) {
+                cloneStorageDevice(i, label, cloner);
+            } else {
+                installStorageDevice(i, label, fileCopier);
+            }
+        }
+    }
+
+    private void cloneStorageDevice(int index,
+            String currentExchangePartitionLabel, StorageDeviceCloner cloner) {
+
+        StorageDevice storageDevice = deviceList.get(index);
+
+        // update overall progress message
+        dlCopyGUI.installingDeviceStarted(storageDevice);
+        dlCopyGUI.installingDeviceStageChanged(
+                storageDevice, InstallationStage.CLONING);
+        dlCopyGUI.showInstallCloning();
+
+        String errorMessage = null;
+        try {
+            cloner.clone(currentExchangePartitionLabel,
+                    new ExecutionContext(dlCopyGUI, storageDevice));
+        } catch (InterruptedException | IOException
+                | DBusException exception) {
+            LOGGER.log(Level.WARNING, "", exception);
+            errorMessage = exception.getMessage();
+        }
+
+        transfer(storageDevice);
+
+        dlCopyGUI.installingDeviceFinished(storageDevice, errorMessage,
+                getNextAutoNumber(index));
+    }
+
+    private void installStorageDevice(int index,
+            String currentExchangePartitionLabel, FileCopier fileCopier)
+            throws IOException, DBusException, NoSuchAlgorithmException {
+        finishStorageDevice(prepareStorageDevice(
+                index, currentExchangePartitionLabel), fileCopier);
+    }
+
+    private PreparedInstallation prepareStorageDevice(int index,
+            String currentExchangePartitionLabel) {
+
+        StorageDevice storageDevice = deviceList.get(index);
+
+        // update overall progress message
+        dlCopyGUI.installingDeviceStarted(storageDevice);
+        dlCopyGUI.installingDeviceStageChanged(
+                storageDevice, InstallationStage.PREPARING);
+
+        PreparedInstallation preparedInstallation = new PreparedInstallation(
+                index, new ExecutionContext(dlCopyGUI, storageDevice));
+        try {
+            preparedInstallation.preparedStorageDevice
+                    = DLCopy.prepareStorageDevice(source,
+                            currentExchangePartitionLabel, this,
+                            personalDataPartitionEncryption,
+                            personalEncryptionPassword,
+                            secondaryDataPartitionEncryption,
+                            secondaryEncryptionPassword,
+                            randomFillDataPartition,
+                            preparedInstallation.context);
+        } catch (InterruptedException | IOException
+                | DBusException exception) {
+            LOGGER.log(Level.WARNING, "", exception);
+            preparedInstallation.errorMessage = exception.getMessage();
+        }
+        return preparedInstallation;
+    }
+
+    private void finishStorageDevice(PreparedInstallation preparedInstallation,
+            FileCopier fileCopier)
+            throws IOException, DBusException, NoSuchAlgorithmException {
+
+        StorageDevice storageDevice
+                = preparedInstallation.context.getStorageDevice();
+
+        if (preparedInstallation.errorMessage == null) {
+            dlCopyGUI.installingDeviceStageChanged(
+                    storageDevice, InstallationStage.COPYING);
+            try {
+                DLCopy.finishStorageDevice(source, fileCopier,
+                        preparedInstallation.preparedStorageDevice, this,
+                        checkCopies, preparedInstallation.context);
+            } catch (InterruptedException | IOException
+                    | DBusException exception) {
+                LOGGER.log(Level.WARNING, "", exception);
+                preparedInstallation.errorMessage = exception.getMessage();
+            }
+        }
+
+        transfer(storageDevice);
+
+        dlCopyGUI.installingDeviceFinished(storageDevice,
+                preparedInstallation.errorMessage,
+                getNextAutoNumber(preparedInstallation.index));
+    }
+
+    private void transfer(StorageDevice storageDevice)
+            throws IOException, DBusException, NoSuchAlgorithmException {
+        if (transferDevice != null) {
+            // the transfer device can't be mounted and unmounted by several
+            // parallel installations at the same time
+            synchronized (transferDevice) {
+                DLCopy.transfer(transferDevice, storageDevice,
+                        transferExchange, transferHome, transferNetwork,
+                        transferPrinter, transferFirewall, checkCopies,
+                        this, dlCopyGUI);
+            }
+        }
+    }
+
+    private static void waitFor(Future<Void> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw ex;
+        }
+    }
+
+    private synchronized int getNextAutoNumber(int index) {
+        if (!autoNumberPattern.isEmpty()) {
+            // Parallel installations may finish in any order. The next auto
+            // numbering start value must never go backwards.
+            nextAutoNumber = Math.max(nextAutoNumber,
+                    autoNumberStart + (index + 1) * autoNumberIncrement);
+        }
+        return nextAutoNumber;
+    }
+
+    private static class PreparedInstallation {
+
+        private final int index;
+        private final ExecutionContext context;
+        private PreparedStorageDevice preparedStorageDevice;
+        private String errorMessage;
+
+        PreparedInstallation(int index, ExecutionContext context) {
+            this.index = index;
+            this.context = context;
+        }
+    }
 }
@@ -3,7 +3,6 @@ package ch.fhnw.dlcopy;
 import ch.fhnw.dlcopy.gui.DLCopyGUI;
 import ch.fhnw.filecopier.FileCopier;
 import ch.fhnw.util.StorageDevice;
-import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.locks.Lock;
 import javax.swing.SwingWorker;
@@ -36,6 +35,11 @@ public abstract class InstallerOrUpgrader
      */
     protected final DLCopyGUI dlCopyGUI;
 
+    /**
+     * the global digest cache for speeding up repeated file checks
+     */
+    protected final DigestCache digestCache;
+
     /**
      * the FileCopier to use for copying files
      */
@@ -76,7 +80,7 @@ public abstract class InstallerOrUpgrader
     public InstallerOrUpgrader(SystemSource source,
             List<StorageDevice> deviceList, String exchangePartitionLabel,
             String exhangePartitionFileSystem, String dataPartitionFileSystem,
-            HashMap<String, byte[]> digestCache, DLCopyGUI dlCopyGUI,
+            DigestCache digestCache, DLCopyGUI dlCopyGUI,
             Lock lock) {
 
         this.source = source;
@@ -84,7 +88,8 @@ public abstract class InstallerOrUpgrader
         this.exchangePartitionLabel = exchangePartitionLabel;
         this.exchangePartitionFileSystem = exhangePartitionFileSystem;
         this.dataPartitionFileSystem = dataPartitionFileSystem;
-        this.fileCopier = new FileCopier(digestCache);
+        this.digestCache = digestCache;
+        this.fileCopier = new FileCopier(digestCache.asHashMap());
         this.dlCopyGUI = dlCopyGUI;
         this.lock = lock;
         deviceListSize = deviceList.size();
@@ -104,6 +109,16 @@ public abstract class InstallerOrUpgrader
      */
     public abstract void showCreatingFileSystems();
 
+    /**
+     * shows the progress of overwriting the data partition with random data
+     *
+     * @param done the number of bytes already overwritten
+     * @param size the size of the data partition (in byte)
+     */
+    public void showOverwritingDataPartition(long done, long size) {
+        dlCopyGUI.showInstallOverwritingDataPartitionWithRandomData(done, size);
+    }
+
     /**
      * shows that files are being copied
      *
@@ -14,19 +14,35 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.UserPrincipal;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import org.freedesktop.dbus.exceptions.DBusException;
 
 /**
@@ -52,6 +68,14 @@ public class IsoCreator implements PropertyChangeListener {
     private static final Pattern MKSQUASHFS_PATTERN
             = Pattern.compile("\\[.* (.*)/(.*) .*");
 
+    // the squashfs files of legacy systems, they are never copied or grafted
+    private static final Pattern SQUASHFS_PATTERN
+            = Pattern.compile("filesystem.*\\.squashfs");
+
+    // the file that defines the order of the squashfs layers for live-boot
+    // (one file name per line, the last file is the topmost layer)
+    private static final String MODULE_FILE = "filesystem.module";
+
     private final DLCopyGUI dlCopyGUI;
     private final SystemSource systemSource;
     private final boolean onlyBootMedium;
@@ -60,6 +84,10 @@ public class IsoCreator implements PropertyChangeListener {
     private final boolean showNotUsedDialog;
     private final boolean autoStartInstaller;
     private final String isoLabel;
+    private final boolean graftPoints;
+    private final CompressionProfile compressionProfile;
+    private final boolean compressionCalibration;
+    private final boolean layeredExport;
 
     private enum Step {
         MKSQUASHFS, GENISOIMAGE
@@ -67,6 +95,7 @@ public class IsoCreator implements PropertyChangeListener {
     private Step step;
     private String isoPath;
     private LogindInhibit inhibit = null;
+    private CompressionCalibration.Estimate compressionEstimate;
 
     /**
      * creates a new ISOCreator
@@ -81,12 +110,23 @@ public class IsoCreator implements PropertyChangeListener {
      * @param autoStartInstaller if the installer should start automatically if
      * no datapartition is in use
      * @param isoLabel the label to use for the final ISO
+     * @param graftPoints if the unchanged files of the source medium should
+     * be grafted into the ISO instead of copying them to a temporary build
+     * directory first
+     * @param compressionProfile the compression profile for the squashfs file
+     * @param compressionCalibration if the size and duration of compressing
+     * the squashfs file should be estimated before compressing
+     * @param layeredExport if the squashfs files of the system should be
+     * copied verbatim and only the data partition should be compressed into
+     * an additional squashfs layer
      */
     public IsoCreator(DLCopyGUI dlCopyGUI, SystemSource systemSource,
             boolean onlyBootMedium, String tmpDirectory,
             DataPartitionMode dataPartitionMode,
             boolean showNotUsedDialog, boolean autoStartInstaller,
-            String isoLabel) {
+            String isoLabel, boolean graftPoints,
+            CompressionProfile compressionProfile,
+            boolean compressionCalibration, boolean layeredExport) {
         
         this.dlCopyGUI = dlCopyGUI;
         this.systemSource = systemSource;
@@ -96,6 +136,10 @@ public class IsoCreator implements PropertyChangeListener {
         this.showNotUsedDialog = showNotUsedDialog;
         this.autoStartInstaller = autoStartInstaller;
         this.isoLabel = isoLabel;
+        this.graftPoints = graftPoints;
+        this.compressionProfile = compressionProfile;
+        this.compressionCalibration = compressionCalibration;
+        this.layeredExport = layeredExport;
     }
     
     /**
@@ -124,17 +168,48 @@ public class IsoCreator implements PropertyChangeListener {
             }
 
             // copy boot files
+            Path targetPath = Paths.get(targetDirectory);
+            Map<String, SourceDigest> sourceDigests = new HashMap<>();
+            // maps the paths (in manifest notation) of unchanged files to
+            // their location on the source medium (only with graft points)
+            SortedMap<String, Path> graftedFiles = new TreeMap<>();
             if (systemSource.hasEfiPartition()) {
                 // system with a separate boot partition
-                CopyJob bootCopyJob = new CopyJob(
-                        new Source[]{
-                            systemSource.getEfiCopySource(),
-                            systemSource.getSystemCopySourceBoot()
-                        },
-                        new String[]{targetDirectory});
-                FileCopier fileCopier = new FileCopier();
-                fileCopier.copy(bootCopyJob);
-                systemSource.unmountTmpPartitions();
+                Source efiSource = systemSource.getEfiCopySource();
+                Source bootSource = systemSource.getSystemCopySourceBoot();
+                if (graftPoints) {
+                    // the source partitions must stay mounted until xorriso
+                    // has finished
+                    addGraftedFiles(efiSource.getBaseDirectory().toPath(),
+                            efiSource.getPattern().asMatchPredicate(),
+                            graftedFiles, sourceDigests);
+                    addGraftedFiles(bootSource.getBaseDirectory().toPath(),
+                            bootSource.getPattern().asMatchPredicate(),
+                            graftedFiles, sourceDigests);
+                    stageChangedFiles(graftedFiles, targetPath);
+                } else {
+                    CopyJob bootCopyJob = new CopyJob(
+                            new Source[]{efiSource, bootSource},
+                            new String[]{targetDirectory});
+                    FileCopier fileCopier = new FileCopier();
+                    fileCopier.copy(bootCopyJob);
+                    // must happen before unmounting the source partitions
+                    collectSourceDigests(efiSource.getBaseDirectory().toPath(),
+                            targetPath, sourceDigests);
+                    collectSourceDigests(
+                            bootSource.getBaseDirectory().toPath(),
+                            targetPath, sourceDigests);
+                    systemSource.unmountTmpPartitions();
+                }
+
+            } else if (graftPoints) {
+                // legacy system without separate boot partition
+                addGraftedFiles(Paths.get(systemSource.getSystemPath()),
+                        path -> !SQUASHFS_PATTERN.matcher(
+                                Paths.get(path).getFileName().toString())
+                                .matches(),
+                        graftedFiles, sourceDigests);
+                stageChangedFiles(graftedFiles, targetPath);
 
             } else {
                 // legacy system without separate boot partition
@@ -144,10 +219,24 @@ public class IsoCreator implements PropertyChangeListener {
                         + targetDirectory + "\"";
                 LOGGER.log(Level.FINEST, "Execute: {0}", copyScript);
                 PROCESS_EXECUTOR.executeScript(copyScript);
+                collectSourceDigests(Paths.get(systemSource.getSystemPath()),
+                        targetPath, sourceDigests);
             }
 
             if (!onlyBootMedium) {
-                createSquashFS(targetDirectory);
+                Files.createDirectories(targetPath.resolve("live"));
+                if (layeredExport) {
+                    List<String> layers = addSystemLayers(
+                            targetPath, graftedFiles, sourceDigests);
+                    String dataLayer = getDataLayerName(layers);
+                    createDataLayer(targetDirectory + "/live/" + dataLayer);
+                    layers.add(dataLayer);
+                    Files.write(targetPath.resolve("live/" + MODULE_FILE),
+                            layers, StandardCharsets.UTF_8);
+                    graftedFiles.remove("./live/" + MODULE_FILE);
+                } else {
+                    createSquashFS(targetDirectory);
+                }
             }
 
             DLCopy.setDataPartitionMode(systemSource,
@@ -187,15 +276,23 @@ public class IsoCreator implements PropertyChangeListener {
                     + "You can verify them automatically with the "
                     + "'integrity-check' boot parameter,\n"
                     + "or, manually with: 'md5sum -c md5sum.txt'.";
-            try (FileWriter fileWriter
-                    = new FileWriter(targetDirectory + "/md5sum.txt")) {
-                fileWriter.write(md5header);
+            // files in the build directory replace grafted files
+            SortedMap<String, Path> isoFiles = new TreeMap<>(graftedFiles);
+            for (String path : HashingService.listFiles(
+                    targetPath, path -> true)) {
+                isoFiles.put(path, targetPath.resolve(path).normalize());
+            }
+            // isolinux.bin and stage2_eltorito are modified by xorriso
+            // (boot info table) and md5sum.txt can't contain itself
+            isoFiles.remove("./isolinux/isolinux.bin");
+            isoFiles.remove("./boot/grub/stage2_eltorito");
+            isoFiles.remove("./md5sum.txt");
+            try (HashingService hashingService = new HashingService()) {
+                hashingService.writeManifest(
+                        targetPath.resolve("md5sum.txt"), md5header,
+                        isoFiles, "MD5",
+                        getUnchangedDigests(isoFiles, sourceDigests));
             }
-            String md5Script = "cd \"" + targetDirectory + "\"\n"
-                    + "find . -type f \\! -path './isolinux/isolinux.bin' "
-                    + "\\! -path './boot/grub/stage2_eltorito' -print0 | "
-                    + "sort -z | xargs -0 md5sum >> md5sum.txt";
-            PROCESS_EXECUTOR.executeScript(md5Script);
 
             // create new iso image
             isoPath = targetRootDirectory + "/Lernstick.iso";
@@ -215,8 +312,14 @@ public class IsoCreator implements PropertyChangeListener {
             xorrisoScript += "-b isolinux/isolinux.bin -c isolinux/boot.cat "
                     + "-no-emul-boot -boot-load-size 4 -boot-info-table "
                     + "-eltorito-alt-boot -e boot/grub/efi.img -no-emul-boot "
-                    + "-isohybrid-gpt-basdat -isohybrid-apm-hfsplus "
-                    + "-o \"" + isoPath + "\" .";
+                    + "-isohybrid-gpt-basdat -isohybrid-apm-hfsplus ";
+            if (graftPoints) {
+                String graftPointsFile = targetRootDirectory + "/graft-points";
+                writeGraftPoints(graftedFiles, Paths.get(graftPointsFile));
+                xorrisoScript += "-graft-points -path-list \""
+                        + graftPointsFile + "\" ";
+            }
+            xorrisoScript += "-o \"" + isoPath + "\" .";
 
             int returnValue = PROCESS_EXECUTOR.executeScript(
                     true, true, xorrisoScript);
@@ -229,6 +332,9 @@ public class IsoCreator implements PropertyChangeListener {
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "", ex);
         } finally {
+            if (graftPoints && systemSource.hasEfiPartition()) {
+                systemSource.unmountTmpPartitions();
+            }
             inhibit.delete();
         }
         
@@ -242,43 +348,22 @@ public class IsoCreator implements PropertyChangeListener {
             String line = (String) evt.getNewValue();
             switch (step) {
                 case GENISOIMAGE:
-                    Matcher matcher = XORRISO_PATTERN.matcher(line);
-                    if (matcher.matches()) {
-                        String progressString = matcher.group(1).trim();
-                        try {
-                            final int progress
-                                    = Integer.parseInt(progressString);
-                            String message = STRINGS.getString(
-                                    "Creating_Image_Progress");
-                            message = MessageFormat.format(
-                                    message, progress + "%");
-                            dlCopyGUI.showIsoProgressMessage(message, progress);
-                        } catch (NumberFormatException ex) {
-                            LOGGER.log(Level.WARNING,
-                                    "could not parse xorriso progress", ex);
-                        }
+                    int progress = parseXorrisoProgress(line);
+                    if (progress != -1) {
+                        String message = STRINGS.getString(
+                                "Creating_Image_Progress");
+                        message = MessageFormat.format(
+                                message, progress + "%");
+                        dlCopyGUI.showIsoProgressMessage(message, progress);
                     }
-
                     break;
 
                 case MKSQUASHFS:
-                    matcher = MKSQUASHFS_PATTERN.matcher(line);
-                    if (matcher.matches()) {
-                        String doneString = matcher.group(1).trim();
-                        String maxString = matcher.group(2).trim();
-                        try {
-                            int doneInt = Integer.parseInt(doneString);
-                            int maxInt = Integer.parseInt(maxString);
-                            final int progress = (doneInt * 100) / maxInt;
-                            String message = STRINGS.getString(
-                                    "Compressing_Filesystem_Progress");
-                            message = MessageFormat.format(
-                                    message, progress + "%");
-                            dlCopyGUI.showIsoProgressMessage(message, progress);
-                        } catch (NumberFormatException ex) {
-                            LOGGER.log(Level.WARNING,
-                                    "could not parse mksquashfs progress", ex);
-                        }
+                    progress = parseMksquashfsProgress(line);
+                    if (progress != -1) {
+                        String message
+                                = getCompressionProgressMessage(progress);
+                        dlCopyGUI.showIsoProgressMessage(message, progress);
                     }
                     break;
 
@@ -288,10 +373,262 @@ public class IsoCreator implements PropertyChangeListener {
         }
     }
 
+    /**
+     * parses the progress of an xorriso output line (package-private for the
+     * benchmarks)
+     *
+     * @param line the output line
+     * @return the progress (in percent) or -1, if the line contains no
+     * progress
+     */
+    static int parseXorrisoProgress(String line) {
+        Matcher matcher = XORRISO_PATTERN.matcher(line);
+        if (matcher.matches()) {
+            try {
+                return Integer.parseInt(matcher.group(1).trim());
+            } catch (NumberFormatException ex) {
+                LOGGER.log(Level.WARNING,
+                        "could not parse xorriso progress", ex);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * parses the progress of a mksquashfs output line (package-private for
+     * the benchmarks)
+     *
+     * @param line the output line
+     * @return the progress (in percent) or -1, if the line contains no
+     * progress
+     */
+    static int parseMksquashfsProgress(String line) {
+        Matcher matcher = MKSQUASHFS_PATTERN.matcher(line);
+        if (matcher.matches()) {
+            try {
+                int done = Integer.parseInt(matcher.group(1).trim());
+                int max = Integer.parseInt(matcher.group(2).trim());
+                return (done * 100) / max;
+            } catch (NumberFormatException | ArithmeticException ex) {
+                LOGGER.log(Level.WARNING,
+                        "could not parse mksquashfs progress", ex);
+            }
+        }
+        return -1;
+    }
+
     public String getIsoPath() {
         return isoPath;
     }
     
+    /**
+     * Collects the digests of the files copied from a source directory that
+     * are listed in the md5sum.txt of the source directory, so that they
+     * don't have to be hashed again when creating the md5sum.txt of the ISO.
+     * Must be called directly after copying the files.
+     * <br>
+     * Only ISO images and legacy systems ship an md5sum.txt. Systems that
+     * were installed from a current image only have a sha256sum.txt, whose
+     * digests can't be used for the md5sum.txt of the ISO. All files without
+     * a collected digest are just hashed when the md5sum.txt is written.
+     *
+     * @param sourceDirectory the source directory
+     * @param targetPath the directory where the files were copied to (the
+     * source directory itself if the files are grafted into the ISO)
+     * @param sourceDigests maps relative paths to the collected digests
+     */
+    private static void collectSourceDigests(Path sourceDirectory,
+            Path targetPath, Map<String, SourceDigest> sourceDigests) {
+        Path manifest = sourceDirectory.resolve("md5sum.txt");
+        if (!Files.isReadable(manifest)) {
+            LOGGER.log(Level.INFO, "{0} does not exist, all files copied "
+                    + "from {1} will be hashed", new Object[]{
+                        manifest, sourceDirectory});
+            return;
+        }
+        int collectedDigests = 0;
+        try {
+            FileTime manifestTime = Files.getLastModifiedTime(manifest);
+            for (String line : Files.readAllLines(
+                    manifest, StandardCharsets.UTF_8)) {
+                String[] entry = HashingService.parseManifestLine(line);
+                if (entry == null || !entry[1].startsWith("./")) {
+                    continue;
+                }
+                String path = entry[1];
+                Path sourceFile = sourceDirectory.resolve(path).normalize();
+                Path targetFile = targetPath.resolve(path).normalize();
+                if (!Files.isRegularFile(sourceFile, LinkOption.NOFOLLOW_LINKS)
+                        || !Files.isRegularFile(
+                                targetFile, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+                BasicFileAttributes sourceAttributes = Files.readAttributes(
+                        sourceFile, BasicFileAttributes.class);
+                BasicFileAttributes targetAttributes = Files.readAttributes(
+                        targetFile, BasicFileAttributes.class);
+                // the digest of files that were changed after the manifest
+                // was written (e.g. by an upgrade) is outdated
+                if (sourceAttributes.lastModifiedTime().compareTo(
+                        manifestTime) > 0
+                        || sourceAttributes.size() != targetAttributes.size()) {
+                    continue;
+                }
+                sourceDigests.put(path, new SourceDigest(entry[0],
+                        targetFile, targetAttributes.size(),
+                        targetAttributes.lastModifiedTime()));
+                collectedDigests++;
+            }
+        } catch (IOException ex) {
+            // not fatal, the files are just hashed again
+            LOGGER.log(Level.WARNING, "", ex);
+        }
+        LOGGER.log(Level.INFO, "collected {0} digests from {1}",
+                new Object[]{collectedDigests, manifest});
+    }
+
+    /**
+     * returns the source digests of all files of the ISO that were not
+     * changed since their digests were collected
+     *
+     * @param isoFiles maps the paths (in manifest notation) of all files of
+     * the ISO to their location
+     * @param sourceDigests maps relative paths to the collected digests
+     * @return the map of relative paths to hex digests of unchanged files
+     */
+    private static Map<String, String> getUnchangedDigests(
+            Map<String, Path> isoFiles,
+            Map<String, SourceDigest> sourceDigests) {
+        Map<String, String> unchangedDigests = new HashMap<>();
+        sourceDigests.forEach((path, sourceDigest) -> {
+            if (!sourceDigest.file.equals(isoFiles.get(path))) {
+                // moved, removed or replaced by a file in the build directory
+                return;
+            }
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(
+                        sourceDigest.file, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                if (attributes.isRegularFile()
+                        && attributes.size() == sourceDigest.size
+                        && attributes.lastModifiedTime().equals(
+                                sourceDigest.lastModifiedTime)) {
+                    unchangedDigests.put(path, sourceDigest.hexDigest);
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "", ex);
+            }
+        });
+        return unchangedDigests;
+    }
+
+    /**
+     * adds the files of a source directory to the files that are grafted
+     * into the ISO
+     *
+     * @param sourceDirectory the source directory
+     * @param included selects the files by their path relative to the
+     * source directory (e.g. "live/vmlinuz")
+     * @param graftedFiles maps the paths (in manifest notation) of the
+     * grafted files to their location on the source medium
+     * @param sourceDigests maps relative paths to the collected digests
+     * @throws IOException if walking the source directory fails
+     */
+    private static void addGraftedFiles(Path sourceDirectory,
+            Predicate<String> included, SortedMap<String, Path> graftedFiles,
+            Map<String, SourceDigest> sourceDigests) throws IOException {
+        // same selection as the FileCopier, which follows symlinks
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(
+                sourceDirectory, FileVisitOption.FOLLOW_LINKS)) {
+            files = stream.filter(Files::isRegularFile)
+                    .filter(file -> included.test(
+                    sourceDirectory.relativize(file).toString()))
+                    .toList();
+        }
+        for (Path file : files) {
+            graftedFiles.put(
+                    "./" + sourceDirectory.relativize(file), file);
+        }
+        LOGGER.log(Level.INFO, "grafting {0} files from {1}",
+                new Object[]{files.size(), sourceDirectory});
+        collectSourceDigests(sourceDirectory, sourceDirectory, sourceDigests);
+    }
+
+    /**
+     * Copies all files that are changed while creating the ISO to the build
+     * directory and removes them from the grafted files. These are the
+     * syslinux/isolinux directory (renamed, boot configs and boot logo
+     * edited), the GRUB config (data partition mode) and the md5sum.txt
+     * (regenerated).
+     *
+     * @param graftedFiles maps the paths (in manifest notation) of the
+     * grafted files to their location on the source medium
+     * @param targetPath the build directory
+     * @throws IOException if copying a file fails
+     */
+    private static void stageChangedFiles(
+            SortedMap<String, Path> graftedFiles, Path targetPath)
+            throws IOException {
+        Iterator<Map.Entry<String, Path>> iterator
+                = graftedFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Path> entry = iterator.next();
+            String path = entry.getKey();
+            if (path.equals("./md5sum.txt")) {
+                iterator.remove();
+            } else if (path.startsWith("./syslinux/")
+                    || path.startsWith("./isolinux/")
+                    || path.equals("./boot/grub/grub.cfg")) {
+                Path stagedFile = targetPath.resolve(path).normalize();
+                Files.createDirectories(stagedFile.getParent());
+                Files.copy(entry.getValue(), stagedFile,
+                        StandardCopyOption.COPY_ATTRIBUTES);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * writes the graft points of the grafted files in the format of the
+     * xorriso option -path-list
+     *
+     * @param graftedFiles maps the paths (in manifest notation) of the
+     * grafted files to their location on the source medium
+     * @param graftPointsFile the file to write
+     * @throws IOException if writing fails
+     */
+    private static void writeGraftPoints(SortedMap<String, Path> graftedFiles,
+            Path graftPointsFile) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(
+                graftPointsFile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Path> entry : graftedFiles.entrySet()) {
+                // "./live/vmlinuz" -> "/live/vmlinuz"
+                writer.write(escapeGraftPoint(entry.getKey().substring(1)));
+                writer.write('=');
+                writer.write(escapeGraftPoint(entry.getValue().toString()));
+                writer.write('\n');
+            }
+        }
+        LOGGER.log(Level.INFO, "wrote {0} graft points to {1}",
+                new Object[]{graftedFiles.size(), graftPointsFile});
+    }
+
+    private String getCompressionProgressMessage(int progress) {
+        if (compressionEstimate == null) {
+            return MessageFormat.format(STRINGS.getString(
+                    "Compressing_Filesystem_Progress"), progress + "%");
+        }
+        return MessageFormat.format(STRINGS.getString(
+                "Compressing_Filesystem_Progress_Estimate"), progress + "%",
+                compressionEstimate.getSizeString(),
+                compressionEstimate.getDurationString());
+    }
+
+    private static String escapeGraftPoint(String path) {
+        return path.replace("\\", "\\\\").replace("=", "\\=");
+    }
+
     private void createSquashFS(String targetDirectory)
             throws IOException, DBusException {
 
@@ -374,22 +711,8 @@ public class IsoCreator implements PropertyChangeListener {
         }
 
         // create new squashfs image
-        step = Step.MKSQUASHFS;
-        dlCopyGUI.showIsoProgressMessage(
-                STRINGS.getString("Compressing_Filesystem"));
-        PROCESS_EXECUTOR.addPropertyChangeListener(this);
-        LOGGER.log(Level.FINEST, "Make squashfs: {0}, {1}",
-                new String[]{cowPath, targetDirectory});
-        int exitValue = PROCESS_EXECUTOR.executeProcess(true, true, "mksquashfs",
-                cowPath, targetDirectory + "/live/filesystem.squashfs",
-                "-comp", "zstd", "-Xcompression-level", "22");
-            LOGGER.log(Level.FINEST, PROCESS_EXECUTOR.getStdOut());
-        if (exitValue != 0) {
-            LOGGER.log(Level.SEVERE, PROCESS_EXECUTOR.getStdErr());
-            throw new IOException(
-                    STRINGS.getString("Error_Creating_Squashfs") + ": " + exitValue);
-        }
-        PROCESS_EXECUTOR.removePropertyChangeListener(this);
+        compressSquashFS(cowPath, targetDirectory + "/live/filesystem.squashfs",
+                null, null);
 
         // umount all partitions
         DLCopy.umount(cowPath, dlCopyGUI);
@@ -406,4 +729,267 @@ public class IsoCreator implements PropertyChangeListener {
         LernstickFileTools.recursiveDelete(
                 new File(readOnlyMountPoints.get(0)).getParentFile(), true);
     }
+
+    /**
+     * Adds the squashfs files of the running system to the ISO without
+     * changing them. They are grafted into the ISO when using graft points,
+     * otherwise they are copied to the build directory.
+     *
+     * @param targetPath the build directory
+     * @param graftedFiles maps the paths (in manifest notation) of the
+     * grafted files to their location on the source medium
+     * @param sourceDigests maps relative paths to the collected digests
+     * @return the file names of the squashfs files, from the lowest to the
+     * topmost layer
+     * @throws IOException if copying a squashfs file fails
+     */
+    private List<String> addSystemLayers(Path targetPath,
+            SortedMap<String, Path> graftedFiles,
+            Map<String, SourceDigest> sourceDigests) throws IOException {
+
+        Path systemPath = Paths.get(systemSource.getSystemPath());
+        Path sourceLivePath = systemPath.resolve("live");
+        List<String> layers = new ArrayList<>();
+        Path moduleFile = sourceLivePath.resolve(MODULE_FILE);
+        if (Files.exists(moduleFile)) {
+            for (String line : Files.readAllLines(
+                    moduleFile, StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (SQUASHFS_PATTERN.matcher(line).matches()
+                        && Files.isRegularFile(sourceLivePath.resolve(line))) {
+                    layers.add(line);
+                }
+            }
+        } else {
+            // without module file live-boot stacks the layers in
+            // alphabetical order
+            try (Stream<Path> stream = Files.list(sourceLivePath)) {
+                stream.map(path -> path.getFileName().toString())
+                        .filter(SQUASHFS_PATTERN.asMatchPredicate())
+                        .sorted()
+                        .forEach(layers::add);
+            }
+        }
+        if (layers.isEmpty()) {
+            String errorMessage = "no squashfs files found in "
+                    + sourceLivePath;
+            LOGGER.severe(errorMessage);
+            throw new IOException(errorMessage);
+        }
+        LOGGER.log(Level.INFO, "system layers: {0}", layers);
+
+        for (String layer : layers) {
+            Path sourceFile = sourceLivePath.resolve(layer);
+            if (graftPoints) {
+                graftedFiles.put("./live/" + layer, sourceFile);
+            } else {
+                Files.copy(sourceFile, targetPath.resolve("live/" + layer),
+                        StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+        collectSourceDigests(systemPath,
+                graftPoints ? systemPath : targetPath, sourceDigests);
+        return layers;
+    }
+
+    /**
+     * returns a file name for the data layer that is not used by any system
+     * layer
+     *
+     * @param layers the file names of the system layers
+     * @return the file name for the data layer
+     */
+    private static String getDataLayerName(List<String> layers) {
+        // the data layer of an exported system becomes a system layer when
+        // exporting again
+        String dataLayer = "filesystem_data.squashfs";
+        for (int i = 2; layers.contains(dataLayer); i++) {
+            dataLayer = "filesystem_data_" + i + ".squashfs";
+        }
+        return dataLayer;
+    }
+
+    /**
+     * Compresses the data partition into a squashfs layer. The data
+     * partition is compressed directly (without union with the read-only
+     * layers) so that its whiteouts are preserved and hide the deleted files
+     * of the lower layers. The settings that are changed for the exported
+     * system are applied with mksquashfs pseudo files instead of changing
+     * the data partition.
+     *
+     * @param squashFsPath the path of the squashfs file to create
+     * @throws IOException if an I/O exception occurs
+     * @throws DBusException if mounting the data partition fails
+     */
+    private void createDataLayer(String squashFsPath)
+            throws IOException, DBusException {
+
+        dlCopyGUI.showIsoProgressMessage(
+                STRINGS.getString("Mounting_Partitions"));
+        MountInfo dataMountInfo = systemSource.getDataPartition().mount();
+        String dataPartitionPath = dataMountInfo.getMountPath();
+        if (!Files.exists(Paths.get(dataPartitionPath, "home"))) {
+            // Debian 9 and newer
+            dataPartitionPath += "/rw";
+        }
+        Path dataPath = Paths.get(dataPartitionPath);
+
+        File layerDir = LernstickFileTools.createTempDirectory(
+                new File(tmpDirectory), "Lernstick-Layer");
+        try {
+            // apply settings (the file is replaced by a pseudo file)
+            Properties lernstickWelcomeProperties = new Properties();
+            Path propertiesFile = dataPath.resolve("etc/lernstickWelcome");
+            if (Files.exists(propertiesFile)) {
+                loadProperties(lernstickWelcomeProperties, propertiesFile);
+            } else {
+                loadSystemProperties(lernstickWelcomeProperties);
+            }
+            lernstickWelcomeProperties.setProperty("ShowNotUsedInfo",
+                    showNotUsedDialog ? "true" : "false");
+            lernstickWelcomeProperties.setProperty("AutoStartInstaller",
+                    autoStartInstaller ? "true" : "false");
+            Path layerPropertiesFile = layerDir.toPath().resolve(
+                    "lernstickWelcome");
+            try (Writer writer = Files.newBufferedWriter(layerPropertiesFile,
+                    StandardCharsets.UTF_8)) {
+                lernstickWelcomeProperties.store(
+                        writer, "lernstick Welcome properties");
+            }
+
+            List<String> pseudoDefinitions = new ArrayList<>();
+            if (!Files.isDirectory(dataPath.resolve("etc"))) {
+                pseudoDefinitions.add("etc d 755 0 0");
+            }
+            pseudoDefinitions.add("etc/lernstickWelcome f 644 0 0 cat \""
+                    + layerPropertiesFile + "\"");
+            // see createSquashFS() for the reason of this ownership change
+            Path userMediaPath = dataPath.resolve("media/user");
+            if (Files.isDirectory(userMediaPath)) {
+                int mode = (Integer) Files.getAttribute(
+                        userMediaPath, "unix:mode") & 07777;
+                pseudoDefinitions.add("media/user m "
+                        + Integer.toOctalString(mode) + " user user");
+            }
+            Path pseudoFile = layerDir.toPath().resolve("pseudo");
+            Files.write(pseudoFile, pseudoDefinitions, StandardCharsets.UTF_8);
+
+            // the same files that DLCopy.removeSshConfig() removes
+            Path excludeFile = layerDir.toPath().resolve("exclude");
+            Files.write(excludeFile, List.of(
+                    "etc/lernstickWelcome",
+                    "etc/ssh/ssh_host_*",
+                    "var/lib/live/config/openssh-server"),
+                    StandardCharsets.UTF_8);
+
+            compressSquashFS(dataPartitionPath, squashFsPath, excludeFile,
+                    List.of("-pf", pseudoFile.toString()));
+
+        } finally {
+            LernstickFileTools.recursiveDelete(layerDir, true);
+            if (!dataMountInfo.alreadyMounted()) {
+                systemSource.getDataPartition().umount();
+            }
+        }
+    }
+
+    // reads the lernstickWelcome properties from the read-only layers
+    private void loadSystemProperties(Properties properties)
+            throws IOException, DBusException {
+        List<String> readOnlyMountPoints
+                = LernstickFileTools.mountAllSquashFS(
+                        systemSource.getSystemPath());
+        try {
+            for (String readOnlyMountPoint : readOnlyMountPoints) {
+                Path propertiesFile = Paths.get(
+                        readOnlyMountPoint, "etc/lernstickWelcome");
+                if (Files.exists(propertiesFile)) {
+                    loadProperties(properties, propertiesFile);
+                }
+            }
+        } finally {
+            for (String readOnlyMountPoint : readOnlyMountPoints) {
+                DLCopy.umount(readOnlyMountPoint, dlCopyGUI);
+            }
+            if (!readOnlyMountPoints.isEmpty()) {
+                LernstickFileTools.recursiveDelete(new File(
+                        readOnlyMountPoints.get(0)).getParentFile(), true);
+            }
+        }
+    }
+
+    private static void loadProperties(Properties properties, Path file) {
+        try (Reader reader = Files.newBufferedReader(
+                file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException iOException) {
+            LOGGER.log(Level.WARNING, "", iOException);
+        }
+    }
+
+    /**
+     * compresses a directory into a squashfs file
+     *
+     * @param source the directory to compress
+     * @param squashFsPath the path of the squashfs file to create
+     * @param excludeFile the exclude file (with wildcards) or <tt>null</tt>
+     * @param options additional mksquashfs options or <tt>null</tt>
+     * @throws IOException if calibrating or compressing fails
+     */
+    private void compressSquashFS(String source, String squashFsPath,
+            Path excludeFile, List<String> options) throws IOException {
+
+        if (compressionCalibration) {
+            dlCopyGUI.showIsoProgressMessage(
+                    STRINGS.getString("Calibrating_Compression"));
+            compressionEstimate = new CompressionCalibration(Paths.get(source),
+                    excludeFile, CompressionCalibration.DEFAULT_SAMPLE_SIZE)
+                    .calibrate(compressionProfile, tmpDirectory);
+        }
+
+        step = Step.MKSQUASHFS;
+        dlCopyGUI.showIsoProgressMessage(
+                STRINGS.getString("Compressing_Filesystem"));
+        PROCESS_EXECUTOR.addPropertyChangeListener(this);
+        LOGGER.log(Level.FINEST, "Make squashfs: {0}, {1}",
+                new String[]{source, squashFsPath});
+        List<String> mksquashfsCommand = new ArrayList<>();
+        mksquashfsCommand.add("mksquashfs");
+        mksquashfsCommand.add(source);
+        mksquashfsCommand.add(squashFsPath);
+        mksquashfsCommand.addAll(compressionProfile.getMksquashfsOptions());
+        if (excludeFile != null) {
+            mksquashfsCommand.add("-wildcards");
+            mksquashfsCommand.add("-ef");
+            mksquashfsCommand.add(excludeFile.toString());
+        }
+        if (options != null) {
+            mksquashfsCommand.addAll(options);
+        }
+        int exitValue = PROCESS_EXECUTOR.executeProcess(true, true,
+                mksquashfsCommand.toArray(String[]::new));
+        LOGGER.log(Level.FINEST, PROCESS_EXECUTOR.getStdOut());
+        if (exitValue != 0) {
+            LOGGER.log(Level.SEVERE, PROCESS_EXECUTOR.getStdErr());
+            throw new IOException(
+                    STRINGS.getString("Error_Creating_Squashfs") + ": " + exitValue);
+        }
+        PROCESS_EXECUTOR.removePropertyChangeListener(this);
+    }
+
+    private static class SourceDigest {
+
+        private final String hexDigest;
+        private final Path file;
+        private final long size;
+        private final FileTime lastModifiedTime;
+
+        SourceDigest(String hexDigest, Path file, long size,
+                FileTime lastModifiedTime) {
+            this.hexDigest = hexDigest;
+            this.file = file;
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+        }
+    }
 }
@@ -160,7 +160,8 @@ public class IsoSystemSource extends SystemSource {
     }
 
     @Override
-    public void installExtlinux(Partition partition) throws IOException {
+    public synchronized void installExtlinux(Partition partition)
+            throws IOException {
         mountSystemImageIfNeeded();
         processExecutor.executeProcess("sync");
         String syslinuxDir = createSyslinuxDir(partition);
@@ -181,7 +182,10 @@ public class IsoSystemSource extends SystemSource {
     }
 
     @Override
-    public void unmountTmpPartitions() {
+    public synchronized void unmountTmpPartitions() {
+        if (areTmpPartitionsRetained()) {
+            return;
+        }
         if (rootFsPath != null) {
             try {
                 processExecutor.executeScript(String.format(
@@ -209,7 +213,7 @@ public class IsoSystemSource extends SystemSource {
         }
     }
 
-    private void mountIsoImageIfNeeded() {
+    private synchronized void mountIsoImageIfNeeded() {
         if (mediaPath != null) {
             return;
         }
@@ -224,7 +228,7 @@ public class IsoSystemSource extends SystemSource {
         }
     }
 
-    private void mountSystemImageIfNeeded() {
+    private synchronized void mountSystemImageIfNeeded() {
         mountIsoImageIfNeeded();
         if (rootFsPath != null) {
             return;
@@ -0,0 +1,231 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.filecopier.CopyJob;
+import ch.fhnw.filecopier.DirectoryInfo;
+import ch.fhnw.filecopier.Source;
+import ch.fhnw.util.ProcessExecutor;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Verifies copied files against the checksum manifest (sha256sum.txt or
+ * md5sum.txt) that ships on the source medium. In contrast to the copy check
+ * of the FileCopier the source files are not read a second time.
+ * <br>
+ * The paths in the manifest are relative to the root of the source medium.
+ * A medium can be spread over several source directories (e.g. the running
+ * system has its manifest on the EFI partition but its squashfs files on the
+ * system partition), therefore the manifests of all source directories of the
+ * medium are merged. The manifest only applies to files that were copied from
+ * a source directory of the medium. All other copied files are verified like
+ * the FileCopier does it, by comparing them with their source file. The
+ * copied files are flushed and dropped from the page cache before reading
+ * them, so that they are really read back from the storage device.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class ManifestVerifier {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(ManifestVerifier.class.getName());
+
+    // the supported manifests in the order of preference
+    private static final String[] MANIFEST_FILES
+            = {"sha256sum.txt", "md5sum.txt"};
+    private static final String[] ALGORITHMS = {"SHA-256", "MD5"};
+    // the algorithm for comparing files that are not listed in a manifest
+    private static final String COMPARE_ALGORITHM = "MD5";
+
+    // the source directories of the medium
+    private final Set<Path> mediumDirectories;
+    // maps paths relative to the medium root to their manifest entries
+    private final Map<String, ManifestEntry> entries;
+
+    private ManifestVerifier(Set<Path> mediumDirectories,
+            Map<String, ManifestEntry> entries) {
+        this.mediumDirectories = mediumDirectories;
+        this.entries = entries;
+    }
+
+    /**
+     * loads the manifests of a source medium
+     *
+     * @param copyJobs the CopyJobs that copy from the source medium
+     * (<tt>null</tt> values are ignored), the source directories of all
+     * CopyJobs must be root directories of the medium
+     * @return a ManifestVerifier or <tt>null</tt>, if no source directory
+     * contains a manifest
+     */
+    public static ManifestVerifier load(CopyJob... copyJobs) {
+        Set<Path> mediumDirectories = new LinkedHashSet<>();
+        for (CopyJob copyJob : copyJobs) {
+            if (copyJob == null) {
+                continue;
+            }
+            for (Source source : copyJob.getSources()) {
+                mediumDirectories.add(source.getBaseDirectory().toPath());
+            }
+        }
+        // the entries of the preferred manifests win
+        Map<String, ManifestEntry> entries = new HashMap<>();
+        for (int i = 0; i < MANIFEST_FILES.length; i++) {
+            for (Path directory : mediumDirectories) {
+                Path manifest = directory.resolve(MANIFEST_FILES[i]);
+                if (Files.isReadable(manifest)) {
+                    readManifest(manifest, ALGORITHMS[i]).forEach(
+                            entries::putIfAbsent);
+                }
+            }
+        }
+        return entries.isEmpty()
+                ? null : new ManifestVerifier(mediumDirectories, entries);
+    }
+
+    /**
+     * Verifies all files that were copied by the given CopyJobs. Files of the
+     * medium that are listed in its manifest are verified with the manifest,
+     * all other files are compared with their source file.
+     *
+     * @param processExecutor the ProcessExecutor for flushing the copied
+     * files
+     * @param copyJobs the CopyJobs (<tt>null</tt> values are ignored), they
+     * must have been copied by a FileCopier before
+     * @return the list of corrupted files (empty if all files are OK)
+     * @throws IOException if reading a file fails
+     * @throws NoSuchAlgorithmException if a digest algorithm is not available
+     */
+    public List<String> verify(ProcessExecutor processExecutor,
+            CopyJob... copyJobs) throws IOException, NoSuchAlgorithmException {
+
+        List<String> corruptedFiles = new ArrayList<>();
+        int manifestFiles = 0;
+        int comparedFiles = 0;
+        for (CopyJob copyJob : copyJobs) {
+            if (copyJob == null) {
+                continue;
+            }
+            List<DirectoryInfo> directoryInfos = copyJob.getDirectoryInfos();
+            if (directoryInfos == null) {
+                String errorMessage = "files of copy job were not copied";
+                LOGGER.severe(errorMessage);
+                throw new IOException(errorMessage);
+            }
+            for (DirectoryInfo directoryInfo : directoryInfos) {
+                Path baseDirectory = directoryInfo.getBaseDirectory().toPath();
+                boolean onMedium = mediumDirectories.contains(baseDirectory);
+                for (File sourceFile : directoryInfo.getFiles()) {
+                    if (!sourceFile.isFile()) {
+                        continue;
+                    }
+                    Path source = sourceFile.toPath();
+                    String relativePath
+                            = baseDirectory.relativize(source).toString();
+                    ManifestEntry entry
+                            = onMedium ? entries.get(relativePath) : null;
+                    for (String destination : copyJob.getDestinations()) {
+                        Path file = getDestinationFile(
+                                destination, relativePath);
+                        boolean intact = false;
+                        if (Files.isRegularFile(file)) {
+                            if (entry == null) {
+                                intact = MessageDigest.isEqual(
+                                        HashingService.digestFromDevice(
+                                                file, COMPARE_ALGORITHM,
+                                                processExecutor),
+                                        HashingService.digest(
+                                                source, COMPARE_ALGORITHM));
+                            } else {
+                                intact = MessageDigest.isEqual(
+                                        HashingService.digestFromDevice(
+                                                file, entry.algorithm,
+                                                processExecutor),
+                                        entry.digest);
+                            }
+                        }
+                        if (entry == null) {
+                            comparedFiles++;
+                        } else {
+                            manifestFiles++;
+                        }
+                        if (!intact) {
+                            LOGGER.log(Level.WARNING,
+                                    "{0} is not an intact copy of {1}",
+                                    new Object[]{file, source});
+                            corruptedFiles.add(file.toString());
+                        }
+                    }
+                }
+            }
+        }
+        LOGGER.log(Level.INFO, "verified {0} files with manifest and "
+                + "{1} files with their source, {2} corrupted",
+                new Object[]{manifestFiles, comparedFiles,
+                    corruptedFiles.size()});
+        return corruptedFiles;
+    }
+
+    private static Path getDestinationFile(
+            String destination, String relativePath) {
+        Path destinationPath = Paths.get(destination);
+        // a single source file can be copied to a destination file
+        return Files.isRegularFile(destinationPath)
+                ? destinationPath : destinationPath.resolve(relativePath);
+    }
+
+    private static Map<String, ManifestEntry> readManifest(
+            Path manifest, String algorithm) {
+        LOGGER.log(Level.INFO, "reading manifest {0}", manifest);
+        Map<String, ManifestEntry> entries = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(
+                    manifest, StandardCharsets.UTF_8)) {
+                String[] tokens = HashingService.parseManifestLine(line);
+                if (tokens == null) {
+                    // comment or other garbage
+                    LOGGER.log(Level.FINE, "ignoring line \"{0}\"", line);
+                    continue;
+                }
+                String path = tokens[1];
+                if (path.startsWith("./")) {
+                    path = path.substring(2);
+                }
+                try {
+                    entries.putIfAbsent(path, new ManifestEntry(algorithm,
+                            HexFormat.of().parseHex(tokens[0])));
+                } catch (IllegalArgumentException ex) {
+                    // odd number of hex digits
+                    LOGGER.log(Level.FINE, "ignoring line \"{0}\"", line);
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "", ex);
+        }
+        return entries;
+    }
+
+    private static class ManifestEntry {
+
+        private final String algorithm;
+        private final byte[] digest;
+
+        ManifestEntry(String algorithm, byte[] digest) {
+            this.algorithm = algorithm;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package ch.fhnw.dlcopy;
+
+import com.sun.nio.file.ExtendedOpenOption;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Overwrites a block device completely with zeros.
+ * <br>
+ * When used on an opened LUKS mapper device, the zeros are encrypted and the
+ * underlying partition ends up filled with ciphertext that is
+ * indistinguishable from random data. This is much faster than reading from
+ * <tt>/dev/urandom</tt> because dm-crypt encrypts in parallel on all
+ * processors and no random numbers need to be generated.
+ * <br>
+ * Several threads write large aligned chunks with O_DIRECT (bypassing the
+ * page cache) until exactly the size of the device is reached. The progress is
+ * published at a fixed rate.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class PartitionFiller {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(PartitionFiller.class.getName());
+
+    private static final int CHUNK_SIZE = 16 * DLCopy.MEGA;
+    // O_DIRECT needs buffers aligned to the logical block size of the device
+    private static final int ALIGNMENT = 4096;
+    private static final int THREADS = 4;
+    private static final long PROGRESS_INTERVAL = 1000; // ms
+
+    private final String device;
+    private final InstallerOrUpgrader installerOrUpgrader;
+    private final AtomicLong nextPosition = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * creates a new PartitionFiller
+     *
+     * @param device the path to the device to fill, e.g. /dev/mapper/...
+     * @param installerOrUpgrader the Installer or Upgrader that shows the
+     * progress
+     */
+    public PartitionFiller(String device,
+            InstallerOrUpgrader installerOrUpgrader) {
+        this.device = device;
+        this.installerOrUpgrader = installerOrUpgrader;
+    }
+
+    /**
+     * fills the device with zeros
+     *
+     * @throws IOException if writing to the device fails
+     */
+    public void fill() throws IOException {
+
+        long size = getSize();
+        LOGGER.log(Level.INFO, "filling {0} ({1} byte)",
+                new Object[]{device, size});
+
+        ByteBuffer zeros = ByteBuffer.allocateDirect(CHUNK_SIZE + ALIGNMENT)
+                .alignedSlice(ALIGNMENT).limit(CHUNK_SIZE).slice();
+
+        // O_DIRECT only allows writes in multiples of the block size, a
+        // remaining tail is written later without O_DIRECT
+        long alignedSize = size - (size % ALIGNMENT);
+
+        long start = System.currentTimeMillis();
+        try (FileChannel channel = open()) {
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    futures.add(executor.submit(() -> {
+                        write(channel, zeros, alignedSize);
+                        return null;
+                    }));
+                }
+                executor.shutdown();
+                while (!executor.awaitTermination(
+                        PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+                    installerOrUpgrader.showOverwritingDataPartition(
+                            written.get(), size);
+                    // don't wait for the other threads when one failed
+                    for (Future<?> future : futures) {
+                        if (future.isDone()) {
+                            future.get();
+                        }
+                    }
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                channel.force(false);
+            } finally {
+                // stops the remaining threads when filling failed or was
+                // interrupted
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("filling " + device + " was interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException iOException) {
+                throw iOException;
+            }
+            throw new IOException(cause);
+        }
+        if (alignedSize < size) {
+            try (FileChannel channel = FileChannel.open(
+                    Paths.get(device), StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = zeros.duplicate();
+                buffer.limit((int) (size - alignedSize));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, alignedSize + buffer.position());
+                }
+                channel.force(false);
+            }
+        }
+        installerOrUpgrader.showOverwritingDataPartition(size, size);
+
+        long time = System.currentTimeMillis() - start;
+        LOGGER.log(Level.INFO, "filled {0} in {1} ms ({2} MiB/s)",
+                new Object[]{device, time,
+                    (size / DLCopy.MEGA) * 1000 / Math.max(1, time)});
+    }
+
+    private void write(FileChannel channel, ByteBuffer zeros, long size)
+            throws IOException {
+        // every thread claims the next chunk until the end is reached
+        for (long position = nextPosition.getAndAdd(CHUNK_SIZE);
+                position < size;
+                position = nextPosition.getAndAdd(CHUNK_SIZE)) {
+            // the last chunk is shortened to stop exactly at the end
+            ByteBuffer buffer = zeros.duplicate();
+            buffer.limit((int) Math.min(CHUNK_SIZE, size - position));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+            written.addAndGet(buffer.limit());
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        Path path = Paths.get(device);
+        try {
+            return FileChannel.open(path, StandardOpenOption.WRITE,
+                    ExtendedOpenOption.DIRECT);
+        } catch (IOException | UnsupportedOperationException ex) {
+            LOGGER.log(Level.WARNING,
+                    "could not open " + device + " with O_DIRECT", ex);
+            return FileChannel.open(path, StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * returns the size of the device
+     *
+     * @return the size of the device (in byte)
+     * @throws IOException if the size can not be determined
+     */
+    public long getSize() throws IOException {
+        // The size of block devices is not available via fstat() and
+        // therefore neither via FileChannel.size(). The sysfs attribute is
+        // always in units of 512 byte sectors.
+        String name = Paths.get(device).toRealPath().getFileName().toString();
+        String sectors = Files.readString(
+                Paths.get("/sys/class/block", name, "size")).trim();
+        return Long.parseLong(sectors) * 512;
+    }
+}
@@ -0,0 +1,66 @@
+package ch.fhnw.dlcopy;
+
+/**
+ * The phases of an operation on a storage device that are timed separately
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public enum Phase {
+
+    /**
+     * wiping file system signatures
+     */
+    WIPE,
+    /**
+     * discarding all blocks
+     */
+    DISCARD,
+    /**
+     * creating the partition table and partitions
+     */
+    PARTITIONING,
+    /**
+     * waiting for udev and udisks to know about changes
+     */
+    UDEV_WAIT,
+    /**
+     * creating a file system
+     */
+    MKFS,
+    /**
+     * filling the data partition with random data
+     */
+    RANDOM_FILL,
+    /**
+     * mounting a file system
+     */
+    MOUNT,
+    /**
+     * copying files
+     */
+    FILE_COPY,
+    /**
+     * verifying copied files
+     */
+    VERIFICATION,
+    /**
+     * cloning a partition
+     */
+    CLONING,
+    /**
+     * backing up user data
+     */
+    BACKUP,
+    /**
+     * removing files
+     */
+    REMOVING_FILES,
+    /**
+     * writing the boot loader and boot sector
+     */
+    BOOTLOADER,
+    /**
+     * unmounting file systems
+     */
+    UNMOUNT
+}
@@ -0,0 +1,160 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.util.StorageDevice;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exports the phase timings of a list of operation results. The format (CSV
+ * or JSON) is chosen by the file name extension.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class PhaseReport {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(PhaseReport.class.getName());
+
+    private PhaseReport() {
+    }
+
+    /**
+     * writes the phase timings of a list of results to a file
+     *
+     * @param results the list of results
+     * @param file the report file, files ending with ".csv" are written as
+     * CSV, all other files as JSON
+     * @throws IOException if writing the report fails
+     */
+    public static void write(List<StorageDeviceResult> results, Path file)
+            throws IOException {
+        LOGGER.log(Level.INFO, "writing phase report to {0}", file);
+        try (Writer writer
+                = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (file.getFileName().toString().toLowerCase().endsWith(".csv")) {
+                writeCsv(results, writer);
+            } else {
+                writeJson(results, writer);
+            }
+        }
+    }
+
+    /**
+     * writes the phase timings of a list of results as CSV (one line per
+     * phase)
+     *
+     * @param results the list of results
+     * @param writer the writer to use
+     * @throws IOException if writing fails
+     */
+    public static void writeCsv(List<StorageDeviceResult> results,
+            Writer writer) throws IOException {
+        writer.write("device,serial,phase,detail,duration_ms,bytes,"
+                + "throughput_bytes_per_second\n");
+        for (StorageDeviceResult result : results) {
+            StorageDevice storageDevice = result.getStorageDevice();
+            for (PhaseTiming phaseTiming : result.getPhaseTimings()) {
+                writer.write(csv(storageDevice.getFullDevice()) + ','
+                        + csv(storageDevice.getSerial()) + ','
+                        + phaseTiming.getPhase() + ','
+                        + csv(phaseTiming.getDetail()) + ','
+                        + phaseTiming.getDuration().toMillis() + ','
+                        + phaseTiming.getBytes() + ','
+                        + phaseTiming.getThroughput() + '\n');
+            }
+        }
+    }
+
+    /**
+     * writes the phase timings of a list of results as JSON
+     *
+     * @param results the list of results
+     * @param writer the writer to use
+     * @throws IOException if writing fails
+     */
+    public static void writeJson(List<StorageDeviceResult> results,
+            Writer writer) throws IOException {
+        writer.write("[");
+        for (int i = 0, size = results.size(); i < size; i++) {
+            StorageDeviceResult result = results.get(i);
+            StorageDevice storageDevice = result.getStorageDevice();
+            writer.write(i == 0 ? "\n" : ",\n");
+            writer.write("  {\n");
+            writer.write("    \"device\": "
+                    + json(storageDevice.getFullDevice()) + ",\n");
+            writer.write("    \"serial\": "
+                    + json(storageDevice.getSerial()) + ",\n");
+            writer.write("    \"duration_ms\": " + (result.getDuration() == null
+                    ? "null" : result.getDuration().toMillis()) + ",\n");
+            writer.write("    \"error\": "
+                    + json(result.getErrorMessage()) + ",\n");
+            writer.write("    \"phases\": [");
+            List<PhaseTiming> phaseTimings = result.getPhaseTimings();
+            for (int j = 0, phases = phaseTimings.size(); j < phases; j++) {
+                PhaseTiming phaseTiming = phaseTimings.get(j);
+                writer.write(j == 0 ? "\n" : ",\n");
+                writer.write("      {\"phase\": "
+                        + json(phaseTiming.getPhase().name())
+                        + ", \"detail\": " + json(phaseTiming.getDetail())
+                        + ", \"duration_ms\": "
+                        + phaseTiming.getDuration().toMillis()
+                        + ", \"bytes\": " + phaseTiming.getBytes()
+                        + ", \"throughput_bytes_per_second\": "
+                        + phaseTiming.getThroughput() + "}");
+            }
+            writer.write(phaseTimings.isEmpty() ? "]\n" : "\n    ]\n");
+            writer.write("  }");
+        }
+        writer.write(results.isEmpty() ? "]\n" : "\n]\n");
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"")
+                || value.contains("\n")) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    private static String json(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder stringBuilder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    stringBuilder.append("\\\"");
+                    break;
+                case '\\':
+                    stringBuilder.append("\\\\");
+                    break;
+                case '\n':
+                    stringBuilder.append("\\n");
+                    break;
+                case '\r':
+                    stringBuilder.append("\\r");
+                    break;
+                case '\t':
+                    stringBuilder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        stringBuilder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        stringBuilder.append(c);
+                    }
+            }
+        }
+        return stringBuilder.append('"').toString();
+    }
+}
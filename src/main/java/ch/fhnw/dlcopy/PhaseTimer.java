@@ -0,0 +1,105 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.dlcopy.gui.DLCopyGUI;
+import ch.fhnw.util.StorageDevice;
+import java.time.Duration;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the phases of an operation on a storage device and reports them to
+ * the GUI. Short phases are best measured with try-with-resources:
+ * <pre>
+ * try (PhaseTimer.Measurement measurement
+ *         = context.getPhaseTimer().start(Phase.MKFS, device)) {
+ *     ...
+ * }
+ * </pre> Longer phases can also be finished explicitly. Phases that fail with
+ * an exception are only reported when their measurement is closed.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class PhaseTimer {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(PhaseTimer.class.getName());
+
+    private final DLCopyGUI dlCopyGUI;
+    private final StorageDevice storageDevice;
+
+    /**
+     * creates a new PhaseTimer
+     *
+     * @param dlCopyGUI the GUI where the phases are reported
+     * @param storageDevice the storage device of the operation or
+     * <tt>null</tt>, if the operation is not bound to a specific storage
+     * device (in this case the phases are only logged)
+     */
+    public PhaseTimer(DLCopyGUI dlCopyGUI, StorageDevice storageDevice) {
+        this.dlCopyGUI = dlCopyGUI;
+        this.storageDevice = storageDevice;
+    }
+
+    /**
+     * starts measuring a phase
+     *
+     * @param phase the phase
+     * @param detail details about the phase (e.g. the device or file system)
+     * or <tt>null</tt>
+     * @return the running measurement
+     */
+    public Measurement start(Phase phase, String detail) {
+        return new Measurement(phase, detail);
+    }
+
+    /**
+     * A running measurement of a phase
+     */
+    public class Measurement implements AutoCloseable {
+
+        private final Phase phase;
+        private final String detail;
+        private final long start;
+        private long bytes;
+        private boolean finished;
+
+        private Measurement(Phase phase, String detail) {
+            this.phase = phase;
+            this.detail = detail;
+            start = System.nanoTime();
+        }
+
+        /**
+         * sets the number of bytes processed in this phase
+         *
+         * @param bytes the number of bytes processed in this phase
+         */
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * finishes the measurement and reports the phase (only the first
+         * call has an effect)
+         */
+        public void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            PhaseTiming phaseTiming = new PhaseTiming(phase, detail,
+                    Duration.ofNanos(System.nanoTime() - start), bytes);
+            LOGGER.log(Level.INFO, "{0}: {1}", new Object[]{
+                storageDevice == null ? "-" : storageDevice.getFullDevice(),
+                phaseTiming});
+            if (storageDevice != null) {
+                dlCopyGUI.phaseFinished(storageDevice, phaseTiming);
+            }
+        }
+
+        @Override
+        public void close() {
+            finish();
+        }
+    }
+}
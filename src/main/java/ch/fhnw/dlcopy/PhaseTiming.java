@@ -0,0 +1,90 @@
+package ch.fhnw.dlcopy;
+
+import java.time.Duration;
+
+/**
+ * The timing of a single phase of an operation on a storage device
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class PhaseTiming {
+
+    private final Phase phase;
+    private final String detail;
+    private final Duration duration;
+    private final long bytes;
+
+    /**
+     * creates a new PhaseTiming
+     *
+     * @param phase the phase
+     * @param detail details about the phase (e.g. the device or file system)
+     * or <tt>null</tt>
+     * @param duration the duration of the phase
+     * @param bytes the number of bytes processed in this phase or 0, if not
+     * applicable
+     */
+    public PhaseTiming(Phase phase, String detail, Duration duration,
+            long bytes) {
+        this.phase = phase;
+        this.detail = detail;
+        this.duration = duration;
+        this.bytes = bytes;
+    }
+
+    /**
+     * returns the phase
+     *
+     * @return the phase
+     */
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * returns details about the phase or <tt>null</tt>
+     *
+     * @return details about the phase or <tt>null</tt>
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * returns the duration of the phase
+     *
+     * @return the duration of the phase
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * returns the number of bytes processed in this phase or 0, if not
+     * applicable
+     *
+     * @return the number of bytes processed in this phase or 0, if not
+     * applicable
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * returns the throughput (in byte/s) or 0, if not applicable
+     *
+     * @return the throughput (in byte/s) or 0, if not applicable
+     */
+    public long getThroughput() {
+        long millis = duration.toMillis();
+        return (millis == 0) ? 0 : bytes * 1000 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return phase + (detail == null ? "" : " " + detail) + ": "
+                + duration.toMillis() + " ms"
+                + (bytes == 0 ? "" : ", " + bytes + " byte, "
+                        + getThroughput() + " byte/s");
+    }
+}
@@ -0,0 +1,73 @@
+package ch.fhnw.dlcopy;
+
+/**
+ * A storage device that was already partitioned and formatted and is now
+ * ready for copying the system files.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class PreparedStorageDevice {
+
+    private final String efiDevice;
+    private final String exchangeDevice;
+    private final String dataDevice;
+    private final String systemDevice;
+
+    /**
+     * creates a new PreparedStorageDevice
+     *
+     * @param efiDevice the device file of the EFI partition
+     * @param exchangeDevice the device file of the exchange partition or
+     * <tt>null</tt>, if there is no exchange partition
+     * @param dataDevice the device file of the data partition or
+     * <tt>null</tt>, if there is no data partition
+     * @param systemDevice the device file of the system partition
+     */
+    public PreparedStorageDevice(String efiDevice, String exchangeDevice,
+            String dataDevice, String systemDevice) {
+        this.efiDevice = efiDevice;
+        this.exchangeDevice = exchangeDevice;
+        this.dataDevice = dataDevice;
+        this.systemDevice = systemDevice;
+    }
+
+    /**
+     * returns the device file of the EFI partition
+     *
+     * @return the device file of the EFI partition
+     */
+    public String getEfiDevice() {
+        return efiDevice;
+    }
+
+    /**
+     * returns the device file of the exchange partition or <tt>null</tt>, if
+     * there is no exchange partition
+     *
+     * @return the device file of the exchange partition or <tt>null</tt>, if
+     * there is no exchange partition
+     */
+    public String getExchangeDevice() {
+        return exchangeDevice;
+    }
+
+    /**
+     * returns the device file of the data partition or <tt>null</tt>, if
+     * there is no data partition
+     *
+     * @return the device file of the data partition or <tt>null</tt>, if
+     * there is no data partition
+     */
+    public String getDataDevice() {
+        return dataDevice;
+    }
+
+    /**
+     * returns the device file of the system partition
+     *
+     * @return the device file of the system partition
+     */
+    public String getSystemDevice() {
+        return systemDevice;
+    }
+}
@@ -0,0 +1,447 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.util.DbusTools;
+import ch.fhnw.util.ProcessExecutor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.parsers.ParserConfigurationException;
+import org.freedesktop.dbus.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.xml.sax.SAXException;
+
+/**
+ * Waits until storage devices and partitions are ready to be used after they
+ * have been changed (e.g. by partprobe, parted, sfdisk or mkfs).
+ * <br>
+ * We used to sleep for a fixed number of seconds after such changes. Instead
+ * we now wait for the udev event queue to settle and then check that the
+ * device nodes exist and that udisks reports the expected interfaces for
+ * them (or, after changing a partition, the changed partition property).
+ * Whenever udisks adds or removes interfaces we are woken up and check
+ * again. Short polling intervals are only used as a fallback (e.g. for device
+ * nodes without udisks objects or for changed properties). There is always a hard timeout, after which
+ * we give up waiting and let the caller continue.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class ReadinessWaiter {
+
+    /**
+     * the udisks interface of all block devices
+     */
+    public static final String BLOCK_INTERFACE
+            = "org.freedesktop.UDisks2.Block";
+    /**
+     * the udisks interface of partitions
+     */
+    public static final String PARTITION_INTERFACE
+            = "org.freedesktop.UDisks2.Partition";
+    /**
+     * the udisks interface of block devices with a partition table
+     */
+    public static final String PARTITION_TABLE_INTERFACE
+            = "org.freedesktop.UDisks2.PartitionTable";
+    /**
+     * the udisks interface of block devices with a mountable file system
+     */
+    public static final String FILESYSTEM_INTERFACE
+            = "org.freedesktop.UDisks2.Filesystem";
+    /**
+     * the udisks interface of encrypted block devices
+     */
+    public static final String ENCRYPTED_INTERFACE
+            = "org.freedesktop.UDisks2.Encrypted";
+
+    private static final Logger LOGGER
+            = Logger.getLogger(ReadinessWaiter.class.getName());
+    private static final String OBJECT_PATH_PREFIX
+            = "/org/freedesktop/UDisks2/block_devices/";
+    // We never wait longer than the longest fixed sleep we used to have.
+    // Devices that are not ready by then are left to the caller, exactly as
+    // it was the case with the fixed sleeps.
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    // the bootable flag of MBR partitions in the udisks partition flags
+    private static final long BOOTABLE_FLAG = 0x80;
+    private static final long POLL_INTERVAL = 250;
+    private static final Object MONITOR = new Object();
+    private static long eventCounter;
+    private static boolean signalHandlersAdded;
+
+    private ReadinessWaiter() {
+    }
+
+    /**
+     * waits for all current events of the udev event queue to be handled
+     *
+     * @param reason the reason for waiting (only used for logging)
+     */
+    public static void waitForUdev(String reason) {
+        long start = System.currentTimeMillis();
+        settleUdev(TIMEOUT);
+        logWaitTime(reason, start, true);
+    }
+
+    /**
+     * waits until the given device nodes exist
+     *
+     * @param reason the reason for waiting (only used for logging)
+     * @param devices the device nodes (e.g. /dev/sda1) to wait for
+     * @return <code>true</code>, if all device nodes appeared,
+     * <code>false</code> if the timeout was reached
+     */
+    public static boolean waitForDeviceNodes(
+            String reason, String... devices) {
+        return waitFor(reason, Collections.<String>emptyList(), devices);
+    }
+
+    /**
+     * waits until the given partitions exist and are known to udisks
+     *
+     * @param reason the reason for waiting (only used for logging)
+     * @param devices the partition device files (e.g. /dev/sda1)
+     * @return <code>true</code>, if all partitions are ready,
+     * <code>false</code> if the timeout was reached
+     */
+    public static boolean waitForPartitions(String reason, String... devices) {
+        return waitFor(reason,
+                Arrays.asList(BLOCK_INTERFACE, PARTITION_INTERFACE), devices);
+    }
+
+    /**
+     * waits until the given block devices exist and udisks knows about the
+     * file systems on them
+     *
+     * @param reason the reason for waiting (only used for logging)
+     * @param devices the device files (e.g. /dev/sda1)
+     * @return <code>true</code>, if all file systems are ready,
+     * <code>false</code> if the timeout was reached
+     */
+    public static boolean waitForFileSystems(
+            String reason, String... devices) {
+        return waitFor(reason,
+                Arrays.asList(BLOCK_INTERFACE, FILESYSTEM_INTERFACE), devices);
+    }
+
+    /**
+     * waits until the given devices exist and udisks reports the given
+     * interfaces for all of them
+     *
+     * @param reason the reason for waiting (only used for logging)
+     * @param interfaces the udisks interfaces the devices must provide
+     * @param devices the device files (e.g. /dev/sda1), <code>null</code>
+     * entries are ignored
+     * @return <code>true</code>, if all devices are ready,
+     * <code>false</code> if the timeout was reached
+     */
+    public static boolean waitFor(String reason, List<String> interfaces,
+            String... devices) {
+        return waitUntil(reason, device -> isReady(device, interfaces),
+                "missing interfaces " + interfaces, devices);
+    }
+
+    /**
+     * waits until udisks reports the given type for the given partitions
+     * (e.g. after changing the type with sfdisk)
+     *
+     * @param reason the reason for waiting (only used for logging)
+     * @param type the hexadecimal MBR partition type (e.g. "83" or "ef")
+     * @param devices the partition device files (e.g. /dev/sda1),
+     * <code>null</code> entries are ignored
+     * @return <code>true</code>, if all partitions have the given type,
+     * <code>false</code> if the timeout was reached
+     */
+    public static boolean waitForPartitionType(
+            String reason, String type, String... devices) {
+        if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
+            return waitForDeviceNodes(reason, devices);
+        }
+        int expectedType = Integer.parseInt(type, 16);
+        return waitUntil(reason, device -> {
+            String partitionType = getPartitionType(device);
+            if (partitionType == null) {
+                return false;
+            }
+            try {
+                return Integer.decode(partitionType) == expectedType;
+            } catch (NumberFormatException ex) {
+                // e.g. a GUID of a GPT partition
+                return partitionType.equalsIgnoreCase(type);
+            }
+        }, "partition type " + type, devices);
+    }
+
+    /**
+     * waits until udisks reports the given state of the boot flag for the
+     * given partitions
+     *
+     * @param reason the reason for waiting (only used for logging)
+     * @param bootFlag the expected state of the boot flag
+     * @param devices the partition device files (e.g. /dev/sda1),
+     * <code>null</code> entries are ignored
+     * @return <code>true</code>, if all partitions have the expected boot
+     * flag, <code>false</code> if the timeout was reached
+     */
+    public static boolean waitForBootFlag(
+            String reason, boolean bootFlag, String... devices) {
+        if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
+            return waitForDeviceNodes(reason, devices);
+        }
+        return waitUntil(reason, device -> {
+            Long flags = getPartitionFlags(device);
+            return (flags != null)
+                    && (((flags & BOOTABLE_FLAG) != 0) == bootFlag);
+        }, "boot flag " + bootFlag, devices);
+    }
+
+    /**
+     * waits until udisks reports a new size for the given partition (e.g.
+     * after resizing it with parted)
+     *
+     * @param reason the reason for waiting (only used for logging)
+     * @param device the partition device file (e.g. /dev/sda1)
+     * @param oldSize the size of the partition before it was resized
+     * @return <code>true</code>, if the partition has a new size,
+     * <code>false</code> if the timeout was reached
+     */
+    public static boolean waitForSizeChange(
+            String reason, String device, long oldSize) {
+        if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
+            return waitForPartitions(reason, device);
+        }
+        return waitUntil(reason, partition -> {
+            Long size = getSize(partition);
+            return (size != null) && (size != oldSize);
+        }, "size change from " + oldSize, device);
+    }
+
+    /**
+     * waits until udisks no longer knows about the given partitions (e.g.
+     * after removing them)
+     *
+     * @param reason the reason for waiting (only used for logging)
+     * @param devices the partition device files (e.g. /dev/sda1),
+     * <code>null</code> entries are ignored
+     * @return <code>true</code>, if all partitions are gone,
+     * <code>false</code> if the timeout was reached
+     */
+    public static boolean waitForRemoval(String reason, String... devices) {
+        return waitUntil(reason, device -> !Files.exists(Paths.get(device))
+                || !isReady(device, Arrays.asList(PARTITION_INTERFACE)),
+                "removal", devices);
+    }
+
+    private static boolean waitUntil(String reason, Predicate<String> ready,
+            String condition, String... devices) {
+
+        long start = System.currentTimeMillis();
+        long deadline = start + TIMEOUT;
+
+        addSignalHandlers();
+        settleUdev(TIMEOUT);
+
+        List<String> pendingDevices = new ArrayList<>();
+        for (String device : devices) {
+            if (device != null) {
+                pendingDevices.add(device);
+            }
+        }
+
+        while (true) {
+            long counter = getEventCounter();
+
+            pendingDevices.removeIf(ready);
+            if (pendingDevices.isEmpty()) {
+                logWaitTime(reason, start, true);
+                return true;
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                LOGGER.log(Level.WARNING, "still waiting for {0} ({1})",
+                        new Object[]{pendingDevices, condition});
+                logWaitTime(reason, start, false);
+                return false;
+            }
+
+            // Property changes are not signalled by the object manager,
+            // therefore we have to rely on polling for them.
+            try {
+                waitForEvent(counter, Math.min(remaining, POLL_INTERVAL));
+            } catch (InterruptedException ex) {
+                LOGGER.log(Level.SEVERE, "", ex);
+                logWaitTime(reason, start, false);
+                return false;
+            }
+
+            // udisks sends its signals while udev might still be busy with
+            // the device (e.g. running blkid)
+            settleUdev(Math.max(deadline - System.currentTimeMillis(), 0));
+        }
+    }
+
+    private static String getPartitionType(String device) {
+        try {
+            return DbusTools.getStringProperty(
+                    getBlockObjectPath(device), PARTITION_INTERFACE, "Type");
+        } catch (IOException | DBusException | DBusExecutionException ex) {
+            // udisks doesn't know about the partition (yet)
+            LOGGER.log(Level.FINE, "", ex);
+            return null;
+        }
+    }
+
+    private static Long getPartitionFlags(String device) {
+        try {
+            return DbusTools.getLongProperty(
+                    getBlockObjectPath(device), PARTITION_INTERFACE, "Flags");
+        } catch (IOException | DBusException | DBusExecutionException ex) {
+            // udisks doesn't know about the partition (yet)
+            LOGGER.log(Level.FINE, "", ex);
+            return null;
+        }
+    }
+
+    private static Long getSize(String device) {
+        try {
+            return DbusTools.getLongProperty(
+                    getBlockObjectPath(device), BLOCK_INTERFACE, "Size");
+        } catch (IOException | DBusException | DBusExecutionException ex) {
+            // udisks doesn't know about the partition (yet)
+            LOGGER.log(Level.FINE, "", ex);
+            return null;
+        }
+    }
+
+    private static String getBlockObjectPath(String device)
+            throws IOException {
+        // resolves symlinks like /dev/mapper/* to their real device node
+        return getObjectPath(
+                Paths.get(device).toRealPath().getFileName().toString());
+    }
+
+    private static boolean isReady(String device, List<String> interfaces) {
+
+        Path devicePath = Paths.get(device);
+        if (!Files.exists(devicePath)) {
+            LOGGER.log(Level.FINE, "{0} is still missing", device);
+            return false;
+        }
+
+        if (interfaces.isEmpty()
+                || DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
+            return true;
+        }
+
+        try {
+            List<String> interfaceNames
+                    = DbusTools.getInterfaceNames(getBlockObjectPath(device));
+            boolean ready = interfaceNames.containsAll(interfaces);
+            if (!ready) {
+                LOGGER.log(Level.FINE, "{0} only provides {1}",
+                        new Object[]{device, interfaceNames});
+            }
+            return ready;
+        } catch (IOException | SAXException | ParserConfigurationException
+                | DBusExecutionException ex) {
+            // udisks doesn't know about the device (yet)
+            LOGGER.log(Level.FINE, "", ex);
+            return false;
+        }
+    }
+
+    /**
+     * returns the udisks object path of a block device
+     *
+     * @param deviceName the name of the block device (e.g. "sda1" or "dm-0")
+     * @return the udisks object path of a block device
+     */
+    private static String getObjectPath(String deviceName) {
+        // udisks escapes every character that is not allowed in D-Bus object
+        // paths as "_" followed by its hex code (e.g. "dm-0" -> "dm_2d0")
+        StringBuilder stringBuilder = new StringBuilder(OBJECT_PATH_PREFIX);
+        for (char character : deviceName.toCharArray()) {
+            if ((character >= 'A' && character <= 'Z')
+                    || (character >= 'a' && character <= 'z')
+                    || (character >= '0' && character <= '9')
+                    || character == '_') {
+                stringBuilder.append(character);
+            } else {
+                stringBuilder.append(String.format("_%02x", (int) character));
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    private static void settleUdev(long timeout) {
+        ProcessExecutor processExecutor = new ProcessExecutor(true);
+        processExecutor.executeProcess(true, true, "udevadm", "settle",
+                "--timeout=" + Math.max(TimeUnit.MILLISECONDS.toSeconds(
+                        timeout), 1));
+    }
+
+    private static synchronized void addSignalHandlers() {
+        if (signalHandlersAdded
+                || DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
+            return;
+        }
+        signalHandlersAdded = true;
+        try {
+            DBusConnection connection
+                    = DBusConnection.getConnection(DBusConnection.SYSTEM);
+            connection.addSigHandler(
+                    UDisksEnumerator.UDisksObjectManager.InterfacesAdded.class,
+                    signal -> notifyEvent());
+            connection.addSigHandler(
+                    UDisksEnumerator.UDisksObjectManager.InterfacesRemoved.class,
+                    signal -> notifyEvent());
+        } catch (DBusException ex) {
+            LOGGER.log(Level.WARNING,
+                    "can't listen to udisks signals, falling back to polling",
+                    ex);
+        }
+    }
+
+    private static void notifyEvent() {
+        synchronized (MONITOR) {
+            eventCounter++;
+            MONITOR.notifyAll();
+        }
+    }
+
+    private static long getEventCounter() {
+        synchronized (MONITOR) {
+            return eventCounter;
+        }
+    }
+
+    private static void waitForEvent(long counter, long timeout)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (MONITOR) {
+            while (eventCounter == counter) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return;
+                }
+                MONITOR.wait(remaining);
+            }
+        }
+    }
+
+    private static void logWaitTime(String reason, long start, boolean ready) {
+        LOGGER.log(Level.INFO, "waited {0} ms for {1}{2}", new Object[]{
+            System.currentTimeMillis() - start, reason,
+            ready ? "" : " (not ready)"});
+    }
+}
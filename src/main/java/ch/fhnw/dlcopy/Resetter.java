@@ -24,7 +24,6 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.function.BiPredicate;
 import java.util.logging.Level;
@@ -97,6 +96,7 @@ public class Resetter extends SwingWorker<Boolean, Void> {
     private final boolean resetSystem;
     private final boolean restoreData;
     private final List<OverwriteEntry> overwriteEntries;
+    private final boolean discard;
     private final Lock lock;
 
     private int deviceListSize;
@@ -152,6 +152,9 @@ public class Resetter extends SwingWorker<Boolean, Void> {
      * @param restoreData if data should be restored at all
      * @param overwriteEntries the list of entries to overwrite (if restoreData
      * is true)
+     * @param discard if all blocks of partitions should be discarded before
+     * formatting them (only the Swing GUI supports this with its command line
+     * option "--discard")
      * @param lock the lock to aquire before executing in background
      */
     public Resetter(DLCopyGUI dlCopyGUI, List<StorageDevice> deviceList,
@@ -170,7 +173,8 @@ public class Resetter extends SwingWorker<Boolean, Void> {
             String newExchangePartitionLabel, boolean deleteOnDataPartition,
             boolean formatDataPartition, String dataPartitionFileSystem,
             boolean resetHome, boolean resetSystem, boolean restoreData,
-            List<OverwriteEntry> overwriteEntries, Lock lock) {
+            List<OverwriteEntry> overwriteEntries, boolean discard,
+            Lock lock) {
 
         this.dlCopyGUI = dlCopyGUI;
         this.deviceList = deviceList;
@@ -206,6 +210,7 @@ public class Resetter extends SwingWorker<Boolean, Void> {
         this.resetSystem = resetSystem;
         this.restoreData = restoreData;
         this.overwriteEntries = overwriteEntries;
+        this.discard = discard;
         this.lock = lock;
     }
 
@@ -259,12 +264,14 @@ public class Resetter extends SwingWorker<Boolean, Void> {
                         batchCounter, deviceListSize, storageDevice
                     });
 
+            ExecutionContext context
+                    = new ExecutionContext(dlCopyGUI, storageDevice);
             Partition exchangePartition = storageDevice.getExchangePartition();
             Partition dataPartition = storageDevice.getDataPartition();
 
             printDocuments(storageDevice, exchangePartition);
             try {
-                backup(storageDevice, exchangePartition);
+                backup(storageDevice, exchangePartition, context);
             } catch (Exception exception) {
                 // don't catch more specific exceptions, otherwise we will miss
                 // occuring runtime exceptions
@@ -276,9 +283,9 @@ public class Resetter extends SwingWorker<Boolean, Void> {
                 dlCopyGUI.showErrorMessage(errorMessage);
                 throw exception;
             }
-            resetExchangePartition(exchangePartition);
+            resetExchangePartition(exchangePartition, context);
             resetDataPartition(storageDevice.getSystemPartition(),
-                    dataPartition);
+                    dataPartition, context);
             restoreFiles(dataPartition);
 
             LOGGER.log(Level.INFO, "resetting of storage device finished: "
@@ -528,7 +535,7 @@ public class Resetter extends SwingWorker<Boolean, Void> {
     }
 
     private void backup(StorageDevice storageDevice,
-            Partition exchangePartition)
+            Partition exchangePartition, ExecutionContext context)
             throws DBusException, IOException, NoSuchAlgorithmException {
 
         if (!backupData) {
@@ -575,11 +582,15 @@ public class Resetter extends SwingWorker<Boolean, Void> {
 
         Source[] sources = new Source[]{new Source(source.toString(), ".*")};
         String[] destinations = new String[]{destination.toString()};
-        fileCopier.copy(new CopyJob(sources, destinations));
+        try (PhaseTimer.Measurement measurement = context.getPhaseTimer()
+                .start(Phase.BACKUP, destination.toString())) {
+            fileCopier.copy(new CopyJob(sources, destinations));
+            measurement.setBytes(fileCopier.getByteCount());
+        }
     }
 
-    private void resetExchangePartition(Partition exchangePartition)
-            throws IOException {
+    private void resetExchangePartition(Partition exchangePartition,
+            ExecutionContext context) throws IOException {
 
         if (!formatExchangePartition) {
             return;
@@ -595,31 +606,53 @@ public class Resetter extends SwingWorker<Boolean, Void> {
             } else {
                 label = newExchangePartitionLabel;
             }
+            if (discard) {
+                discard(exchangePartition, context);
+            }
             DLCopy.formatExchangePartition(
                     exchangePartition.getFullDeviceAndNumber(),
-                    label, exchangePartitionFileSystem, dlCopyGUI);
+                    label, exchangePartitionFileSystem, context);
+        }
+    }
+
+    private static void discard(Partition partition, ExecutionContext context)
+            throws IOException {
+        String device = partition.getFullDeviceAndNumber();
+        // blkdiscard opens the partition exclusively and fails while it is
+        // mounted (e.g. the exchange partition was mounted for the backup)
+        if (DLCopy.isMounted(device)) {
+            DLCopy.umount(device, context);
+        }
+        try (PhaseTimer.Measurement measurement
+                = context.getPhaseTimer().start(Phase.DISCARD, device)) {
+            context.setBlocksDiscarded(Discarder.discard(device, context));
         }
     }
 
-    private void resetDataPartition(
-            Partition systemPartition, Partition dataPartition)
+    private void resetDataPartition(Partition systemPartition,
+            Partition dataPartition, ExecutionContext context)
             throws DBusException, IOException {
 
         if (dataPartition == null || !deleteOnDataPartition) {
             return;
         }
 
-        ProcessExecutor processExecutor = new ProcessExecutor();
+        ProcessExecutor processExecutor = context.getProcessExecutor();
         String cleanupRoot = null;
 
         if (formatDataPartition) {
             // format data partition
             dlCopyGUI.showResetFormattingDataPartition();
 
+            if (discard) {
+                discard(dataPartition, context);
+            }
+
             // TODO: support encryption
             DLCopy.formatPersistencePartition(
                     dataPartition.getFullDeviceAndNumber(), false, null,
-                    false, null, false, dataPartitionFileSystem, dlCopyGUI);
+                    false, null, false, dataPartitionFileSystem, null,
+                    context);
 
             cleanupRoot = dataPartition.mount().getMountPath() + "/rw";
 
@@ -627,37 +660,41 @@ public class Resetter extends SwingWorker<Boolean, Void> {
             // remove files from data partition
             dlCopyGUI.showResetRemovingFiles();
 
-            MountInfo mountInfo = dataPartition.mount();
-            String mountPoint = mountInfo.getMountPath();
-            cleanupRoot = mountPoint;
-            if (!Files.exists(Paths.get(mountPoint, "home"))) {
-                // Debian 9 and newer
-                cleanupRoot = mountPoint + "/rw";
-            }
-            if (resetSystem && resetHome) {
-                // remove all files
-                // but keep "/lost+found/" and "persistence.conf"
-                processExecutor.executeProcess("find", mountPoint,
-                        "!", "-regex", mountPoint,
-                        "!", "-regex", mountPoint + "/lost\\+found",
-                        "!", "-regex", mountPoint + "/persistence.conf",
-                        "-delete");
-            } else {
-                if (resetSystem) {
-                    // remove all files but keep
-                    // "/lost+found/", "persistence.conf" and "/home/"
+            try (PhaseTimer.Measurement removingFiles = context.getPhaseTimer()
+                    .start(Phase.REMOVING_FILES,
+                            dataPartition.getFullDeviceAndNumber())) {
+                MountInfo mountInfo = dataPartition.mount();
+                String mountPoint = mountInfo.getMountPath();
+                cleanupRoot = mountPoint;
+                if (!Files.exists(Paths.get(mountPoint, "home"))) {
+                    // Debian 9 and newer
+                    cleanupRoot = mountPoint + "/rw";
+                }
+                if (resetSystem && resetHome) {
+                    // remove all files
+                    // but keep "/lost+found/" and "persistence.conf"
                     processExecutor.executeProcess("find", mountPoint,
                             "!", "-regex", mountPoint,
-                            "!", "-regex", cleanupRoot,
                             "!", "-regex", mountPoint + "/lost\\+found",
                             "!", "-regex", mountPoint + "/persistence.conf",
-                            "!", "-regex", cleanupRoot + "/home.*",
                             "-delete");
-                }
-                if (resetHome) {
-                    // only remove "/home/user/"
-                    processExecutor.executeProcess(
-                            "rm", "-rf", cleanupRoot + "/home/user/");
+                } else {
+                    if (resetSystem) {
+                        // remove all files but keep
+                        // "/lost+found/", "persistence.conf" and "/home/"
+                        processExecutor.executeProcess("find", mountPoint,
+                                "!", "-regex", mountPoint,
+                                "!", "-regex", cleanupRoot,
+                                "!", "-regex", mountPoint + "/lost\\+found",
+                                "!", "-regex", mountPoint + "/persistence.conf",
+                                "!", "-regex", cleanupRoot + "/home.*",
+                                "-delete");
+                    }
+                    if (resetHome) {
+                        // only remove "/home/user/"
+                        processExecutor.executeProcess(
+                                "rm", "-rf", cleanupRoot + "/home/user/");
+                    }
                 }
             }
         }
@@ -689,20 +726,20 @@ public class Resetter extends SwingWorker<Boolean, Void> {
             // restore "/home/user/" from "/etc/skel/"
             processExecutor.executeProcess("mkdir", "-p",
                     cleanupRoot + "/home/");
-            processExecutor.executeProcess("cp", "-a",
-                    cowPath + "/etc/skel/", cleanupRoot + "/home/user/");
+            try (PhaseTimer.Measurement measurement = context.getPhaseTimer()
+                    .start(Phase.FILE_COPY, "/etc/skel")) {
+                TreeCopier treeCopier = new TreeCopier(processExecutor);
+                treeCopier.copy(Paths.get(cowPath, "etc", "skel"),
+                        Paths.get(cleanupRoot, "home", "user"));
+                measurement.setBytes(treeCopier.getBytesDone());
+            }
             processExecutor.executeProcess("chown", "-R",
                     "user.user", cleanupRoot + "/home/user/");
 
             // disassemble union
-            try {
-                TimeUnit.SECONDS.sleep(5);
-            } catch (InterruptedException ex) {
-                LOGGER.log(Level.SEVERE, "", ex);
-            }
-            DLCopy.umount(cowPath, dlCopyGUI);
+            DLCopy.umount(cowPath, context);
             for (String readOnlyMountPoint : readOnlyMountPoints) {
-                DLCopy.umount(readOnlyMountPoint, dlCopyGUI);
+                DLCopy.umount(readOnlyMountPoint, context);
             }
             if (!systemMountInfo.alreadyMounted()) {
                 DLCopy.umount(systemPartition, dlCopyGUI);
@@ -201,7 +201,8 @@ public final class RunningSystemSource extends SystemSource {
     }
 
     @Override
-    public void installExtlinux(Partition bootPartition) throws IOException {
+    public synchronized void installExtlinux(Partition bootPartition)
+            throws IOException {
         String syslinuxDir = createSyslinuxDir(bootPartition);
         int returnValue = processExecutor.executeProcess(true, true,
                 "extlinux", "-i", syslinuxDir);
@@ -213,7 +214,10 @@ public final class RunningSystemSource extends SystemSource {
     }
 
     @Override
-    public void unmountTmpPartitions() {
+    public synchronized void unmountTmpPartitions() {
+        if (areTmpPartitionsRetained()) {
+            return;
+        }
         if (isEfiTmpMounted && efiPath != null) {
             try {
                 efiPartition.umount();
@@ -233,7 +237,7 @@ public final class RunningSystemSource extends SystemSource {
 
     }
 
-    private void mountEfiIfNeeded() throws DBusException, IOException {
+    private synchronized void mountEfiIfNeeded() throws DBusException, IOException {
         if (efiPath == null) {
             MountInfo efiMountInfo = efiPartition.mount();
             efiPath = efiMountInfo.getMountPath();
@@ -241,7 +245,7 @@ public final class RunningSystemSource extends SystemSource {
         }
     }
 
-    private void mountExchangeIfNeeded() throws DBusException, IOException {
+    private synchronized void mountExchangeIfNeeded() throws DBusException, IOException {
         if (exchangePath == null) {
             MountInfo bootMountInfo = exchangePartition.mount();
             exchangePath = bootMountInfo.getMountPath();
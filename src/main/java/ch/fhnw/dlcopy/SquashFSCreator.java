@@ -12,10 +12,18 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -39,14 +47,22 @@ public class SquashFSCreator implements PropertyChangeListener {
     private static final Pattern MKSQUASHFS_PATTERN
             = Pattern.compile("\\[.* (.*)/(.*) .*");
 
+    // the exports are stored in a temporary directory with this prefix
+    private static final String EXPORT_DIRECTORY_PREFIX = "Lernstick-SquashFS";
+    private static final String SQUASHFS_FILE = "lernstick.squashfs";
+    private static final String FINGERPRINT_FILE = "lernstick.fingerprint";
+
     private final DLCopyGUI dlCopyGUI;
     private final SystemSource systemSource;
     private final String tmpDirectory;
     private final boolean showNotUsedDialog;
     private final boolean autoStartInstaller;
+    private final CompressionProfile compressionProfile;
+    private final boolean compressionCalibration;
 
     private String squashFsPath;
     private LogindInhibit inhibit = null;
+    private CompressionCalibration.Estimate compressionEstimate;
 
     /**
      * creates a new ISOCreator
@@ -58,15 +74,21 @@ public class SquashFSCreator implements PropertyChangeListener {
      * should be shown
      * @param autoStartInstaller if the installer should start automatically if
      * no datapartition is in use
+     * @param compressionProfile the compression profile for the squashfs file
+     * @param compressionCalibration if the size and duration of compressing
+     * the squashfs file should be estimated before compressing
      */
     public SquashFSCreator(DLCopyGUI dlCopyGUI, SystemSource systemSource,
             String tmpDirectory, boolean showNotUsedDialog,
-            boolean autoStartInstaller) {
+            boolean autoStartInstaller, CompressionProfile compressionProfile,
+            boolean compressionCalibration) {
         this.dlCopyGUI = dlCopyGUI;
         this.systemSource = systemSource;
         this.tmpDirectory = tmpDirectory;
         this.showNotUsedDialog = showNotUsedDialog;
         this.autoStartInstaller = autoStartInstaller;
+        this.compressionProfile = compressionProfile;
+        this.compressionCalibration = compressionCalibration;
     }
 
     public Boolean createSquashFS() throws Exception {
@@ -75,12 +97,7 @@ public class SquashFSCreator implements PropertyChangeListener {
         try {
             dlCopyGUI.showSquashFSProgressMessage(
                     STRINGS.getString("Copying_Files"));
-
-            // create new temporary directory in selected directory
-            File tmpDirFile = LernstickFileTools.createTempDirectory(
-                    new File(tmpDirectory), "Lernstick-SquashFS");
-            String targetDirectory = tmpDirFile.getPath();
-            createSquashFS(targetDirectory);
+            exportDataPartition();
 
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, null, ex);
@@ -103,10 +120,18 @@ public class SquashFSCreator implements PropertyChangeListener {
                     int doneInt = Integer.parseInt(doneString);
                     int maxInt = Integer.parseInt(maxString);
                     final int progress = (doneInt * 100) / maxInt;
-                    String message = STRINGS.getString(
-                            "Compressing_Filesystem_Progress");
-                    message = MessageFormat.format(
-                            message, progress + "%");
+                    String message;
+                    if (compressionEstimate == null) {
+                        message = MessageFormat.format(STRINGS.getString(
+                                "Compressing_Filesystem_Progress"),
+                                progress + "%");
+                    } else {
+                        message = MessageFormat.format(STRINGS.getString(
+                                "Compressing_Filesystem_Progress_Estimate"),
+                                progress + "%",
+                                compressionEstimate.getSizeString(),
+                                compressionEstimate.getDurationString());
+                    }
                     dlCopyGUI.showSquashFSProgressMessage(message, progress);
                 } catch (NumberFormatException ex) {
                     LOGGER.log(Level.WARNING,
@@ -120,8 +145,7 @@ public class SquashFSCreator implements PropertyChangeListener {
         return squashFsPath;
     }
 
-    private void createSquashFS(String targetDirectory)
-            throws IOException, DBusException {
+    private void exportDataPartition() throws IOException, DBusException {
 
         dlCopyGUI.showSquashFSProgressMessage(
                 STRINGS.getString("Mounting_Partitions"));
@@ -137,7 +161,9 @@ public class SquashFSCreator implements PropertyChangeListener {
         // check if the data partition is mounted in read-write mode
         boolean remountedReadWrite = false;
         try {
-            Files.createTempFile(Paths.get(dataPartitionPath), null, null);
+            // the test file must not change the fingerprint of the next export
+            Files.delete(Files.createTempFile(
+                    Paths.get(dataPartitionPath), null, null));
         } catch (IOException ex) {
             // temporarily remount the data partition in read-write mode
             ProcessExecutor processExecutor = new ProcessExecutor();
@@ -146,6 +172,33 @@ public class SquashFSCreator implements PropertyChangeListener {
             remountedReadWrite = true;
         }
 
+        // exclude file handling
+        File excludeFile;
+        File defaultExcludes = new File(dataPartitionPath,
+                "/etc/mksquashfs_exclude");
+
+        if (defaultExcludes.exists()) {
+            LOGGER.log(Level.INFO,
+                    "using default exclude file \"{0}\"", defaultExcludes);
+            excludeFile = defaultExcludes;
+
+        } else {
+            LOGGER.log(Level.INFO, "default exclude file \"{0}\" doesn't exist",
+                    defaultExcludes);
+            excludeFile = File.createTempFile("mksquashfs_exclude", null);
+            try (FileWriter writer = new FileWriter(excludeFile)) {
+                writer.write("boot\n"
+                        + "tmp\n"
+                        + "var/lib/apt/lists\n"
+                        + "var/lib/clamav\n"
+                        + "var/log\n"
+                        + "var/cache\n"
+                        + "var/tmp");
+            } catch (IOException iOException) {
+                LOGGER.log(Level.WARNING, "", iOException);
+            }
+        }
+
         // !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
         // Using a layered file system here is not possible because we need to
         // include the whiteout files of the data partition into our squashfs.
@@ -171,44 +224,75 @@ public class SquashFSCreator implements PropertyChangeListener {
                 showNotUsedDialog ? "true" : "false");
         lernstickWelcomeProperties.setProperty("AutoStartInstaller",
                 autoStartInstaller ? "true" : "false");
-        writeProperties(lernstickWelcomeProperties, propertiesFile);
-
-        // exclude file handling
-        File excludeFile;
-        File defaultExcludes = new File(dataPartitionPath,
-                "/etc/mksquashfs_exclude");
 
-        if (defaultExcludes.exists()) {
-            LOGGER.log(Level.INFO,
-                    "using default exclude file \"{0}\"", defaultExcludes);
-            excludeFile = defaultExcludes;
+        // The lernstickWelcome properties file is only temporarily changed
+        // and therefore represented by its content with our settings.
+        dlCopyGUI.showSquashFSProgressMessage(
+                STRINGS.getString("Searching_Previous_Exports"));
+        SquashFSExcludes excludes = new SquashFSExcludes(excludeFile.toPath());
+        String fingerprint = new TreeFingerprint(Paths.get(dataPartitionPath),
+                excludes, Set.of(Paths.get("etc/lernstickWelcome")))
+                .compute(getFingerprintParameters(
+                        lernstickWelcomeProperties, excludes));
+        squashFsPath = findPreviousExport(fingerprint);
 
-        } else {
-            LOGGER.log(Level.INFO, "default exclude file \"{0}\" doesn't exist",
-                    defaultExcludes);
-            excludeFile = File.createTempFile("mksquashfs_exclude", null);
-            try (FileWriter writer = new FileWriter(excludeFile)) {
-                writer.write("boot\n"
-                        + "tmp\n"
-                        + "var/lib/apt/lists\n"
-                        + "var/lib/clamav\n"
-                        + "var/log\n"
-                        + "var/cache\n"
-                        + "var/tmp");
-            } catch (IOException iOException) {
-                LOGGER.log(Level.WARNING, "", iOException);
+        if (squashFsPath == null) {
+            writeProperties(lernstickWelcomeProperties, propertiesFile);
+            try {
+                // create new temporary directory in selected directory
+                File tmpDirFile = LernstickFileTools.createTempDirectory(
+                        new File(tmpDirectory), EXPORT_DIRECTORY_PREFIX);
+                squashFsPath = tmpDirFile.getPath() + "/" + SQUASHFS_FILE;
+                createSquashFS(dataPartitionPath, excludeFile);
+                writeFingerprint(fingerprint);
+            } finally {
+                lernstickWelcomeProperties.setProperty(
+                        "ShowNotUsedInfo", originalShowNotUsed);
+                lernstickWelcomeProperties.setProperty(
+                        "AutoStartInstaller", originalAutoStart);
+                writeProperties(lernstickWelcomeProperties, propertiesFile);
             }
+        } else {
+            LOGGER.log(Level.INFO, "data partition is unchanged since the "
+                    + "export {0}, reusing it", squashFsPath);
+        }
+
+        // cleanup
+        if (!dataMountInfo.alreadyMounted()) {
+            systemSource.getDataPartition().umount();
+        } else if (remountedReadWrite) {
+            ProcessExecutor processExecutor = new ProcessExecutor();
+            processExecutor.executeProcess(true, true, "mount", "-o",
+                    "remount,ro", dataPartition.getFullDeviceAndNumber());
+        }
+    }
+
+    private void createSquashFS(String dataPartitionPath, File excludeFile)
+            throws IOException {
+
+        if (compressionCalibration) {
+            dlCopyGUI.showSquashFSProgressMessage(
+                    STRINGS.getString("Calibrating_Compression"));
+            compressionEstimate = new CompressionCalibration(
+                    Paths.get(dataPartitionPath), excludeFile.toPath(),
+                    CompressionCalibration.DEFAULT_SAMPLE_SIZE)
+                    .calibrate(compressionProfile, tmpDirectory);
         }
 
         // create new squashfs image
-        squashFsPath = targetDirectory + "/lernstick.squashfs";
         dlCopyGUI.showSquashFSProgressMessage(
                 STRINGS.getString("Compressing_Filesystem"));
         PROCESS_EXECUTOR.addPropertyChangeListener(this);
-        int exitValue = PROCESS_EXECUTOR.executeProcess(true, true, "mksquashfs",
-                dataPartitionPath, squashFsPath,
-                "-comp", "zstd", "-Xcompression-level", "22", "-wildcards",
-                "-ef", excludeFile.getPath());
+        List<String> mksquashfsCommand = new ArrayList<>();
+        mksquashfsCommand.add("mksquashfs");
+        mksquashfsCommand.add(dataPartitionPath);
+        mksquashfsCommand.add(squashFsPath);
+        mksquashfsCommand.addAll(compressionProfile.getMksquashfsOptions());
+        mksquashfsCommand.add("-wildcards");
+        mksquashfsCommand.add("-ef");
+        mksquashfsCommand.add(excludeFile.getPath());
+        int exitValue = PROCESS_EXECUTOR.executeProcess(true, true,
+                mksquashfsCommand.toArray(String[]::new));
             LOGGER.log(Level.FINEST, PROCESS_EXECUTOR.getStdOut());
         if (exitValue != 0) {
             LOGGER.log(Level.SEVERE, PROCESS_EXECUTOR.getStdErr());
@@ -216,19 +300,69 @@ public class SquashFSCreator implements PropertyChangeListener {
                     STRINGS.getString("Error_Creating_Squashfs") + ": " + exitValue);
         }
         PROCESS_EXECUTOR.removePropertyChangeListener(this);
+    }
 
-        // cleanup
-        lernstickWelcomeProperties.setProperty(
-                "ShowNotUsedInfo", originalShowNotUsed);
-        lernstickWelcomeProperties.setProperty(
-                "AutoStartInstaller", originalAutoStart);
-        writeProperties(lernstickWelcomeProperties, propertiesFile);
-        if (!dataMountInfo.alreadyMounted()) {
-            systemSource.getDataPartition().umount();
-        } else if (remountedReadWrite) {
-            ProcessExecutor processExecutor = new ProcessExecutor();
-            processExecutor.executeProcess(true, true, "mount", "-o",
-                    "remount,ro", dataPartition.getFullDeviceAndNumber());
+    // everything besides the data partition tree that changes the squashfs
+    private String getFingerprintParameters(Properties lernstickWelcome,
+            SquashFSExcludes excludes) {
+        StringBuilder parameters = new StringBuilder();
+        parameters.append("compression=").append(compressionProfile.name())
+                .append('\n');
+        for (String exclude : excludes.getLines()) {
+            parameters.append("exclude=").append(exclude).append('\n');
+        }
+        new TreeMap<>(lernstickWelcome).forEach((key, value)
+                -> parameters.append("lernstickWelcome.").append(key)
+                        .append('=').append(value).append('\n'));
+        return parameters.toString();
+    }
+
+    /**
+     * searches the temporary directory for a previous export with the given
+     * fingerprint
+     *
+     * @param fingerprint the fingerprint of the data partition
+     * @return the path of the squashfs file of the previous export or
+     * <tt>null</tt>, if there is no such export
+     */
+    private String findPreviousExport(String fingerprint) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                Paths.get(tmpDirectory), EXPORT_DIRECTORY_PREFIX + "*")) {
+            for (Path directory : stream) {
+                Path squashFsFile = directory.resolve(SQUASHFS_FILE);
+                Path fingerprintFile = directory.resolve(FINGERPRINT_FILE);
+                if (!Files.isRegularFile(squashFsFile)
+                        || !Files.isRegularFile(fingerprintFile)) {
+                    continue;
+                }
+                Properties properties = new Properties();
+                try (Reader reader = Files.newBufferedReader(fingerprintFile)) {
+                    properties.load(reader);
+                }
+                // the size detects squashfs files that were changed or
+                // truncated after the export
+                if (fingerprint.equals(properties.getProperty("fingerprint"))
+                        && String.valueOf(Files.size(squashFsFile)).equals(
+                                properties.getProperty("size"))) {
+                    return squashFsFile.toString();
+                }
+            }
+        } catch (IOException ex) {
+            // not fatal, the data partition is just exported again
+            LOGGER.log(Level.WARNING, "", ex);
+        }
+        return null;
+    }
+
+    private void writeFingerprint(String fingerprint) throws IOException {
+        Path squashFsFile = Paths.get(squashFsPath);
+        Properties properties = new Properties();
+        properties.setProperty("fingerprint", fingerprint);
+        properties.setProperty("size",
+                String.valueOf(Files.size(squashFsFile)));
+        try (Writer writer = Files.newBufferedWriter(
+                squashFsFile.resolveSibling(FINGERPRINT_FILE))) {
+            properties.store(writer, "fingerprint of the data partition");
         }
     }
 
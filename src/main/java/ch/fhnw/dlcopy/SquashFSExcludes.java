@@ -0,0 +1,68 @@
+package ch.fhnw.dlcopy;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The patterns of an mksquashfs exclude file (as used with the option
+ * <tt>-wildcards</tt>), matched against paths relative to the source
+ * directory.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class SquashFSExcludes {
+
+    private final List<String> lines = new ArrayList<>();
+    private final List<PathMatcher> matchers = new ArrayList<>();
+
+    /**
+     * reads an exclude file
+     *
+     * @param excludeFile the exclude file or <tt>null</tt>, if no files are
+     * excluded
+     * @throws IOException if reading the exclude file fails
+     */
+    public SquashFSExcludes(Path excludeFile) throws IOException {
+        if (excludeFile != null) {
+            for (String line : Files.readAllLines(excludeFile)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    lines.add(line);
+                    matchers.add(FileSystems.getDefault().getPathMatcher(
+                            "glob:" + line));
+                }
+            }
+        }
+    }
+
+    /**
+     * checks if a path is excluded
+     *
+     * @param relativePath the path relative to the source directory
+     * @return <tt>true</tt>, if the path is excluded, <tt>false</tt>
+     * otherwise
+     */
+    public boolean isExcluded(Path relativePath) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * returns the patterns of the exclude file (without comments and empty
+     * lines)
+     *
+     * @return the patterns of the exclude file
+     */
+    public List<String> getLines() {
+        return lines;
+    }
+}
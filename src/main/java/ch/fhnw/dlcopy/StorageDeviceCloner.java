@@ -0,0 +1,368 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.util.Partition;
+import ch.fhnw.util.ProcessExecutor;
+import ch.fhnw.util.StorageDevice;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.freedesktop.dbus.exceptions.DBusException;
+
+/**
+ * Clones a completely installed storage device (the golden storage device) to
+ * other storage devices. Only the partition table and the used blocks of all
+ * file systems are copied. Therefore the target storage devices don't need to
+ * be formatted, filled file by file and made bootable one after another.
+ * <br>
+ * The file systems of every clone get new UUIDs and the exchange partition
+ * gets its own label. When the target storage device is larger than the
+ * golden storage device, the data partition is enlarged accordingly.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class StorageDeviceCloner {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(StorageDeviceCloner.class.getName());
+
+    private static final Pattern HEADER_PATTERN
+            = Pattern.compile("sector-size:\\s*(\\d+)");
+    private static final Pattern PARTITION_PATTERN = Pattern.compile(
+            "\\S*?(\\d+) : start=\\s*(\\d+), size=\\s*(\\d+), (.*)");
+    private static final Pattern NUMBER_PATTERN = Pattern.compile(".*?(\\d+)");
+
+    private final SystemSource source;
+    private final StorageDevice goldenStorageDevice;
+    private final PreparedStorageDevice goldenPreparedStorageDevice;
+    private final String exchangePartitionFileSystem;
+    private final String dataPartitionFileSystem;
+    private final boolean discard;
+
+    /**
+     * creates a new StorageDeviceCloner
+     *
+     * @param source the system source that was installed on the golden
+     * storage device
+     * @param goldenStorageDevice the completely installed storage device
+     * @param goldenPreparedStorageDevice the partitions of the golden storage
+     * device
+     * @param exchangePartitionFileSystem the file system of the exchange
+     * partition
+     * @param dataPartitionFileSystem the file system of the data partition
+     * @param discard if all blocks of the target storage devices should be
+     * discarded before cloning
+     */
+    public StorageDeviceCloner(SystemSource source,
+            StorageDevice goldenStorageDevice,
+            PreparedStorageDevice goldenPreparedStorageDevice,
+            String exchangePartitionFileSystem,
+            String dataPartitionFileSystem, boolean discard) {
+        this.source = source;
+        this.goldenStorageDevice = goldenStorageDevice;
+        this.goldenPreparedStorageDevice = goldenPreparedStorageDevice;
+        this.exchangePartitionFileSystem = exchangePartitionFileSystem;
+        this.dataPartitionFileSystem = dataPartitionFileSystem;
+        this.discard = discard;
+    }
+
+    /**
+     * checks if the golden storage device can be cloned to a given storage
+     * device
+     *
+     * @param storageDevice the storage device to check
+     * @return <code>true</code>, if the golden storage device can be cloned
+     * to the given storage device, <code>false</code> otherwise
+     */
+    public boolean canClone(StorageDevice storageDevice) {
+        return storageDevice.getSize() >= goldenStorageDevice.getSize();
+    }
+
+    /**
+     * clones the golden storage device to the storage device of a context
+     *
+     * @param exchangePartitionLabel the label of the exchange partition of the
+     * clone
+     * @param context the context of the current operation, including the
+     * target storage device
+     * @throws InterruptedException when cloning was interrupted
+     * @throws IOException when an I/O exception occurs
+     * @throws DBusException when there was a problem with DBus
+     */
+    public void clone(String exchangePartitionLabel, ExecutionContext context)
+            throws InterruptedException, IOException, DBusException {
+
+        StorageDevice storageDevice = context.getStorageDevice();
+        String goldenDevice = goldenStorageDevice.getFullDevice();
+        String device = storageDevice.getFullDevice();
+        LOGGER.log(Level.INFO, "cloning {0} to {1}",
+                new Object[]{goldenDevice, device});
+
+        // the golden storage device is only read but its file systems must
+        // not be changed while we copy their blocks
+        DLCopy.umountPartitions(goldenDevice, context);
+        DLCopy.releaseAndWipe(device, discard, context);
+
+        try (PhaseTimer.Measurement partitioning
+                = context.getPhaseTimer().start(Phase.PARTITIONING, device)) {
+            String dataPartitionNumber = getPartitionNumber(
+                    goldenPreparedStorageDevice.getDataDevice());
+            copyPartitionTable(goldenDevice, device,
+                    storageDevice.getSize() - goldenStorageDevice.getSize(),
+                    dataPartitionNumber, context);
+            if (!DLCopy.ARCHITECTURE.equals("aarch64")) {
+                DLCopy.installMbr(source, device, context);
+            }
+        }
+
+        // determine partitions of the clone
+        String efiDevice = getCloneDevice(storageDevice,
+                goldenPreparedStorageDevice.getEfiDevice());
+        String exchangeDevice = getCloneDevice(storageDevice,
+                goldenPreparedStorageDevice.getExchangeDevice());
+        String dataDevice = getCloneDevice(storageDevice,
+                goldenPreparedStorageDevice.getDataDevice());
+        String systemDevice = getCloneDevice(storageDevice,
+                goldenPreparedStorageDevice.getSystemDevice());
+
+        try (PhaseTimer.Measurement udevWait = context.getPhaseTimer().start(
+                Phase.UDEV_WAIT, "partitions of " + device)) {
+            context.getProcessExecutor().executeProcess("partprobe", device);
+            ReadinessWaiter.waitForPartitions("partitions of " + device,
+                    efiDevice, exchangeDevice, dataDevice, systemDevice);
+        }
+
+        // copy the used blocks of all file systems and make them unique
+        cloneFileSystem(goldenPreparedStorageDevice.getEfiDevice(),
+                efiDevice, "vfat", null, false, context);
+        if (exchangeDevice != null) {
+            cloneFileSystem(goldenPreparedStorageDevice.getExchangeDevice(),
+                    exchangeDevice, exchangePartitionFileSystem,
+                    exchangePartitionLabel, false, context);
+        }
+        if (dataDevice != null) {
+            cloneFileSystem(goldenPreparedStorageDevice.getDataDevice(),
+                    dataDevice, dataPartitionFileSystem, null, true, context);
+        }
+        cloneFileSystem(goldenPreparedStorageDevice.getSystemDevice(),
+                systemDevice, "ext3", null, false, context);
+
+        ReadinessWaiter.waitForFileSystems("file systems of " + device,
+                exchangeDevice, efiDevice, systemDevice, dataDevice);
+    }
+
+    private void copyPartitionTable(String goldenDevice, String device,
+            long additionalSize, String dataPartitionNumber,
+            ExecutionContext context) throws IOException {
+
+        ProcessExecutor processExecutor = context.getProcessExecutor();
+        if (processExecutor.executeProcess(
+                true, true, "sfdisk", "--dump", goldenDevice) != 0) {
+            String errorMessage = "could not read partition table of "
+                    + goldenDevice;
+            LOGGER.severe(errorMessage);
+            throw new IOException(errorMessage);
+        }
+
+        // Only the layout of the partitions is copied. The disk identifier
+        // must be unique and the device names of the target are different.
+        long sectorSize = 512;
+        List<String> partitionLines = new ArrayList<>();
+        for (String line : processExecutor.getStdOutList()) {
+            Matcher matcher = HEADER_PATTERN.matcher(line);
+            if (matcher.matches()) {
+                sectorSize = Long.parseLong(matcher.group(1));
+                continue;
+            }
+            matcher = PARTITION_PATTERN.matcher(line);
+            if (matcher.matches()) {
+                partitionLines.add(line);
+            }
+        }
+
+        // the additional space of larger targets goes to the data partition,
+        // all following partitions are moved (aligned to full MiBs)
+        long additionalSectors = (dataPartitionNumber == null) ? 0
+                : (additionalSize / DLCopy.MEGA) * DLCopy.MEGA / sectorSize;
+        boolean afterDataPartition = false;
+        StringBuilder script = new StringBuilder();
+        script.append("sfdisk ").append(device).append(" << EOF\n");
+        script.append("label: dos\n");
+        script.append("unit: sectors\n\n");
+        for (String line : partitionLines) {
+            Matcher matcher = PARTITION_PATTERN.matcher(line);
+            matcher.matches();
+            String number = matcher.group(1);
+            long start = Long.parseLong(matcher.group(2));
+            long size = Long.parseLong(matcher.group(3));
+            if (afterDataPartition) {
+                start += additionalSectors;
+            }
+            if (number.equals(dataPartitionNumber)) {
+                size += additionalSectors;
+                afterDataPartition = true;
+            }
+            script.append("start=").append(start);
+            script.append(", size=").append(size);
+            script.append(", ").append(matcher.group(4)).append('\n');
+        }
+        script.append("EOF\n");
+
+        if (processExecutor.executeScript(
+                true, true, script.toString()) != 0) {
+            LOGGER.severe(processExecutor.getOutput());
+            String errorMessage = "could not copy partition table from "
+                    + goldenDevice + " to " + device;
+            LOGGER.severe(errorMessage);
+            throw new IOException(errorMessage);
+        }
+    }
+
+    private void cloneFileSystem(String goldenDevice, String device,
+            String fileSystem, String label, boolean grow,
+            ExecutionContext context) throws IOException, DBusException {
+
+        ProcessExecutor processExecutor = context.getProcessExecutor();
+
+        // partclone only copies the blocks that are used by the file system
+        int exitValue;
+        try (PhaseTimer.Measurement cloning = context.getPhaseTimer().start(
+                Phase.CLONING, fileSystem + ' ' + device)) {
+            exitValue = processExecutor.executeProcess(true, true,
+                    "partclone." + getPartcloneType(fileSystem), "-b",
+                    "-s", goldenDevice, "-o", device);
+        }
+        if (exitValue != 0) {
+            LOGGER.severe(processExecutor.getOutput());
+            String errorMessage = "could not clone " + goldenDevice
+                    + " to " + device;
+            LOGGER.severe(errorMessage);
+            throw new IOException(errorMessage);
+        }
+
+        // Identical UUIDs confuse udisks (and btrfs even refuses to mount a
+        // file system when another one with the same UUID is known).
+        String volumeID = String.format("%08X",
+                ThreadLocalRandom.current().nextInt());
+        List<String[]> commands = new ArrayList<>();
+        switch (fileSystem.toLowerCase()) {
+            case "vfat":
+            case "fat32":
+                commands.add(new String[]{
+                    "fatlabel", "-i", device, volumeID});
+                if (label != null) {
+                    commands.add(new String[]{"fatlabel", device, label});
+                }
+                break;
+
+            case "exfat":
+                commands.add(new String[]{
+                    "tune.exfat", "-I", "0x" + volumeID, device});
+                if (label != null) {
+                    commands.add(new String[]{"exfatlabel", device, label});
+                }
+                break;
+
+            case "ntfs":
+                commands.add(label == null
+                        ? new String[]{"ntfslabel", "--new-serial", device}
+                        : new String[]{
+                            "ntfslabel", "--new-serial", device, label});
+                break;
+
+            case "btrfs":
+                commands.add(new String[]{"btrfstune", "-f", "-u", device});
+                break;
+
+            default:
+                // ext2, ext3 and ext4
+                // (resize2fs and tune2fs -U need a freshly checked file system)
+                exitValue = processExecutor.executeProcess(true, true,
+                        "e2fsck", "-f", "-p", device);
+                if (exitValue > 1) {
+                    LOGGER.severe(processExecutor.getOutput());
+                    String errorMessage = "checking file system on "
+                            + device + " failed";
+                    LOGGER.severe(errorMessage);
+                    throw new IOException(errorMessage);
+                }
+                if (grow) {
+                    commands.add(new String[]{"resize2fs", device});
+                }
+                commands.add(new String[]{
+                    "tune2fs", "-U", "random", device});
+        }
+        for (String[] command : commands) {
+            if (processExecutor.executeProcess(true, true, command) != 0) {
+                LOGGER.severe(processExecutor.getOutput());
+                String errorMessage = "adopting cloned file system on "
+                        + device + " failed";
+                LOGGER.severe(errorMessage);
+                throw new IOException(errorMessage);
+            }
+        }
+
+        if (grow && fileSystem.equals("btrfs")) {
+            // btrfs can only be resized when mounted
+            ReadinessWaiter.waitForFileSystems(
+                    "file system of " + device, device);
+            Partition partition = Partition.getPartitionFromDeviceAndNumber(
+                    device.substring(5));
+            String mountPath = partition.mount().getMountPath();
+            if (mountPath == null) {
+                throw new IOException("could not mount " + device);
+            }
+            exitValue = processExecutor.executeProcess(true, true,
+                    "btrfs", "filesystem", "resize", "max", mountPath);
+            partition.umount();
+            if (exitValue != 0) {
+                LOGGER.severe(processExecutor.getOutput());
+                String errorMessage = "could not resize " + device;
+                LOGGER.severe(errorMessage);
+                throw new IOException(errorMessage);
+            }
+        }
+    }
+
+    private static String getPartcloneType(String fileSystem) {
+        switch (fileSystem.toLowerCase()) {
+            case "vfat":
+            case "fat32":
+                return "fat";
+            case "exfat":
+                return "exfat";
+            case "ntfs":
+                return "ntfs";
+            case "btrfs":
+                return "btrfs";
+            default:
+                return "extfs";
+        }
+    }
+
+    private static String getPartitionNumber(String partitionDevice) {
+        if (partitionDevice == null) {
+            return null;
+        }
+        Matcher matcher = NUMBER_PATTERN.matcher(partitionDevice);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    private static String getCloneDevice(StorageDevice storageDevice,
+            String goldenPartitionDevice) {
+        String number = getPartitionNumber(goldenPartitionDevice);
+        if (number == null) {
+            return null;
+        }
+        StorageDevice.Type deviceType = storageDevice.getType();
+        boolean pPartition
+                = deviceType == StorageDevice.Type.SDMemoryCard
+                || deviceType == StorageDevice.Type.NVMe;
+        return storageDevice.getFullDevice() + (pPartition ? "p" : "")
+                + number;
+    }
+}
@@ -3,6 +3,8 @@ package ch.fhnw.dlcopy;
 import ch.fhnw.util.StorageDevice;
 import java.time.Duration;
 import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * the result of an operation on a storage device
@@ -16,6 +18,9 @@ public class StorageDeviceResult {
     private LocalTime finishTime;
     private Duration duration;
     private String errorMessage;
+    private volatile InstallationStage stage;
+    private final List<PhaseTiming> phaseTimings
+            = new CopyOnWriteArrayList<>();
 
     /**
      * creates a new StorageDeviceResult
@@ -92,4 +97,42 @@ public class StorageDeviceResult {
     public void setErrorMessage(String errorMessage) {
         this.errorMessage = errorMessage;
     }
+
+    /**
+     * returns the current stage of an installation or <tt>null</tt> if the
+     * stage is unknown
+     *
+     * @return the current stage of an installation or <tt>null</tt> if the
+     * stage is unknown
+     */
+    public InstallationStage getStage() {
+        return stage;
+    }
+
+    /**
+     * sets the current stage of an installation
+     *
+     * @param stage the current stage of an installation
+     */
+    public void setStage(InstallationStage stage) {
+        this.stage = stage;
+    }
+
+    /**
+     * adds the timing of a finished phase of the operation
+     *
+     * @param phaseTiming the timing of a finished phase of the operation
+     */
+    public void addPhaseTiming(PhaseTiming phaseTiming) {
+        phaseTimings.add(phaseTiming);
+    }
+
+    /**
+     * returns the timings of all finished phases of the operation
+     *
+     * @return the timings of all finished phases of the operation
+     */
+    public List<PhaseTiming> getPhaseTimings() {
+        return phaseTimings;
+    }
 }
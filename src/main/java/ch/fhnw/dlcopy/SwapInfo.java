@@ -26,6 +26,16 @@ public class SwapInfo {
      * @throws IOException if parsing the swaps line fails
      */
     public SwapInfo(String swapLine) throws IOException {
+        this(swapLine, LernstickFileTools.readFile(new File("/proc/meminfo")));
+    }
+
+    /**
+     * creates a new SwapInfo
+     * @param swapLine an output line of "cat /proc/swaps"
+     * @param meminfo the lines of /proc/meminfo
+     * @throws IOException if parsing the swaps line or meminfo fails
+     */
+    SwapInfo(String swapLine, List<String> meminfo) throws IOException {
         long swapSize = 0;
         // the swaps line has the following syntax
         // <filename> <type> <size> <used> <priority>
@@ -48,8 +58,6 @@ public class SwapInfo {
 
         long memFree = 0;
         pattern = Pattern.compile("\\p{Graph}+\\p{Blank}+(\\p{Graph}+).*");
-        List<String> meminfo = LernstickFileTools.readFile(
-                new File("/proc/meminfo"));
         for (String meminfoLine : meminfo) {
             if (meminfoLine.startsWith("MemFree:")
                     || meminfoLine.startsWith("Buffers:")
@@ -86,6 +86,8 @@ public abstract class SystemSource {
      */
     public static final String GRUB_EFI_PATH = "/boot/grubx64.efi";
 
+    private int tmpPartitionsRetainCount;
+
     /**
      * Returns the device name (e.g. sda) of this system source. This is mostly
      * used for filtering out the system source in installation or upgrade
@@ -198,6 +200,42 @@ public abstract class SystemSource {
      */
     public abstract void unmountTmpPartitions();
 
+    /**
+     * Keeps the partitions that were mounted by any get*CopySource() mounted
+     * until a matching call of {@link #releaseTmpPartitions()}. This is needed
+     * when several installations use this source at the same time and one of
+     * them would otherwise unmount the partitions while the others are still
+     * copying files.
+     */
+    public synchronized void retainTmpPartitions() {
+        tmpPartitionsRetainCount++;
+    }
+
+    /**
+     * Releases a previous call of {@link #retainTmpPartitions()}. The last
+     * release unmounts all partitions that were mounted by any
+     * get*CopySource().
+     */
+    public synchronized void releaseTmpPartitions() {
+        if (tmpPartitionsRetainCount > 0) {
+            tmpPartitionsRetainCount--;
+        }
+        if (tmpPartitionsRetainCount == 0) {
+            unmountTmpPartitions();
+        }
+    }
+
+    /**
+     * returns <tt>true</tt> if the partitions that were mounted by any
+     * get*CopySource() must stay mounted, <tt>false</tt> otherwise
+     *
+     * @return <tt>true</tt> if the partitions that were mounted by any
+     * get*CopySource() must stay mounted, <tt>false</tt> otherwise
+     */
+    protected synchronized boolean areTmpPartitionsRetained() {
+        return tmpPartitionsRetainCount > 0;
+    }
+
     /**
      * creates a syslinux directory on a partition
      *
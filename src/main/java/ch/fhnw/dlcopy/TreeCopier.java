@@ -0,0 +1,498 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.util.ProcessExecutor;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Copies directory trees of data partitions (the equivalent of
+ * <tt>cp -a</tt>) and keeps track of the copy progress.
+ * <br>
+ * The tree is walked in parallel, every directory is listed by its own task
+ * and the content of regular files is copied while the walk continues.
+ * Sparse files stay sparse and hardlinks are recreated. All other metadata can
+ * not be handled completely with the Java API: extended attributes and ACLs
+ * (this includes the opaque directory markers of overlayfs in the trusted
+ * namespace) are not accessible and device nodes (like the whiteouts of
+ * overlayfs), FIFOs and sockets can not be created. Therefore a final
+ * attributes-only pass of <tt>cp</tt> creates symlinks and special files and
+ * transfers ownership, modes, timestamps, extended attributes and ACLs. This
+ * pass only touches metadata and is fast compared to copying the data.
+ * <br>
+ * The total size of a tree is determined by a single <tt>find</tt> run before
+ * copying starts (together with the sparse files), so that the progress and
+ * the remaining time are computed with a fixed total.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class TreeCopier {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(TreeCopier.class.getName());
+
+    private static final long CHUNK_SIZE = 8 * DLCopy.MEGA;
+    // the granularity of holes in sparse files, the usual file system block
+    private static final int HOLE_SIZE = 4096;
+    private static final ByteBuffer ZEROS
+            = ByteBuffer.allocateDirect(HOLE_SIZE).asReadOnlyBuffer();
+    private static final LinkOption NOFOLLOW = LinkOption.NOFOLLOW_LINKS;
+    private static final String PRESERVED_ATTRIBUTES
+            = "mode,ownership,timestamps,xattr";
+
+    private final ProcessExecutor processExecutor;
+    private final int threads;
+    private final AtomicLong bytesDone = new AtomicLong();
+    private final AtomicLong bytesTotal = new AtomicLong();
+    private volatile String currentFile = "";
+
+    /**
+     * creates a new TreeCopier that uses one thread per processor
+     *
+     * @param processExecutor the ProcessExecutor for the external tools
+     */
+    public TreeCopier(ProcessExecutor processExecutor) {
+        this(processExecutor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * creates a new TreeCopier
+     *
+     * @param processExecutor the ProcessExecutor for the external tools
+     * @param threads the number of threads used for walking the tree and
+     * copying file contents
+     */
+    public TreeCopier(ProcessExecutor processExecutor, int threads) {
+        this.processExecutor = processExecutor;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * returns the number of bytes already copied
+     *
+     * @return the number of bytes already copied
+     */
+    public long getBytesDone() {
+        return bytesDone.get();
+    }
+
+    /**
+     * returns the number of bytes of all copy operations started so far
+     *
+     * @return the number of bytes of all copy operations started so far
+     */
+    public long getBytesTotal() {
+        return bytesTotal.get();
+    }
+
+    /**
+     * returns the path of the file that is currently copied, relative to the
+     * copied tree
+     *
+     * @return the path of the file that is currently copied, relative to the
+     * copied tree
+     */
+    public String getCurrentFile() {
+        return currentFile;
+    }
+
+    /**
+     * Copies a file or directory tree (the equivalent of
+     * <tt>cp -a --parents</tt>). Missing parent directories of the destination
+     * get the attributes of the corresponding source directories.
+     *
+     * @param source the source file or directory
+     * @param destination the destination path
+     * @throws IOException if copying fails
+     */
+    public void copy(Path source, Path destination) throws IOException {
+        createParents(source.toAbsolutePath().getParent(),
+                destination.toAbsolutePath().getParent());
+        copyTree(source, destination, false);
+    }
+
+    /**
+     * Copies the contents of a directory into another directory (the
+     * equivalent of <tt>cp -a "source/"* "destination/"</tt>). Like with shell
+     * globbing, hidden entries directly in the source directory are skipped
+     * and the destination directory itself is left untouched. The destination
+     * directory is created if it does not exist.
+     *
+     * @param sourceDirectory the source directory
+     * @param destinationDirectory the destination directory
+     * @throws IOException if copying fails
+     */
+    public void copyContents(Path sourceDirectory, Path destinationDirectory)
+            throws IOException {
+        Files.createDirectories(destinationDirectory);
+        copyTree(sourceDirectory, destinationDirectory, true);
+    }
+
+    private void copyTree(Path source, Path destination, boolean contentsOnly)
+            throws IOException {
+
+        LOGGER.log(Level.INFO, "copying {0} to {1}",
+                new Object[]{source, destination});
+
+        Path absoluteSource = source.toAbsolutePath();
+        Path parent = absoluteSource.getParent();
+        Tree tree = new Tree(source, destination, contentsOnly,
+                (contentsOnly || parent == null) ? absoluteSource : parent);
+        scan(tree);
+
+        // walk the tree and copy the files in parallel
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(
+                    source, BasicFileAttributes.class, NOFOLLOW);
+            if (attributes.isDirectory()) {
+                if (!contentsOnly
+                        && !Files.isDirectory(destination, NOFOLLOW)) {
+                    Files.createDirectory(destination);
+                }
+                pool.invoke(new DirectoryTask(tree, source));
+            } else if (attributes.isRegularFile()) {
+                copyFile(tree, new Entry(
+                        source, destination, attributes.size(), null));
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // hardlinks can only be created after their first link was copied
+        for (Entry link : tree.links) {
+            currentFile = tree.display(link.source);
+            Files.deleteIfExists(link.destination);
+            Files.createLink(link.destination, link.firstLink);
+        }
+
+        copyMetadata(source, destination, contentsOnly);
+    }
+
+    private void copyFile(Tree tree, Entry entry) throws IOException {
+        currentFile = tree.display(entry.source);
+        Files.deleteIfExists(entry.destination);
+        try (FileChannel in = FileChannel.open(
+                entry.source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(entry.destination,
+                        StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE)) {
+            if (tree.sparseFiles.contains(entry.source.toAbsolutePath())) {
+                copySparseFile(entry, in, out);
+                return;
+            }
+            long position = 0;
+            while (position < entry.size) {
+                // transferTo() uses copy_file_range() or sendfile() and
+                // therefore avoids copying the data into user space
+                long transferred = in.transferTo(position,
+                        Math.min(CHUNK_SIZE, entry.size - position), out);
+                if (transferred <= 0) {
+                    // the file was truncated while copying
+                    break;
+                }
+                position += transferred;
+                bytesDone.addAndGet(transferred);
+            }
+        }
+    }
+
+    private void copySparseFile(Entry entry, FileChannel in, FileChannel out)
+            throws IOException {
+        // Java has no access to SEEK_DATA and SEEK_HOLE, therefore we do what
+        // "cp --sparse=always" does: blocks that only contain zeros are
+        // skipped and become holes in the destination file
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) CHUNK_SIZE);
+        long position = 0;
+        while (position < entry.size) {
+            buffer.clear();
+            int read = in.read(buffer, position);
+            if (read <= 0) {
+                // the file was truncated while copying
+                break;
+            }
+            int dataStart = -1;
+            for (int offset = 0; offset < read; offset += HOLE_SIZE) {
+                int length = Math.min(HOLE_SIZE, read - offset);
+                boolean hole = buffer.slice(offset, length).mismatch(
+                        ZEROS.slice(0, length)) == -1;
+                if (hole && dataStart >= 0) {
+                    write(out, buffer.slice(dataStart, offset - dataStart),
+                            position + dataStart);
+                    dataStart = -1;
+                } else if (!hole && dataStart < 0) {
+                    dataStart = offset;
+                }
+            }
+            if (dataStart >= 0) {
+                write(out, buffer.slice(dataStart, read - dataStart),
+                        position + dataStart);
+            }
+            position += read;
+            bytesDone.addAndGet(read);
+        }
+        if (out.size() < position) {
+            // the file ends with a hole, writing its last byte sets the size
+            write(out, ByteBuffer.allocate(1), position - 1);
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // finds the sparse files of the tree and adds its size to the total
+    private void scan(Tree tree) throws IOException {
+        // Java can't tell how many blocks a file allocates, but find's "%S"
+        // (the allocated size divided by the file size) can. The inode ("%D"
+        // and "%i") is needed to count hardlinked files only once.
+        int returnValue = processExecutor.executeProcess(true, true,
+                "env", "LC_ALL=C", "find", tree.source.toString(),
+                "-type", "f", "-size", "+0",
+                "-printf", "%S\\t%D:%i\\t%s\\t%p\\n");
+        if (returnValue != 0) {
+            String errorMessage = "could not scan " + tree.source;
+            LOGGER.severe(errorMessage);
+            throw new IOException(errorMessage);
+        }
+        Set<String> inodes = new HashSet<>();
+        long size = 0;
+        for (String line : processExecutor.getStdOutList()) {
+            String[] tokens = line.split("\t", 4);
+            if (tokens.length < 4) {
+                // the rest of a file name with a newline, the file is just
+                // copied without holes
+                continue;
+            }
+            Path path = Paths.get(tokens[3]);
+            if (tree.skip(path) || !inodes.add(tokens[1])) {
+                continue;
+            }
+            try {
+                size += Long.parseLong(tokens[2]);
+                if (Double.parseDouble(tokens[0]) < 1) {
+                    tree.sparseFiles.add(path.toAbsolutePath());
+                }
+            } catch (NumberFormatException ex) {
+                LOGGER.log(Level.WARNING, "", ex);
+            }
+        }
+        bytesTotal.addAndGet(size);
+    }
+
+    private void createParents(Path sourceDirectory, Path destinationDirectory)
+            throws IOException {
+        if (sourceDirectory == null || destinationDirectory == null
+                || Files.isDirectory(destinationDirectory)) {
+            return;
+        }
+        createParents(sourceDirectory.getParent(),
+                destinationDirectory.getParent());
+        Files.createDirectory(destinationDirectory);
+        Map<String, Object> attributes = Files.readAttributes(
+                sourceDirectory, "unix:uid,gid,mode", NOFOLLOW);
+        // the owner must be set before the mode because chown() clears the
+        // setuid and setgid bits
+        Files.setAttribute(destinationDirectory,
+                "unix:uid", attributes.get("uid"), NOFOLLOW);
+        Files.setAttribute(destinationDirectory,
+                "unix:gid", attributes.get("gid"), NOFOLLOW);
+        Files.setAttribute(destinationDirectory,
+                "unix:mode", attributes.get("mode"), NOFOLLOW);
+    }
+
+    private void copyMetadata(Path source, Path destination,
+            boolean contentsOnly) throws IOException {
+        int returnValue;
+        if (contentsOnly) {
+            // keep the attributes of the destination directory, the paths are
+            // passed as arguments so that they are never parsed by a shell
+            List<String> command = new ArrayList<>(List.of(
+                    "cp", "-R", "--attributes-only",
+                    "--preserve=" + PRESERVED_ATTRIBUTES,
+                    "--target-directory=" + destination, "--"));
+            try (DirectoryStream<Path> stream
+                    = Files.newDirectoryStream(source)) {
+                for (Path path : stream) {
+                    if (!path.getFileName().toString().startsWith(".")) {
+                        command.add(path.toString());
+                    }
+                }
+            }
+            if (command.get(command.size() - 1).equals("--")) {
+                return;
+            }
+            returnValue = processExecutor.executeProcess(
+                    true, true, command.toArray(String[]::new));
+        } else {
+            returnValue = processExecutor.executeProcess(true, true,
+                    "cp", "-R", "--attributes-only",
+                    "--preserve=" + PRESERVED_ATTRIBUTES,
+                    "--no-target-directory", "--",
+                    source.toString(), destination.toString());
+        }
+        if (returnValue != 0) {
+            String errorMessage = "could not copy metadata of " + source;
+            LOGGER.severe(errorMessage);
+            throw new IOException(errorMessage);
+        }
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+
+        private final Tree tree;
+        private final Path directory;
+
+        DirectoryTask(Tree tree, Path directory) {
+            this.tree = tree;
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream
+                    = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    if (tree.skip(path)) {
+                        continue;
+                    }
+                    BasicFileAttributes attributes = Files.readAttributes(
+                            path, BasicFileAttributes.class, NOFOLLOW);
+                    Path target = tree.resolve(path);
+                    if (attributes.isDirectory()) {
+                        // directories are created before their contents
+                        if (!Files.isDirectory(target, NOFOLLOW)) {
+                            Files.createDirectory(target);
+                        }
+                        tasks.add(new DirectoryTask(tree, path));
+                    } else if (attributes.isRegularFile()) {
+                        // symlinks and special files are created by the final
+                        // pass
+                        Entry entry = createEntry(path, target, attributes);
+                        if (entry != null) {
+                            tasks.add(new FileTask(tree, entry));
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            invokeAll(tasks);
+        }
+
+        private Entry createEntry(Path file, Path target,
+                BasicFileAttributes attributes) throws IOException {
+            Path firstLink = null;
+            if ((Integer) Files.getAttribute(
+                    file, "unix:nlink", NOFOLLOW) > 1) {
+                firstLink = tree.inodes.putIfAbsent(
+                        attributes.fileKey(), target);
+            }
+            if (firstLink == null) {
+                return new Entry(file, target, attributes.size(), null);
+            }
+            tree.links.add(new Entry(file, target, 0, firstLink));
+            return null;
+        }
+    }
+
+    private class FileTask extends RecursiveAction {
+
+        private final Tree tree;
+        private final Entry entry;
+
+        FileTask(Tree tree, Entry entry) {
+            this.tree = tree;
+            this.entry = entry;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                copyFile(tree, entry);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    private static class Tree {
+
+        private final Path source;
+        private final Path destination;
+        private final boolean contentsOnly;
+        private final Path displayRoot;
+        private final Set<Path> sparseFiles = new HashSet<>();
+        private final Map<Object, Path> inodes = new ConcurrentHashMap<>();
+        private final Queue<Entry> links = new ConcurrentLinkedQueue<>();
+
+        Tree(Path source, Path destination, boolean contentsOnly,
+                Path displayRoot) {
+            this.source = source;
+            this.destination = destination;
+            this.contentsOnly = contentsOnly;
+            this.displayRoot = displayRoot;
+        }
+
+        // skips hidden entries directly in the source directory and
+        // everything below them when only the contents are copied
+        private boolean skip(Path path) {
+            if (!contentsOnly || !path.startsWith(source)
+                    || path.equals(source)) {
+                return false;
+            }
+            return source.relativize(path).getName(0).toString()
+                    .startsWith(".");
+        }
+
+        private Path resolve(Path path) {
+            return destination.resolve(source.relativize(path).toString());
+        }
+
+        private String display(Path path) {
+            return displayRoot.relativize(path.toAbsolutePath()).toString();
+        }
+    }
+
+    private static class Entry {
+
+        private final Path source;
+        private final Path destination;
+        private final long size;
+        private final Path firstLink;
+
+        Entry(Path source, Path destination, long size, Path firstLink) {
+            this.source = source;
+            this.destination = destination;
+            this.size = size;
+            this.firstLink = firstLink;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ch.fhnw.dlcopy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Computes a fingerprint of a directory tree from the paths, types, sizes
+ * and modification times of its entries (the file contents are not read).
+ * Every directory is hashed over its sorted entries, including the hashes of
+ * its subdirectories, so that the fingerprint doesn't depend on the order
+ * of the directory listings.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class TreeFingerprint {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(TreeFingerprint.class.getName());
+
+    private final Path tree;
+    private final SquashFSExcludes excludes;
+    private final Set<Path> ignoredPaths;
+
+    private int entries;
+
+    /**
+     * creates a new TreeFingerprint
+     *
+     * @param tree the directory tree
+     * @param excludes the files excluded from the tree
+     * @param ignoredPaths paths (relative to the tree) that are not part of
+     * the fingerprint, e.g. because they are only temporarily changed
+     */
+    public TreeFingerprint(Path tree, SquashFSExcludes excludes,
+            Set<Path> ignoredPaths) {
+        this.tree = tree;
+        this.excludes = excludes;
+        this.ignoredPaths = ignoredPaths;
+    }
+
+    /**
+     * computes the fingerprint
+     *
+     * @param parameters additional parameters that change the result of
+     * processing the tree (e.g. settings or compression options)
+     * @return the fingerprint as hex string
+     * @throws IOException if reading the tree fails
+     */
+    public String compute(String parameters) throws IOException {
+        entries = 0;
+        long start = System.currentTimeMillis();
+        MessageDigest digest = newDigest();
+        digest.update(parameters.getBytes(StandardCharsets.UTF_8));
+        digest.update(hashDirectory(tree));
+        String fingerprint = HexFormat.of().formatHex(digest.digest());
+        LOGGER.log(Level.INFO,
+                "fingerprint of {0} ({1} entries) computed in {2} ms: {3}",
+                new Object[]{tree, entries,
+                    System.currentTimeMillis() - start, fingerprint});
+        return fingerprint;
+    }
+
+    private byte[] hashDirectory(Path directory) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream
+                = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                Path relativePath = tree.relativize(child);
+                if (!ignoredPaths.contains(relativePath)
+                        && !excludes.isExcluded(relativePath)) {
+                    children.add(child);
+                }
+            }
+        }
+        Collections.sort(children);
+
+        MessageDigest digest = newDigest();
+        for (Path child : children) {
+            BasicFileAttributes attributes = Files.readAttributes(child,
+                    BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            StringBuilder entry = new StringBuilder();
+            entry.append(child.getFileName()).append('\0');
+            if (attributes.isDirectory()) {
+                // the modification time of directories changes with every
+                // created or removed file and is therefore not included
+                entry.append('d');
+            } else {
+                entry.append(attributes.isRegularFile() ? 'f'
+                        : attributes.isSymbolicLink() ? 'l' : 'o')
+                        .append(attributes.size()).append('\0')
+                        .append(attributes.lastModifiedTime().toMillis());
+            }
+            entry.append('\n');
+            digest.update(entry.toString().getBytes(StandardCharsets.UTF_8));
+            if (attributes.isDirectory()) {
+                digest.update(hashDirectory(child));
+            }
+            entries++;
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform must support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.util.DbusTools;
+import ch.fhnw.util.StorageDevice;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.freedesktop.dbus.DBusConnection;
+import org.freedesktop.dbus.DBusInterface;
+import org.freedesktop.dbus.DBusInterfaceName;
+import org.freedesktop.dbus.DBusSignal;
+import org.freedesktop.dbus.Path;
+import org.freedesktop.dbus.Variant;
+import org.freedesktop.dbus.exceptions.DBusException;
+
+/**
+ * Enumerates the storage devices with a single call of the udisks object
+ * manager.
+ * <br>
+ * Querying the interfaces, size and device file of every block device one
+ * after another needs several D-Bus round trips per block device, even for
+ * partitions and loop devices that are ignored anyway. Instead we fetch the
+ * complete udisks object tree with GetManagedObjects, select the drives in
+ * memory and only create the StorageDevice objects of the selected drives
+ * (in parallel, because this still needs some more D-Bus calls per drive).
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class UDisksEnumerator {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(UDisksEnumerator.class.getName());
+    private static final String BUS_NAME = "org.freedesktop.UDisks2";
+    private static final String OBJECT_PATH = "/org/freedesktop/UDisks2";
+    /**
+     * the prefix of the udisks object paths of block devices
+     */
+    public static final String BLOCK_DEVICES_PREFIX
+            = OBJECT_PATH + "/block_devices/";
+    private static final String LOOP_INTERFACE
+            = "org.freedesktop.UDisks2.Loop";
+    private static final int MAX_THREADS = 8;
+
+    /**
+     * the object manager interface of udisks
+     */
+    @DBusInterfaceName("org.freedesktop.DBus.ObjectManager")
+    public interface UDisksObjectManager extends DBusInterface {
+
+        /**
+         * returns all objects of udisks with their interfaces and properties
+         *
+         * @return all objects of udisks with their interfaces and properties
+         */
+        Map<Path, Map<String, Map<String, Variant>>> GetManagedObjects();
+
+        /**
+         * emitted when an object was added or got additional interfaces
+         */
+        class InterfacesAdded extends DBusSignal {
+
+            /**
+             * the path of the object
+             */
+            public final Path objectPath;
+            /**
+             * the added interfaces with their properties
+             */
+            public final Map<String, Map<String, Variant>> interfaces;
+
+            /**
+             * creates a new InterfacesAdded signal
+             *
+             * @param path the path of the object manager
+             * @param objectPath the path of the object
+             * @param interfaces the added interfaces with their properties
+             * @throws DBusException if a D-Bus exception occurs
+             */
+            public InterfacesAdded(String path, Path objectPath,
+                    Map<String, Map<String, Variant>> interfaces)
+                    throws DBusException {
+                super(path, objectPath, interfaces);
+                this.objectPath = objectPath;
+                this.interfaces = interfaces;
+            }
+        }
+
+        /**
+         * emitted when an object was removed or lost some of its interfaces
+         */
+        class InterfacesRemoved extends DBusSignal {
+
+            /**
+             * the path of the object
+             */
+            public final Path objectPath;
+            /**
+             * the names of the removed interfaces
+             */
+            public final List<String> interfaces;
+
+            /**
+             * creates a new InterfacesRemoved signal
+             *
+             * @param path the path of the object manager
+             * @param objectPath the path of the object
+             * @param interfaces the names of the removed interfaces
+             * @throws DBusException if a D-Bus exception occurs
+             */
+            public InterfacesRemoved(String path, Path objectPath,
+                    List<String> interfaces) throws DBusException {
+                super(path, objectPath, interfaces);
+                this.objectPath = objectPath;
+                this.interfaces = interfaces;
+            }
+        }
+    }
+
+    private UDisksEnumerator() {
+    }
+
+    /**
+     * returns a list of all storage devices
+     *
+     * @param includeHardDisks if true, hard disks are included in the list
+     * @param includeBootDevice if true, the boot device is included in the
+     * list
+     * @param bootDeviceName the name of the boot device
+     * @return a list of all storage devices
+     * @throws DBusException if a D-Bus exception occurs
+     */
+    public static List<StorageDevice> getStorageDevices(
+            boolean includeHardDisks, boolean includeBootDevice,
+            String bootDeviceName) throws DBusException {
+
+        long start = System.currentTimeMillis();
+        Map<Path, Map<String, Map<String, Variant>>> managedObjects
+                = getManagedObjects();
+
+        List<String> deviceFiles = new ArrayList<>();
+        for (Map.Entry<Path, Map<String, Map<String, Variant>>> entry
+                : managedObjects.entrySet()) {
+            String path = entry.getKey().getPath();
+            if (!path.startsWith(BLOCK_DEVICES_PREFIX)) {
+                // drives, jobs, manager, ...
+                continue;
+            }
+            String name = path.substring(BLOCK_DEVICES_PREFIX.length());
+            if (!includeBootDevice && name.equals(bootDeviceName)) {
+                LOGGER.log(Level.INFO,
+                        "skipping {0}, it''s the boot device", name);
+                continue;
+            }
+            Map<String, Map<String, Variant>> interfaces = entry.getValue();
+            Map<String, Variant> block
+                    = interfaces.get(ReadinessWaiter.BLOCK_INTERFACE);
+            if (block == null) {
+                continue;
+            }
+            boolean isDrive = !interfaces.containsKey(
+                    ReadinessWaiter.PARTITION_INTERFACE);
+            boolean isLoop = interfaces.containsKey(LOOP_INTERFACE);
+            long size = getLong(block.get("Size"));
+            String deviceFile = getString(block.get("Device"));
+            boolean accepted = isDrive && !isLoop && (size > 0)
+                    && deviceFile.startsWith("/dev/");
+            LOGGER.log(Level.FINE, "{0}: isDrive={1}, isLoop={2}, size={3}, "
+                    + "deviceFile={4} --> {5}", new Object[]{path, isDrive,
+                        isLoop, size, deviceFile,
+                        accepted ? "accepted" : "ignored"});
+            if (accepted) {
+                deviceFiles.add(deviceFile);
+            }
+        }
+        deviceFiles.sort(null);
+
+        List<StorageDevice> storageDevices = new ArrayList<>();
+        if (!deviceFiles.isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(
+                    Math.min(deviceFiles.size(), MAX_THREADS));
+            try {
+                List<Future<StorageDevice>> futures = new ArrayList<>();
+                for (String deviceFile : deviceFiles) {
+                    futures.add(executor.submit(
+                            () -> new StorageDevice(deviceFile.substring(5))));
+                }
+                for (Future<StorageDevice> future : futures) {
+                    StorageDevice storageDevice = getStorageDevice(future);
+                    if (isIncluded(storageDevice, includeHardDisks)) {
+                        LOGGER.log(Level.INFO, "adding {0}", storageDevice);
+                        storageDevices.add(storageDevice);
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        LOGGER.log(Level.INFO, "enumerated {0} of {1} udisks objects in {2} ms",
+                new Object[]{storageDevices.size(), managedObjects.size(),
+                    System.currentTimeMillis() - start});
+        return storageDevices;
+    }
+
+    /**
+     * returns all objects of udisks with their interfaces and properties
+     *
+     * @return all objects of udisks with their interfaces and properties
+     * @throws DBusException if a D-Bus exception occurs
+     */
+    public static Map<Path, Map<String, Map<String, Variant>>>
+            getManagedObjects() throws DBusException {
+        DBusConnection connection
+                = DBusConnection.getConnection(DBusConnection.SYSTEM);
+        UDisksObjectManager objectManager = connection.getRemoteObject(
+                BUS_NAME, OBJECT_PATH, UDisksObjectManager.class);
+        return objectManager.GetManagedObjects();
+    }
+
+    private static boolean isIncluded(StorageDevice storageDevice,
+            boolean includeHardDisks) {
+        StorageDevice.Type deviceType = storageDevice.getType();
+        if (deviceType == StorageDevice.Type.OpticalDisc) {
+            LOGGER.log(Level.INFO, "skipping optical disk {0}", storageDevice);
+            return false;
+        }
+        return includeHardDisks
+                || (deviceType != StorageDevice.Type.HardDrive
+                && deviceType != StorageDevice.Type.NVMe);
+    }
+
+    private static StorageDevice getStorageDevice(
+            Future<StorageDevice> future) throws DBusException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DBusException("interrupted while enumerating storage "
+                    + "devices");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof DBusException dBusException) {
+                throw dBusException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new DBusException(String.valueOf(cause));
+        }
+    }
+
+    private static long getLong(Variant variant) {
+        if (variant != null && variant.getValue() instanceof Number number) {
+            return number.longValue();
+        }
+        return 0;
+    }
+
+    // the device is a char array terminated with a 0 byte
+    private static String getString(Variant variant) {
+        if (variant == null) {
+            return "";
+        }
+        Object value = variant.getValue();
+        byte[] array;
+        if (value instanceof byte[] bytes) {
+            array = bytes;
+        } else if (value instanceof List<?> list) {
+            array = new byte[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = ((Number) list.get(i)).byteValue();
+            }
+        } else {
+            return "";
+        }
+        return new String(DbusTools.removeNullByte(array));
+    }
+}
@@ -0,0 +1,388 @@
+package ch.fhnw.dlcopy;
+
+import ch.fhnw.dlcopy.UDisksEnumerator.UDisksObjectManager.InterfacesAdded;
+import ch.fhnw.dlcopy.UDisksEnumerator.UDisksObjectManager.InterfacesRemoved;
+import ch.fhnw.util.DbusTools;
+import ch.fhnw.util.ProcessExecutor;
+import java.beans.PropertyChangeEvent;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.freedesktop.dbus.DBusConnection;
+import org.freedesktop.dbus.DBusSigHandler;
+import org.freedesktop.dbus.Path;
+import org.freedesktop.dbus.Variant;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Monitors udisks and informs its listeners about added, removed and changed
+ * drives.
+ * <br>
+ * With udisks2 we listen to the InterfacesAdded and InterfacesRemoved signals
+ * of the udisks object manager on the system bus. Events of partitions are
+ * reported as changes of their drive. All events of a drive are collected
+ * until the drive has been quiet for a moment (plugging in a drive results
+ * in a whole burst of signals for the drive, its partitions and their file
+ * systems) and then reported as a single event. With udisks1 or when the
+ * signal handlers can not be added we fall back to parsing the output of
+ * the udisks monitor process.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class UdisksMonitor {
+
+    /**
+     * a listener for added, removed and changed drives
+     */
+    public interface Listener {
+
+        /**
+         * called when a drive was added
+         *
+         * @param path the udisks object path of the added drive
+         */
+        void deviceAdded(String path);
+
+        /**
+         * called when a drive was removed
+         *
+         * @param path the udisks object path of the removed drive
+         */
+        void deviceRemoved(String path);
+
+        /**
+         * called when the partitions or file systems of a drive changed
+         *
+         * @param path the udisks object path of the changed drive
+         */
+        default void deviceChanged(String path) {
+        }
+    }
+
+    private static final Logger LOGGER
+            = Logger.getLogger(UdisksMonitor.class.getName());
+    private static final String UDISKS_ADDED = "added:";
+    private static final String UDISKS_REMOVED = "removed:";
+    private static final Pattern ADDED_PATTERN = Pattern.compile(
+            ".*: Added (/org/freedesktop/UDisks2/block_devices/.*)");
+    private static final Pattern REMOVED_PATTERN = Pattern.compile(
+            ".*: Removed (/org/freedesktop/UDisks2/block_devices/.*)");
+    // the time (in milliseconds) a drive must be quiet before its events are
+    // reported
+    private static final long COALESCING_DELAY = 1000;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private final long coalescingDelay;
+    private ProcessExecutor processExecutor;
+    private DBusSigHandler<InterfacesAdded> addedHandler;
+    private DBusSigHandler<InterfacesRemoved> removedHandler;
+    private boolean started;
+
+    // The following maps are only accessed from the scheduler thread.
+    // the drives of all known partitions (both as udisks object paths)
+    private final Map<String, String> partitionDrives = new HashMap<>();
+    // the collected events of the drives, the keys are the drive paths
+    private final Map<String, DriveEvents> pendingEvents = new HashMap<>();
+
+    /**
+     * creates a new UdisksMonitor
+     */
+    public UdisksMonitor() {
+        this(COALESCING_DELAY);
+    }
+
+    /**
+     * creates a new UdisksMonitor
+     *
+     * @param coalescingDelay the time (in milliseconds) a drive must be quiet
+     * before its events are reported
+     */
+    UdisksMonitor(long coalescingDelay) {
+        this.coalescingDelay = coalescingDelay;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "UdisksMonitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * adds a listener
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * removes a listener
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * starts monitoring udisks
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
+            startProcess();
+            return;
+        }
+
+        addedHandler = signal -> scheduler.execute(
+                () -> interfacesAdded(signal));
+        removedHandler = signal -> scheduler.execute(
+                () -> interfacesRemoved(signal));
+        try {
+            DBusConnection connection = DLCopy.getDbusSystemConnection();
+            connection.addSigHandler(InterfacesAdded.class, addedHandler);
+            connection.addSigHandler(InterfacesRemoved.class, removedHandler);
+        } catch (DBusException ex) {
+            LOGGER.log(Level.WARNING, "can't listen to udisks signals, "
+                    + "falling back to the udisks monitor process", ex);
+            addedHandler = null;
+            removedHandler = null;
+            startProcess();
+            return;
+        }
+        // the partitions that already exist must be known when they are
+        // removed later
+        scheduler.execute(this::readPartitionDrives);
+    }
+
+    /**
+     * stops monitoring udisks
+     */
+    public synchronized void stop() {
+        if (addedHandler != null) {
+            try {
+                DBusConnection connection = DLCopy.getDbusSystemConnection();
+                connection.removeSigHandler(
+                        InterfacesAdded.class, addedHandler);
+                connection.removeSigHandler(
+                        InterfacesRemoved.class, removedHandler);
+            } catch (DBusException ex) {
+                LOGGER.log(Level.WARNING, "", ex);
+            }
+            addedHandler = null;
+            removedHandler = null;
+        }
+        if (processExecutor != null) {
+            processExecutor.destroy();
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void startProcess() {
+        // use local ProcessExecutor because the udisks process is blocking and
+        // long-running
+        processExecutor = new ProcessExecutor(false);
+        processExecutor.addPropertyChangeListener(this::propertyChange);
+        Thread thread = new Thread(() -> {
+            if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
+                processExecutor.executeProcess("udisks", "--monitor");
+            } else {
+                processExecutor.executeProcess("udisksctl", "monitor");
+            }
+        }, "UdisksMonitorProcess");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void readPartitionDrives() {
+        try {
+            Map<Path, Map<String, Map<String, Variant>>> managedObjects
+                    = UDisksEnumerator.getManagedObjects();
+            managedObjects.forEach((objectPath, interfaces)
+                    -> addPartition(objectPath.getPath(), interfaces));
+        } catch (DBusException | DBusExecutionException ex) {
+            LOGGER.log(Level.WARNING, "", ex);
+        }
+    }
+
+    private String addPartition(String path,
+            Map<String, Map<String, Variant>> interfaces) {
+        Map<String, Variant> partition
+                = interfaces.get(ReadinessWaiter.PARTITION_INTERFACE);
+        if (partition != null) {
+            Variant table = partition.get("Table");
+            if (table != null) {
+                String drive = String.valueOf(table.getValue());
+                if (table.getValue() instanceof Path tablePath) {
+                    drive = tablePath.getPath();
+                }
+                partitionDrives.put(path, drive);
+            }
+        }
+        return partitionDrives.get(path);
+    }
+
+    private void interfacesAdded(InterfacesAdded signal) {
+        String path = signal.objectPath.getPath();
+        if (!path.startsWith(UDisksEnumerator.BLOCK_DEVICES_PREFIX)) {
+            // drives, jobs, ...
+            return;
+        }
+        String drive = addPartition(path, signal.interfaces);
+        if (drive != null) {
+            collectEvent(drive, EventType.CHANGED);
+        } else if (signal.interfaces.containsKey(
+                ReadinessWaiter.BLOCK_INTERFACE)) {
+            collectEvent(path, EventType.ADDED);
+        } else {
+            // e.g. a file system on a drive without partitions
+            collectEvent(path, EventType.CHANGED);
+        }
+    }
+
+    private void interfacesRemoved(InterfacesRemoved signal) {
+        String path = signal.objectPath.getPath();
+        if (!path.startsWith(UDisksEnumerator.BLOCK_DEVICES_PREFIX)) {
+            // drives, jobs, ...
+            return;
+        }
+        if (signal.interfaces.contains(ReadinessWaiter.BLOCK_INTERFACE)) {
+            // the object is gone
+            String drive = partitionDrives.remove(path);
+            if (drive != null) {
+                collectEvent(drive, EventType.CHANGED);
+            } else {
+                partitionDrives.values().removeIf(path::equals);
+                collectEvent(path, EventType.REMOVED);
+            }
+        } else {
+            String drive = partitionDrives.get(path);
+            collectEvent(drive == null ? path : drive, EventType.CHANGED);
+        }
+    }
+
+    private void propertyChange(PropertyChangeEvent evt) {
+
+        // only handle line changes
+        if (!ProcessExecutor.LINE.equals(evt.getPropertyName())) {
+            return;
+        }
+
+        String line = (String) evt.getNewValue();
+        String addedPath = null;
+        String removedPath = null;
+        if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
+            if (line.startsWith(UDISKS_ADDED)) {
+                addedPath = line.substring(UDISKS_ADDED.length()).trim();
+            } else if (line.startsWith(UDISKS_REMOVED)) {
+                removedPath = line.substring(UDISKS_REMOVED.length()).trim();
+            }
+        } else {
+            Matcher matcher = ADDED_PATTERN.matcher(line);
+            if (matcher.matches()) {
+                addedPath = matcher.group(1);
+            } else {
+                matcher = REMOVED_PATTERN.matcher(line);
+                if (matcher.matches()) {
+                    removedPath = matcher.group(1);
+                }
+            }
+        }
+
+        // The output of the monitor process doesn't tell us the drives of
+        // partitions, therefore events are only collected per path here.
+        if (addedPath != null) {
+            addEvent(addedPath, EventType.ADDED);
+        } else if (removedPath != null) {
+            addEvent(removedPath, EventType.REMOVED);
+        }
+    }
+
+    /**
+     * adds an event of a drive from any thread, it is reported together with
+     * all other events of the drive as soon as the drive is quiet
+     *
+     * @param drive the udisks object path of the drive
+     * @param type the type of the event
+     */
+    void addEvent(String drive, EventType type) {
+        scheduler.execute(() -> collectEvent(drive, type));
+    }
+
+    private void collectEvent(String drive, EventType type) {
+        DriveEvents driveEvents = pendingEvents.get(drive);
+        if (driveEvents == null) {
+            driveEvents = new DriveEvents();
+            pendingEvents.put(drive, driveEvents);
+        } else {
+            driveEvents.future.cancel(false);
+        }
+        driveEvents.add(type);
+        driveEvents.future = scheduler.schedule(() -> fireEvents(drive),
+                coalescingDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private void fireEvents(String drive) {
+        DriveEvents driveEvents = pendingEvents.remove(drive);
+        if (driveEvents == null) {
+            return;
+        }
+        LOGGER.log(Level.INFO, "{0}: removed={1}, added={2}, changed={3}",
+                new Object[]{drive, driveEvents.removed, driveEvents.added,
+                    driveEvents.changed});
+        for (Listener listener : listeners) {
+            if (driveEvents.removed) {
+                listener.deviceRemoved(drive);
+            }
+            if (driveEvents.added) {
+                listener.deviceAdded(drive);
+            } else if (driveEvents.changed && !driveEvents.removed) {
+                listener.deviceChanged(drive);
+            }
+        }
+    }
+
+    enum EventType {
+        ADDED, REMOVED, CHANGED
+    }
+
+    // the events of a drive that were not yet reported
+    private static class DriveEvents {
+
+        private boolean removed;
+        private boolean added;
+        private boolean changed;
+        private ScheduledFuture<?> future;
+
+        private void add(EventType type) {
+            switch (type) {
+                case ADDED:
+                    added = true;
+                    break;
+                case REMOVED:
+                    // everything that happened before is obsolete now
+                    removed = true;
+                    added = false;
+                    changed = false;
+                    break;
+                case CHANGED:
+                    changed = true;
+            }
+        }
+    }
+}
@@ -34,7 +34,6 @@ import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
@@ -114,7 +113,7 @@ public class Upgrader extends InstallerOrUpgrader {
      */
     public Upgrader(SystemSource source, List<StorageDevice> deviceList,
             String exchangePartitionLabel, String exchangePartitionFileSystem,
-            String dataPartitionFileSystem, HashMap<String, byte[]> digestCache,
+            String dataPartitionFileSystem, DigestCache digestCache,
             DLCopySwingGUI dlCopy, DLCopyGUI dlCopyGUI,
             RepartitionStrategy repartitionStrategy,
             int resizedExchangePartitionSize, boolean automaticBackup,
@@ -196,9 +195,10 @@ public class Upgrader extends InstallerOrUpgrader {
                         case INSTALLATION:
                             // TODO: support encryption and checking of copies
                             DLCopy.copyToStorageDevice(source, fileCopier,
-                                    storageDevice, exchangePartitionLabel,
-                                    this, false, null, false, null, false,
-                                    false, dlCopyGUI);
+                                    exchangePartitionLabel, this, false, null,
+                                    false, null, false, false,
+                                    new ExecutionContext(
+                                            dlCopyGUI, storageDevice));
                             break;
 
                         default:
@@ -302,9 +302,9 @@ public class Upgrader extends InstallerOrUpgrader {
 
         // installation
         // TODO: support encryption and checking of copies
-        DLCopy.copyToStorageDevice(source, fileCopier, storageDevice,
-                exchangePartitionLabel, this, false, null, false, null, false,
-                false, dlCopyGUI);
+        DLCopy.copyToStorageDevice(source, fileCopier, exchangePartitionLabel,
+                this, false, null, false, null, false, false,
+                new ExecutionContext(dlCopyGUI, storageDevice));
 
         // !!! update reference to storage device !!!
         // copyToStorageDevice() may change the storage device completely
@@ -548,11 +548,7 @@ public class Upgrader extends InstallerOrUpgrader {
         // upgrading from aufs to overlay has to happen before calling
         // finalizeDataPartition() below!
         if (upgradeFromAufsToOverlay) {
-            try {
-                TimeUnit.SECONDS.sleep(5);
-            } catch (InterruptedException ex) {
-                LOGGER.log(Level.SEVERE, "", ex);
-            }
+            // DLCopy.umount() retries as long as cowPath is busy
             DLCopy.umount(cowPath, dlCopyGUI);
 
             // create new overlay directories "/work/" and "/rw/"
@@ -587,11 +583,6 @@ public class Upgrader extends InstallerOrUpgrader {
         DLCopy.writePersistenceConf(dataMountPoint);
 
         // disassemble union
-        try {
-            TimeUnit.SECONDS.sleep(5);
-        } catch (InterruptedException ex) {
-            LOGGER.log(Level.SEVERE, "", ex);
-        }
         DLCopy.umount(cowPath, dlCopyGUI);
         for (String readOnlyMountPoint : readOnlyMountPoints) {
             DLCopy.umount(readOnlyMountPoint, dlCopyGUI);
@@ -624,15 +615,10 @@ public class Upgrader extends InstallerOrUpgrader {
 
         // first umount the filesystem union (aufs or overlay)
         // (otherwise we would wreak havoc on the filesystem metadata)
-        try {
-            // Because we just mounted the cowPath, we have to wait here a
-            // little bit. Otherwise umounting fails with error messages similar
-            // to this one:
-            // umount: /run/rw1/cow: target is busy
-            TimeUnit.SECONDS.sleep(7);
-        } catch (InterruptedException ex) {
-            LOGGER.log(Level.SEVERE, "", ex);
-        }
+        // Because we just mounted the cowPath, umounting might fail with error
+        // messages similar to this one:
+        // umount: /run/rw1/cow: target is busy
+        // DLCopy.umount() retries in this case.
         DLCopy.umount(cowPath, dlCopyGUI);
 
         List<String> excludes = new ArrayList<>();
@@ -822,14 +808,17 @@ public class Upgrader extends InstallerOrUpgrader {
         }
 
         // process list of files (or directories) to overwrite
-        ProcessExecutor processExecutor = new ProcessExecutor();
+        TreeCopier treeCopier = new TreeCopier(new ProcessExecutor());
         for (String file : filesToOverwrite) {
             File destinationFile = new File(persistenceRoot, file);
             LernstickFileTools.recursiveDelete(destinationFile, true);
 
             // recursive copy
-            processExecutor.executeProcess(true, true,
-                    "cp", "-a", "--parents", file, persistenceRoot);
+            try {
+                treeCopier.copy(Paths.get(file), destinationFile.toPath());
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "", ex);
+            }
         }
     }
 
@@ -845,7 +834,9 @@ public class Upgrader extends InstallerOrUpgrader {
         Partition systemPartition = storageDevice.getSystemPartition();
         int systemPartitionNumber = systemPartition.getNumber();
 
-        ProcessExecutor processExecutor = new ProcessExecutor();
+        ExecutionContext context
+                = new ExecutionContext(dlCopyGUI, storageDevice);
+        ProcessExecutor processExecutor = context.getProcessExecutor();
 
         // (the list returned by getPartitions() is 0-based and getNumber()
         // is 1-based, so we really get the next partition...)
@@ -862,7 +853,8 @@ public class Upgrader extends InstallerOrUpgrader {
             long offset = neededEfiPartitionSize - efiPartition.getSize();
             DLCopy.moveExtPartitionOffsetForward(
                     efiPartition, nextPartition, offset);
-            DLCopy.formatEfiPartition(efiPartition.getFullDeviceAndNumber());
+            DLCopy.formatEfiPartition(
+                    efiPartition.getFullDeviceAndNumber(), context);
         } else if (efiUpgradeVariant == EfiUpgradeVariant.ENLARGE_BACKUP) {
 
             // backup
@@ -876,12 +868,18 @@ public class Upgrader extends InstallerOrUpgrader {
             // remove old EFI and exchange partitions
             efiPartition.remove();
             nextPartition.remove();
+            // The new partitions below get the same device nodes. We must
+            // wait until the old ones are gone, otherwise the waits below
+            // would return immediately.
+            ReadinessWaiter.waitForRemoval("removed partitions",
+                    efiPartition.getFullDeviceAndNumber(),
+                    nextPartition.getFullDeviceAndNumber());
 
             // It might happen that the parted command returns but the device
             // nodes aren't created yet. See here for details:
             // https://www.gnu.org/software/parted/manual/parted.html#quit
-            // Therefore we have to call DLCopy.waitForDeviceNodes() here for
-            // the device nodes of both partitions to reappear. Otherwise
+            // Therefore we have to call ReadinessWaiter.waitForPartitions()
+            // here for both partitions to reappear. Otherwise
             // subsequent operations (like formatting the partitions) might
             // fail.
             //
@@ -891,8 +889,9 @@ public class Upgrader extends InstallerOrUpgrader {
                     efiPartition.getOffset(), nextOffset - 1);
             String efiPartitionDevicePath
                     = efiPartition.getFullDeviceAndNumber();
-            DLCopy.waitForDeviceNodes(Paths.get(efiPartitionDevicePath));
-            DLCopy.formatEfiPartition(efiPartitionDevicePath);
+            ReadinessWaiter.waitForPartitions(
+                    "new EFI partition", efiPartitionDevicePath);
+            DLCopy.formatEfiPartition(efiPartitionDevicePath, context);
 
             // create new exchange partition
             long nextEnd = nextPartition.getOffset()
@@ -901,15 +900,18 @@ public class Upgrader extends InstallerOrUpgrader {
                     nextPartition.getIdType(), nextOffset, nextEnd);
             String exchangePartitionDevicePath
                     = exchangePartition.getFullDeviceAndNumber();
-            DLCopy.waitForDeviceNodes(Paths.get(exchangePartitionDevicePath));
+            ReadinessWaiter.waitForPartitions(
+                    "new exchange partition", exchangePartitionDevicePath);
             DLCopy.formatExchangePartition(exchangePartitionDevicePath,
                     exchangePartition.getIdLabel(),
-                    exchangePartition.getIdType(), dlCopyGUI);
+                    exchangePartition.getIdType(), context);
         }
 
         if (efiUpgradeVariant != EfiUpgradeVariant.REGULAR) {
             // must update partition info because of changes above
-            TimeUnit.SECONDS.sleep(7);
+            ReadinessWaiter.waitForFileSystems("changed partitions",
+                    efiPartition.getFullDeviceAndNumber(),
+                    nextPartition.getFullDeviceAndNumber());
             storageDevice = new StorageDevice(storageDevice.getDevice());
             efiPartition = storageDevice.getEfiPartition();
             exchangePartition = storageDevice.getExchangePartition();
@@ -975,11 +977,14 @@ public class Upgrader extends InstallerOrUpgrader {
                         return false;
                     }
 
-                    // let's wait some time before retrying
+                    // let's wait for udev and some increasing time before
+                    // retrying
+                    ReadinessWaiter.waitForUdev("busy " + dataDevPath);
                     try {
-                        LOGGER.info(
-                                "waiting for 10 seconds before continuing...");
-                        TimeUnit.SECONDS.sleep(10);
+                        long delay = Math.min(500L << busyCounter, 10000);
+                        LOGGER.log(Level.INFO, "waiting for {0} ms before "
+                                + "continuing...", delay);
+                        TimeUnit.MILLISECONDS.sleep(delay);
                     } catch (InterruptedException ex) {
                         LOGGER.log(Level.SEVERE, null, ex);
                     }
@@ -1049,9 +1054,15 @@ public class Upgrader extends InstallerOrUpgrader {
             }
             // refresh storage device and partition info
             processExecutor.executeProcess(true, true, "/sbin/partprobe");
-            // safety wait so that new partitions are known to the system
-            // (7 seconds were NOT enough!)
-            TimeUnit.SECONDS.sleep(7);
+            // Wait until the new partitions are known to the system. The
+            // partitions already existed before, therefore we have to wait
+            // for their new sizes, otherwise resize2fs might still see the
+            // old size of the data partition.
+            ReadinessWaiter.waitForSizeChange("resized data partition",
+                    dataDevPath, dataPartition.getSize());
+            ReadinessWaiter.waitForSizeChange("resized system partition",
+                    systemPartition.getFullDeviceAndNumber(),
+                    systemPartition.getSize());
 
             returnValue = processExecutor.executeProcess(true, true,
                     "resize2fs", dataDevPath);
@@ -1075,13 +1086,16 @@ public class Upgrader extends InstallerOrUpgrader {
 
             DLCopy.formatEfiAndSystemPartition(
                     efiPartition.getFullDeviceAndNumber(),
-                    systemPartition.getFullDeviceAndNumber());
+                    systemPartition.getFullDeviceAndNumber(), context);
 
             // update boot flag
             efiPartition.setBootFlag(true);
             systemPartition.setBootFlag(false);
             // we have to wait for d-bus to settle after changing the boot flag
-            TimeUnit.SECONDS.sleep(7);
+            ReadinessWaiter.waitForBootFlag("boot flags", true,
+                    efiPartition.getFullDeviceAndNumber());
+            ReadinessWaiter.waitForBootFlag("boot flags", false,
+                    systemPartition.getFullDeviceAndNumber());
         }
 
         // upgrade EFI and system partition
@@ -1095,12 +1109,15 @@ public class Upgrader extends InstallerOrUpgrader {
             // system partition has no boot flag.
             DLCopy.formatEfiAndSystemPartition(
                     efiPartition.getFullDeviceAndNumber(),
-                    systemPartition.getFullDeviceAndNumber());
+                    systemPartition.getFullDeviceAndNumber(), context);
 
             efiPartition.setBootFlag(true);
             systemPartition.setBootFlag(false);
             // we have to wait for d-bus to settle after changing the boot flag
-            TimeUnit.SECONDS.sleep(7);
+            ReadinessWaiter.waitForBootFlag("boot flags", true,
+                    efiPartition.getFullDeviceAndNumber());
+            ReadinessWaiter.waitForBootFlag("boot flags", false,
+                    systemPartition.getFullDeviceAndNumber());
         }
 
         // define CopyJobs for boot and system parititions
@@ -1116,23 +1133,34 @@ public class Upgrader extends InstallerOrUpgrader {
                 systemPartition, exchangePartitionFS);
 
         // clean up EFI and system partition
-        cleanupPartition(new File(copyJobsInfo.getDestinationEfiPath()));
-        cleanupPartition(new File(copyJobsInfo.getDestinationSystemPath()));
+        try (PhaseTimer.Measurement removingFiles = context.getPhaseTimer()
+                .start(Phase.REMOVING_FILES, "system")) {
+            cleanupPartition(new File(copyJobsInfo.getDestinationEfiPath()));
+            cleanupPartition(
+                    new File(copyJobsInfo.getDestinationSystemPath()));
+        }
 
         LOGGER.info("starting copy job");
         dlCopyGUI.showUpgradeFileCopy(fileCopier);
 
         CopyJob bootFilesCopyJob = copyJobsInfo.getExchangeEfiCopyJob();
-        fileCopier.copy(copyJobsInfo.getEfiCopyJob(),
-                bootFilesCopyJob, copyJobsInfo.getSystemCopyJob());
+        try (PhaseTimer.Measurement fileCopy = context.getPhaseTimer().start(
+                Phase.FILE_COPY, "system")) {
+            fileCopier.copy(copyJobsInfo.getEfiCopyJob(),
+                    bootFilesCopyJob, copyJobsInfo.getSystemCopyJob());
+            fileCopy.setBytes(fileCopier.getByteCount());
+        }
 
         dlCopyGUI.showUpgradeUnmounting();
         DLCopy.isolinuxToSyslinux(
-                copyJobsInfo.getDestinationEfiPath(), dlCopyGUI);
+                copyJobsInfo.getDestinationEfiPath(), context);
 
         // make storage device bootable
         dlCopyGUI.showUpgradeWritingBootSector();
-        DLCopy.makeBootable(source, devicePath, efiPartition);
+        try (PhaseTimer.Measurement bootloader = context.getPhaseTimer().start(
+                Phase.BOOTLOADER, efiPartition.getFullDeviceAndNumber())) {
+            DLCopy.makeBootable(source, devicePath, efiPartition, context);
+        }
 
         if (keepUserSettings && (userConfiguration.getPasswdLine() != null
                 || userConfiguration.getShadowLine() != null
@@ -1155,11 +1183,6 @@ public class Upgrader extends InstallerOrUpgrader {
             userConfiguration.apply(cowPath);
 
             // umount
-            try {
-                TimeUnit.SECONDS.sleep(5);
-            } catch (InterruptedException ex) {
-                LOGGER.log(Level.SEVERE, "", ex);
-            }
             DLCopy.umount(cowPath, dlCopyGUI);
             for (String readOnlyMountPoint : readOnlyMountPoints) {
                 DLCopy.umount(readOnlyMountPoint, dlCopyGUI);
@@ -1,6 +1,8 @@
 package ch.fhnw.dlcopy.gui;
 
-import ch.fhnw.dlcopy.Installer;
+import ch.fhnw.dlcopy.InstallationStage;
+import ch.fhnw.dlcopy.PhaseTiming;
+import ch.fhnw.dlcopy.TreeCopier;
 import ch.fhnw.filecopier.FileCopier;
 import ch.fhnw.util.StorageDevice;
 import java.nio.file.Path;
@@ -29,6 +31,28 @@ public interface DLCopyGUI {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    /**
+     * called when the installation on a StorageDevice enters a new stage
+     *
+     * @param storageDevice the StorageDevice to be installed
+     * @param stage the new stage of the installation
+     */
+    public default void installingDeviceStageChanged(
+            StorageDevice storageDevice, InstallationStage stage) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * called when a phase of an operation on a StorageDevice is finished
+     * (the default implementation ignores the timing information)
+     *
+     * @param storageDevice the StorageDevice of the operation
+     * @param phaseTiming the timing of the finished phase
+     */
+    public default void phaseFinished(
+            StorageDevice storageDevice, PhaseTiming phaseTiming) {
+    }
+
     /**
      * shows the user interface for creating file systems of a running
      * installation
@@ -37,6 +61,14 @@ public interface DLCopyGUI {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    /**
+     * shows the user interface for cloning an already installed storage
+     * device
+     */
+    public default void showInstallCloning() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
     /**
      * shows the user interface for overwriting the data partition with random
      * data
@@ -63,21 +95,9 @@ public interface DLCopyGUI {
      * shows the user interface for copying the persistency partition during
      * installation
      *
-     * @param installer the Installer currently in use
-     * @param copyScript the shell script for the copy operation
-     * @param sourcePath the path to the source directory
-     */
-    public default void showInstallPersistencyCopy(
-            Installer installer, String copyScript, String sourcePath) {
-        throw new UnsupportedOperationException("Not supported yet.");
-    }
-
-    /**
-     * sets the current output line of the copy process
-     *
-     * @param line the current output line of the copy process
+     * @param treeCopier the TreeCopier used for the copy operation
      */
-    public default void setInstallCopyLine(String line) {
+    public default void showInstallPersistencyCopy(TreeCopier treeCopier) {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
@@ -99,11 +119,12 @@ public interface DLCopyGUI {
     /**
      * called when installing of a StorageDevice finished
      *
+     * @param storageDevice the StorageDevice where installing finished
      * @param errorMessage the error message or <code>null</code> if there was
      * no error
      * @param autoNumberStart the new auto numbering start value
      */
-    public default void installingDeviceFinished(
+    public default void installingDeviceFinished(StorageDevice storageDevice,
             String errorMessage, int autoNumberStart) {
         throw new UnsupportedOperationException("Not supported yet.");
     }
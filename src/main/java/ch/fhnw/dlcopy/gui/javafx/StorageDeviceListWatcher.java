@@ -0,0 +1,154 @@
+package ch.fhnw.dlcopy.gui.javafx;
+
+import ch.fhnw.dlcopy.DLCopy;
+import ch.fhnw.dlcopy.UdisksMonitor;
+import ch.fhnw.util.StorageDevice;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Keeps a list of storage devices up to date with the devices added to and
+ * removed from the system.
+ * The list is filled with a full scan when the watcher is started. After
+ * that only the drives reported by the {@link UdisksMonitor} are probed
+ * again. The monitor already collects the burst of events when a drive is
+ * plugged in, so that every change results in a single probe.
+ */
+public class StorageDeviceListWatcher implements UdisksMonitor.Listener {
+
+    private static final Logger LOGGER = Logger.getLogger(StorageDeviceListWatcher.class.getName());
+
+    private final ObservableList<StorageDevice> devices;
+    private final BooleanSupplier includeHardDisks;
+    private final String bootDeviceName;
+    private final Runnable listChangedHandler;
+    private final UdisksMonitor udisksMonitor = new UdisksMonitor();
+    private final ExecutorService executor;
+
+    // The names of the devices in the list, only accessed from the executor thread.
+    private final Set<String> knownDevices = new HashSet<>();
+
+    /**
+     * Creates a new StorageDeviceListWatcher
+     * @param devices The list to keep up to date, it is only modified on the JavaFX application thread
+     * @param includeHardDisks Returns if hard disks should be included in the list
+     * @param bootDeviceName The name of the boot device, which is never included in the list
+     * @param listChangedHandler Is called on the JavaFX application thread after the list was changed
+     */
+    public StorageDeviceListWatcher(ObservableList<StorageDevice> devices,
+            BooleanSupplier includeHardDisks, String bootDeviceName,
+            Runnable listChangedHandler) {
+        this.devices = devices;
+        this.includeHardDisks = includeHardDisks;
+        this.bootDeviceName = bootDeviceName;
+        this.listChangedHandler = listChangedHandler;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "StorageDeviceListWatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Fills the list and starts watching the added and removed devices
+     */
+    public void start() {
+        udisksMonitor.addListener(this);
+        udisksMonitor.start();
+        rescan();
+    }
+
+    /**
+     * Stops watching the devices
+     */
+    public void stop() {
+        udisksMonitor.removeListener(this);
+        udisksMonitor.stop();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Replaces the content of the list with a full scan of all devices.
+     * This is necessary when the criteria for the devices in the list changed, e.g. when hard disks should be shown.
+     */
+    public void rescan() {
+        executor.execute(() -> {
+            try {
+                List<StorageDevice> pluggedDevices = DLCopy.getStorageDevices(
+                        includeHardDisks.getAsBoolean(), false, bootDeviceName);
+                Set<String> pluggedNames = new HashSet<>();
+                pluggedDevices.forEach(device -> pluggedNames.add(device.getDevice()));
+                knownDevices.clear();
+                knownDevices.addAll(pluggedNames);
+                Platform.runLater(() -> {
+                    devices.removeIf(device -> !pluggedNames.contains(device.getDevice()));
+                    for (StorageDevice device : pluggedDevices) {
+                        if (devices.stream().noneMatch(shown -> shown.getDevice().equals(device.getDevice()))) {
+                            devices.add(device);
+                        }
+                    }
+                    listChangedHandler.run();
+                });
+            } catch (IOException | DBusException | DBusExecutionException ex) {
+                LOGGER.log(Level.SEVERE, ex.getLocalizedMessage());
+            }
+        });
+    }
+
+    @Override
+    public void deviceAdded(String path) {
+        executor.execute(() -> update(path, false));
+    }
+
+    @Override
+    public void deviceRemoved(String path) {
+        executor.execute(() -> update(path, true));
+    }
+
+    @Override
+    public void deviceChanged(String path) {
+        executor.execute(() -> update(path, false));
+    }
+
+    private void update(String path, boolean removed) {
+        String drive = path.substring(path.lastIndexOf('/') + 1);
+        StorageDevice storageDevice = null;
+        if (!removed && !drive.equals(bootDeviceName)) {
+            try {
+                storageDevice = DLCopy.getStorageDevice(path, includeHardDisks.getAsBoolean());
+                if (storageDevice != null && storageDevice.getType() == StorageDevice.Type.OpticalDisc) {
+                    LOGGER.log(Level.INFO, "skipping optical disk {0}", storageDevice);
+                    storageDevice = null;
+                }
+            } catch (DBusException | DBusExecutionException ex) {
+                // the drive was removed again in the meantime
+                LOGGER.log(Level.WARNING, ex.getLocalizedMessage());
+            }
+        }
+        LOGGER.log(Level.INFO, "storage device of path {0}: {1}", new Object[]{path, storageDevice});
+
+        boolean wasKnown = storageDevice == null ? knownDevices.remove(drive) : !knownDevices.add(drive);
+        if (storageDevice == null && !wasKnown) {
+            return;
+        }
+        StorageDevice newDevice = storageDevice;
+        Platform.runLater(() -> {
+            devices.removeIf(device -> device.getDevice().equals(drive));
+            if (newDevice != null) {
+                devices.add(newDevice);
+            }
+            listChangedHandler.run();
+        });
+    }
+}
@@ -56,10 +56,11 @@ public class StorageMediaManagement
     @Override
     /**
      * This method is called by JavaFX when the application stops.
-     * It deinitialize the current view, to avoid memory leaks.
+     * It deinitialize the current view, to avoid memory leaks, and closes the shared digest cache.
      */
     public void stop() throws Exception {
         view.deinitialize();
+        model.closeDigestCache();
     }
 
     @Override
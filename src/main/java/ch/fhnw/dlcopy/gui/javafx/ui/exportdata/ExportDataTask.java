@@ -1,5 +1,6 @@
 package ch.fhnw.dlcopy.gui.javafx.ui.exportdata;
 
+import ch.fhnw.dlcopy.CompressionProfile;
 import ch.fhnw.dlcopy.SquashFSCreator;
 import ch.fhnw.dlcopy.SystemSource;
 import ch.fhnw.dlcopy.gui.DLCopyGUI;
@@ -13,6 +14,8 @@ public class ExportDataTask extends Task<Boolean> implements DLCopyGUI {
     private final String tmpDirectory;
     private final boolean showNotUsedDialog;
     private final boolean autoStartInstaller;
+    private final CompressionProfile compressionProfile;
+    private final boolean compressionCalibration;
 
     private SquashFSCreator squashFSCreator;
 
@@ -26,15 +29,21 @@ public class ExportDataTask extends Task<Boolean> implements DLCopyGUI {
      * should be shown
      * @param autoStartInstaller if the installer should start automatically if
      * no datapartition is in use
+     * @param compressionProfile the compression profile for the squashfs file
+     * @param compressionCalibration if the size and duration of compressing
+     * the squashfs file should be estimated before compressing
      */
     public ExportDataTask(DLCopyGUI dlCopyGUI, SystemSource systemSource,
             String tmpDirectory, boolean showNotUsedDialog,
-            boolean autoStartInstaller) {
+            boolean autoStartInstaller, CompressionProfile compressionProfile,
+            boolean compressionCalibration) {
         this.dlCopyGUI = dlCopyGUI;
         this.systemSource = systemSource;
         this.tmpDirectory = tmpDirectory;
         this.showNotUsedDialog = showNotUsedDialog;
         this.autoStartInstaller = autoStartInstaller;
+        this.compressionProfile = compressionProfile;
+        this.compressionCalibration = compressionCalibration;
     }
 
     @Override
@@ -44,7 +53,9 @@ public class ExportDataTask extends Task<Boolean> implements DLCopyGUI {
             systemSource,
             tmpDirectory,
             showNotUsedDialog,
-            autoStartInstaller
+            autoStartInstaller,
+            compressionProfile,
+            compressionCalibration
         );
 
         dlCopyGUI.showSquashFSProgressMessage("test");
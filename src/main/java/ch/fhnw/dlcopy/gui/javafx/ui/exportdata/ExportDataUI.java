@@ -1,5 +1,6 @@
 package ch.fhnw.dlcopy.gui.javafx.ui.exportdata;
 
+import ch.fhnw.dlcopy.CompressionProfile;
 import ch.fhnw.dlcopy.RunningSystemSource;
 import ch.fhnw.dlcopy.SystemSource;
 import ch.fhnw.dlcopy.gui.javafx.SwitchButton;
@@ -19,6 +20,7 @@ import javafx.fxml.FXML;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.stage.DirectoryChooser;
@@ -39,6 +41,8 @@ public class ExportDataUI extends View {
     @FXML private Label lblWriteableDisplay;
     @FXML private Label lblFreeSpace;
     @FXML private Label lblFreeSpaceDisplay;
+    @FXML private Label lblCompressionProfile;
+    @FXML private ComboBox<String> cmbCompressionProfile;
     @FXML private CheckBox chbInformationDialog;
     @FXML private CheckBox chbInstallationProgram;
     @FXML private Button btnExport;
@@ -66,6 +70,12 @@ public class ExportDataUI extends View {
     */
     protected void initControls() {
         btnExport.setDisable(true);
+        for (CompressionProfile profile : CompressionProfile.values()) {
+            cmbCompressionProfile.getItems().add(stringBundle.getString(
+                    "export.compressionProfile." + profile.name()));
+        }
+        cmbCompressionProfile.getSelectionModel().select(
+                CompressionProfile.MAXIMUM.ordinal());
 
         addToolTip(tfTargetDirectory, stringBundle.getString("export.tooltip.targetDirectory"));
         addToolTip(chbInformationDialog,stringBundle.getString("export.tooltip.informationDialog"));
@@ -76,6 +86,8 @@ public class ExportDataUI extends View {
         addToolTip(lblWriteable, stringBundle.getString("export.tooltip.writeable"));
         addToolTip(lblWriteableDisplay, stringBundle.getString("export.tooltip.writeable"));
         addToolTip(switchBtn, stringBundle.getString("global.tooltip.expertMode"));
+        addToolTip(cmbCompressionProfile, stringBundle.getString("export.tooltip.compressionProfile"));
+        addToolTip(lblCompressionProfile, stringBundle.getString("export.tooltip.compressionProfile"));
     }
 
 
@@ -149,13 +161,20 @@ public class ExportDataUI extends View {
         }
     }
 
+    public CompressionProfile getCompressionProfile() {
+        return CompressionProfile.values()[
+                cmbCompressionProfile.getSelectionModel().getSelectedIndex()];
+    }
+
     private void createDataPartiton() {
         Task exporter = new ExportDataTask(
             ExportControler.getInstance(context),
             runningSystemSource,
             tfTargetDirectory.getText(),
             chbInformationDialog.isSelected(),
-            chbInstallationProgram.isSelected()
+            chbInstallationProgram.isSelected(),
+            getCompressionProfile(),
+            false // compression calibration
         );
         new Thread(exporter).start();
         context.setScene(new LoadUI());
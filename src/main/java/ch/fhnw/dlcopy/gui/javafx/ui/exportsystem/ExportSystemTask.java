@@ -1,5 +1,6 @@
 package ch.fhnw.dlcopy.gui.javafx.ui.exportsystem;
 
+import ch.fhnw.dlcopy.CompressionProfile;
 import ch.fhnw.dlcopy.DataPartitionMode;
 import ch.fhnw.dlcopy.IsoCreator;
 import ch.fhnw.dlcopy.SystemSource;
@@ -17,6 +18,10 @@ public class ExportSystemTask extends Task<Boolean> implements DLCopyGUI {
     private final boolean showNotUsedDialog;
     private final boolean autoStartInstaller;
     private final String isoLabel;
+    private final boolean graftPoints;
+    private final CompressionProfile compressionProfile;
+    private final boolean compressionCalibration;
+    private final boolean layeredExport;
 
     private IsoCreator isoCreator;
 
@@ -33,12 +38,23 @@ public class ExportSystemTask extends Task<Boolean> implements DLCopyGUI {
      * @param autoStartInstaller if the installer should start automatically if
      * no datapartition is in use
      * @param isoLabel the label to use for the final ISO
+     * @param graftPoints if the unchanged files of the source medium should
+     * be grafted into the ISO instead of copying them to a temporary build
+     * directory first
+     * @param compressionProfile the compression profile for the squashfs file
+     * @param compressionCalibration if the size and duration of compressing
+     * the squashfs file should be estimated before compressing
+     * @param layeredExport if the squashfs files of the system should be
+     * copied verbatim and only the data partition should be compressed into
+     * an additional squashfs layer
      */
     public ExportSystemTask(DLCopyGUI dlCopyGUI, SystemSource systemSource,
             boolean onlyBootMedium, String tmpDirectory,
             DataPartitionMode dataPartitionMode,
             boolean showNotUsedDialog, boolean autoStartInstaller,
-            String isoLabel) {
+            String isoLabel, boolean graftPoints,
+            CompressionProfile compressionProfile,
+            boolean compressionCalibration, boolean layeredExport) {
 
         this.dlCopyGUI = dlCopyGUI;
         this.systemSource = systemSource;
@@ -48,6 +64,10 @@ public class ExportSystemTask extends Task<Boolean> implements DLCopyGUI {
         this.showNotUsedDialog = showNotUsedDialog;
         this.autoStartInstaller = autoStartInstaller;
         this.isoLabel = isoLabel;
+        this.graftPoints = graftPoints;
+        this.compressionProfile = compressionProfile;
+        this.compressionCalibration = compressionCalibration;
+        this.layeredExport = layeredExport;
     }
 
     /**
@@ -62,7 +82,9 @@ public class ExportSystemTask extends Task<Boolean> implements DLCopyGUI {
 
         isoCreator = new IsoCreator(dlCopyGUI, systemSource,
                 onlyBootMedium, tmpDirectory, dataPartitionMode,
-                showNotUsedDialog, autoStartInstaller, isoLabel);
+                showNotUsedDialog, autoStartInstaller, isoLabel,
+                graftPoints, compressionProfile, compressionCalibration,
+                layeredExport);
 
         return isoCreator.createISO();
     }
@@ -1,5 +1,6 @@
 package ch.fhnw.dlcopy.gui.javafx.ui.exportsystem;
 
+import ch.fhnw.dlcopy.CompressionProfile;
 import ch.fhnw.dlcopy.DLCopy;
 import ch.fhnw.dlcopy.DataPartitionMode;
 import ch.fhnw.dlcopy.RunningSystemSource;
@@ -48,7 +49,9 @@ public class ExportSystemUI extends View {
     @FXML private Button btnExport;
     @FXML private CheckBox chbInformationDialog;
     @FXML private CheckBox chbInstallationProgram;
+    @FXML private ComboBox<String> cmbCompressionProfile;
     @FXML private ComboBox<String> cmbDataPartitionMode;
+    @FXML private Label lblCompressionProfile;
     @FXML private Label lblFreeSpace;
     @FXML private Label lblFreeSpaceDisplay;
     @FXML private Label lblTargetDirectory;
@@ -81,12 +84,20 @@ public class ExportSystemUI extends View {
     protected void initControls() {
         cmbDataPartitionMode.getItems().addAll(option_ReadWrite, option_ReadOnly, option_NotUsed);
         cmbDataPartitionMode.setValue(option_ReadWrite);
+        for (CompressionProfile profile : CompressionProfile.values()) {
+            cmbCompressionProfile.getItems().add(stringBundle.getString(
+                    "export.compressionProfile." + profile.name()));
+        }
+        cmbCompressionProfile.getSelectionModel().select(
+                CompressionProfile.MAXIMUM.ordinal());
         btnExport.setDisable(true);
 
         addToolTip(tfTargetDirectory, stringBundle.getString("export.tooltip.targetDirectory"));
         addToolTip(chbInformationDialog, stringBundle.getString("export.tooltip.informationDialog"));
         addToolTip(chbInstallationProgram, stringBundle.getString("export.tooltip.installationProgram"));
         addToolTip(cmbDataPartitionMode, stringBundle.getString("global.tooltip.dataPartitionMode"));
+        addToolTip(cmbCompressionProfile, stringBundle.getString("export.tooltip.compressionProfile"));
+        addToolTip(lblCompressionProfile, stringBundle.getString("export.tooltip.compressionProfile"));
         addToolTip(lblFreeSpace, stringBundle.getString("export.tooltip.freeSpace"));
         addToolTip(lblTargetDirectory, stringBundle.getString("export.tooltip.targetDirectory"));
         addToolTip(lblFreeSpaceDisplay, stringBundle.getString("export.tooltip.freeSpace"));
@@ -135,6 +146,11 @@ public class ExportSystemUI extends View {
         });
     }
 
+    public CompressionProfile getCompressionProfile() {
+        return CompressionProfile.values()[
+                cmbCompressionProfile.getSelectionModel().getSelectedIndex()];
+    }
+
     public DataPartitionMode getDataPartitionMode() {
         if (option_NotUsed.equals(cmbDataPartitionMode.getValue())) {
             return DataPartitionMode.NOT_USED;
@@ -253,7 +269,11 @@ public class ExportSystemUI extends View {
             getDataPartitionMode(),              // Data Partition mode
             chbInformationDialog.isSelected(),   // showNotUsedDialog
             chbInstallationProgram.isSelected(), // autoStartInstaller
-            tfDvdLabel.getText()                 // partition label
+            tfDvdLabel.getText(),                // partition label
+            false,                               // graft points
+            getCompressionProfile(),             // compression profile
+            false,                               // compression calibration
+            false                                // layered export
         );
         new Thread(exporter).start();
         context.setScene(new LoadUI());
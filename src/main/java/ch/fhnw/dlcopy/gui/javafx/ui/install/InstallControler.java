@@ -1,6 +1,7 @@
 package ch.fhnw.dlcopy.gui.javafx.ui.install;
 
-import ch.fhnw.dlcopy.Installer;
+import ch.fhnw.dlcopy.InstallationStage;
+import ch.fhnw.dlcopy.TreeCopier;
 import ch.fhnw.dlcopy.gui.DLCopyGUI;
 import ch.fhnw.dlcopy.gui.javafx.SceneContext;
 import ch.fhnw.dlcopy.model.install.Installation;
@@ -99,6 +100,25 @@ public class InstallControler implements DLCopyGUI {
         currentInstallation.setStatus(OperationStatus.ONGOING);
     }
 
+    @Override
+    public void installingDeviceStageChanged(StorageDevice storageDevice, InstallationStage stage) {
+        // Pipelined installations prepare the next device while copying to
+        // the current one, so the device is not necessarily the current one
+        Installation installation = getInstallationFor(storageDevice);
+        switch (stage) {
+            case PREPARING:
+                installation.setDetailStatus(InstallationStatus.CREATE_FILE_SYSTEMS);
+                break;
+            case WAITING:
+                installation.setDetailStatus(InstallationStatus.WAITING_FOR_COPY);
+                break;
+            case COPYING:
+            case CLONING:
+                installation.setDetailStatus(InstallationStatus.COPY_FILES);
+                break;
+        }
+    }
+
     @Override
     public void showInstallCreatingFileSystems() {
         currentInstallation.setDetailStatus(InstallationStatus.CREATE_FILE_SYSTEMS);
@@ -106,6 +126,13 @@ public class InstallControler implements DLCopyGUI {
         progress.setValue(-1);
     }
 
+    @Override
+    public void showInstallCloning() {
+        currentInstallation.setDetailStatus(InstallationStatus.COPY_FILES);
+        installationStep.setValue(stringBundle.getString("install.copy"));
+        progress.setValue(-1);
+    }
+
     @Override
     public void showInstallOverwritingDataPartitionWithRandomData(long done, long size) {
         currentInstallation.setDetailStatus(InstallationStatus.OVERWRITE_DATA_PARTITION_WITH_RANDOM_DATA);
@@ -122,17 +149,11 @@ public class InstallControler implements DLCopyGUI {
     }
 
     @Override
-    public void showInstallPersistencyCopy(Installer installer, String copyScript, String sourcePath) {
+    public void showInstallPersistencyCopy(TreeCopier treeCopier) {
         currentInstallation.setDetailStatus(InstallationStatus.COPY_PERSISTENCY_PARTITION);
         progress.setValue(-1);
     }
 
-    @Override
-    public void setInstallCopyLine(String line) {
-        // TODO: What does this function do?
-        System.out.println(String.format(">>>>>>>>>>>>>>> TRACE: `setInstallCopyLine()` with %s as line is called.", line));
-    }
-
     @Override
     public void showInstallUnmounting() {
         currentInstallation.setDetailStatus(InstallationStatus.UNMOUNTING);
@@ -149,16 +170,19 @@ public class InstallControler implements DLCopyGUI {
 
 
     @Override
-    public void installingDeviceFinished(String errorMessage, int autoNumberStart) {
+    public void installingDeviceFinished(StorageDevice storageDevice, String errorMessage, int autoNumberStart) {
+        // Installations may run in parallel, so the finished installation is
+        // not necessarily the current one
+        Installation installation = getInstallationFor(storageDevice);
         // Update the status
         if (errorMessage == null) {
             // No error occured
-            currentInstallation.setStatus(OperationStatus.SUCCESSFULL);
+            installation.setStatus(OperationStatus.SUCCESSFULL);
             installationStep.setValue(stringBundle.getString("install.success"));
         } else {
             // An error occured
-            currentInstallation.setError(errorMessage);
-            currentInstallation.setStatus(OperationStatus.FAILED);
+            installation.setError(errorMessage);
+            installation.setStatus(OperationStatus.FAILED);
             installationStep.setValue(stringBundle.getString("error.error") + ": " + errorMessage);
         }
         progress.setValue(1);
@@ -1,6 +1,7 @@
 package ch.fhnw.dlcopy.gui.javafx.ui.install;
 
 import ch.fhnw.dlcopy.gui.javafx.NumericTextField;
+import ch.fhnw.dlcopy.gui.javafx.StorageDeviceListWatcher;
 import ch.fhnw.dlcopy.DLCopy;
 import static ch.fhnw.dlcopy.DLCopy.MEGA;
 import ch.fhnw.dlcopy.DataPartitionMode;
@@ -14,6 +15,7 @@ import ch.fhnw.dlcopy.exceptions.NoExecutableExtLinuxException;
 import ch.fhnw.dlcopy.exceptions.NoExtLinuxException;
 import ch.fhnw.dlcopy.gui.javafx.ui.StartscreenUI;
 import ch.fhnw.dlcopy.gui.javafx.ui.View;
+import ch.fhnw.dlcopy.model.PresentationModel;
 import ch.fhnw.util.LernstickFileTools;
 import ch.fhnw.util.Partition;
 import ch.fhnw.util.ProcessExecutor;
@@ -21,18 +23,13 @@ import ch.fhnw.util.StorageDevice;
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.LongProperty;
 import javafx.beans.property.Property;
@@ -74,10 +71,10 @@ public class SelectDeviceUI extends View {
     
     private static final long GIGA = 1073741824;
 
-    private final Timer listUpdateTimer = new Timer();
+    private StorageDeviceListWatcher listWatcher;
     private SystemSource runningSystemSource;
     private SystemSource isoSystemSource;
-    private boolean showHarddisks = false;
+    private volatile boolean showHarddisks = false;
     private ObservableList<StorageDevice> selectedStds;
     private LongProperty exchangePartitionSize = new SimpleLongProperty();
     private LongProperty displayedExchangePartitionSize = new SimpleLongProperty();
@@ -148,51 +145,25 @@ public class SelectDeviceUI extends View {
      */
     @Override
     public void deinitialize() {
-        listUpdateTimer.cancel();
+        listWatcher.stop();
     }
 
     @Override
     @SuppressWarnings("unchecked") // cmbDataPartitionMode items' type safety does not need validation, as they are the same raw type.
     protected void initControls() {
-        TimerTask listUpdater = new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    List<StorageDevice> pluggedDevices = DLCopy.getStorageDevices(showHarddisks, false, "bootDeviceName");
-                    List<StorageDevice> removedDevices = new ArrayList<>();
-                    List<StorageDevice> addedDevices = new ArrayList<>();
-                    for (StorageDevice device : pluggedDevices) {
-                        if (!lvDevices.getItems().contains(device)) {
-                            // Plugged deice is not shown yet
-                            addedDevices.add(device);
-                        }
-                    }
-                    for (StorageDevice device : lvDevices.getItems()) {
-                        if (!pluggedDevices.contains(device)) {
-                            // Shown device is not plugged anymore
-                            removedDevices.add(device);
-                        }
-                    }
-                    Platform.runLater(() -> {
-                        lvDevices.getItems().removeAll(removedDevices);
-                        lvDevices.getItems().addAll(addedDevices);
-
-                        // Calc the max space for the exchange and data partition
-                        lvDevices.getItems().forEach(device -> {
-                            double customizablePartitionSpace = device.getSize()
-                                    - getSelectedSource().getSystemSize()
-                                    - DLCopy.EFI_PARTITION_SIZE * MEGA;
-                            if (maxCustomizablePartitionSpace.greaterThan(customizablePartitionSpace).get()) {
-                                maxCustomizablePartitionSpace.set(customizablePartitionSpace);
-                            }
-                        });
-                    });
-                } catch (IOException | DBusException ex) {
-                    LOGGER.log(Level.SEVERE, ex.getLocalizedMessage());
+        listWatcher = new StorageDeviceListWatcher(lvDevices.getItems(),
+                () -> showHarddisks, "bootDeviceName", () -> {
+            // Calc the max space for the exchange and data partition
+            lvDevices.getItems().forEach(device -> {
+                double customizablePartitionSpace = device.getSize()
+                        - getSelectedSource().getSystemSize()
+                        - DLCopy.EFI_PARTITION_SIZE * MEGA;
+                if (maxCustomizablePartitionSpace.greaterThan(customizablePartitionSpace).get()) {
+                    maxCustomizablePartitionSpace.set(customizablePartitionSpace);
                 }
-            }
-        };
-        listUpdateTimer.scheduleAtFixedRate(listUpdater, 0, 1000L); // Starts the `lisstUpdater`-task each 1000ms (1sec)
+            });
+        });
+        listWatcher.start();
 
         lvDevices.setPlaceholder(new Label(stringBundle.getString("install.lvDevices")));
 
@@ -330,6 +301,7 @@ public class SelectDeviceUI extends View {
         });
         chbShowHarddisk.setOnAction(event -> {
             showHarddisks = valChb(chbShowHarddisk);
+            listWatcher.rescan();
         });
         chbDataPartitionPersonalPassword.setOnAction(event -> {
             // other options are only available if encryption is enabled
@@ -403,7 +375,7 @@ public class SelectDeviceUI extends View {
             tfExchangePartitionLabel.getText(),     // the label of the exchange partition
             cmbExchangePartitionFilesystem.getValue().toString(),    // the file system of the exchange partition
             cmbDataPartitionFilesystem.getValue().toString(), // the file system of the data partition
-            new HashMap<String, byte[]>(),  // a global digest cache for speeding up repeated file checks
+            PresentationModel.getInstance().getDigestCache(),  // a global digest cache for speeding up repeated file checks
             // Register the InstallControler as Callback-Class
             installcontroller,    // the DLCopyGUI
             exchangePartitionSize.intValue(),  // the size of the exchange partition
@@ -426,6 +398,15 @@ public class SelectDeviceUI extends View {
             valChb(chbPrinterSettings),  // if the printer settings should be transferred
             valChb(chbFirewallSettings),  // if the firewall settings should be transferred
             valChb(chbCheckCopies),  // if copies should be checked for errors
+            // Manifest verification, parallel installations and discarding
+            // are only supported by the Swing GUI (command line options
+            // --manifestVerification, --parallelInstallations and --discard).
+            // This GUI installs one storage device after the other.
+            false,  // if copies should be checked with the manifest of the source medium
+            1,  // the maximum number of storage devices to install in parallel
+            false,  // if the next device should be prepared while copying to the current one
+            false,  // if the first device should be cloned to all other devices
+            false,  // if all blocks of the devices should be discarded before partitioning
             installLock // the lock to aquire before executing in background
         ).execute();
     }
@@ -6,8 +6,10 @@ import ch.fhnw.dlcopy.RepartitionStrategy;
 import ch.fhnw.dlcopy.RunningSystemSource;
 import ch.fhnw.dlcopy.SystemSource;
 import ch.fhnw.dlcopy.Upgrader;
+import ch.fhnw.dlcopy.gui.javafx.StorageDeviceListWatcher;
 import ch.fhnw.dlcopy.gui.javafx.ui.StartscreenUI;
 import ch.fhnw.dlcopy.gui.javafx.ui.View;
+import ch.fhnw.dlcopy.model.PresentationModel;
 import ch.fhnw.util.ProcessExecutor;
 import ch.fhnw.util.StorageDevice;
 import java.io.BufferedReader;
@@ -16,17 +18,13 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.MessageFormat;
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javafx.application.Platform;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -50,8 +48,8 @@ public class UpdateDeviceUI extends View {
     private static final Logger LOGGER = Logger.getLogger(UpdateDeviceUI.class.getName());
     private static final ProcessExecutor PROCESS_EXECUTOR = new ProcessExecutor();
     private SystemSource runningSystemSource;
-    private boolean showHarddisks = false;
-    private final Timer listUpdateTimer = new Timer();
+    private volatile boolean showHarddisks = false;
+    private StorageDeviceListWatcher listWatcher;
     private ObservableList<StorageDevice> selectedStds;
     private RepartitionStrategy repartitionStrategy = RepartitionStrategy.KEEP;
 
@@ -133,7 +131,7 @@ public class UpdateDeviceUI extends View {
      */
     @Override
     public void deinitialize() {
-        listUpdateTimer.cancel();
+        listWatcher.stop();
     }
 
     @Override
@@ -165,37 +163,12 @@ public class UpdateDeviceUI extends View {
 
         chbShowHarddisk.setOnAction(event -> {
             showHarddisks = valChb(chbShowHarddisk);
+            listWatcher.rescan();
         });
 
-        TimerTask listUpdater = new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    List<StorageDevice> pluggedDevices = DLCopy.getStorageDevices(showHarddisks, false, "bootDeviceName");
-                    List<StorageDevice> removedDevices = new ArrayList<>();
-                    List<StorageDevice> addedDevices = new ArrayList<>();
-                    for (StorageDevice device : pluggedDevices) {
-                        if (!lvDevices.getItems().contains(device)) {
-
-                            // Plugged deice is not shown yet
-                            addedDevices.add(device);
-                        }
-                    }
-                    for (StorageDevice device : lvDevices.getItems()) {
-                        if (!pluggedDevices.contains(device)) {
-                            removedDevices.add(device);
-                        }
-                    }
-                    Platform.runLater(() -> {
-                        lvDevices.getItems().removeAll(removedDevices);
-                        lvDevices.getItems().addAll(addedDevices);
-                    });
-                } catch (IOException | DBusException ex) {
-                    LOGGER.log(Level.SEVERE, ex.getLocalizedMessage());
-                }
-            }
-        };
-        listUpdateTimer.scheduleAtFixedRate(listUpdater, 0, 1000L); // Starts the `lisstUpdater`-task each 1000ms (1sec)
+        listWatcher = new StorageDeviceListWatcher(lvDevices.getItems(),
+                () -> showHarddisks, "bootDeviceName", () -> {});
+        listWatcher.start();
         lvDevices.setPlaceholder(new Label(stringBundle.getString("update.lvDevices")));
 
         lvDevices.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
@@ -404,7 +377,7 @@ public class UpdateDeviceUI extends View {
                 "", // the label of the exchange partition
                 "", // the file system of the exchange partition
                 "", // the file system of the data partition
-                new HashMap<>(), // a global digest cache for speeding up repeated file checks
+                PresentationModel.getInstance().getDigestCache(), // a global digest cache for speeding up repeated file checks
                 null, // the main DLCopy instance
                 context, // the DLCopy GUI
                 RepartitionStrategy.KEEP, // the repartition strategie for the exchange partition
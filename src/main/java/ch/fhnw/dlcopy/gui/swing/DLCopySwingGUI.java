@@ -6,15 +6,22 @@
 package ch.fhnw.dlcopy.gui.swing;
 
 import static ch.fhnw.dlcopy.DLCopy.STRINGS;
+import ch.fhnw.dlcopy.CompressionProfile;
 import ch.fhnw.dlcopy.DLCopy;
+import ch.fhnw.dlcopy.DigestCache;
 import ch.fhnw.dlcopy.DataPartitionMode;
 import ch.fhnw.dlcopy.DebianLiveDistribution;
+import ch.fhnw.dlcopy.InstallationStage;
+import ch.fhnw.dlcopy.PhaseReport;
+import ch.fhnw.dlcopy.PhaseTiming;
 import ch.fhnw.dlcopy.Installer;
 import ch.fhnw.dlcopy.RepartitionStrategy;
 import ch.fhnw.dlcopy.Resetter;
 import ch.fhnw.dlcopy.RunningSystemSource;
 import ch.fhnw.dlcopy.StorageDeviceResult;
 import ch.fhnw.dlcopy.SystemSource;
+import ch.fhnw.dlcopy.TreeCopier;
+import ch.fhnw.dlcopy.UdisksMonitor;
 import ch.fhnw.dlcopy.Upgrader;
 import ch.fhnw.dlcopy.gui.DLCopyGUI;
 import ch.fhnw.dlcopy.gui.swing.IsoCreatorSwingWorker;
@@ -23,7 +30,6 @@ import ch.fhnw.dlcopy.gui.swing.preferences.DLCopySwingGUIPreferencesHandler;
 import ch.fhnw.dlcopy.gui.swing.preferences.MainMenuPreferences;
 import ch.fhnw.filecopier.FileCopier;
 import ch.fhnw.jbackpack.RdiffBackupRestore;
-import ch.fhnw.util.DbusTools;
 import ch.fhnw.util.LernstickFileTools;
 import ch.fhnw.util.Partition;
 import ch.fhnw.util.ProcessExecutor;
@@ -38,16 +44,16 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.KeyEvent;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,8 +65,6 @@ import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
 import javax.sound.sampled.LineEvent;
@@ -93,7 +97,7 @@ import org.freedesktop.dbus.exceptions.DBusException;
  * @author Ronny Standtke <Ronny.Standtke@gmx.net>
  */
 public class DLCopySwingGUI extends JFrame
-        implements DLCopyGUI, PropertyChangeListener {
+        implements DLCopyGUI, UdisksMonitor.Listener {
 
     public enum State {
 
@@ -108,8 +112,6 @@ public class DLCopySwingGUI extends JFrame
             = Logger.getLogger(DLCopySwingGUI.class.getName());
     private final static ProcessExecutor PROCESS_EXECUTOR
             = new ProcessExecutor();
-    private final static String UDISKS_ADDED = "added:";
-    private final static String UDISKS_REMOVED = "removed:";
 
     private final DateFormat timeFormat;
 
@@ -120,17 +122,13 @@ public class DLCopySwingGUI extends JFrame
 
     private DebianLiveDistribution debianLiveDistribution;
 
-    private final UdisksMonitorThread udisksMonitorThread;
+    private final UdisksMonitor udisksMonitor;
     private RdiffBackupRestore rdiffBackupRestore;
 
     private final ResultsTableModel resultsTableModel;
     private UpdateChangingDurationsTableActionListener updateTableActionListener;
     private Timer tableUpdateTimer;
 
-    private final static Pattern ADDED_PATTERN = Pattern.compile(
-            ".*: Added (/org/freedesktop/UDisks2/block_devices/.*)");
-    private final static Pattern REMOVED_PATTERN = Pattern.compile(
-            ".*: Removed (/org/freedesktop/UDisks2/block_devices/.*)");
 
     private final StorageDeviceListUpdateDialogHandler storageDeviceListUpdateDialogHandler
             = new StorageDeviceListUpdateDialogHandler(this);
@@ -142,6 +140,17 @@ public class DLCopySwingGUI extends JFrame
     private String commandLineExchangePartitionFileSystem;
     private Boolean commandLineCopyDataPartition;
     private Boolean commandLineReactivateWelcome;
+    private int commandLineParallelInstallations = 1;
+    private long commandLineDigestCacheSize = DigestCache.DEFAULT_MAX_BYTES;
+    private boolean commandLinePipelinedInstallations;
+    private boolean commandLineClonedInstallations;
+    private boolean commandLineManifestVerification;
+    private boolean commandLineDiscard;
+    private Path commandLinePhaseReport;
+    private boolean commandLineIsoGraftPoints;
+    private boolean commandLineIsoLayeredExport;
+    private CompressionProfile commandLineCompressionProfile;
+    private boolean commandLineCompressionCalibration;
     private boolean instantInstallation;
     private boolean instantUpgrade;
     private boolean autoUpgrade;
@@ -154,7 +163,7 @@ public class DLCopySwingGUI extends JFrame
     private Lock resetLock = new ReentrantLock();
 
     // global cache for file digests to speed up repeated file copy checks
-    private final HashMap<String, byte[]> digestCache = new HashMap<>();
+    private DigestCache digestCache;
 
     private final DLCopySwingGUIPreferencesHandler preferencesHandler;
 
@@ -230,6 +239,8 @@ public class DLCopySwingGUI extends JFrame
         // parse command line arguments
         debianLiveDistribution = DebianLiveDistribution.DEFAULT;
         parseCommandLineArguments(arguments);
+        digestCache = new DigestCache(DigestCache.DEFAULT_INDEX_FILE,
+                commandLineDigestCacheSize);
 
         if (LOGGER.isLoggable(Level.INFO)) {
             switch (debianLiveDistribution) {
@@ -334,7 +345,9 @@ public class DLCopySwingGUI extends JFrame
         }
 
         // monitor udisks changes
-        udisksMonitorThread = new UdisksMonitorThread();
+        udisksMonitor = new UdisksMonitor();
+        udisksMonitor.addListener(this);
+        udisksMonitor.addListener(PartitionUsageCache.getInstance());
 
         resultsTableModel = new ResultsTableModel(resultsTable);
         resultsTable.setModel(resultsTableModel);
@@ -373,6 +386,10 @@ public class DLCopySwingGUI extends JFrame
         setIconImage(new ImageIcon(imageURL).getImage());
 
         isoCreatorPanels.init(this);
+        if (commandLineCompressionProfile != null) {
+            isoCreatorPanels.setCompressionProfile(
+                    commandLineCompressionProfile);
+        }
 
         if (autoUpgrade) {
             globalShow("executionPanel");
@@ -417,53 +434,22 @@ public class DLCopySwingGUI extends JFrame
         // center on screen
         setLocationRelativeTo(null);
 
-        udisksMonitorThread.start();
+        udisksMonitor.start();
     }
 
     @Override
-    public void propertyChange(final PropertyChangeEvent evt) {
-
+    public void deviceAdded(String path) {
         // Take great care when calling Swing functions,
-        // because here we are on the UdisksMonitorThread!
-        // only handle line changes
-        if (!ProcessExecutor.LINE.equals(evt.getPropertyName())) {
-            return;
-        }
-
-        String line = (String) evt.getNewValue();
-
-        boolean deviceAdded;
-        Matcher matcher = null;
-        if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
-            deviceAdded = line.startsWith(UDISKS_ADDED);
-        } else {
-            matcher = ADDED_PATTERN.matcher(line);
-            deviceAdded = matcher.matches();
-        }
-
-        if (deviceAdded) {
-            String addedPath;
-            if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
-                addedPath = line.substring(UDISKS_ADDED.length()).trim();
-            } else {
-                addedPath = matcher.group(1);
-            }
-            LOGGER.log(Level.INFO, "added path: \"{0}\"", addedPath);
-            addStorageDevice(addedPath);
+        // because here we are on the UdisksMonitor thread!
+        LOGGER.log(Level.INFO, "added path: \"{0}\"", path);
+        addStorageDevice(path);
+    }
 
-        } else {
-            // check, if a device was removed
-            boolean deviceRemoved;
-            if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
-                deviceRemoved = line.startsWith(UDISKS_REMOVED);
-            } else {
-                matcher = REMOVED_PATTERN.matcher(line);
-                deviceRemoved = matcher.matches();
-            }
-            if (deviceRemoved) {
-                removeStorageDevice(line);
-            }
-        }
+    @Override
+    public void deviceRemoved(String path) {
+        // Take great care when calling Swing functions,
+        // because here we are on the UdisksMonitor thread!
+        removeStorageDevice(path);
     }
 
     @Override
@@ -483,12 +469,41 @@ public class DLCopySwingGUI extends JFrame
                 storageDevice, batchCounter, resultsList);
     }
 
+    @Override
+    public void installingDeviceStageChanged(
+            StorageDevice storageDevice, InstallationStage stage) {
+        // the results table is refreshed periodically by tableUpdateTimer
+        StorageDeviceResult result = getResult(storageDevice);
+        if (result == null) {
+            LOGGER.log(Level.WARNING,
+                    "no result for {0}, ignoring stage {1}",
+                    new Object[]{storageDevice, stage});
+            return;
+        }
+        result.setStage(stage);
+    }
+
+    @Override
+    public void phaseFinished(
+            StorageDevice storageDevice, PhaseTiming phaseTiming) {
+        StorageDeviceResult result = getResult(storageDevice);
+        if (result != null) {
+            result.addPhaseTiming(phaseTiming);
+        }
+    }
+
     @Override
     public void showInstallCreatingFileSystems() {
         installerPanels.showIndeterminateProgressBarText(
                 "Creating_File_Systems");
     }
 
+    @Override
+    public void showInstallCloning() {
+        installerPanels.showIndeterminateProgressBarText(
+                "Cloning_Storage_Device");
+    }
+
     @Override
     public void showInstallOverwritingDataPartitionWithRandomData(
             long done, long size) {
@@ -501,16 +516,8 @@ public class DLCopySwingGUI extends JFrame
     }
 
     @Override
-    public void showInstallPersistencyCopy(
-            Installer installer, String copyScript, String sourcePath) {
-
-        installerPanels.showInstallPersistencyCopy(
-                installer, copyScript, sourcePath);
-    }
-
-    @Override
-    public void setInstallCopyLine(String line) {
-        installerPanels.setInstallCopyLine(line);
+    public void showInstallPersistencyCopy(TreeCopier treeCopier) {
+        installerPanels.showInstallPersistencyCopy(treeCopier);
     }
 
     @Override
@@ -526,11 +533,11 @@ public class DLCopySwingGUI extends JFrame
     }
 
     @Override
-    public void installingDeviceFinished(
+    public void installingDeviceFinished(StorageDevice storageDevice,
             String errorMessage, int autoNumberStart) {
 
         // update final report
-        deviceFinished(errorMessage);
+        deviceFinished(storageDevice, errorMessage);
 
         // update current report
         installerPanels.finishedInstallationOnDevice(
@@ -779,6 +786,7 @@ public class DLCopySwingGUI extends JFrame
     public void resettingFinished(boolean success) {
 
         setTitle(STRINGS.getString("DLCopySwingGUI.title"));
+        writePhaseReport();
 
         if (resetterPanels.isListSelectionSelected()) {
             if (success) {
@@ -1043,7 +1051,7 @@ public class DLCopySwingGUI extends JFrame
         state = State.RESET;
 
         batchCounter = 0;
-        resultsList = new ArrayList<>();
+        resultsList = Collections.synchronizedList(new ArrayList<>());
 
         String exchangePartitionFileSystem
                 = resetterPanels.getExchangePartitionFileSystem();
@@ -1082,7 +1090,8 @@ public class DLCopySwingGUI extends JFrame
                 resetterPanels.isDeleteHomeDirectorySelected(),
                 resetterPanels.isDeleteSystemFilesSelected(),
                 resetterPanels.isRestoreDataSelected(),
-                resetterPanels.getRestoreEntries(), resetLock)
+                resetterPanels.getRestoreEntries(), commandLineDiscard,
+                resetLock)
                 .execute();
     }
 
@@ -1159,7 +1168,7 @@ public class DLCopySwingGUI extends JFrame
         state = State.UPGRADE;
         showCard(cardPanel, "upgraderPanels");
         upgraderPanels.showProgress();
-        resultsList = new ArrayList<>();
+        resultsList = Collections.synchronizedList(new ArrayList<>());
         batchCounter = 0;
 
         boolean deleteBackup = upgraderPanels.isAutomaticUpgradeSelected()
@@ -1851,6 +1860,99 @@ public class DLCopySwingGUI extends JFrame
                         = "true".equalsIgnoreCase(arguments[i + 1]);
             }
 
+            // the maximum number of storage devices to install in parallel
+            if (arguments[i].equals("--parallelInstallations")
+                    && (i != length - 1)) {
+                try {
+                    commandLineParallelInstallations
+                            = Integer.parseInt(arguments[i + 1]);
+                } catch (NumberFormatException numberFormatException) {
+                    LOGGER.log(Level.WARNING, "", numberFormatException);
+                }
+            }
+
+            // if copies should be checked with the manifest of the source
+            // medium
+            if (arguments[i].equals("--manifestVerification")
+                    && (i != length - 1)) {
+                commandLineManifestVerification
+                        = "true".equalsIgnoreCase(arguments[i + 1]);
+            }
+
+            // if all blocks should be discarded before formatting
+            if (arguments[i].equals("--discard") && (i != length - 1)) {
+                commandLineDiscard = "true".equalsIgnoreCase(arguments[i + 1]);
+            }
+
+            // the file where the phase timings are exported to
+            if (arguments[i].equals("--phaseReport") && (i != length - 1)) {
+                commandLinePhaseReport = Paths.get(arguments[i + 1]);
+            }
+
+            // if unchanged files should be grafted into exported ISOs
+            // instead of copying them to a build directory first
+            if (arguments[i].equals("--isoGraftPoints")
+                    && (i != length - 1)) {
+                commandLineIsoGraftPoints
+                        = "true".equalsIgnoreCase(arguments[i + 1]);
+            }
+
+            // if the squashfs files of the system should be copied verbatim
+            // into exported ISOs and only the data partition should be
+            // compressed into an additional layer
+            if (arguments[i].equals("--isoLayeredExport")
+                    && (i != length - 1)) {
+                commandLineIsoLayeredExport
+                        = "true".equalsIgnoreCase(arguments[i + 1]);
+            }
+
+            // the compression profile of exported squashfs files
+            if (arguments[i].equals("--compressionProfile")
+                    && (i != length - 1)) {
+                commandLineCompressionProfile
+                        = CompressionProfile.parse(arguments[i + 1]);
+                if (commandLineCompressionProfile == null) {
+                    LOGGER.log(Level.WARNING,
+                            "unknown compression profile \"{0}\"",
+                            arguments[i + 1]);
+                }
+            }
+
+            // if the size and duration of compressing squashfs files should
+            // be estimated before compressing
+            if (arguments[i].equals("--compressionCalibration")
+                    && (i != length - 1)) {
+                commandLineCompressionCalibration
+                        = "true".equalsIgnoreCase(arguments[i + 1]);
+            }
+
+            // the byte budget of the digest cache (in MiB)
+            if (arguments[i].equals("--digestCacheSize")
+                    && (i != length - 1)) {
+                try {
+                    commandLineDigestCacheSize = Long.parseLong(
+                            arguments[i + 1]) * DLCopy.MEGA;
+                } catch (NumberFormatException numberFormatException) {
+                    LOGGER.log(Level.WARNING, "", numberFormatException);
+                }
+            }
+
+            // if the next storage device should be prepared while copying
+            // files to the current storage device
+            if (arguments[i].equals("--pipelinedInstallations")
+                    && (i != length - 1)) {
+                commandLinePipelinedInstallations
+                        = "true".equalsIgnoreCase(arguments[i + 1]);
+            }
+
+            // if the first storage device should be cloned to all other
+            // storage devices
+            if (arguments[i].equals("--clonedInstallations")
+                    && (i != length - 1)) {
+                commandLineClonedInstallations
+                        = "true".equalsIgnoreCase(arguments[i + 1]);
+            }
+
             // if the welcome application should be reactivated during upgrade
             if (arguments[i].equals("--reactivateWelcome")
                     && (i != length - 1)) {
@@ -1918,10 +2020,10 @@ public class DLCopySwingGUI extends JFrame
         }
     }
 
-    private void removeStorageDevice(String udisksLine) {
+    private void removeStorageDevice(String path) {
         // the device was just removed, so we can not use getStorageDevice()
         // here...
-        String[] tokens = udisksLine.split("/");
+        String[] tokens = path.split("/");
         final String device = tokens[tokens.length - 1];
         LOGGER.log(Level.INFO, "removed device: {0}", device);
 
@@ -2023,7 +2125,7 @@ public class DLCopySwingGUI extends JFrame
         state = State.INSTALLATION;
 
         // let's start...
-        resultsList = new ArrayList<>();
+        resultsList = Collections.synchronizedList(new ArrayList<>());
         batchCounter = 0;
 
         new Installer(systemSource, installerPanels.getSelectedDevices(),
@@ -2050,6 +2152,10 @@ public class DLCopySwingGUI extends JFrame
                 installerPanels.isTransferPrinterSelected(),
                 installerPanels.isTransferFirewallSelected(),
                 installerPanels.isCheckCopiesSelected(),
+                commandLineManifestVerification,
+                commandLineParallelInstallations,
+                commandLinePipelinedInstallations,
+                commandLineClonedInstallations, commandLineDiscard,
                 installLock).execute();
 
         updateTableActionListener
@@ -2112,7 +2218,9 @@ public class DLCopySwingGUI extends JFrame
             new SquashFSCreatorSwingWorker(this, runningSystemSource,
                     isoCreatorPanels.getTemporaryDirectory(),
                     isoCreatorPanels.isShowNotUsedDialogSelected(),
-                    isoCreatorPanels.isAutoStartInstallerSelected())
+                    isoCreatorPanels.isAutoStartInstallerSelected(),
+                    isoCreatorPanels.getCompressionProfile(),
+                    commandLineCompressionCalibration)
                     .execute();
         } else {
             new IsoCreatorSwingWorker(this, runningSystemSource,
@@ -2121,21 +2229,42 @@ public class DLCopySwingGUI extends JFrame
                     isoCreatorPanels.getDataPartitionMode(),
                     isoCreatorPanels.isShowNotUsedDialogSelected(),
                     isoCreatorPanels.isAutoStartInstallerSelected(),
-                    isoCreatorPanels.getIsoLabel())
+                    isoCreatorPanels.getIsoLabel(),
+                    commandLineIsoGraftPoints,
+                    isoCreatorPanels.getCompressionProfile(),
+                    commandLineCompressionCalibration,
+                    commandLineIsoLayeredExport)
                     .execute();
         }
     }
 
-    private void deviceStarted(StorageDevice storageDevice) {
+    private synchronized void deviceStarted(StorageDevice storageDevice) {
         batchCounter++;
         // add "in progress" entry to results table
         resultsList.add(new StorageDeviceResult(storageDevice));
     }
 
     private void deviceFinished(String errorMessage) {
+        StorageDevice lastDevice;
+        synchronized (resultsList) {
+            if (resultsList.isEmpty()) {
+                return;
+            }
+            lastDevice = resultsList.get(resultsList.size() - 1)
+                    .getStorageDevice();
+        }
+        deviceFinished(lastDevice, errorMessage);
+    }
+
+    private synchronized void deviceFinished(
+            StorageDevice storageDevice, String errorMessage) {
 
         // update "in progress" entry
-        StorageDeviceResult result = resultsList.get(resultsList.size() - 1);
+        StorageDeviceResult result = getResult(storageDevice);
+        if (result == null) {
+            LOGGER.log(Level.WARNING, "no result for {0}", storageDevice);
+            return;
+        }
         result.finish();
         result.setErrorMessage(errorMessage);
 
@@ -2143,6 +2272,21 @@ public class DLCopySwingGUI extends JFrame
         resultsTableModel.setList(resultsList);
     }
 
+    private synchronized StorageDeviceResult getResult(
+            StorageDevice storageDevice) {
+        // with parallel or pipelined installations this is not necessarily
+        // the last entry
+        synchronized (resultsList) {
+            for (int i = resultsList.size() - 1; i >= 0; i--) {
+                StorageDeviceResult result = resultsList.get(i);
+                if (result.getStorageDevice() == storageDevice) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
     private void batchFinished(String nonRemovableKey,
             String removableKey, String reportKey) {
         setTitle(STRINGS.getString("DLCopySwingGUI.title"));
@@ -2160,6 +2304,21 @@ public class DLCopySwingGUI extends JFrame
                 STRINGS.getString(reportKey)));
         showCard(cardPanel, "resultsPanel");
         processDone();
+        writePhaseReport();
+    }
+
+    private void writePhaseReport() {
+        if (commandLinePhaseReport == null || resultsList == null) {
+            return;
+        }
+        try {
+            // the list is synchronized, but iterating it is not
+            synchronized (resultsList) {
+                PhaseReport.write(resultsList, commandLinePhaseReport);
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "could not write phase report", ex);
+        }
     }
 
     private void processDone() {
@@ -2312,39 +2471,15 @@ public class DLCopySwingGUI extends JFrame
         runningSystemSource.unmountTmpPartitions();
         installerPanels.unmountIsoSystemSource();
 
-        // stop monitoring thread
-        udisksMonitorThread.stopMonitoring();
+        // stop monitoring
+        udisksMonitor.stop();
+
+        digestCache.close();
 
         // everything is done, disappear now
         System.exit(0);
     }
 
-    private class UdisksMonitorThread extends Thread {
-
-        // use local ProcessExecutor because the udisks process is blocking and
-        // long-running
-        private final ProcessExecutor executor = new ProcessExecutor(false);
-
-        @Override
-        public void run() {
-            String binaryName;
-            String parameter;
-            if (DbusTools.DBUS_VERSION == DbusTools.DbusVersion.V1) {
-                binaryName = "udisks";
-                parameter = "--monitor";
-            } else {
-                binaryName = "udisksctl";
-                parameter = "monitor";
-            }
-            executor.addPropertyChangeListener(DLCopySwingGUI.this);
-            executor.executeProcess(binaryName, parameter);
-        }
-
-        public void stopMonitoring() {
-            executor.destroy();
-        }
-    }
-
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JPanel buttonGridPanel;
     private javax.swing.JPanel cardPanel;
@@ -63,6 +63,7 @@ public abstract class DetailedStorageDeviceRenderer extends JPanel
     private long maxStorageDeviceSize;
     private final boolean showUpgradeInfo;
     private StorageDevice storageDevice;
+    private JList list;
 
     /**
      * Creates new form DetailedStorageDeviceRenderer
@@ -85,6 +86,7 @@ public abstract class DetailedStorageDeviceRenderer extends JPanel
             boolean cellHasFocus) {
 
         this.storageDevice = storageDevice;
+        this.list = list;
 
         // set icon based on storage type
         StorageDevice.Type deviceType = storageDevice.getType();
@@ -168,13 +170,12 @@ public abstract class DetailedStorageDeviceRenderer extends JPanel
                 stringBuilder.append(STRINGS.getString("Used"));
                 stringBuilder.append(": ");
                 try {
-                    long usedSpace;
-                    if (partition.isPersistencePartition()) {
-                        usedSpace = partition.getUsedSpace(true);
-                    } else {
-                        usedSpace = partition.getUsedSpace(false);
-                    }
-                    if (usedSpace == -1) {
+                    long usedSpace = PartitionUsageCache.getInstance()
+                            .getUsedSpace(partition, true, list);
+                    if (usedSpace == PartitionUsageCache.PENDING) {
+                        stringBuilder.append(
+                                STRINGS.getString("Determining_Used_Space"));
+                    } else if (usedSpace == -1) {
                         stringBuilder.append(STRINGS.getString("Unknown"));
                     } else {
                         stringBuilder.append(
@@ -358,13 +359,9 @@ public abstract class DetailedStorageDeviceRenderer extends JPanel
             // paint partition storage space usage (if known)
             if (!extended) {
                 try {
-                    long usedSpace;
-                    if (partition.isPersistencePartition()) {
-                        usedSpace = partition.getUsedSpace(true);
-                    } else {
-                        usedSpace = partition.getUsedSpace(false);
-                    }
-                    if (usedSpace != -1) {
+                    long usedSpace = PartitionUsageCache.getInstance()
+                            .getUsedSpace(partition, true, list);
+                    if (usedSpace >= 0) {
                         int usedWidth = (int) ((width * usedSpace)
                                 / maxStorageDeviceSize);
                         graphics2D.setPaint(Color.LIGHT_GRAY);
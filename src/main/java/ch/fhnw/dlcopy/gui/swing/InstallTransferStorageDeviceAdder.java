@@ -1,6 +1,7 @@
 package ch.fhnw.dlcopy.gui.swing;
 
 import ch.fhnw.util.StorageDevice;
+import java.util.List;
 import java.util.concurrent.locks.Lock;
 import javax.swing.DefaultListModel;
 import javax.swing.JList;
@@ -37,9 +38,8 @@ public class InstallTransferStorageDeviceAdder extends StorageDeviceAdder {
 
     @Override
     public void initDevice() {
-        addedDevice.getPartitions().forEach((partition) -> {
-            partition.getUsedSpace(false);
-        });
+        PartitionUsageCache.getInstance().prefetch(
+                List.of(addedDevice), true);
     }
 
     @Override
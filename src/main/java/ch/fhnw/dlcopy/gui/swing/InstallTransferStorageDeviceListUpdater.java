@@ -1,8 +1,6 @@
 package ch.fhnw.dlcopy.gui.swing;
 
 import ch.fhnw.util.StorageDevice;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import javax.swing.DefaultListModel;
 import javax.swing.JList;
 
@@ -15,9 +13,6 @@ import javax.swing.JList;
 public class InstallTransferStorageDeviceListUpdater
         extends StorageDeviceListUpdater {
 
-    private static final Logger LOGGER = Logger.getLogger(
-            InstallTransferStorageDeviceListUpdater.class.getName());
-
     /**
      * creates a new InstallTransferStorageDeviceListUpdater
      *
@@ -37,16 +32,7 @@ public class InstallTransferStorageDeviceListUpdater
 
     @Override
     public void initDevices() {
-        for (StorageDevice device : storageDevices) {
-            try {
-                device.getPartitions().forEach((partition) -> {
-                        partition.getUsedSpace(false);
-                });
-            } catch (Exception ex) {
-                LOGGER.log(Level.SEVERE, "", ex);
-                throw ex;
-            }
-        }
+        PartitionUsageCache.getInstance().prefetch(changedDevices, true);
     }
 
     @Override
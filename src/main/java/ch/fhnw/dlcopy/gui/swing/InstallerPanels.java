@@ -3,12 +3,12 @@ package ch.fhnw.dlcopy.gui.swing;
 import ch.fhnw.dlcopy.DLCopy;
 import static ch.fhnw.dlcopy.DLCopy.STRINGS;
 import ch.fhnw.dlcopy.DataPartitionMode;
-import ch.fhnw.dlcopy.Installer;
 import ch.fhnw.dlcopy.IsoSystemSource;
 import ch.fhnw.dlcopy.PartitionSizes;
 import ch.fhnw.dlcopy.PartitionState;
 import ch.fhnw.dlcopy.StorageDeviceResult;
 import ch.fhnw.dlcopy.SystemSource;
+import ch.fhnw.dlcopy.TreeCopier;
 import ch.fhnw.dlcopy.exceptions.NoExecutableExtLinuxException;
 import ch.fhnw.dlcopy.exceptions.NoExtLinuxException;
 import ch.fhnw.dlcopy.gui.swing.preferences.DLCopySwingGUIPreferencesHandler;
@@ -36,7 +36,6 @@ import java.util.Date;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.ComboBoxModel;
@@ -93,7 +92,6 @@ public class InstallerPanels extends JPanel implements DocumentListener {
 
     private int explicitExchangeSize;
 
-    private CpActionListener cpActionListener;
 
     private Timer overwriteTimer;
     private OverwriteRandomActionListener overwriteRandomActionListener;
@@ -490,44 +488,22 @@ public class InstallerPanels extends JPanel implements DocumentListener {
         });
     }
 
-    public void showInstallPersistencyCopy(
-            Installer installer, String copyScript, String sourcePath) {
+    public void showInstallPersistencyCopy(TreeCopier treeCopier) {
 
-        cpActionListener = new CpActionListener(
-                cpFilenameLabel, cpTimeLabel, sourcePath);
-
-        Timer cpTimer = new Timer(1000, cpActionListener);
-        cpTimer.setInitialDelay(0);
+        // the timer stops itself when the cpPanel is no longer visible
+        Timer cpTimer = new Timer(1000, new TreeCopierActionListener(
+                treeCopier, cpPogressBar, cpFilenameLabel, cpTimeLabel));
         cpTimer.start();
 
         DateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
         SwingUtilities.invokeLater(() -> {
             cpFilenameLabel.setText(" ");
+            cpPogressBar.setIndeterminate(true);
+            cpPogressBar.setStringPainted(false);
             cpPogressBar.setValue(0);
             cpTimeLabel.setText(timeFormat.format(new Date(0)));
             DLCopySwingGUI.showCard(installCardPanel, "cpPanel");
         });
-
-        try {
-            TimeUnit.SECONDS.sleep(1);
-        } catch (InterruptedException ex) {
-            LOGGER.log(Level.SEVERE, null, ex);
-        }
-        ProcessExecutor processExecutor = new ProcessExecutor(true);
-        try {
-            processExecutor.addPropertyChangeListener(installer);
-            int exitValue = processExecutor.executeScript(
-                    true, true, copyScript);
-            processExecutor.removePropertyChangeListener(installer);
-            cpTimer.stop();
-            if (exitValue != 0) {
-                String errorMessage = "Could not copy persistence layer!";
-                LOGGER.severe(errorMessage);
-                throw new IOException(errorMessage);
-            }
-        } catch (IOException ex) {
-            LOGGER.log(Level.SEVERE, null, ex);
-        }
     }
 
     public void showOverwriteRandomProgressBar(long value, long maximum) {
@@ -560,10 +536,6 @@ public class InstallerPanels extends JPanel implements DocumentListener {
         });
     }
 
-    public void setInstallCopyLine(String line) {
-        cpActionListener.setCurrentLine(line);
-    }
-
     public DefaultListModel<StorageDevice> getDeviceListModel() {
         return storageDeviceListModel;
     }
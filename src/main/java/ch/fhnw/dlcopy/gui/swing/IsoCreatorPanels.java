@@ -1,5 +1,6 @@
 package ch.fhnw.dlcopy.gui.swing;
 
+import ch.fhnw.dlcopy.CompressionProfile;
 import ch.fhnw.dlcopy.DLCopy;
 import static ch.fhnw.dlcopy.DLCopy.STRINGS;
 import ch.fhnw.dlcopy.DataPartitionMode;
@@ -43,6 +44,15 @@ public class IsoCreatorPanels
         tmpDirTextField.getDocument().addDocumentListener(this);
         dataPartitionModeComboBox.setModel(
                 new DefaultComboBoxModel<>(DLCopy.DATA_PARTITION_MODES));
+        CompressionProfile[] profiles = CompressionProfile.values();
+        String[] profileNames = new String[profiles.length];
+        for (int i = 0; i < profiles.length; i++) {
+            profileNames[i] = STRINGS.getString(
+                    "Compression_Profile_" + profiles[i].name());
+        }
+        compressionProfileComboBox.setModel(
+                new DefaultComboBoxModel<>(profileNames));
+        setCompressionProfile(CompressionProfile.MAXIMUM);
     }
 
     @Override
@@ -127,6 +137,16 @@ public class IsoCreatorPanels
         return DLCopySwingGUI.getDataPartitionMode(dataPartitionModeComboBox);
     }
 
+    public CompressionProfile getCompressionProfile() {
+        return CompressionProfile.values()[
+                compressionProfileComboBox.getSelectedIndex()];
+    }
+
+    public void setCompressionProfile(CompressionProfile compressionProfile) {
+        compressionProfileComboBox.setSelectedIndex(
+                compressionProfile.ordinal());
+    }
+
     public String getIsoLabel() {
         return isoLabelTextField.getText();
     }
@@ -220,6 +240,8 @@ public class IsoCreatorPanels
         optionsPanel = new javax.swing.JPanel();
         dataPartitionModeLabel = new javax.swing.JLabel();
         dataPartitionModeComboBox = new javax.swing.JComboBox<>();
+        compressionProfileLabel = new javax.swing.JLabel();
+        compressionProfileComboBox = new javax.swing.JComboBox<>();
         optionsCardPanel = new javax.swing.JPanel();
         systemMediumPanel = new javax.swing.JPanel();
         showNotUsedDialogCheckBox = new javax.swing.JCheckBox();
@@ -383,6 +405,18 @@ public class IsoCreatorPanels
         gridBagConstraints.insets = new java.awt.Insets(0, 5, 0, 0);
         optionsPanel.add(dataPartitionModeComboBox, gridBagConstraints);
 
+        compressionProfileLabel.setText(bundle.getString("DLCopySwingGUI.compressionProfileLabel.text")); // NOI18N
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.EAST;
+        gridBagConstraints.insets = new java.awt.Insets(5, 0, 0, 0);
+        optionsPanel.add(compressionProfileLabel, gridBagConstraints);
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridwidth = java.awt.GridBagConstraints.REMAINDER;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.weightx = 1.0;
+        gridBagConstraints.insets = new java.awt.Insets(5, 5, 0, 0);
+        optionsPanel.add(compressionProfileComboBox, gridBagConstraints);
+
         optionsCardPanel.setName("optionsCardPanel"); // NOI18N
         optionsCardPanel.setLayout(new java.awt.CardLayout());
 
@@ -495,6 +529,10 @@ public class IsoCreatorPanels
         DLCopySwingGUI.showCard(optionsCardPanel,
                 bootMediumRadioButton.isSelected()
                 ? "bootMediumPanel" : "systemMediumPanel");
+        // the boot medium doesn't contain a squashfs file that we compress
+        boolean compressing = !bootMediumRadioButton.isSelected();
+        compressionProfileLabel.setEnabled(compressing);
+        compressionProfileComboBox.setEnabled(compressing);
     }
 
     private void setISOElementsEnabled(boolean enabled) {
@@ -514,6 +552,8 @@ public class IsoCreatorPanels
     private javax.swing.JCheckBox autoStartInstallerCheckBox;
     private javax.swing.JPanel bootMediumPanel;
     private javax.swing.JRadioButton bootMediumRadioButton;
+    private javax.swing.JComboBox<String> compressionProfileComboBox;
+    private javax.swing.JLabel compressionProfileLabel;
     private javax.swing.JComboBox<String> dataPartitionModeComboBox;
     private javax.swing.JLabel dataPartitionModeLabel;
     private javax.swing.JRadioButton dataPartitionRadioButton;
@@ -0,0 +1,216 @@
+package ch.fhnw.dlcopy.gui.swing;
+
+import ch.fhnw.dlcopy.UdisksMonitor;
+import ch.fhnw.util.Partition;
+import ch.fhnw.util.StorageDevice;
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+
+/**
+ * Caches the used space of partitions.
+ * <br>
+ * Determining the used space of a partition may need to mount the partition
+ * and must therefore never happen while painting. The used space is
+ * determined by a pool of background threads, renderers get a placeholder
+ * value until it is known and the components they painted are repainted as
+ * soon as the value arrives. The values of a drive are dropped when udisks
+ * reports a change of the drive.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class PartitionUsageCache implements UdisksMonitor.Listener {
+
+    /**
+     * the value returned while the used space of a partition is still being
+     * determined
+     */
+    public static final long PENDING = -2;
+
+    private static final Logger LOGGER
+            = Logger.getLogger(PartitionUsageCache.class.getName());
+    private static final int THREADS = 4;
+    private static final PartitionUsageCache INSTANCE
+            = new PartitionUsageCache();
+
+    private final ExecutorService executor;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private PartitionUsageCache() {
+        executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "PartitionUsageCache");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * returns the PartitionUsageCache
+     *
+     * @return the PartitionUsageCache
+     */
+    public static PartitionUsageCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * returns the used space of a partition without blocking
+     *
+     * @param partition the partition
+     * @param onlyHumanUserOfPersistence if only the space used by the human
+     * user should be determined for persistence partitions (must be the same
+     * value that was used for {@link #prefetch(List, boolean)})
+     * @param component the component to repaint when the used space was
+     * determined
+     * @return the used space of the partition, <tt>-1</tt>, if it is unknown
+     * or {@link #PENDING}, if it is still being determined
+     */
+    public long getUsedSpace(Partition partition,
+            boolean onlyHumanUserOfPersistence, Component component) {
+        Entry entry = getEntry(partition,
+                isOnlyHumanUser(partition, onlyHumanUserOfPersistence));
+        synchronized (this) {
+            if (!entry.future.isDone()) {
+                entry.components.add(component);
+                return PENDING;
+            }
+        }
+        return entry.future.getNow(-1L);
+    }
+
+    /**
+     * determines the used space of all partitions of the given storage devices
+     * in parallel and waits until it is known
+     *
+     * @param storageDevices the storage devices
+     * @param onlyHumanUserOfPersistence if only the space used by the human
+     * user should be determined for persistence partitions
+     */
+    public void prefetch(List<StorageDevice> storageDevices,
+            boolean onlyHumanUserOfPersistence) {
+        List<Future<Long>> requests = new ArrayList<>();
+        for (StorageDevice storageDevice : storageDevices) {
+            for (Partition partition : storageDevice.getPartitions()) {
+                requests.add(getEntry(partition, isOnlyHumanUser(
+                        partition, onlyHumanUserOfPersistence)).future);
+            }
+        }
+        for (Future<Long> request : requests) {
+            try {
+                request.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ex) {
+                LOGGER.log(Level.WARNING, "", ex);
+            }
+        }
+    }
+
+    /**
+     * drops the cached values of all partitions of a drive
+     *
+     * @param drive the device name of the drive, e.g. "sdb"
+     */
+    public synchronized void invalidate(String drive) {
+        entries.values().removeIf(entry -> entry.drive.equals(drive));
+    }
+
+    @Override
+    public void deviceAdded(String path) {
+        invalidatePath(path);
+    }
+
+    @Override
+    public void deviceRemoved(String path) {
+        invalidatePath(path);
+    }
+
+    @Override
+    public void deviceChanged(String path) {
+        invalidatePath(path);
+    }
+
+    private void invalidatePath(String path) {
+        invalidate(path.substring(path.lastIndexOf('/') + 1));
+    }
+
+    // renderers and prefetching must agree on this flag, otherwise they use
+    // different cache entries
+    private static boolean isOnlyHumanUser(
+            Partition partition, boolean onlyHumanUserOfPersistence) {
+        if (!onlyHumanUserOfPersistence) {
+            return false;
+        }
+        try {
+            return partition.isPersistencePartition();
+        } catch (DBusExecutionException ex) {
+            LOGGER.log(Level.WARNING, "", ex);
+            return false;
+        }
+    }
+
+    private synchronized Entry getEntry(
+            Partition partition, boolean onlyHumanUser) {
+        String key = partition.getDeviceAndNumber() + ':' + onlyHumanUser;
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(partition.getStorageDevice().getDevice(),
+                    CompletableFuture.supplyAsync(
+                            () -> determineUsedSpace(partition, onlyHumanUser),
+                            executor));
+            entries.put(key, entry);
+            Entry newEntry = entry;
+            entry.future.thenRun(() -> repaint(newEntry));
+        }
+        return entry;
+    }
+
+    private static long determineUsedSpace(
+            Partition partition, boolean onlyHumanUser) {
+        try {
+            return partition.getUsedSpace(onlyHumanUser);
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "", ex);
+            return -1;
+        }
+    }
+
+    private void repaint(Entry entry) {
+        List<Component> components;
+        synchronized (this) {
+            components = new ArrayList<>(entry.components);
+            entry.components.clear();
+        }
+        if (!components.isEmpty()) {
+            SwingUtilities.invokeLater(
+                    () -> components.forEach(Component::repaint));
+        }
+    }
+
+    private static class Entry {
+
+        private final String drive;
+        private final CompletableFuture<Long> future;
+        // the components that painted a placeholder for this entry
+        private final Set<Component> components = new HashSet<>();
+
+        Entry(String drive, CompletableFuture<Long> future) {
+            this.drive = drive;
+            this.future = future;
+        }
+    }
+}
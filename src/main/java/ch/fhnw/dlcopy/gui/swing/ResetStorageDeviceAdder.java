@@ -1,7 +1,7 @@
 package ch.fhnw.dlcopy.gui.swing;
 
-import ch.fhnw.util.Partition;
 import ch.fhnw.util.StorageDevice;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
@@ -55,12 +55,8 @@ public class ResetStorageDeviceAdder extends StorageDeviceAdder {
         }
         try {
             TimeUnit.SECONDS.sleep(7);
-            addedDevice.getPartitions().forEach(partition -> {
-                try {
-                    partition.getUsedSpace(false);
-                } catch (Exception ignored) {
-                }
-            });
+            PartitionUsageCache.getInstance().prefetch(
+                    List.of(addedDevice), false);
         } catch (InterruptedException ex) {
             LOGGER.log(Level.SEVERE, "", ex);
         }
@@ -30,14 +30,7 @@ public class ResetStorageDeviceListUpdater extends StorageDeviceListUpdater {
 
     @Override
     public void initDevices() {
-        storageDevices.forEach(device -> {
-            device.getPartitions().forEach(partition -> {
-                try {
-                    partition.getUsedSpace(false);
-                } catch (Exception ignored) {
-                }
-            });
-        });
+        PartitionUsageCache.getInstance().prefetch(changedDevices, false);
     }
 
     @Override
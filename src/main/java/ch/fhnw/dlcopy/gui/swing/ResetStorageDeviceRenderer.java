@@ -52,6 +52,7 @@ public class ResetStorageDeviceRenderer extends JPanel
     private final Color LIGHT_BLUE = new Color(170, 170, 255);
     private long maxStorageDeviceSize;
     private StorageDevice storageDevice;
+    private JList list;
 
     /**
      * Creates new form UsbRenderer
@@ -66,6 +67,7 @@ public class ResetStorageDeviceRenderer extends JPanel
             boolean cellHasFocus) {
 
         this.storageDevice = storageDevice;
+        this.list = list;
 
         // set icon based on storage type
         StorageDevice.Type deviceType = storageDevice.getType();
@@ -147,8 +149,12 @@ public class ResetStorageDeviceRenderer extends JPanel
                 stringBuilder.append(STRINGS.getString("Used"));
                 stringBuilder.append(": ");
                 try {
-                    long usedSpace = partition.getUsedSpace(false);
-                    if (usedSpace == -1) {
+                    long usedSpace = PartitionUsageCache.getInstance()
+                            .getUsedSpace(partition, false, list);
+                    if (usedSpace == PartitionUsageCache.PENDING) {
+                        stringBuilder.append(
+                                STRINGS.getString("Determining_Used_Space"));
+                    } else if (usedSpace == -1) {
                         stringBuilder.append(STRINGS.getString("Unknown"));
                     } else {
                         stringBuilder.append(
@@ -275,8 +281,9 @@ public class ResetStorageDeviceRenderer extends JPanel
             // paint partition storage space usage (if known)
             if (!extended) {
                 try {
-                    long usableSpace = partition.getUsedSpace(false);
-                    if (usableSpace != -1) {
+                    long usableSpace = PartitionUsageCache.getInstance()
+                            .getUsedSpace(partition, false, list);
+                    if (usableSpace >= 0) {
                         int usedWidth = (int) ((width * usableSpace)
                                 / maxStorageDeviceSize);
                         graphics2D.setPaint(Color.LIGHT_GRAY);
@@ -1,13 +1,19 @@
 package ch.fhnw.dlcopy.gui.swing;
 
+import ch.fhnw.dlcopy.InstallationStage;
+import ch.fhnw.dlcopy.Phase;
+import ch.fhnw.dlcopy.PhaseTiming;
 import ch.fhnw.dlcopy.StorageDeviceResult;
+import ch.fhnw.util.LernstickFileTools;
 import ch.fhnw.util.PreferredSizesTableModel;
 import ch.fhnw.util.StorageDevice;
 import java.awt.Dimension;
 import java.time.Duration;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import javax.swing.JTable;
 
@@ -27,6 +33,11 @@ public class ResultsTableModel extends PreferredSizesTableModel {
      * the column for the duration of the operation
      */
     public static final int DURATION_COLUMN = 8;
+
+    /**
+     * the column for the durations of the phases of the operation
+     */
+    public static final int PHASES_COLUMN = 10;
     private static final ResourceBundle STRINGS
             = ResourceBundle.getBundle("ch/fhnw/dlcopy/Strings");
     private List<StorageDeviceResult> resultList;
@@ -66,6 +77,8 @@ public class ResultsTableModel extends PreferredSizesTableModel {
                 return STRINGS.getString("Duration");
             case 9:
                 return STRINGS.getString("Status");
+            case PHASES_COLUMN:
+                return STRINGS.getString("Phases");
         }
         return null;
     }
@@ -82,7 +95,7 @@ public class ResultsTableModel extends PreferredSizesTableModel {
 
     @Override
     public int getColumnCount() {
-        return 10;
+        return 11;
     }
 
     @Override
@@ -184,8 +197,11 @@ public class ResultsTableModel extends PreferredSizesTableModel {
                     String errorMessage = result.getErrorMessage();
                     if (errorMessage == null) {
                         if (result.getDuration() == null) {
+                            InstallationStage stage = result.getStage();
                             return "<html><font color=\"green\">"
-                                    + STRINGS.getString("In_Progress")
+                                    + STRINGS.getString(stage == null
+                                            ? "In_Progress"
+                                            : "Stage_" + stage.name())
                                     + "</font></html>";
                         } else {
                             return "<html><font color=\"green\">"
@@ -196,12 +212,48 @@ public class ResultsTableModel extends PreferredSizesTableModel {
                         return "<html><font color=\"red\">"
                                 + errorMessage + "</font></html>";
                     }
+
+                case PHASES_COLUMN:
+                    return getPhases(result);
             }
         }
 
         return null;
     }
 
+    private String getPhases(StorageDeviceResult result) {
+        // sum up phases that happened several times (e.g. MKFS)
+        Map<Phase, Duration> durations = new EnumMap<>(Phase.class);
+        Map<Phase, Long> bytes = new EnumMap<>(Phase.class);
+        for (PhaseTiming phaseTiming : result.getPhaseTimings()) {
+            durations.merge(phaseTiming.getPhase(),
+                    phaseTiming.getDuration(), Duration::plus);
+            bytes.merge(phaseTiming.getPhase(),
+                    phaseTiming.getBytes(), Long::sum);
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        for (Map.Entry<Phase, Duration> entry : durations.entrySet()) {
+            if (stringBuilder.length() > 0) {
+                stringBuilder.append(", ");
+            }
+            Phase phase = entry.getKey();
+            Duration duration = entry.getValue();
+            stringBuilder.append(STRINGS.getString("Phase_" + phase.name()));
+            stringBuilder.append(' ');
+            stringBuilder.append(LocalTime.MIDNIGHT.plus(duration).format(
+                    dateTimeFormatter));
+            long millis = duration.toMillis();
+            long phaseBytes = bytes.get(phase);
+            if (phaseBytes > 0 && millis > 0) {
+                stringBuilder.append(" (");
+                stringBuilder.append(LernstickFileTools.getDataVolumeString(
+                        phaseBytes * 1000 / millis, 1));
+                stringBuilder.append("/s)");
+            }
+        }
+        return stringBuilder.toString();
+    }
+
     @Override
     public boolean isCellEditable(int row, int column) {
         return false;
@@ -1,5 +1,6 @@
 package ch.fhnw.dlcopy.gui.swing;
 
+import ch.fhnw.dlcopy.CompressionProfile;
 import ch.fhnw.dlcopy.SquashFSCreator;
 import ch.fhnw.dlcopy.SystemSource;
 import ch.fhnw.dlcopy.gui.DLCopyGUI;
@@ -23,6 +24,8 @@ public class SquashFSCreatorSwingWorker extends SwingWorker<Boolean, String> {
     private final String tmpDirectory;
     private final boolean showNotUsedDialog;
     private final boolean autoStartInstaller;
+    private final CompressionProfile compressionProfile;
+    private final boolean compressionCalibration;
 
     private SquashFSCreator squashFSCreator;
 
@@ -36,15 +39,21 @@ public class SquashFSCreatorSwingWorker extends SwingWorker<Boolean, String> {
      * should be shown
      * @param autoStartInstaller if the installer should start automatically if
      * no datapartition is in use
+     * @param compressionProfile the compression profile for the squashfs file
+     * @param compressionCalibration if the size and duration of compressing
+     * the squashfs file should be estimated before compressing
      */
     public SquashFSCreatorSwingWorker(DLCopyGUI dlCopyGUI, SystemSource systemSource,
             String tmpDirectory, boolean showNotUsedDialog,
-            boolean autoStartInstaller) {
+            boolean autoStartInstaller, CompressionProfile compressionProfile,
+            boolean compressionCalibration) {
         this.dlCopyGUI = dlCopyGUI;
         this.systemSource = systemSource;
         this.tmpDirectory = tmpDirectory;
         this.showNotUsedDialog = showNotUsedDialog;
         this.autoStartInstaller = autoStartInstaller;
+        this.compressionProfile = compressionProfile;
+        this.compressionCalibration = compressionCalibration;
     }
 
     @Override
@@ -54,7 +63,9 @@ public class SquashFSCreatorSwingWorker extends SwingWorker<Boolean, String> {
             systemSource,
             tmpDirectory,
             showNotUsedDialog,
-            autoStartInstaller
+            autoStartInstaller,
+            compressionProfile,
+            compressionCalibration
         );
 
         return squashFSCreator.createSquashFS();
@@ -75,6 +75,8 @@ public abstract class StorageDeviceAdder extends SwingWorker<Void, Void> {
         addedDevice = DLCopy.getStorageDeviceAfterTimeout(
                 addedPath, showHardDisks);
         if (addedDevice != null) {
+            PartitionUsageCache.getInstance().invalidate(
+                    addedDevice.getDevice());
             initDevice();
         }
         return null;
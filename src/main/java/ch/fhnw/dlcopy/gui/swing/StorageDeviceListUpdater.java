@@ -2,10 +2,14 @@ package ch.fhnw.dlcopy.gui.swing;
 
 import ch.fhnw.dlcopy.DLCopy;
 import ch.fhnw.util.ModalDialogHandler;
+import ch.fhnw.util.Partition;
 import ch.fhnw.util.StorageDevice;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.DefaultListModel;
@@ -30,6 +34,12 @@ public abstract class StorageDeviceListUpdater extends SwingWorker<Void, Void> {
      */
     protected List<StorageDevice> storageDevices;
 
+    /**
+     * the detected storage devices that were added or changed since the list
+     * was last filled (only these devices need to be initialized)
+     */
+    protected final List<StorageDevice> changedDevices = new ArrayList<>();
+
     protected final JList<StorageDevice> list;
 
     private static final Logger LOGGER
@@ -41,6 +51,7 @@ public abstract class StorageDeviceListUpdater extends SwingWorker<Void, Void> {
     private final String bootDeviceName;
     private final ModalDialogHandler dialogHandler;
     private final List<StorageDevice> selectedValues;
+    private final List<StorageDevice> previousDevices;
 
     /**
      * creates a new InstallStorageDeviceListUpdater
@@ -71,19 +82,23 @@ public abstract class StorageDeviceListUpdater extends SwingWorker<Void, Void> {
 
         // remember selected values so that we can restore the selection
         selectedValues = list.getSelectedValuesList();
+
+        // remember the listed devices so that we can reuse the unchanged ones
+        previousDevices = Collections.list(listModel.elements());
     }
 
     @Override
     protected Void doInBackground() throws Exception {
         synchronized (listModel) {
-            listModel.clear();
             try {
                 storageDevices = DLCopy.getStorageDevices(
                         showHardDisks, showBootDevice, bootDeviceName);
                 Collections.sort(storageDevices);
+                reuseUnchangedDevices();
                 initDevices();
             } catch (IOException | DBusException ex) {
                 LOGGER.log(Level.SEVERE, "", ex);
+                storageDevices = new ArrayList<>();
             } catch (Exception ex) {
                 LOGGER.log(Level.SEVERE, "", ex);
                 throw ex;
@@ -95,15 +110,40 @@ public abstract class StorageDeviceListUpdater extends SwingWorker<Void, Void> {
     @Override
     protected void done() {
         // manipulate list model on Swing Event Thread
-        storageDevices.forEach((device) -> {
-            listModel.addElement(device);
-        });
+        //
+        // We only remove the devices that are gone or changed and insert the
+        // added or changed devices. This way the unchanged devices keep
+        // their selection (the selection model follows the insertions and
+        // removals) and don't have to be rendered again.
+        for (int i = listModel.size() - 1; i >= 0; i--) {
+            if (indexOfInstance(storageDevices, listModel.get(i)) == -1) {
+                listModel.remove(i);
+            }
+        }
+        for (int i = 0, size = storageDevices.size(); i < size; i++) {
+            StorageDevice device = storageDevices.get(i);
+            if (i < listModel.size() && listModel.get(i) == device) {
+                continue;
+            }
+            int oldIndex = indexOfInstance(
+                    Collections.list(listModel.elements()), device);
+            if (oldIndex != -1) {
+                listModel.remove(oldIndex);
+            }
+            listModel.add(i, device);
+        }
 
-        // try to restore the previous selection
+        // try to restore the selection of changed devices
         for (StorageDevice selectedValue : selectedValues) {
-            int index = storageDevices.indexOf(selectedValue);
-            if (index != -1) {
-                list.addSelectionInterval(index, index);
+            if (indexOfInstance(storageDevices, selectedValue) != -1) {
+                // unchanged device, still selected
+                continue;
+            }
+            for (int i = 0, size = storageDevices.size(); i < size; i++) {
+                if (storageDevices.get(i).getDevice().equals(
+                        selectedValue.getDevice())) {
+                    list.addSelectionInterval(i, i);
+                }
             }
         }
         updateGUI();
@@ -111,8 +151,8 @@ public abstract class StorageDeviceListUpdater extends SwingWorker<Void, Void> {
     }
 
     /**
-     * get all the necessary infos about all devices in the background thread so
-     * that later rendering in the Swing event thread does not block
+     * get all the necessary infos about all changed devices in the background
+     * thread so that later rendering in the Swing event thread does not block
      */
     public abstract void initDevices();
 
@@ -120,4 +160,86 @@ public abstract class StorageDeviceListUpdater extends SwingWorker<Void, Void> {
      * updates the GUI for the new storage device list
      */
     public abstract void updateGUI();
+
+    // Replaces the detected devices that were already listed and didn't
+    // change with the listed instances, so that the information collected by
+    // initDevices() for these devices can be reused. All other devices are
+    // added to changedDevices.
+    private void reuseUnchangedDevices() {
+        changedDevices.clear();
+        changedDevices.addAll(
+                reuseUnchangedDevices(storageDevices, previousDevices));
+        for (StorageDevice changedDevice : changedDevices) {
+            // the partitions might have been reused for something else
+            PartitionUsageCache.getInstance().invalidate(
+                    changedDevice.getDevice());
+        }
+        LOGGER.log(Level.INFO, "{0} of {1} storage devices added or changed",
+                new Object[]{changedDevices.size(), storageDevices.size()});
+    }
+
+    /**
+     * replaces the devices that are unchanged compared to the previous
+     * devices with the previous instances
+     *
+     * @param devices the currently detected devices
+     * @param previousDevices the previously listed devices
+     * @return the devices that were added or changed
+     */
+    static List<StorageDevice> reuseUnchangedDevices(
+            List<StorageDevice> devices, List<StorageDevice> previousDevices) {
+        Map<String, StorageDevice> previousIdentities = new HashMap<>();
+        for (StorageDevice previousDevice : previousDevices) {
+            previousIdentities.put(getIdentity(previousDevice), previousDevice);
+        }
+        List<StorageDevice> changed = new ArrayList<>();
+        for (int i = 0, size = devices.size(); i < size; i++) {
+            StorageDevice device = devices.get(i);
+            StorageDevice previousDevice
+                    = previousIdentities.get(getIdentity(device));
+            if (previousDevice == null) {
+                changed.add(device);
+            } else {
+                devices.set(i, previousDevice);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * returns the identity of a storage device
+     * <br>
+     * A device is considered unchanged as long as it is the same medium
+     * (serial and size) with the same partition table and the same file
+     * systems. The file system UUIDs are part of the identity because a reset
+     * or upgrade keeps the partition table but recreates file systems.
+     *
+     * @param device the storage device
+     * @return the identity of the storage device
+     */
+    static String getIdentity(StorageDevice device) {
+        StringBuilder identity = new StringBuilder();
+        identity.append(device.getDevice()).append('|')
+                .append(device.getSerial()).append('|')
+                .append(device.getSize());
+        for (Partition partition : device.getPartitions()) {
+            identity.append('|').append(partition.getNumber())
+                    .append(':').append(partition.getOffset())
+                    .append(':').append(partition.getSize())
+                    .append(':').append(partition.getIdType())
+                    .append(':').append(partition.getIdUuid())
+                    .append(':').append(partition.getIdLabel());
+        }
+        return identity.toString();
+    }
+
+    private static int indexOfInstance(
+            List<StorageDevice> devices, StorageDevice device) {
+        for (int i = 0, size = devices.size(); i < size; i++) {
+            if (devices.get(i) == device) {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
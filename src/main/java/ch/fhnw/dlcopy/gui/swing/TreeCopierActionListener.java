@@ -0,0 +1,92 @@
+package ch.fhnw.dlcopy.gui.swing;
+
+import ch.fhnw.dlcopy.DLCopy;
+import ch.fhnw.dlcopy.TreeCopier;
+import ch.fhnw.util.LernstickFileTools;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.Timer;
+
+/**
+ * Shows the progress of a TreeCopier (the name of the current file, the amount
+ * of copied data and the elapsed and remaining time). Stops its timer as soon
+ * as the labels are no longer visible after they had been shown.
+ *
+ * @author Ronny Standtke <ronny.standtke@fhnw.ch>
+ */
+public class TreeCopierActionListener implements ActionListener {
+
+    private final TreeCopier treeCopier;
+    private final JProgressBar progressBar;
+    private final JLabel fileNameLabel;
+    private final JLabel timeLabel;
+    private final long start;
+    private final DateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+    private boolean shown;
+
+    /**
+     * creates a new TreeCopierActionListener
+     *
+     * @param treeCopier the TreeCopier to observe
+     * @param progressBar the progress bar for the amount of copied data
+     * @param fileNameLabel the label for the file name
+     * @param timeLabel the label for the elapsed and remaining time
+     */
+    public TreeCopierActionListener(TreeCopier treeCopier,
+            JProgressBar progressBar, JLabel fileNameLabel, JLabel timeLabel) {
+        this.treeCopier = treeCopier;
+        this.progressBar = progressBar;
+        this.fileNameLabel = fileNameLabel;
+        this.timeLabel = timeLabel;
+        start = System.currentTimeMillis();
+        timeFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+
+        if (!fileNameLabel.isShowing()) {
+            // the card with the labels is shown later on the event dispatch
+            // thread, only stop when the labels were hidden again
+            if (shown) {
+                ((Timer) e.getSource()).stop();
+            }
+            return;
+        }
+        shown = true;
+
+        // update file name
+        fileNameLabel.setText(treeCopier.getCurrentFile());
+
+        // update progress
+        long done = treeCopier.getBytesDone();
+        long total = treeCopier.getBytesTotal();
+        if (total > 0) {
+            progressBar.setIndeterminate(false);
+            progressBar.setStringPainted(true);
+            progressBar.setString(MessageFormat.format(
+                    DLCopy.STRINGS.getString("Copying_Data_Progress"),
+                    LernstickFileTools.getDataVolumeString(done, 1),
+                    LernstickFileTools.getDataVolumeString(total, 1)));
+            progressBar.setValue((int) ((100 * done) / total));
+        }
+
+        // update time
+        long time = System.currentTimeMillis() - start;
+        String timeString = timeFormat.format(new Date(time));
+        if ((done > 0) && (total > done)) {
+            long remaining = (time * (total - done)) / done;
+            timeString = MessageFormat.format(
+                    DLCopy.STRINGS.getString("Elapsed_Remaining_Time"),
+                    timeString, timeFormat.format(new Date(remaining)));
+        }
+        timeLabel.setText(timeString);
+    }
+}
@@ -4,8 +4,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 /**
- * An ActionListener that updates changing duration table cells. Currently this
- * is the last duration cell and the summary duration cell.
+ * An ActionListener that updates changing duration table cells. Currently these
+ * are the last duration and phases cells and the summary duration cell.
  *
  * @author Ronny Standtke <ronny.standtke@gmx.net>
  */
@@ -34,5 +34,6 @@ public class UpdateChangingDurationsTableActionListener
 
     private void updateDurationCell(int row) {
         model.fireTableCellUpdated(row, ResultsTableModel.DURATION_COLUMN);
+        model.fireTableCellUpdated(row, ResultsTableModel.PHASES_COLUMN);
     }
 }
@@ -4,6 +4,7 @@ import ch.fhnw.dlcopy.DLCopy;
 import ch.fhnw.dlcopy.SystemSource;
 import ch.fhnw.util.StorageDevice;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
@@ -55,16 +56,8 @@ public class UpgradeStorageDeviceAdder extends StorageDeviceAdder {
             TimeUnit.SECONDS.sleep(7);
             addedDevice.getSystemUpgradeVariant(
                     DLCopy.getEnlargedSystemSize(source.getSystemSize()));
-            addedDevice.getPartitions().forEach((partition) -> {
-                try {
-                    if (partition.isPersistencePartition()) {
-                        partition.getUsedSpace(true);
-                    } else {
-                        partition.getUsedSpace(false);
-                    }
-                } catch (Exception ignored) {
-                }
-            });
+            PartitionUsageCache.getInstance().prefetch(
+                    List.of(addedDevice), true);
         } catch (DBusException | IOException | InterruptedException ex) {
             LOGGER.log(Level.SEVERE, "", ex);
         }
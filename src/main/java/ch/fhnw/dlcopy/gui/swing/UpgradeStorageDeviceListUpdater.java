@@ -2,7 +2,6 @@ package ch.fhnw.dlcopy.gui.swing;
 
 import ch.fhnw.dlcopy.DLCopy;
 import ch.fhnw.dlcopy.SystemSource;
-import ch.fhnw.util.Partition;
 import ch.fhnw.util.StorageDevice;
 import java.io.IOException;
 import java.util.logging.Level;
@@ -43,20 +42,10 @@ public class UpgradeStorageDeviceListUpdater extends StorageDeviceListUpdater {
 
     @Override
     public void initDevices() {
-        for (StorageDevice device : storageDevices) {
+        for (StorageDevice device : changedDevices) {
             try {
                 device.getSystemUpgradeVariant(
                         DLCopy.getEnlargedSystemSize(source.getSystemSize()));
-                for (Partition partition : device.getPartitions()) {
-                    try {
-                        if (partition.isPersistencePartition()) {
-                            partition.getUsedSpace(true);
-                        } else {
-                            partition.getUsedSpace(false);
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
             } catch (DBusException | IOException ex) {
                 LOGGER.log(Level.WARNING, "", ex);
             } catch (Exception ex) {
@@ -64,6 +53,7 @@ public class UpgradeStorageDeviceListUpdater extends StorageDeviceListUpdater {
                 throw ex;
             }
         }
+        PartitionUsageCache.getInstance().prefetch(changedDevices, true);
     }
 
     @Override
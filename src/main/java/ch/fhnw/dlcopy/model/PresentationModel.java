@@ -1,5 +1,6 @@
 package ch.fhnw.dlcopy.model;
 
+import ch.fhnw.dlcopy.DigestCache;
 import java.util.ArrayList;
 import java.util.Locale;
 import javafx.beans.property.IntegerProperty;
@@ -13,6 +14,7 @@ public class PresentationModel {
     
     private final IntegerProperty height    = new SimpleIntegerProperty(WINDOWS_HEIGHT_DEFAULT);
     private final IntegerProperty width     = new SimpleIntegerProperty(WINDOWS_WIDTH_DEFAULT);
+    private DigestCache digestCache;
     
     private PresentationModel(){}
     
@@ -46,4 +48,25 @@ public class PresentationModel {
     public IntegerProperty widthProperty(){
         return width;
     }
+    
+    /**
+     * Returns the digest cache that is shared by all installations and upgrades.
+     * It is created when it is used for the first time.
+     * @return the shared digest cache
+     */
+    public synchronized DigestCache getDigestCache(){
+        if (digestCache == null) {
+            digestCache = new DigestCache(DigestCache.DEFAULT_INDEX_FILE, DigestCache.DEFAULT_MAX_BYTES);
+        }
+        return digestCache;
+    }
+    
+    /**
+     * Closes the shared digest cache (if it was ever used)
+     */
+    public synchronized void closeDigestCache(){
+        if (digestCache != null) {
+            digestCache.close();
+        }
+    }
 }
@@ -5,6 +5,7 @@ package ch.fhnw.dlcopy.model.install;
  */
 public enum InstallationStatus {
     CREATE_FILE_SYSTEMS,
+    WAITING_FOR_COPY,
     OVERWRITE_DATA_PARTITION_WITH_RANDOM_DATA,
     COPY_FILES,
     COPY_PERSISTENCY_PARTITION,
@@ -0,0 +1,156 @@
+package ch.fhnw.dlcopy;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DigestCacheTest {
+
+    private static final byte[] DIGEST = {1, 2, 3, 4};
+    private static final byte[] OTHER_DIGEST = {5, 6, 7, 8};
+
+    private Path directory;
+    private Path indexFile;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("DigestCacheTest");
+        indexFile = directory.resolve("index").resolve("digests");
+        file = createFile("file", "content");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void digestsSurviveReload() {
+        try (DigestCache cache = new DigestCache(indexFile, DLCopy.MEGA)) {
+            cache.put(file.toString(), DIGEST);
+        }
+
+        try (DigestCache cache = new DigestCache(indexFile, DLCopy.MEGA)) {
+            assertTrue(cache.containsKey(file.toString()));
+            assertArrayEquals(DIGEST, cache.get(file.toString()));
+            assertEquals(1, cache.getHits());
+        }
+    }
+
+    @Test
+    public void replacedDigestSurvivesReload() {
+        try (DigestCache cache = new DigestCache(indexFile, DLCopy.MEGA)) {
+            cache.put(file.toString(), DIGEST);
+            cache.put(file.toString(), OTHER_DIGEST);
+        }
+
+        try (DigestCache cache = new DigestCache(indexFile, DLCopy.MEGA)) {
+            assertEquals(1, cache.size());
+            assertArrayEquals(OTHER_DIGEST, cache.get(file.toString()));
+        }
+    }
+
+    @Test
+    public void changedFileIsDroppedAfterReload() throws IOException {
+        try (DigestCache cache = new DigestCache(indexFile, DLCopy.MEGA)) {
+            cache.put(file.toString(), DIGEST);
+        }
+        Files.write(file, "changed content".getBytes(StandardCharsets.UTF_8));
+
+        try (DigestCache cache = new DigestCache(indexFile, DLCopy.MEGA)) {
+            assertFalse(cache.containsKey(file.toString()));
+            assertEquals(1, cache.getMisses());
+            assertTrue(cache.isEmpty());
+        }
+    }
+
+    @Test
+    public void indexFileIsCompactedWhileRunning() throws IOException {
+        try (DigestCache cache = new DigestCache(indexFile, DLCopy.MEGA)) {
+            cache.put(file.toString(), DIGEST);
+            long singleEntrySize = Files.size(indexFile);
+            // replacing the same digest over and over must not let the index
+            // file grow without limits
+            for (int i = 0; i < 10000; i++) {
+                cache.put(file.toString(),
+                        (i % 2 == 0) ? OTHER_DIGEST : DIGEST);
+            }
+            assertTrue(Files.size(indexFile) < 2000 * singleEntrySize);
+        }
+
+        try (DigestCache cache = new DigestCache(indexFile, DLCopy.MEGA)) {
+            assertEquals(1, cache.size());
+            assertArrayEquals(DIGEST, cache.get(file.toString()));
+        }
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+        Path secondFile = createFile("second", "second content");
+        try (DigestCache cache = new DigestCache(1)) {
+            cache.put(file.toString(), DIGEST);
+            cache.put(secondFile.toString(), OTHER_DIGEST);
+
+            assertEquals(1, cache.getEvictions());
+            assertFalse(cache.containsKey(file.toString()));
+            assertTrue(cache.containsKey(secondFile.toString()));
+        }
+    }
+
+    @Test
+    public void hashMapViewDelegatesToCache() {
+        try (DigestCache cache = new DigestCache()) {
+            HashMap<String, byte[]> view = cache.asHashMap();
+            view.put(file.toString(), DIGEST);
+
+            assertTrue(cache.containsKey(file.toString()));
+            assertTrue(view.containsKey(file.toString()));
+            assertArrayEquals(DIGEST, view.get(file.toString()));
+            assertEquals(1, view.size());
+            assertFalse(view.containsKey(Integer.valueOf(1)));
+        }
+    }
+
+    @Test
+    public void hashMapViewKeepsDigestUntilGet() throws IOException {
+        Path secondFile = createFile("second", "second content");
+        try (DigestCache cache = new DigestCache(1)) {
+            HashMap<String, byte[]> view = cache.asHashMap();
+            view.put(file.toString(), DIGEST);
+            assertTrue(view.containsKey(file.toString()));
+            // evicts the digest while the FileCopier copies the file
+            view.put(secondFile.toString(), OTHER_DIGEST);
+
+            assertArrayEquals(DIGEST, view.get(file.toString()));
+            // the digest is only pinned until the matching get()
+            assertNull(view.get(file.toString()));
+        }
+    }
+
+    @Test
+    public void cacheWorksInMemoryAfterClose() {
+        DigestCache cache = new DigestCache(indexFile, DLCopy.MEGA);
+        cache.close();
+        cache.put(file.toString(), DIGEST);
+
+        assertArrayEquals(DIGEST, cache.get(file.toString()));
+    }
+
+    private Path createFile(String name, String content) throws IOException {
+        return Files.write(directory.resolve(name),
+                content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,218 @@
+package ch.fhnw.dlcopy;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import ch.fhnw.filecopier.CopyJob;
+import ch.fhnw.filecopier.Source;
+import ch.fhnw.util.StorageDevice;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FanOutCopierTest {
+
+    private Path directory;
+    private Path source;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("FanOutCopierTest");
+        source = Files.createDirectory(directory.resolve("source"));
+        for (String name : new String[]{"first", "second"}) {
+            Files.write(source.resolve(name),
+                    name.getBytes(StandardCharsets.UTF_8));
+        }
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void copiesToAllStorageDevices() throws Exception {
+        FanOutCopier fanOutCopier = new FanOutCopier(new HashMap<>());
+        StorageDevice first = mock(StorageDevice.class);
+        StorageDevice second = mock(StorageDevice.class);
+        fanOutCopier.register(first);
+        fanOutCopier.register(second);
+        Path firstDestination = directory.resolve("first");
+        Path secondDestination = directory.resolve("second");
+
+        Future<Boolean> firstResult = copy(
+                fanOutCopier, first, firstDestination);
+        Future<Boolean> secondResult = copy(
+                fanOutCopier, second, secondDestination);
+
+        assertTrue(firstResult.get(10, TimeUnit.SECONDS));
+        assertTrue(secondResult.get(10, TimeUnit.SECONDS));
+        assertTrue(Files.exists(firstDestination.resolve("first")));
+        assertTrue(Files.exists(secondDestination.resolve("first")));
+    }
+
+    @Test
+    public void onlyBrokenStorageDeviceFallsBack() throws Exception {
+        FanOutCopier fanOutCopier = new FanOutCopier(new HashMap<>());
+        StorageDevice broken = mock(StorageDevice.class);
+        StorageDevice working = mock(StorageDevice.class);
+        fanOutCopier.register(broken);
+        fanOutCopier.register(working);
+        // a directory can't be created below a regular file
+        Path brokenDestination = Files.createFile(
+                directory.resolve("regularFile")).resolve("broken");
+        Path workingDestination = directory.resolve("working");
+
+        Future<Boolean> brokenResult = copy(
+                fanOutCopier, broken, brokenDestination);
+        Future<Boolean> workingResult = copy(
+                fanOutCopier, working, workingDestination);
+
+        assertFalse(brokenResult.get(10, TimeUnit.SECONDS));
+        assertTrue(workingResult.get(10, TimeUnit.SECONDS));
+        assertTrue(Files.exists(workingDestination.resolve("first")));
+    }
+
+    @Test
+    public void roundStartsWithoutLateStorageDevice() throws Exception {
+        FanOutCopier fanOutCopier = new FanOutCopier(new HashMap<>(), 100);
+        StorageDevice ready = mock(StorageDevice.class);
+        StorageDevice late = mock(StorageDevice.class);
+        fanOutCopier.register(ready);
+        fanOutCopier.register(late);
+        Path destination = directory.resolve("ready");
+
+        // the late storage device never arrives
+        assertTrue(copy(fanOutCopier, ready, destination).get(
+                10, TimeUnit.SECONDS));
+        assertTrue(Files.exists(destination.resolve("first")));
+    }
+
+    @Test
+    public void deregisteredStorageDeviceDoesNotBlockRound() throws Exception {
+        FanOutCopier fanOutCopier = new FanOutCopier(
+                new HashMap<>(), TimeUnit.HOURS.toMillis(1));
+        StorageDevice ready = mock(StorageDevice.class);
+        StorageDevice failed = mock(StorageDevice.class);
+        fanOutCopier.register(ready);
+        fanOutCopier.register(failed);
+
+        Future<Boolean> result = copy(
+                fanOutCopier, ready, directory.resolve("ready"));
+        fanOutCopier.deregister(failed);
+
+        assertTrue(result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void copiedFilesAreReportedToAllCopyJobs() throws Exception {
+        FanOutCopier fanOutCopier = new FanOutCopier(new HashMap<>());
+        StorageDevice first = mock(StorageDevice.class);
+        StorageDevice second = mock(StorageDevice.class);
+        fanOutCopier.register(first);
+        fanOutCopier.register(second);
+        CopyJob firstCopyJob = createCopyJob(directory.resolve("first"));
+        CopyJob secondCopyJob = createCopyJob(directory.resolve("second"));
+
+        Future<Boolean> firstResult = executor.submit(
+                () -> fanOutCopier.copy(first, false, firstCopyJob));
+        Future<Boolean> secondResult = executor.submit(
+                () -> fanOutCopier.copy(second, false, secondCopyJob));
+
+        assertTrue(firstResult.get(10, TimeUnit.SECONDS));
+        assertTrue(secondResult.get(10, TimeUnit.SECONDS));
+        // the ManifestVerifier needs them
+        assertNotNull(firstCopyJob.getDirectoryInfos());
+        assertNotNull(secondCopyJob.getDirectoryInfos());
+    }
+
+    @Test
+    public void checkedCopiesOfLargeFilesAreIdentical() throws Exception {
+        // larger than several chunks and not a multiple of the chunk size
+        byte[] content = new byte[9 * 1024 * 1024 + 123];
+        new Random(42).nextBytes(content);
+        Files.write(source.resolve("large"), content);
+        HashMap<String, byte[]> digestCache = new HashMap<>();
+        FanOutCopier fanOutCopier = new FanOutCopier(digestCache);
+        StorageDevice first = mock(StorageDevice.class);
+        StorageDevice second = mock(StorageDevice.class);
+        fanOutCopier.register(first);
+        fanOutCopier.register(second);
+        Path firstDestination = directory.resolve("first");
+        Path secondDestination = directory.resolve("second");
+        CopyJob firstCopyJob = createCopyJob(firstDestination);
+        CopyJob secondCopyJob = createCopyJob(secondDestination);
+
+        Future<Boolean> firstResult = executor.submit(
+                () -> fanOutCopier.copy(first, true, firstCopyJob));
+        Future<Boolean> secondResult = executor.submit(
+                () -> fanOutCopier.copy(second, true, secondCopyJob));
+
+        assertTrue(firstResult.get(30, TimeUnit.SECONDS));
+        assertTrue(secondResult.get(30, TimeUnit.SECONDS));
+        assertArrayEquals(content,
+                Files.readAllBytes(firstDestination.resolve("large")));
+        assertArrayEquals(content,
+                Files.readAllBytes(secondDestination.resolve("large")));
+        // the source digests are shared with the FileCopiers
+        assertTrue(digestCache.containsKey(
+                source.resolve("large").toString()));
+    }
+
+    @Test
+    public void roundsDoNotOverlap() throws Exception {
+        FanOutCopier fanOutCopier = new FanOutCopier(new HashMap<>(), 100);
+        StorageDevice early = mock(StorageDevice.class);
+        StorageDevice late = mock(StorageDevice.class);
+        fanOutCopier.register(early);
+        fanOutCopier.register(late);
+        Path earlyDestination = directory.resolve("early");
+        Path lateDestination = directory.resolve("late");
+
+        Future<Boolean> earlyResult = copy(
+                fanOutCopier, early, earlyDestination);
+        Thread.sleep(200);
+        Future<Boolean> lateResult = copy(
+                fanOutCopier, late, lateDestination);
+
+        assertTrue(earlyResult.get(10, TimeUnit.SECONDS));
+        assertTrue(lateResult.get(10, TimeUnit.SECONDS));
+        assertArrayEquals("second".getBytes(StandardCharsets.UTF_8),
+                Files.readAllBytes(lateDestination.resolve("second")));
+        assertEquals(fanOutCopier.getFileCopier().getByteCount(),
+                fanOutCopier.getFileCopier().getCopiedBytes());
+    }
+
+    private Future<Boolean> copy(FanOutCopier fanOutCopier,
+            StorageDevice storageDevice, Path destination) {
+        CopyJob copyJob = createCopyJob(destination);
+        return executor.submit(
+                () -> fanOutCopier.copy(storageDevice, false, copyJob));
+    }
+
+    private CopyJob createCopyJob(Path destination) {
+        // destinations are mount points that already exist
+        destination.toFile().mkdirs();
+        return new CopyJob(
+                new Source[]{new Source(source.toString(), ".*")},
+                new String[]{destination.toString()});
+    }
+}
@@ -0,0 +1,78 @@
+package ch.fhnw.dlcopy;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class HashingServiceTest {
+
+    private static final String DIGEST = "d41d8cd98f00b204e9800998ecf8427e";
+
+    @Test
+    public void plainPathIsNotEscaped() {
+        String line = HashingService.formatManifestLine(DIGEST, "./dir/file");
+
+        assertEquals(DIGEST + "  ./dir/file", line);
+        assertArrayEquals(new String[]{DIGEST, "./dir/file"},
+                HashingService.parseManifestLine(line));
+    }
+
+    @Test
+    public void escapedLinesAreMarked() {
+        assertEquals('\\' + DIGEST + "  ./a\\\\b\\nc",
+                HashingService.formatManifestLine(DIGEST, "./a\\b\nc"));
+    }
+
+    @Test
+    public void backslashFollowedByNSurvivesRoundTrip() {
+        assertRoundTrip("./dir\\name");
+    }
+
+    @Test
+    public void pathsWithBackslashesAndNewlinesSurviveRoundTrip() {
+        assertRoundTrip("./back\\slash");
+        assertRoundTrip("./new\nline");
+        assertRoundTrip("./\\\\n\n\\n\\");
+        assertRoundTrip("./trailing\\");
+    }
+
+    @Test
+    public void manifestSurvivesRoundTrip() throws Exception {
+        Map<String, String> digests = new LinkedHashMap<>();
+        digests.put("./plain", DIGEST);
+        digests.put("./dir\\name", DIGEST);
+        digests.put("./new\nline", DIGEST);
+        StringWriter writer = new StringWriter();
+
+        HashingService.writeManifest(writer, digests);
+
+        Map<String, String> parsed = new LinkedHashMap<>();
+        for (String line : writer.toString().split("\n")) {
+            String[] entry = HashingService.parseManifestLine(line);
+            parsed.put(entry[1], entry[0]);
+        }
+        assertEquals(digests, parsed);
+    }
+
+    @Test
+    public void binaryModeIsAccepted() {
+        assertArrayEquals(new String[]{DIGEST, "./file"},
+                HashingService.parseManifestLine(DIGEST + " *./file"));
+    }
+
+    @Test
+    public void commentsAreNoEntries() {
+        assertNull(HashingService.parseManifestLine("# comment"));
+        assertNull(HashingService.parseManifestLine(""));
+    }
+
+    private static void assertRoundTrip(String path) {
+        String line = HashingService.formatManifestLine(DIGEST, path);
+        assertFalse(line.contains("\n"));
+        assertArrayEquals(new String[]{DIGEST, path},
+                HashingService.parseManifestLine(line));
+    }
+}
@@ -0,0 +1,196 @@
+package ch.fhnw.dlcopy;
+
+import static org.junit.Assert.*;
+
+import ch.fhnw.filecopier.CopyJob;
+import ch.fhnw.filecopier.FileCopier;
+import ch.fhnw.filecopier.Source;
+import ch.fhnw.util.ProcessExecutor;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ManifestVerifierTest {
+
+    private static final ProcessExecutor PROCESS_EXECUTOR
+            = new ProcessExecutor();
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("ManifestVerifierTest");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void intactCopiesAreAccepted() throws Exception {
+        Path source = createSource("source", "listed", "unlisted");
+        writeManifest(source, "listed");
+        CopyJob copyJob = copy(source, "destination");
+
+        ManifestVerifier verifier = ManifestVerifier.load(copyJob);
+
+        assertNotNull(verifier);
+        assertTrue(verifier.verify(PROCESS_EXECUTOR, copyJob).isEmpty());
+    }
+
+    @Test
+    public void corruptedListedFileIsDetected() throws Exception {
+        Path source = createSource("source", "listed", "unlisted");
+        writeManifest(source, "listed");
+        CopyJob copyJob = copy(source, "destination");
+        Path corrupted = directory.resolve("destination").resolve("listed");
+        write(corrupted, "garbage");
+
+        List<String> corruptedFiles = ManifestVerifier.load(copyJob)
+                .verify(PROCESS_EXECUTOR, copyJob);
+
+        assertEquals(List.of(corrupted.toString()), corruptedFiles);
+    }
+
+    @Test
+    public void corruptedUnlistedFileIsDetected() throws Exception {
+        Path source = createSource("source", "listed", "unlisted");
+        writeManifest(source, "listed");
+        CopyJob copyJob = copy(source, "destination");
+        Path corrupted = directory.resolve("destination").resolve("unlisted");
+        write(corrupted, "garbage");
+
+        List<String> corruptedFiles = ManifestVerifier.load(copyJob)
+                .verify(PROCESS_EXECUTOR, copyJob);
+
+        assertEquals(List.of(corrupted.toString()), corruptedFiles);
+    }
+
+    @Test
+    public void missingFileIsDetected() throws Exception {
+        Path source = createSource("source", "listed", "unlisted");
+        writeManifest(source, "listed");
+        CopyJob copyJob = copy(source, "destination");
+        Path missing = directory.resolve("destination").resolve("listed");
+        Files.delete(missing);
+
+        List<String> corruptedFiles = ManifestVerifier.load(copyJob)
+                .verify(PROCESS_EXECUTOR, copyJob);
+
+        assertEquals(List.of(missing.toString()), corruptedFiles);
+    }
+
+    @Test
+    public void manifestOnlyAppliesToFilesOfTheMedium() throws Exception {
+        // both sources contain a file with the same name but with different
+        // content, only the first source is the medium with a manifest
+        Path firstSource = createSource("first", "file", "other");
+        writeManifest(firstSource, "file");
+        Path secondSource = createSource("second", "file", "another");
+        write(secondSource.resolve("file"), "different content");
+        CopyJob firstCopyJob = copy(firstSource, "firstDestination");
+        CopyJob secondCopyJob = copy(secondSource, "secondDestination");
+
+        ManifestVerifier verifier = ManifestVerifier.load(firstCopyJob);
+
+        assertTrue(verifier.verify(PROCESS_EXECUTOR,
+                firstCopyJob, secondCopyJob).isEmpty());
+    }
+
+    @Test
+    public void manifestAppliesToAllDirectoriesOfTheMedium()
+            throws Exception {
+        // like the running system: the manifest is on the EFI partition,
+        // the listed file is on the system partition
+        Path efi = createSource("efi", "efi.img");
+        Path system = createSource("system");
+        Files.createDirectory(system.resolve("live"));
+        write(system.resolve("live").resolve("filesystem.squashfs"),
+                "squashfs");
+        writeManifest(efi, system, "live/filesystem.squashfs");
+        CopyJob efiCopyJob = copy(efi, "efiDestination");
+        CopyJob systemCopyJob = copy(system, "systemDestination");
+        // the copy would no longer match its changed source file
+        write(system.resolve("live").resolve("filesystem.squashfs"),
+                "changed");
+
+        ManifestVerifier verifier
+                = ManifestVerifier.load(efiCopyJob, systemCopyJob);
+
+        assertTrue(verifier.verify(PROCESS_EXECUTOR,
+                efiCopyJob, systemCopyJob).isEmpty());
+    }
+
+    @Test
+    public void noManifestMeansNoVerifier() throws Exception {
+        CopyJob copyJob = copy(
+                createSource("source", "first", "second"), "destination");
+
+        assertNull(ManifestVerifier.load(copyJob));
+    }
+
+    @Test(expected = IOException.class)
+    public void copyJobMustBeCopiedBeforeVerification() throws Exception {
+        Path source = createSource("source", "listed", "unlisted");
+        writeManifest(source, "listed");
+        CopyJob copyJob = new CopyJob(
+                new Source[]{new Source(source.toString(), ".*")},
+                new String[]{directory.resolve("destination").toString()});
+
+        ManifestVerifier.load(copyJob).verify(PROCESS_EXECUTOR, copyJob);
+    }
+
+    private Path createSource(String name, String... files)
+            throws IOException {
+        Path source = Files.createDirectory(directory.resolve(name));
+        for (String file : files) {
+            write(source.resolve(file), name + '/' + file);
+        }
+        return source;
+    }
+
+    private static void writeManifest(Path source, String... files)
+            throws IOException, NoSuchAlgorithmException {
+        writeManifest(source, source, files);
+    }
+
+    private static void writeManifest(Path manifestDirectory, Path source,
+            String... files) throws IOException, NoSuchAlgorithmException {
+        StringBuilder manifest = new StringBuilder();
+        for (String file : files) {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(
+                    Files.readAllBytes(source.resolve(file)));
+            manifest.append(HexFormat.of().formatHex(digest))
+                    .append("  ./").append(file).append('\n');
+        }
+        write(manifestDirectory.resolve("md5sum.txt"), manifest.toString());
+    }
+
+    private CopyJob copy(Path source, String destination) throws Exception {
+        Path destinationPath = Files.createDirectory(
+                directory.resolve(destination));
+        CopyJob copyJob = new CopyJob(
+                new Source[]{new Source(source.toString(), ".*")},
+                new String[]{destinationPath.toString()});
+        new FileCopier().copy(false, copyJob);
+        return copyJob;
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,78 @@
+package ch.fhnw.dlcopy;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import ch.fhnw.util.StorageDevice;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PhaseReportTest {
+
+    private StorageDeviceResult result;
+
+    @Before
+    public void setUp() {
+        StorageDevice storageDevice = mock(StorageDevice.class);
+        when(storageDevice.getFullDevice()).thenReturn("/dev/sdb");
+        when(storageDevice.getSerial()).thenReturn("1234,\"5678\"");
+        result = new StorageDeviceResult(storageDevice);
+        result.addPhaseTiming(new PhaseTiming(
+                Phase.MKFS, "ext4 /dev/sdb1", Duration.ofMillis(1500), 0));
+        result.addPhaseTiming(new PhaseTiming(Phase.FILE_COPY, "system",
+                Duration.ofSeconds(2), 4 * DLCopy.MEGA));
+    }
+
+    @Test
+    public void csvHasOneQuotedLinePerPhase() throws Exception {
+        StringWriter writer = new StringWriter();
+
+        PhaseReport.writeCsv(List.of(result), writer);
+
+        assertEquals("device,serial,phase,detail,duration_ms,bytes,"
+                + "throughput_bytes_per_second\n"
+                + "/dev/sdb,\"1234,\"\"5678\"\"\",MKFS,ext4 /dev/sdb1,"
+                + "1500,0,0\n"
+                + "/dev/sdb,\"1234,\"\"5678\"\"\",FILE_COPY,system,"
+                + "2000,4194304,2097152\n",
+                writer.toString());
+    }
+
+    @Test
+    public void jsonContainsResultsAndPhases() throws Exception {
+        result.setErrorMessage("line 1\nline 2");
+        StringWriter writer = new StringWriter();
+
+        PhaseReport.writeJson(List.of(result), writer);
+
+        assertEquals("[\n"
+                + "  {\n"
+                + "    \"device\": \"/dev/sdb\",\n"
+                + "    \"serial\": \"1234,\\\"5678\\\"\",\n"
+                + "    \"duration_ms\": null,\n"
+                + "    \"error\": \"line 1\\nline 2\",\n"
+                + "    \"phases\": [\n"
+                + "      {\"phase\": \"MKFS\", \"detail\": \"ext4 /dev/sdb1\","
+                + " \"duration_ms\": 1500, \"bytes\": 0,"
+                + " \"throughput_bytes_per_second\": 0},\n"
+                + "      {\"phase\": \"FILE_COPY\", \"detail\": \"system\","
+                + " \"duration_ms\": 2000, \"bytes\": 4194304,"
+                + " \"throughput_bytes_per_second\": 2097152}\n"
+                + "    ]\n"
+                + "  }\n"
+                + "]\n",
+                writer.toString());
+    }
+
+    @Test
+    public void emptyJsonReportIsValid() throws Exception {
+        StringWriter writer = new StringWriter();
+
+        PhaseReport.writeJson(List.of(), writer);
+
+        assertEquals("[]\n", writer.toString());
+    }
+}
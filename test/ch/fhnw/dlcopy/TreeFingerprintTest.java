@@ -0,0 +1,117 @@
+package ch.fhnw.dlcopy;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TreeFingerprintTest {
+
+    private static final FileTime MODIFIED = FileTime.fromMillis(1000000000);
+
+    private Path directory;
+    private Path tree;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("TreeFingerprintTest");
+        tree = Files.createDirectory(directory.resolve("tree"));
+        write("file", "content");
+        Files.createDirectory(tree.resolve("dir"));
+        write("dir/nested", "nested content");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void unchangedTreeHasSameFingerprint() throws IOException {
+        String fingerprint = compute("");
+
+        assertEquals(fingerprint, compute(""));
+    }
+
+    @Test
+    public void parametersChangeFingerprint() throws IOException {
+        assertNotEquals(compute("zstd 15"), compute("zstd 22"));
+    }
+
+    @Test
+    public void changedSizeChangesFingerprint() throws IOException {
+        String fingerprint = compute("");
+        write("dir/nested", "longer nested content");
+
+        assertNotEquals(fingerprint, compute(""));
+    }
+
+    @Test
+    public void changedModificationTimeChangesFingerprint()
+            throws IOException {
+        String fingerprint = compute("");
+        Files.setLastModifiedTime(tree.resolve("file"),
+                FileTime.fromMillis(2000000000));
+
+        assertNotEquals(fingerprint, compute(""));
+    }
+
+    @Test
+    public void addedFileChangesFingerprint() throws IOException {
+        String fingerprint = compute("");
+        write("dir/added", "");
+
+        assertNotEquals(fingerprint, compute(""));
+    }
+
+    @Test
+    public void renamedFileChangesFingerprint() throws IOException {
+        String fingerprint = compute("");
+        Files.move(tree.resolve("file"), tree.resolve("renamed"));
+
+        assertNotEquals(fingerprint, compute(""));
+    }
+
+    @Test
+    public void excludedAndIgnoredPathsDontChangeFingerprint()
+            throws IOException {
+        Path excludeFile = Files.write(directory.resolve("excludes"),
+                "dir/*.tmp\n".getBytes(StandardCharsets.UTF_8));
+        SquashFSExcludes excludes = new SquashFSExcludes(excludeFile);
+        Set<Path> ignoredPaths = Set.of(Paths.get("ignored"));
+        String fingerprint = new TreeFingerprint(
+                tree, excludes, ignoredPaths).compute("");
+
+        write("dir/excluded.tmp", "excluded");
+        write("ignored", "ignored");
+
+        assertEquals(fingerprint, new TreeFingerprint(
+                tree, excludes, ignoredPaths).compute(""));
+    }
+
+    private String compute(String parameters) throws IOException {
+        return new TreeFingerprint(tree, new SquashFSExcludes(null), Set.of())
+                .compute(parameters);
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = Files.write(tree.resolve(path),
+                content.getBytes(StandardCharsets.UTF_8));
+        // the same modification time for all files, so that only the
+        // changes made by the tests count
+        Files.setLastModifiedTime(file, MODIFIED);
+    }
+}
@@ -0,0 +1,129 @@
+package ch.fhnw.dlcopy;
+
+import static org.junit.Assert.*;
+
+import ch.fhnw.dlcopy.UdisksMonitor.EventType;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UdisksMonitorTest {
+
+    private static final long DELAY = 200;
+    private static final String DRIVE
+            = "/org/freedesktop/UDisks2/block_devices/sdb";
+    private static final String OTHER_DRIVE
+            = "/org/freedesktop/UDisks2/block_devices/sdc";
+
+    private UdisksMonitor udisksMonitor;
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() {
+        udisksMonitor = new UdisksMonitor(DELAY);
+        udisksMonitor.addListener(new UdisksMonitor.Listener() {
+
+            @Override
+            public void deviceAdded(String path) {
+                events.add("added " + path);
+            }
+
+            @Override
+            public void deviceRemoved(String path) {
+                events.add("removed " + path);
+            }
+
+            @Override
+            public void deviceChanged(String path) {
+                events.add("changed " + path);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        udisksMonitor.stop();
+    }
+
+    @Test
+    public void burstOfEventsIsReportedOnce() throws Exception {
+        udisksMonitor.addEvent(DRIVE, EventType.ADDED);
+        for (int i = 0; i < 5; i++) {
+            udisksMonitor.addEvent(DRIVE, EventType.CHANGED);
+        }
+
+        assertEquals("added " + DRIVE, nextEvent());
+        assertNoMoreEvents();
+    }
+
+    @Test
+    public void changesAreReportedAsSingleChange() throws Exception {
+        udisksMonitor.addEvent(DRIVE, EventType.CHANGED);
+        udisksMonitor.addEvent(DRIVE, EventType.CHANGED);
+
+        assertEquals("changed " + DRIVE, nextEvent());
+        assertNoMoreEvents();
+    }
+
+    @Test
+    public void removalMakesEarlierEventsObsolete() throws Exception {
+        udisksMonitor.addEvent(DRIVE, EventType.ADDED);
+        udisksMonitor.addEvent(DRIVE, EventType.CHANGED);
+        udisksMonitor.addEvent(DRIVE, EventType.REMOVED);
+
+        assertEquals("removed " + DRIVE, nextEvent());
+        assertNoMoreEvents();
+    }
+
+    @Test
+    public void replugIsReportedAsRemovalAndAddition() throws Exception {
+        udisksMonitor.addEvent(DRIVE, EventType.REMOVED);
+        udisksMonitor.addEvent(DRIVE, EventType.ADDED);
+
+        assertEquals("removed " + DRIVE, nextEvent());
+        assertEquals("added " + DRIVE, nextEvent());
+        assertNoMoreEvents();
+    }
+
+    @Test
+    public void drivesAreCoalescedIndependently() throws Exception {
+        udisksMonitor.addEvent(DRIVE, EventType.ADDED);
+        udisksMonitor.addEvent(OTHER_DRIVE, EventType.ADDED);
+        udisksMonitor.addEvent(DRIVE, EventType.CHANGED);
+
+        String first = nextEvent();
+        String second = nextEvent();
+        assertNotEquals(first, second);
+        assertTrue(first.equals("added " + DRIVE)
+                || first.equals("added " + OTHER_DRIVE));
+        assertTrue(second.equals("added " + DRIVE)
+                || second.equals("added " + OTHER_DRIVE));
+        assertNoMoreEvents();
+    }
+
+    @Test
+    public void eventsWaitUntilDriveIsQuiet() throws Exception {
+        // every new event restarts the delay of the drive
+        for (int i = 0; i < 6; i++) {
+            udisksMonitor.addEvent(DRIVE, EventType.CHANGED);
+            Thread.sleep(DELAY / 4);
+        }
+        assertTrue(events.isEmpty());
+
+        assertEquals("changed " + DRIVE, nextEvent());
+        assertNoMoreEvents();
+    }
+
+    private String nextEvent() throws InterruptedException {
+        String event = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event);
+        return event;
+    }
+
+    private void assertNoMoreEvents() throws InterruptedException {
+        assertNull(events.poll(2 * DELAY, TimeUnit.MILLISECONDS));
+    }
+}
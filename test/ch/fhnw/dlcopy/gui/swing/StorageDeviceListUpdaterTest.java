@@ -0,0 +1,78 @@
+package ch.fhnw.dlcopy.gui.swing;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import ch.fhnw.util.Partition;
+import ch.fhnw.util.StorageDevice;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class StorageDeviceListUpdaterTest {
+
+    @Test
+    public void unchangedDeviceHasSameIdentity() {
+        assertEquals(
+                StorageDeviceListUpdater.getIdentity(
+                        createDevice("sdb", "uuid", "label")),
+                StorageDeviceListUpdater.getIdentity(
+                        createDevice("sdb", "uuid", "label")));
+    }
+
+    @Test
+    public void recreatedFileSystemChangesIdentity() {
+        // a reset or upgrade keeps the partition table and the label
+        assertNotEquals(
+                StorageDeviceListUpdater.getIdentity(
+                        createDevice("sdb", "uuid", "label")),
+                StorageDeviceListUpdater.getIdentity(
+                        createDevice("sdb", "new uuid", "label")));
+    }
+
+    @Test
+    public void changedLabelChangesIdentity() {
+        assertNotEquals(
+                StorageDeviceListUpdater.getIdentity(
+                        createDevice("sdb", "uuid", "label")),
+                StorageDeviceListUpdater.getIdentity(
+                        createDevice("sdb", "uuid", "new label")));
+    }
+
+    @Test
+    public void unchangedDevicesAreReused() {
+        StorageDevice previousUnchanged = createDevice("sdb", "uuid", "label");
+        StorageDevice previousReset = createDevice("sdc", "uuid", "label");
+        StorageDevice unchanged = createDevice("sdb", "uuid", "label");
+        StorageDevice reset = createDevice("sdc", "new uuid", "label");
+        StorageDevice added = createDevice("sdd", "uuid", "label");
+        List<StorageDevice> devices = new ArrayList<>(
+                List.of(unchanged, reset, added));
+
+        List<StorageDevice> changedDevices
+                = StorageDeviceListUpdater.reuseUnchangedDevices(devices,
+                        List.of(previousUnchanged, previousReset));
+
+        assertEquals(List.of(reset, added), changedDevices);
+        assertSame(previousUnchanged, devices.get(0));
+        assertSame(reset, devices.get(1));
+        assertSame(added, devices.get(2));
+    }
+
+    private static StorageDevice createDevice(
+            String device, String uuid, String label) {
+        Partition partition = mock(Partition.class);
+        when(partition.getNumber()).thenReturn(1);
+        when(partition.getOffset()).thenReturn(1048576L);
+        when(partition.getSize()).thenReturn(4294967296L);
+        when(partition.getIdType()).thenReturn("ext4");
+        when(partition.getIdUuid()).thenReturn(uuid);
+        when(partition.getIdLabel()).thenReturn(label);
+        StorageDevice storageDevice = mock(StorageDevice.class);
+        when(storageDevice.getDevice()).thenReturn(device);
+        when(storageDevice.getSerial()).thenReturn("serial " + device);
+        when(storageDevice.getSize()).thenReturn(8589934592L);
+        when(storageDevice.getPartitions()).thenReturn(List.of(partition));
+        return storageDevice;
+    }
+}